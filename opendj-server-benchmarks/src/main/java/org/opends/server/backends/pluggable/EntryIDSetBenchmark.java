@@ -0,0 +1,198 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.opends.server.backends.pluggable.EntryIDSet.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.benchmarks.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoding, the decoding and the set operations of the entry ID
+ * sets stored in the indexes, which dominate the cost of indexed searches.
+ * This benchmark lives in the package of {@link EntryIDSet}, which is not
+ * public.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class EntryIDSetBenchmark
+{
+  private static final ByteString KEY = ByteString.valueOfUtf8("benchmark");
+
+  /** The number of entry IDs of each set. */
+  @Param({ "100", "10000" })
+  public int size;
+
+  private long[] ids1;
+  private long[] ids2;
+  private ByteString encodedV1;
+  private ByteString encodedV2;
+  private EntryID[] probes;
+  private int next;
+
+  /**
+   * Generates two partly overlapping sets of entry IDs.
+   */
+  @Setup
+  public void setUp()
+  {
+    final Random random = new Random(BenchmarkEnvironment.RANDOM_SEED);
+    ids1 = randomIDs(random, size);
+    ids2 = randomIDs(random, size);
+    encodedV1 = CODEC_V1.encode(newDefinedSet(ids1));
+    encodedV2 = CODEC_V2.encode(newDefinedSet(ids1));
+    probes = new EntryID[1024];
+    for (int i = 0; i < probes.length; i++)
+    {
+      probes[i] = new EntryID(random.nextInt(size * 4));
+    }
+  }
+
+  /** Returns sorted distinct IDs, spread over about four times as many values. */
+  private static long[] randomIDs(Random random, int count)
+  {
+    final long[] ids = new long[count];
+    long id = 0;
+    for (int i = 0; i < count; i++)
+    {
+      id += 1 + random.nextInt(7);
+      ids[i] = id;
+    }
+    return ids;
+  }
+
+  /**
+   * Encodes a set with the version 1 codec.
+   *
+   * @return the encoded set
+   */
+  @Benchmark
+  public ByteString encodeV1()
+  {
+    return CODEC_V1.encode(newDefinedSet(ids1));
+  }
+
+  /**
+   * Encodes a set with the version 2 codec.
+   *
+   * @return the encoded set
+   */
+  @Benchmark
+  public ByteString encodeV2()
+  {
+    return CODEC_V2.encode(newDefinedSet(ids1));
+  }
+
+  /**
+   * Decodes a set encoded with the version 1 codec.
+   *
+   * @return the decoded set
+   */
+  @Benchmark
+  public EntryIDSet decodeV1()
+  {
+    return CODEC_V1.decode(KEY, encodedV1);
+  }
+
+  /**
+   * Decodes a set encoded with the version 2 codec.
+   *
+   * @return the decoded set
+   */
+  @Benchmark
+  public EntryIDSet decodeV2()
+  {
+    return CODEC_V2.decode(KEY, encodedV2);
+  }
+
+  /**
+   * Intersects two sets, as done for an AND filter.
+   *
+   * @return the intersection
+   */
+  @Benchmark
+  public EntryIDSet retainAll()
+  {
+    final EntryIDSet set = newDefinedSet(ids1);
+    set.retainAll(newDefinedSet(ids2));
+    return set;
+  }
+
+  /**
+   * Adds a set to another one, as done when updating an index.
+   *
+   * @return the union
+   */
+  @Benchmark
+  public EntryIDSet addAll()
+  {
+    final EntryIDSet set = newDefinedSet(ids1);
+    set.addAll(newDefinedSet(ids2));
+    return set;
+  }
+
+  /**
+   * Computes the union of two sets, as done for an OR filter.
+   *
+   * @return the union
+   */
+  @Benchmark
+  public EntryIDSet newSetFromUnion()
+  {
+    return EntryIDSet.newSetFromUnion(Arrays.asList(newDefinedSet(ids1), newDefinedSet(ids2)));
+  }
+
+  /**
+   * Looks up an entry ID in a set.
+   *
+   * @return whether the set contains the entry ID
+   */
+  @Benchmark
+  public boolean contains()
+  {
+    next = (next + 1) & (probes.length - 1);
+    return newDefinedSet(ids1).contains(probes[next]);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import static org.opends.server.protocols.internal.InternalClientConnection.*;
+import static org.opends.server.protocols.internal.Requests.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.api.AccessControlHandler;
+import org.opends.server.core.AccessControlConfigManager;
+import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.protocols.internal.InternalSearchOperation;
+import org.opends.server.types.AuthenticationInfo;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchResultEntry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the access control evaluation done for every entry returned by a
+ * search, with the global ACIs of the default configuration. The searches are
+ * performed by a user who does not have the privilege to bypass the access
+ * control.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class AciBenchmark
+{
+  /** The number of distinct entries, a power of two. */
+  private static final int ENTRY_COUNT = 1024;
+
+  /** The filter of the search, which is evaluated against the ACIs as well. */
+  @Param({ "(objectClass=*)", "(&(objectClass=person)(sn=Jensen))" })
+  public String filter;
+
+  private AccessControlHandler<?> handler;
+  private InternalSearchOperation operation;
+  private Entry[] entries;
+  private int next;
+
+  /**
+   * Installs the access control handler and prepares the search operation.
+   *
+   * @throws Exception
+   *           If the server cannot be initialized
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    BenchmarkEnvironment.initializeAccessControl();
+    handler = AccessControlConfigManager.getInstance().getAccessControlHandler();
+
+    final List<Entry> generated = BenchmarkEnvironment.generateEntries(ENTRY_COUNT);
+    entries = generated.toArray(new Entry[ENTRY_COUNT]);
+
+    final InternalClientConnection connection =
+        new InternalClientConnection(new AuthenticationInfo(entries[0], false));
+    operation = new InternalSearchOperation(connection, nextOperationID(), nextMessageID(),
+        newSearchRequest(DN.valueOf(BenchmarkEnvironment.BASE_DN), SearchScope.WHOLE_SUBTREE, filter));
+  }
+
+  private Entry nextEntry()
+  {
+    next = (next + 1) & (ENTRY_COUNT - 1);
+    return entries[next];
+  }
+
+  /**
+   * Decides whether an entry may be returned to the user.
+   *
+   * @return whether the entry may be returned
+   */
+  @Benchmark
+  public boolean maySend()
+  {
+    return handler.maySend(operation, new SearchResultEntry(nextEntry()));
+  }
+
+  /**
+   * Decides whether an entry may be returned to the user, then strips the
+   * attributes the user may not read, as done by the search operation. The
+   * stripped copy of the entry is made by the benchmark, since it is
+   * modified.
+   *
+   * @return the entry which would be returned
+   */
+  @Benchmark
+  public SearchResultEntry maySendAndFilterEntry()
+  {
+    final Entry entry = nextEntry();
+    final SearchResultEntry unfiltered = new SearchResultEntry(entry);
+    if (!handler.maySend(operation, unfiltered))
+    {
+      return null;
+    }
+    final SearchResultEntry filtered = new SearchResultEntry(entry.duplicate(false));
+    handler.filterEntry(operation, unfiltered, filtered);
+    return filtered;
+  }
+}
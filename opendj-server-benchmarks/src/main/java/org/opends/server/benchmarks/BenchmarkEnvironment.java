@@ -0,0 +1,220 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import static org.opends.server.config.ConfigConstants.*;
+import static org.opends.server.util.ServerConstants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.opends.server.core.AccessControlConfigManager;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.extensions.ConfigFileHandler;
+import org.opends.server.types.Entry;
+import org.opends.server.types.LDIFImportConfig;
+import org.opends.server.util.LDIFReader;
+import org.opends.server.util.StaticUtils;
+
+/**
+ * Prepares the Directory Server for the benchmarks, the same way offline tools
+ * like make-ldif do: the configuration and the schema are loaded, but no
+ * backend, connection handler or replication domain is started.
+ * <p>
+ * The configuration and the schema are copied from the server sources into a
+ * temporary instance, so the benchmarks always run against the configuration
+ * of the benchmarked commit. The location of the server sources is read from
+ * the {@value #PROPERTY_SERVER_LEGACY_DIR} system property, and defaults to
+ * the {@code opendj-server-legacy} directory next to the current directory.
+ * <p>
+ * The data used by the benchmarks is generated from fixed seeds, so results
+ * obtained on different commits can be compared.
+ */
+public final class BenchmarkEnvironment
+{
+  /** The system property holding the path to the opendj-server-legacy sources. */
+  public static final String PROPERTY_SERVER_LEGACY_DIR = "org.opends.server.benchmarks.ServerLegacyDir";
+
+  /** The seed of all the random generators used to build the benchmark data. */
+  public static final long RANDOM_SEED = 0x0DEC0DEDL;
+
+  /** The base DN of all the generated entries. */
+  public static final String BASE_DN = "ou=people,dc=example,dc=com";
+
+  private static boolean serverInitialized;
+  private static boolean accessControlInitialized;
+
+  private BenchmarkEnvironment()
+  {
+    // Not instantiable.
+  }
+
+  /**
+   * Loads the server configuration and schema, unless this has already been
+   * done in this JVM.
+   *
+   * @throws Exception
+   *           If the configuration or the schema cannot be loaded
+   */
+  public static synchronized void initializeServer() throws Exception
+  {
+    if (serverInitialized)
+    {
+      return;
+    }
+
+    final File sourceDir = new File(System.getProperty(PROPERTY_SERVER_LEGACY_DIR, "../opendj-server-legacy"));
+    final File resourceDir = new File(sourceDir, "resource");
+    if (!new File(resourceDir, CONFIG_DIR_NAME + File.separator + CONFIG_FILE_NAME).isFile())
+    {
+      throw new IOException("Cannot find the server configuration below " + sourceDir.getAbsolutePath()
+          + ", set the " + PROPERTY_SERVER_LEGACY_DIR + " system property");
+    }
+
+    final File instanceRoot = Files.createTempDirectory("opendj-benchmarks-").toFile();
+    Runtime.getRuntime().addShutdownHook(new Thread()
+    {
+      @Override
+      public void run()
+      {
+        StaticUtils.recursiveDelete(instanceRoot);
+      }
+    });
+    final File configDir = new File(instanceRoot, CONFIG_DIR_NAME);
+    final File schemaDir = new File(configDir, "schema");
+    final File configFile = new File(configDir, CONFIG_FILE_NAME);
+    copyDirectory(new File(resourceDir, CONFIG_DIR_NAME), configDir);
+    copyDirectory(new File(resourceDir, "schema"), schemaDir);
+
+    System.setProperty(PROPERTY_SERVER_ROOT, instanceRoot.getAbsolutePath());
+    System.setProperty(PROPERTY_INSTANCE_ROOT, instanceRoot.getAbsolutePath());
+    System.setProperty(PROPERTY_SCHEMA_DIRECTORY, schemaDir.getAbsolutePath());
+
+    DirectoryServer.bootstrapClient();
+    DirectoryServer.initializeJMX();
+    final DirectoryServer directoryServer = DirectoryServer.getInstance();
+    directoryServer.initializeConfiguration(ConfigFileHandler.class.getName(), configFile.getAbsolutePath());
+    directoryServer.initializeSchema();
+    serverInitialized = true;
+  }
+
+  /**
+   * Loads the server configuration and schema, then installs the access
+   * control handler with the global ACIs of the configuration.
+   *
+   * @throws Exception
+   *           If the access control handler cannot be installed
+   */
+  public static synchronized void initializeAccessControl() throws Exception
+  {
+    initializeServer();
+    if (!accessControlInitialized)
+    {
+      AccessControlConfigManager.getInstance().initializeAccessControl(
+          DirectoryServer.getInstance().getServerContext());
+      accessControlInitialized = true;
+    }
+  }
+
+  /**
+   * Generates user entries below {@link #BASE_DN}, the same for every run.
+   *
+   * @param count
+   *          the number of entries to generate
+   * @return the generated entries
+   * @throws Exception
+   *           If the generated entries do not conform to the schema
+   */
+  public static List<Entry> generateEntries(int count) throws Exception
+  {
+    initializeServer();
+    final Random random = new Random(RANDOM_SEED);
+    final StringBuilder ldif = new StringBuilder();
+    for (int i = 0; i < count; i++)
+    {
+      final String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+      final String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+      ldif.append("dn: uid=user.").append(i).append(',').append(BASE_DN).append('\n')
+          .append("objectClass: top\n")
+          .append("objectClass: person\n")
+          .append("objectClass: organizationalPerson\n")
+          .append("objectClass: inetOrgPerson\n")
+          .append("uid: user.").append(i).append('\n')
+          .append("givenName: ").append(first).append('\n')
+          .append("sn: ").append(last).append('\n')
+          .append("cn: ").append(first).append(' ').append(last).append('\n')
+          .append("mail: user.").append(i).append("@example.com\n")
+          .append("telephoneNumber: +1 ").append(100000000 + random.nextInt(900000000)).append('\n')
+          .append("employeeNumber: ").append(i).append('\n')
+          .append("description: This is the description for ").append(first).append(' ').append(last).append('\n')
+          .append("userPassword: ").append(Long.toHexString(random.nextLong())).append("\n\n");
+    }
+
+    final List<Entry> entries = new ArrayList<>(count);
+    try (LDIFReader reader = new LDIFReader(new LDIFImportConfig(new StringReader(ldif.toString()))))
+    {
+      Entry entry;
+      while ((entry = reader.readEntry(true)) != null)
+      {
+        entries.add(entry);
+      }
+    }
+    return entries;
+  }
+
+  private static void copyDirectory(File source, File target) throws IOException
+  {
+    target.mkdirs();
+    for (File file : source.listFiles())
+    {
+      final File copy = new File(target, file.getName());
+      if (file.isDirectory())
+      {
+        copyDirectory(file, copy);
+      }
+      else
+      {
+        Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
+
+  private static final String[] FIRST_NAMES = {
+    "Aaron", "Abigail", "Bernard", "Brigitte", "Carlos", "Chloe", "Dmitri", "Dolores",
+    "Emil", "Esther", "Fabien", "Fiona", "Gustav", "Helena", "Ivan", "Jasmine",
+  };
+
+  private static final String[] LAST_NAMES = {
+    "Abbott", "Baker", "Castillo", "Dubois", "Eriksen", "Fischer", "Garcia", "Hoffmann",
+    "Ivanova", "Jensen", "Kowalski", "Lambert", "Moreau", "Nakamura", "Olsen", "Petrov",
+  };
+}
@@ -0,0 +1,117 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.types.DN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the parsing and the normalization of DNs, which are done for every
+ * operation received by the server and for every entry read from a backend.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class DNBenchmark
+{
+  /** The number of distinct DNs, a power of two. */
+  private static final int DN_COUNT = 4096;
+
+  /** The shape of the benchmarked DNs. */
+  @Param({ "uid=user.{0},ou=People,dc=example,dc=com",
+           "cn=Babs Jensen {0}+uid=bjensen.{0},ou=Accounting,o=Example\\, Inc.,c=US" })
+  public String pattern;
+
+  private String[] dnStrings;
+  private int next;
+
+  /**
+   * Loads the schema and prepares the DNs.
+   *
+   * @throws Exception
+   *           If the server cannot be initialized
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    BenchmarkEnvironment.initializeServer();
+    dnStrings = new String[DN_COUNT];
+    for (int i = 0; i < DN_COUNT; i++)
+    {
+      dnStrings[i] = pattern.replace("{0}", String.valueOf(i));
+    }
+  }
+
+  private int nextIndex()
+  {
+    next = (next + 1) & (DN_COUNT - 1);
+    return next;
+  }
+
+  /**
+   * Parses a DN string.
+   *
+   * @return the parsed DN
+   * @throws Exception
+   *           If the DN is invalid
+   */
+  @Benchmark
+  public DN valueOf() throws Exception
+  {
+    return DN.valueOf(dnStrings[nextIndex()]);
+  }
+
+  /**
+   * Parses a DN string and normalizes it, as done for the DN of each request.
+   * The normalized form is cached by the DN, hence it is always measured on a
+   * newly parsed DN.
+   *
+   * @return the normalized DN
+   * @throws Exception
+   *           If the DN is invalid
+   */
+  @Benchmark
+  public ByteString valueOfAndNormalize() throws Exception
+  {
+    return DN.valueOf(dnStrings[nextIndex()]).toNormalizedByteString();
+  }
+}
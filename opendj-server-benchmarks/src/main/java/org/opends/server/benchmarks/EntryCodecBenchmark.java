@@ -0,0 +1,130 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.Entry;
+import org.opends.server.types.EntryEncodeConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoding and the decoding of entries, as done by the backends
+ * for every entry they write or read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class EntryCodecBenchmark
+{
+  /** The number of distinct entries, a power of two. */
+  private static final int ENTRY_COUNT = 1024;
+
+  /**
+   * Whether attribute descriptions and object class sets are compressed, as
+   * configured by the "compact-encoding" backend property.
+   */
+  @Param({ "false", "true" })
+  public boolean compact;
+
+  private Entry[] entries;
+  private ByteString[] encodedEntries;
+  private EntryEncodeConfig encodeConfig;
+  private final ByteStringBuilder buffer = new ByteStringBuilder();
+  private int next;
+
+  /**
+   * Generates and encodes the entries.
+   *
+   * @throws Exception
+   *           If the entries cannot be generated
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    final List<Entry> generated = BenchmarkEnvironment.generateEntries(ENTRY_COUNT);
+    entries = generated.toArray(new Entry[ENTRY_COUNT]);
+    encodeConfig = new EntryEncodeConfig(false, compact, compact);
+    encodedEntries = new ByteString[ENTRY_COUNT];
+    for (int i = 0; i < ENTRY_COUNT; i++)
+    {
+      final ByteStringBuilder builder = new ByteStringBuilder();
+      entries[i].encode(builder, encodeConfig);
+      encodedEntries[i] = builder.toByteString();
+    }
+  }
+
+  private int nextIndex()
+  {
+    next = (next + 1) & (ENTRY_COUNT - 1);
+    return next;
+  }
+
+  /**
+   * Encodes an entry into a reused buffer.
+   *
+   * @return the buffer holding the encoded entry
+   * @throws Exception
+   *           If the entry cannot be encoded
+   */
+  @Benchmark
+  public ByteStringBuilder encode() throws Exception
+  {
+    buffer.clear();
+    entries[nextIndex()].encode(buffer, encodeConfig);
+    return buffer;
+  }
+
+  /**
+   * Decodes an entry.
+   *
+   * @return the decoded entry
+   * @throws Exception
+   *           If the entry cannot be decoded
+   */
+  @Benchmark
+  public Entry decode() throws Exception
+  {
+    return Entry.decode(encodedEntries[nextIndex()].asReader(), DirectoryServer.getDefaultCompressedSchema());
+  }
+}
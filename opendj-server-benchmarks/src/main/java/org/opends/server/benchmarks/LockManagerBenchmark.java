@@ -0,0 +1,153 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opends.server.types.DN;
+import org.opends.server.types.LockManager;
+import org.opends.server.types.LockManager.DNLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the locking and unlocking of entries, as done by every operation
+ * reading or writing an entry. All the threads share the same lock manager, so
+ * the benchmark also measures the contention on the lock table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@Threads(4)
+public class LockManagerBenchmark
+{
+  /** The number of distinct DNs, a power of two. */
+  private static final int DN_COUNT = 16384;
+
+  /**
+   * The number of DNs actually locked: a single DN shows the cost of the
+   * contention, many DNs show the cost of the lock table.
+   */
+  @Param({ "1", "16384" })
+  public int lockedDNs;
+
+  private final LockManager lockManager = new LockManager();
+  private final AtomicInteger threadCount = new AtomicInteger();
+  private DN[] dns;
+
+  /** The DNs locked by one thread, in a random order which is the same for every run. */
+  @State(Scope.Thread)
+  public static class ThreadState
+  {
+    private int[] order;
+    private int next;
+
+    /**
+     * Shuffles the locked DNs for this thread.
+     *
+     * @param benchmark
+     *          the benchmark holding the DNs
+     */
+    @Setup
+    public void setUp(LockManagerBenchmark benchmark)
+    {
+      final Random random = new Random(BenchmarkEnvironment.RANDOM_SEED + benchmark.threadCount.getAndIncrement());
+      order = new int[DN_COUNT];
+      for (int i = 0; i < DN_COUNT; i++)
+      {
+        order[i] = random.nextInt(benchmark.lockedDNs);
+      }
+    }
+
+    private int nextIndex()
+    {
+      next = (next + 1) & (DN_COUNT - 1);
+      return order[next];
+    }
+  }
+
+  /**
+   * Parses the locked DNs.
+   *
+   * @throws Exception
+   *           If the server cannot be initialized
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    BenchmarkEnvironment.initializeServer();
+    dns = new DN[lockedDNs];
+    for (int i = 0; i < lockedDNs; i++)
+    {
+      dns[i] = DN.valueOf("uid=user." + i + "," + BenchmarkEnvironment.BASE_DN);
+    }
+  }
+
+  /**
+   * Takes then releases the read lock of an entry.
+   *
+   * @param state
+   *          the state of the current thread
+   * @return the released lock
+   */
+  @Benchmark
+  public DNLock readLockUnlock(ThreadState state)
+  {
+    final DNLock lock = lockManager.tryReadLockEntry(dns[state.nextIndex()]);
+    lock.unlock();
+    return lock;
+  }
+
+  /**
+   * Takes then releases the write lock of an entry.
+   *
+   * @param state
+   *          the state of the current thread
+   * @return the released lock
+   */
+  @Benchmark
+  public DNLock writeLockUnlock(ThreadState state)
+  {
+    final DNLock lock = lockManager.tryWriteLockEntry(dns[state.nextIndex()]);
+    lock.unlock();
+    return lock;
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.ldap.ModificationType;
+import org.opends.server.replication.common.CSN;
+import org.opends.server.replication.common.CSNGenerator;
+import org.opends.server.replication.protocol.AddMsg;
+import org.opends.server.replication.protocol.ModifyMsg;
+import org.opends.server.replication.protocol.ProtocolVersion;
+import org.opends.server.replication.protocol.ReplicationMsg;
+import org.opends.server.replication.protocol.UpdateMsg;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.Entry;
+import org.opends.server.types.Modification;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the encoding and the decoding of the replication update messages,
+ * as done by the replication servers and the replication domains for every
+ * replicated change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class ReplicationMsgBenchmark
+{
+  /** The number of distinct entries, a power of two. */
+  private static final int ENTRY_COUNT = 1024;
+  /** A fixed time stamp, so that the messages are the same for every run. */
+  private static final long TIMESTAMP = 1420070400000L;
+
+  /** The type of the replicated change. */
+  @Param({ "modify", "add" })
+  public String change;
+
+  private Entry[] entries;
+  private CSN[] csns;
+  private byte[][] encodedMsgs;
+  private int next;
+
+  /**
+   * Generates the entries and encodes one message for each of them.
+   *
+   * @throws Exception
+   *           If the server cannot be initialized
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    final List<Entry> generated = BenchmarkEnvironment.generateEntries(ENTRY_COUNT);
+    entries = generated.toArray(new Entry[ENTRY_COUNT]);
+    final CSNGenerator csnGenerator = new CSNGenerator(1, TIMESTAMP);
+    csns = new CSN[ENTRY_COUNT];
+    encodedMsgs = new byte[ENTRY_COUNT][];
+    for (int i = 0; i < ENTRY_COUNT; i++)
+    {
+      csns[i] = csnGenerator.newCSN();
+      encodedMsgs[i] = newMsg(i).getBytes();
+    }
+  }
+
+  private UpdateMsg newMsg(int index)
+  {
+    final Entry entry = entries[index];
+    final String entryUUID = "00000000-0000-0000-0000-" + String.format("%012d", index);
+    if ("add".equals(change))
+    {
+      final List<Attribute> userAttributes = new ArrayList<>();
+      for (List<Attribute> attributes : entry.getUserAttributes().values())
+      {
+        userAttributes.addAll(attributes);
+      }
+      return new AddMsg(csns[index], entry.getName(), entryUUID, "00000000-0000-0000-0000-000000000000",
+          entry.getObjectClassAttribute(), userAttributes, Collections.<Attribute> emptyList());
+    }
+    final List<Modification> mods = Arrays.asList(
+        new Modification(ModificationType.REPLACE, Attributes.create("description", "new value " + index)),
+        new Modification(ModificationType.REPLACE, Attributes.create("telephoneNumber", "+1 555 0100")));
+    return new ModifyMsg(csns[index], entry.getName(), mods, entryUUID);
+  }
+
+  private int nextIndex()
+  {
+    next = (next + 1) & (ENTRY_COUNT - 1);
+    return next;
+  }
+
+  /**
+   * Builds and encodes a message. A message caches its encoded form, hence a
+   * new message is built for each encoding.
+   *
+   * @return the encoded message
+   */
+  @Benchmark
+  public byte[] encode()
+  {
+    return newMsg(nextIndex()).getBytes();
+  }
+
+  /**
+   * Decodes a message.
+   *
+   * @return the decoded message
+   * @throws Exception
+   *           If the message cannot be decoded
+   */
+  @Benchmark
+  public ReplicationMsg decode() throws Exception
+  {
+    return ReplicationMsg.generateMsg(encodedMsgs[nextIndex()], ProtocolVersion.getCurrentVersion());
+  }
+}
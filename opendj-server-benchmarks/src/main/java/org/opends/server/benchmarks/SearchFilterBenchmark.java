@@ -0,0 +1,111 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.types.Entry;
+import org.opends.server.types.SearchFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the evaluation of search filters against entries, as done for every
+ * candidate entry of a search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class SearchFilterBenchmark
+{
+  /** The number of distinct entries, a power of two. */
+  private static final int ENTRY_COUNT = 1024;
+
+  /** The benchmarked filter. */
+  @Param({ "(uid=user.512)",
+           "(&(objectClass=person)(sn=Jensen))",
+           "(|(cn=*Baker)(mail=user.1*))",
+           "(&(objectClass=inetOrgPerson)(!(employeeNumber<=100))(description=*description*))" })
+  public String filter;
+
+  private Entry[] entries;
+  private SearchFilter searchFilter;
+  private int next;
+
+  /**
+   * Generates the entries and parses the filter.
+   *
+   * @throws Exception
+   *           If the entries cannot be generated or the filter is invalid
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    final List<Entry> generated = BenchmarkEnvironment.generateEntries(ENTRY_COUNT);
+    entries = generated.toArray(new Entry[ENTRY_COUNT]);
+    searchFilter = SearchFilter.createFilterFromString(filter);
+  }
+
+  /**
+   * Evaluates the filter against an entry.
+   *
+   * @return whether the entry matches the filter
+   * @throws Exception
+   *           If the filter cannot be evaluated
+   */
+  @Benchmark
+  public boolean matchesEntry() throws Exception
+  {
+    next = (next + 1) & (ENTRY_COUNT - 1);
+    return searchFilter.matchesEntry(entries[next]);
+  }
+
+  /**
+   * Parses the filter, as done for every search request.
+   *
+   * @return the parsed filter
+   * @throws Exception
+   *           If the filter is invalid
+   */
+  @Benchmark
+  public SearchFilter createFilterFromString() throws Exception
+  {
+    return SearchFilter.createFilterFromString(filter);
+  }
+}
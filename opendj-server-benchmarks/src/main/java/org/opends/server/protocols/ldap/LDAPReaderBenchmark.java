@@ -0,0 +1,160 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.protocols.ldap;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.opendj.io.ASN1;
+import org.forgerock.opendj.io.ASN1Writer;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DereferenceAliasesPolicy;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.benchmarks.BenchmarkEnvironment;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Entry;
+import org.opends.server.types.RawAttribute;
+import org.opends.server.types.RawFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the decoding of the LDAP requests read from a client connection,
+ * from the raw bytes to {@link LDAPMessage} objects. The bytes go through an
+ * {@link ASN1ByteChannelReader} exactly as in {@link LDAPClientConnection},
+ * with the buffer size used by the LDAP connection handler. This benchmark
+ * lives in the package of {@link ASN1ByteChannelReader}, which is not public.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class LDAPReaderBenchmark
+{
+  /** The number of requests decoded by each benchmark invocation. */
+  private static final int MESSAGE_COUNT = 1000;
+  /** The default buffer size and maximum request size of the LDAP connection handler. */
+  private static final int BUFFER_SIZE = 4096;
+  private static final int MAX_REQUEST_SIZE = 5 * 1000 * 1000;
+
+  /** The type of the decoded requests. */
+  @Param({ "search", "add" })
+  public String request;
+
+  private byte[] encodedMessages;
+
+  /**
+   * Encodes the requests which are decoded by the benchmark.
+   *
+   * @throws Exception
+   *           If the requests cannot be generated
+   */
+  @Setup
+  public void setUp() throws Exception
+  {
+    final List<Entry> entries = BenchmarkEnvironment.generateEntries(MESSAGE_COUNT);
+    final ByteStringBuilder builder = new ByteStringBuilder();
+    final ASN1Writer writer = ASN1.getWriter(builder);
+    for (int i = 0; i < MESSAGE_COUNT; i++)
+    {
+      final Entry entry = entries.get(i);
+      final ProtocolOp op = "add".equals(request) ? newAddRequest(entry) : newSearchRequest(entry);
+      new LDAPMessage(i + 1, op).write(writer);
+    }
+    writer.flush();
+    encodedMessages = builder.toByteArray();
+  }
+
+  private static ProtocolOp newSearchRequest(Entry entry) throws Exception
+  {
+    return new SearchRequestProtocolOp(ByteString.valueOfUtf8(BenchmarkEnvironment.BASE_DN),
+        SearchScope.WHOLE_SUBTREE, DereferenceAliasesPolicy.NEVER, 0, 0, false,
+        RawFilter.create("(&(objectClass=person)(uid=" + entry.getName().rdn().getAttributeValue(0) + "))"),
+        Collections.singleton("cn"));
+  }
+
+  private static ProtocolOp newAddRequest(Entry entry)
+  {
+    final List<RawAttribute> attributes = new ArrayList<>();
+    attributes.add(new LDAPAttribute(entry.getObjectClassAttribute()));
+    for (List<Attribute> attrs : entry.getUserAttributes().values())
+    {
+      for (Attribute attr : attrs)
+      {
+        attributes.add(new LDAPAttribute(attr));
+      }
+    }
+    return new AddRequestProtocolOp(ByteString.valueOfUtf8(entry.getName().toString()), attributes);
+  }
+
+  /**
+   * Reads and decodes all the encoded requests.
+   *
+   * @return the last decoded request
+   * @throws Exception
+   *           If the requests cannot be decoded
+   */
+  @Benchmark
+  @OperationsPerInvocation(MESSAGE_COUNT)
+  public LDAPMessage readMessages() throws Exception
+  {
+    final ASN1ByteChannelReader reader = new ASN1ByteChannelReader(
+        Channels.newChannel(new ByteArrayInputStream(encodedMessages)), BUFFER_SIZE, MAX_REQUEST_SIZE);
+    LDAPMessage message = null;
+    int count = 0;
+    while (reader.processChannelData() >= 0)
+    {
+      while (reader.elementAvailable())
+      {
+        message = LDAPReader.readMessage(reader);
+        count++;
+      }
+    }
+    if (count != MESSAGE_COUNT)
+    {
+      throw new IOException("Decoded " + count + " messages instead of " + MESSAGE_COUNT);
+    }
+    return message;
+  }
+}
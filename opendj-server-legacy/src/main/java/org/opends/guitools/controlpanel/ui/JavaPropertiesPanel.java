@@ -119,7 +119,7 @@ public class JavaPropertiesPanel extends StatusGenericPanel
         "list-backends", "manage-account", "manage-tasks", "restore.online",
         "stop-ds", "status", "control-panel", "uninstall", "setup",
         "backup.offline", "encode-password", "export-ldif.offline",
-        "ldif-diff", "ldifmodify", "ldifsearch", "make-ldif",
+        "ldapload", "ldif-diff", "ldifmodify", "ldifsearch", "make-ldif",
         "rebuild-index", "restore.offline", "upgrade",
         "verify-index", "backendstat"
       );
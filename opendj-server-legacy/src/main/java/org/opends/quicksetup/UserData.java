@@ -921,8 +921,8 @@ public class UserData
         "backup.offline", "dsreplication.offline",
         "encode-password", "export-ldif.offline",
         IMPORT_SCRIPT_NAME, "ldif-diff", "ldifmodify", "ldifsearch",
-        "make-ldif", "rebuild-index", "restore.offline", SERVER_SCRIPT_NAME,
-        "upgrade", "verify-index", "backendstat"
+        "ldapload", "make-ldif", "rebuild-index", "restore.offline",
+        SERVER_SCRIPT_NAME, "upgrade", "verify-index", "backendstat"
     };
   }
 
@@ -35,6 +35,7 @@ import org.forgerock.opendj.ldap.ConditionResult;
 import org.forgerock.opendj.ldap.GeneralizedTime;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.PasswordPolicyStateCache;
 import org.opends.server.types.*;
 
 import static org.opends.messages.CoreMessages.*;
@@ -81,8 +82,23 @@ public abstract class AuthenticationPolicyState
   public static AuthenticationPolicyState forUser(final Entry userEntry,
       final boolean useDefaultOnError) throws DirectoryException
   {
-    final AuthenticationPolicy policy = AuthenticationPolicy.forUser(userEntry,
-        useDefaultOnError);
+    // Falling back to the default policy logs an error: never cache it.
+    final PasswordPolicyStateCache cache = useDefaultOnError ? null
+        : DirectoryServer.getPasswordPolicyStateCache();
+    if (cache == null)
+    {
+      final AuthenticationPolicy policy = AuthenticationPolicy.forUser(
+          userEntry, useDefaultOnError);
+      return policy.createAuthenticationPolicyState(userEntry);
+    }
+
+    AuthenticationPolicy policy = cache.getPolicy(userEntry);
+    if (policy == null)
+    {
+      final long generation = cache.getGeneration();
+      policy = AuthenticationPolicy.forUser(userEntry, useDefaultOnError);
+      cache.putPolicy(userEntry, policy, generation);
+    }
     return policy.createAuthenticationPolicyState(userEntry);
   }
 
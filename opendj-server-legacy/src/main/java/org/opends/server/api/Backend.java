@@ -33,12 +33,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ConditionResult;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.schema.MatchingRule;
@@ -236,6 +238,38 @@ public abstract class Backend<C extends Configuration>
    */
   public abstract boolean isIndexed(AttributeType attributeType, IndexType indexType);
 
+  /**
+   * Retrieves the DNs of the entries below the provided base DN which hold
+   * some values of an attribute, by directly reading its equality index
+   * rather than processing a search operation. This allows cheap checks such
+   * as attribute uniqueness, which only need to know whether at most a couple
+   * of entries hold a value.
+   * <BR><BR>
+   * Subentries are ignored, like in search operations which do not request
+   * them. This default implementation returns {@code null}: backends which
+   * maintain equality indexes may override it.
+   *
+   * @param  baseDN         The base DN below which the entries must be.
+   * @param  attributeType  The attribute type holding the values.
+   * @param  values         The values for which to retrieve the entries.
+   * @param  limit          The maximum number of entry DNs to return for
+   *                        each value.
+   *
+   * @return  The DNs of the entries holding each value, where values held
+   *          by no entry are absent, or {@code null} if the equality index
+   *          cannot tell which entries hold the values (e.g. if there is no
+   *          such index, if it is not trusted, or if a value exceeds its
+   *          entry limit), in which case a search operation must be processed.
+   *
+   * @throws  DirectoryException  If a problem occurs while reading the
+   *                              index.
+   */
+  public Map<ByteString, List<DN>> getEntryDNsByEqualityIndex(DN baseDN, AttributeType attributeType,
+      Collection<ByteString> values, int limit) throws DirectoryException
+  {
+    return null;
+  }
+
   /**
    * Indicates whether extensible match search operations that target
    * the specified attribute with the given matching rule should be
@@ -392,6 +426,28 @@ public abstract class Backend<C extends Configuration>
    */
   public abstract long getNumberOfChildren(DN parentDN) throws DirectoryException;
 
+  /**
+   * Retrieves the number of subordinates immediately below each of the
+   * requested entries. Backends able to look up several entries more
+   * efficiently than one by one should override this method.
+   *
+   * @param parentDNs
+   *          The distinguished names of the parents.
+   * @return The number of subordinate entries for each requested entry, in
+   *         the same order, or -1 for the entries which do not exist.
+   * @throws DirectoryException
+   *           If a problem occurs while trying to retrieve the entries.
+   */
+  public long[] getNumberOfChildren(List<DN> parentDNs) throws DirectoryException
+  {
+    final long[] counts = new long[parentDNs.size()];
+    for (int i = 0; i < counts.length; i++)
+    {
+      counts[i] = getNumberOfChildren(parentDNs.get(i));
+    }
+    return counts;
+  }
+
   /**
    * Retrieves the number of entries for the specified base DN including all entries from the requested entry to the
    * lowest level in the tree.
@@ -0,0 +1,230 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.api;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.NeverThrowsException;
+import org.opends.server.types.DN;
+
+/**
+ * A thread safe {@link DITCacheMap}, optimized for read-mostly usage.
+ * <p>
+ * Readers never block: they access an immutable snapshot of the map published
+ * through a volatile reference. Writers are serialized: each update copies the
+ * current snapshot, applies the changes to the copy and publishes it. Several
+ * changes can be applied with a single copy by using
+ * {@link #update(Function)}.
+ * <p>
+ * The collections and iterators returned by this map are unmodifiable views
+ * of the snapshot that was current when they were created: they are never
+ * affected by later updates.
+ *
+ * @param <T>
+ *          arbitrary object type.
+ */
+public final class ConcurrentDITCacheMap<T> extends AbstractMap<DN, T>
+{
+  /** The current snapshot, which must never be modified once published. */
+  private volatile DITCacheMap<T> snapshot = new DITCacheMap<>();
+  /** The number of copies of the snapshot made by the updates, guarded by this. */
+  private long copyCount;
+
+  /** {@inheritDoc} */
+  @Override
+  public int size()
+  {
+    return snapshot.size();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean isEmpty()
+  {
+    return snapshot.isEmpty();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean containsKey(Object key)
+  {
+    return snapshot.containsKey(key);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean containsValue(Object value)
+  {
+    return snapshot.containsValue(value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public T get(Object key)
+  {
+    return snapshot.get(key);
+  }
+
+  /**
+   * Returns the stored objects subordinate to subtree DN.
+   *
+   * @param key
+   *          subtree DN.
+   * @return unmodifiable collection of stored objects subordinate to subtree
+   *         DN.
+   */
+  public Collection<T> getSubtree(DN key)
+  {
+    return Collections.unmodifiableCollection(snapshot.getSubtree(key));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Set<Entry<DN, T>> entrySet()
+  {
+    return Collections.unmodifiableSet(snapshot.entrySet());
+  }
+
+  /**
+   * Applies several changes to this map at once. Readers either see all of
+   * the changes or none of them.
+   *
+   * @param <R>
+   *          the type of the result of the update
+   * @param updater
+   *          the function applying the changes to the provided modifiable
+   *          copy of this map. The copy must not be used once this function
+   *          returns.
+   * @return the result of the updater function
+   */
+  public synchronized <R> R update(Function<DITCacheMap<T>, R, NeverThrowsException> updater)
+  {
+    final DITCacheMap<T> copy = snapshot.copy();
+    copyCount++;
+    final R result = updater.apply(copy);
+    snapshot = copy;
+    return result;
+  }
+
+  /**
+   * Returns the number of copies of this map made by the updates so far.
+   * <p>
+   * For test purpose.
+   *
+   * @return the number of copies of this map made by the updates so far
+   */
+  public synchronized long getCopyCount()
+  {
+    return copyCount;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public T put(final DN key, final T value)
+  {
+    return update(new Function<DITCacheMap<T>, T, NeverThrowsException>()
+    {
+      @Override
+      public T apply(DITCacheMap<T> map)
+      {
+        return map.put(key, value);
+      }
+    });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void putAll(final Map<? extends DN, ? extends T> m)
+  {
+    update(new Function<DITCacheMap<T>, Void, NeverThrowsException>()
+    {
+      @Override
+      public Void apply(DITCacheMap<T> map)
+      {
+        map.putAll(m);
+        return null;
+      }
+    });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public T remove(final Object key)
+  {
+    if (!snapshot.containsKey(key))
+    {
+      // avoid copying the map for nothing
+      return null;
+    }
+    return update(new Function<DITCacheMap<T>, T, NeverThrowsException>()
+    {
+      @Override
+      public T apply(DITCacheMap<T> map)
+      {
+        return map.remove(key);
+      }
+    });
+  }
+
+  /**
+   * Removes a set of stored objects subordinate to subtree DN.
+   *
+   * @param key
+   *          subtree DN.
+   * @param values
+   *          collection for removed objects subordinate to subtree DN or
+   *          <code>null</code>.
+   * @return <code>true</code> on success or <code>false</code> otherwise.
+   */
+  public boolean removeSubtree(final DN key, final Collection<? super T> values)
+  {
+    if (!snapshot.getSubtree(key).iterator().hasNext())
+    {
+      // avoid copying the map for nothing
+      return false;
+    }
+    return update(new Function<DITCacheMap<T>, Boolean, NeverThrowsException>()
+    {
+      @Override
+      public Boolean apply(DITCacheMap<T> map)
+      {
+        return map.removeSubtree(key, values);
+      }
+    });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public synchronized void clear()
+  {
+    snapshot = new DITCacheMap<>();
+  }
+}
@@ -72,7 +72,8 @@ import org.opends.server.types.DN;
  * operation scope. Standard Map API methods can only work with the objects
  * previously stored in this map explicitly.
  * <p>
- * Note that this Map implementation is not synchronized.
+ * Note that this Map implementation is not synchronized. See
+ * {@link ConcurrentDITCacheMap} for a thread safe variant.
  *
  * @param <T>
  *          arbitrary object type.
@@ -138,6 +139,41 @@ public final class DITCacheMap<T> extends AbstractMap<DN,T>
     this.putAll(m);
   }
 
+  /**
+   * Returns a copy of this map, sharing the stored objects but none of the
+   * internal structure. It is faster than copying this map through the
+   * {@link #DITCacheMap(Map)} constructor, which needs to rebuild the links
+   * between the nodes.
+   *
+   * @return a copy of this map
+   */
+  DITCacheMap<T> copy()
+  {
+    final DITCacheMap<T> copy = new DITCacheMap<>();
+    for (Node<T> node : ditCacheMap.values())
+    {
+      final Node<T> nodeCopy = new Node<>();
+      nodeCopy.dn = node.dn;
+      nodeCopy.element = node.element;
+      copy.ditCacheMap.put(node.dn, nodeCopy);
+    }
+    for (Node<T> node : ditCacheMap.values())
+    {
+      final Node<T> nodeCopy = copy.ditCacheMap.get(node.dn);
+      nodeCopy.parent = copy.copyOf(node.parent);
+      nodeCopy.child = copy.copyOf(node.child);
+      nodeCopy.next = copy.copyOf(node.next);
+      nodeCopy.previous = copy.copyOf(node.previous);
+    }
+    copy.size = size;
+    return copy;
+  }
+
+  private Node<T> copyOf(Node<T> node)
+  {
+    return node != null ? ditCacheMap.get(node.dn) : null;
+  }
+
   /** {@inheritDoc} */
   @Override
   public int size()
@@ -26,6 +26,7 @@
  */
 package org.opends.server.api;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -153,6 +154,52 @@ public abstract class VirtualAttributeProvider
 
 
 
+  /**
+   * Indicates whether this virtual attribute provider can generate the
+   * values for several entries more efficiently than one entry at a
+   * time, in which case the server will call
+   * {@link #getValues(List, VirtualAttributeRule)} with batches of
+   * entries returned by searches requesting this virtual attribute.
+   *
+   * @return  {@code true} if this virtual attribute provider can
+   *          generate the values of several entries at once, or
+   *          {@code false} if not.
+   */
+  public boolean supportsBatchValues()
+  {
+    return false;
+  }
+
+
+
+  /**
+   * Generates unmodifiable attributes with the values for each of the
+   * provided entries. The default implementation calls
+   * {@link #getValues(Entry, VirtualAttributeRule)} for each entry:
+   * providers returning {@code true} from
+   * {@link #supportsBatchValues()} should override it.
+   *
+   * @param entries
+   *          The entries for which the values are to be generated.
+   * @param rule
+   *          The virtual attribute rule which defines the constraints
+   *          for the virtual attribute.
+   * @return The unmodifiable attributes with the values generated for
+   *         the provided entries, in the same order. They may be empty,
+   *         but they must not be {@code null}.
+   */
+  public List<Attribute> getValues(List<Entry> entries, VirtualAttributeRule rule)
+  {
+    final List<Attribute> attributes = new ArrayList<>(entries.size());
+    for (Entry entry : entries)
+    {
+      attributes.add(getValues(entry, rule));
+    }
+    return attributes;
+  }
+
+
+
   /**
    * Indicates whether this virtual attribute provider will generate
    * at least one value for the provided entry.
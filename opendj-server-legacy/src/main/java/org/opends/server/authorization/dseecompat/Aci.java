@@ -517,6 +517,25 @@ public class Aci implements Comparable<Aci>
         return body.evaluate(evalCtx);
     }
 
+    /**
+     * Indicates whether the evaluation of the bind rules of this ACI only
+     * depends on the identity of the client, the requested rights and group
+     * memberships. The result of such an evaluation can be cached.
+     * @return true if the evaluation only depends on the identity of the
+     * client.
+     */
+    boolean isClientIdentityOnly() {
+        return body.isClientIdentityOnly();
+    }
+
+    /**
+     * Indicates whether the bind rules of this ACI use groups.
+     * @return true if the bind rules of this ACI contain a groupdn keyword.
+     */
+    boolean usesGroups() {
+        return body.usesGroups();
+    }
+
     /**
      * Static class used to evaluate an ACI and evaluation context.
      * @param evalCtx  The context to evaluate with.
@@ -89,6 +89,15 @@ public class AciBody {
      */
     private List<PermBindRulePair> permBindRulePairs;
 
+    /**
+     * Indicates whether the evaluation of all the bind rules of this body
+     * only depends on the identity of the client.
+     */
+    private final boolean clientIdentityOnly;
+
+    /** Indicates whether some bind rules of this body use groups. */
+    private final boolean usesGroups;
+
     /**
      * Regular expression used to match the access type group (allow, deny) and
      * the rights group "(read, write, ...)". The last pattern looks for a group
@@ -166,6 +175,15 @@ public class AciBody {
         this.name=name;
         this.startPos=startPos;
         this.permBindRulePairs=permBindRulePairs;
+        boolean identityOnly = true;
+        boolean groups = false;
+        for (PermBindRulePair p : permBindRulePairs) {
+            BindRule bindRule = p.getBindRule();
+            identityOnly &= bindRule != null && bindRule.isClientIdentityOnly();
+            groups |= bindRule != null && bindRule.usesGroups();
+        }
+        this.clientIdentityOnly = identityOnly;
+        this.usesGroups = groups;
     }
 
     /**
@@ -264,6 +282,25 @@ public class AciBody {
         return permBindRulePairs;
     }
 
+    /**
+     * Indicates whether the evaluation of all the bind rules of this body
+     * only depends on the identity of the client.
+     *
+     * @return true if the evaluation only depends on the identity of the client
+     */
+    boolean isClientIdentityOnly() {
+        return clientIdentityOnly;
+    }
+
+    /**
+     * Indicates whether some bind rules of this body use groups.
+     *
+     * @return true if some bind rules of this body contain a groupdn keyword
+     */
+    boolean usesGroups() {
+        return usesGroups;
+    }
+
     /**
      * Get the start position in the ACI string of the ACI body.
      *
@@ -0,0 +1,300 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.authorization.dseecompat;
+
+import static org.opends.server.core.DirectoryServer.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opends.server.admin.std.server.MonitorProviderCfg;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.core.GroupManager;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.DN;
+import org.opends.server.util.LatencyHistogram;
+
+/**
+ * Caches the results of the evaluation of the bind rules of the ACIs.
+ * <p>
+ * Only the ACIs whose bind rules solely depend on the identity of the client
+ * (userdn rules without self, parent or search URLs, and groupdn rules) are
+ * cached. The result of their evaluation is reused for all the entries
+ * targeted by the same client, which avoids re-evaluating group memberships
+ * and DN patterns for each returned entry of a search. The targets of the
+ * ACIs are still matched against each entry.
+ * <p>
+ * ACIs are immutable and replaced when modified, so cached results never
+ * outlive the ACI they were computed for. Results of ACIs using groups are
+ * keyed on the membership version of the group manager, and are not cached
+ * when memberships of some groups cannot be tracked, e.g. dynamic groups.
+ */
+final class AciDecisionCache
+{
+  /** The default maximum number of cached results. */
+  static final int DEFAULT_MAX_SIZE = 100000;
+
+  /** Key of a cached evaluation result. */
+  private static final class Key
+  {
+    private final Aci aci;
+    private final DN clientDN;
+    private final boolean anonymous;
+    private final int rights;
+    private final boolean denyEval;
+    private final long membershipVersion;
+    private final int hashCode;
+
+    private Key(Aci aci, DN clientDN, boolean anonymous, int rights, boolean denyEval, long membershipVersion)
+    {
+      this.aci = aci;
+      this.clientDN = clientDN;
+      this.anonymous = anonymous;
+      this.rights = rights;
+      this.denyEval = denyEval;
+      this.membershipVersion = membershipVersion;
+      int h = System.identityHashCode(aci);
+      h = 31 * h + clientDN.hashCode();
+      h = 31 * h + rights;
+      h = 31 * h + (int) membershipVersion;
+      this.hashCode = h;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+      if (this == obj)
+      {
+        return true;
+      }
+      if (!(obj instanceof Key))
+      {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return aci == other.aci
+          && rights == other.rights
+          && anonymous == other.anonymous
+          && denyEval == other.denyEval
+          && membershipVersion == other.membershipVersion
+          && clientDN.equals(other.clientDN);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hashCode;
+    }
+  }
+
+  private final int maxSize;
+  private final Map<Key, EnumEvalResult> results = new ConcurrentHashMap<>();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong uncacheable = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  /** Time spent evaluating the bind rules of the ACIs, on cache misses only. */
+  private final LatencyHistogram evaluationTime = new LatencyHistogram();
+  /** Time spent in each access control check. */
+  private final LatencyHistogram accessCheckTime = new LatencyHistogram();
+  private final AciCacheMonitorProvider monitor = new AciCacheMonitorProvider();
+
+  /**
+   * Creates a new ACI decision cache.
+   *
+   * @param maxSize
+   *          the maximum number of cached results
+   */
+  AciDecisionCache(int maxSize)
+  {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Evaluates the bind rules of the provided ACI, or returns the result of a
+   * previous identical evaluation.
+   *
+   * @param evalCtx
+   *          the evaluation context
+   * @param aci
+   *          the ACI to evaluate
+   * @return the result of the evaluation
+   */
+  EnumEvalResult evaluate(AciEvalContext evalCtx, Aci aci)
+  {
+    final Key key = newKeyIfCacheable(evalCtx, aci);
+    if (key == null)
+    {
+      uncacheable.incrementAndGet();
+      return timedEvaluate(evalCtx, aci);
+    }
+
+    EnumEvalResult res = results.get(key);
+    if (res != null)
+    {
+      hits.incrementAndGet();
+      return res;
+    }
+    misses.incrementAndGet();
+    res = timedEvaluate(evalCtx, aci);
+    if (res == EnumEvalResult.TRUE || res == EnumEvalResult.FALSE)
+    {
+      // FAIL results may be caused by transient errors: do not remember them
+      if (results.size() >= maxSize)
+      {
+        results.clear();
+        evictions.incrementAndGet();
+      }
+      results.put(key, res);
+    }
+    return res;
+  }
+
+  private Key newKeyIfCacheable(AciEvalContext evalCtx, Aci aci)
+  {
+    if (!aci.isClientIdentityOnly() || evalCtx.isGetEffectiveRightsEval())
+    {
+      return null;
+    }
+    long membershipVersion = 0;
+    if (aci.usesGroups())
+    {
+      final GroupManager groupManager = getGroupManager();
+      if (groupManager.hasUnindexedGroups())
+      {
+        return null;
+      }
+      membershipVersion = groupManager.getMembershipVersion();
+    }
+    return new Key(aci, evalCtx.getClientDN(), evalCtx.isAnonymousUser(), evalCtx.getRights(), evalCtx.isDenyEval(),
+        membershipVersion);
+  }
+
+  private EnumEvalResult timedEvaluate(AciEvalContext evalCtx, Aci aci)
+  {
+    final long startTime = System.nanoTime();
+    try
+    {
+      return Aci.evaluate(evalCtx, aci);
+    }
+    finally
+    {
+      evaluationTime.recordSince(startTime);
+    }
+  }
+
+  /**
+   * Records the duration of an access control check.
+   *
+   * @param startTimeNanos
+   *          the start time of the access control check, as returned by
+   *          {@link System#nanoTime()}
+   */
+  void recordAccessCheck(long startTimeNanos)
+  {
+    accessCheckTime.recordSince(startTimeNanos);
+  }
+
+  /** Removes all the cached results. */
+  void clear()
+  {
+    results.clear();
+  }
+
+  /**
+   * Returns the number of cached results.
+   *
+   * @return the number of cached results
+   */
+  int size()
+  {
+    return results.size();
+  }
+
+  /**
+   * Returns the number of evaluations answered from this cache.
+   *
+   * @return the number of evaluations answered from this cache
+   */
+  long getHits()
+  {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of cacheable evaluations not found in this cache.
+   *
+   * @return the number of cacheable evaluations not found in this cache
+   */
+  long getMisses()
+  {
+    return misses.get();
+  }
+
+  /** Registers the monitor provider of this cache. */
+  void registerMonitor()
+  {
+    registerMonitorProvider(monitor);
+  }
+
+  /** Deregisters the monitor provider of this cache. */
+  void deregisterMonitor()
+  {
+    deregisterMonitorProvider(monitor);
+  }
+
+  /** Publishes the hit rate of the cache and the evaluation times. */
+  private final class AciCacheMonitorProvider extends MonitorProvider<MonitorProviderCfg>
+  {
+    @Override
+    public String getMonitorInstanceName()
+    {
+      return "Access Control Evaluation";
+    }
+
+    @Override
+    public List<Attribute> getMonitorData()
+    {
+      final long nbHits = hits.get();
+      final long nbLookups = nbHits + misses.get();
+      final List<Attribute> attributes = new ArrayList<>();
+      attributes.add(Attributes.create("cache-entry-count", String.valueOf(results.size())));
+      attributes.add(Attributes.create("cache-max-entry-count", String.valueOf(maxSize)));
+      attributes.add(Attributes.create("cache-hits", String.valueOf(nbHits)));
+      attributes.add(Attributes.create("cache-misses", String.valueOf(misses.get())));
+      attributes.add(Attributes.create("cache-hit-ratio", String.valueOf(nbLookups > 0 ? nbHits * 100 / nbLookups : 0)));
+      attributes.add(Attributes.create("cache-uncacheable-evaluations", String.valueOf(uncacheable.get())));
+      attributes.add(Attributes.create("cache-evictions", String.valueOf(evictions.get())));
+      evaluationTime.addMonitorData(attributes, "aci-evaluation");
+      accessCheckTime.addMonitorData(attributes, "access-check");
+      return attributes;
+    }
+  }
+}
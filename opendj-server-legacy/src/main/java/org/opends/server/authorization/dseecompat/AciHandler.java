@@ -147,6 +147,9 @@ public final class AciHandler extends
    */
   private AciListenerManager aciListenerMgr;
 
+  /** Caches the results of the evaluation of the bind rules of the ACIs. */
+  private final AciDecisionCache decisionCache = new AciDecisionCache(AciDecisionCache.DEFAULT_MAX_SIZE);
+
   /** Creates a new DSEE-compatible access control handler. */
   public AciHandler()
   {
@@ -185,6 +188,8 @@ public final class AciHandler extends
   public void finalizeAccessControlHandler()
   {
     aciListenerMgr.finalizeListenerManager();
+    decisionCache.deregisterMonitor();
+    decisionCache.clear();
     AciEffectiveRights.finalizeOnShutdown();
     DirectoryServer.deregisterSupportedControl(OID_GET_EFFECTIVE_RIGHTS);
   }
@@ -201,6 +206,7 @@ public final class AciHandler extends
     aciListenerMgr = new AciListenerManager(aciList, configurationDN);
     processGlobalAcis(configuration);
     processConfigAcis();
+    decisionCache.registerMonitor();
     DirectoryServer.registerSupportedControl(OID_GET_EFFECTIVE_RIGHTS);
   }
 
@@ -513,6 +519,7 @@ public final class AciHandler extends
    */
   boolean accessAllowed(AciContainer container)
   {
+    final long startTime = System.nanoTime();
     DN dn = container.getResourceDN();
     // For ACI_WRITE_ADD and ACI_WRITE_DELETE set the ACI_WRITE
     // right.
@@ -562,6 +569,7 @@ public final class AciHandler extends
       container.setEvalSummary(
           AciEffectiveRights.createSummary(container, ret));
     }
+    decisionCache.recordAccessCheck(startTime);
     return ret;
   }
 
@@ -1176,7 +1184,7 @@ public final class AciHandler extends
 
     for (Aci denyAci : evalCtx.getDenyList())
     {
-      final EnumEvalResult res = Aci.evaluate(evalCtx, denyAci);
+      final EnumEvalResult res = decisionCache.evaluate(evalCtx, denyAci);
       // Failure could be returned if a system limit is hit or
       // search fails
       if (res.equals(EnumEvalResult.FAIL))
@@ -1197,7 +1205,7 @@ public final class AciHandler extends
 
     for (Aci allowAci : evalCtx.getAllowList())
     {
-      final EnumEvalResult res = Aci.evaluate(evalCtx, allowAci);
+      final EnumEvalResult res = decisionCache.evaluate(evalCtx, allowAci);
       if (res.equals(EnumEvalResult.TRUE))
       {
         if (testAndSetTargAttrOperationMatches(evalCtx, allowAci, false))
@@ -30,10 +30,12 @@ import static org.opends.messages.AccessControlMessages.*;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import static org.opends.server.authorization.dseecompat.AciHandler.*;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.util.Function;
+import org.forgerock.util.promise.NeverThrowsException;
 import org.opends.server.api.Backend;
+import org.opends.server.api.ConcurrentDITCacheMap;
 import org.opends.server.api.DITCacheMap;
 import org.opends.server.types.*;
 import org.forgerock.opendj.ldap.ByteString;
@@ -49,15 +51,11 @@ public class AciList {
 
   /**
    * A map containing all the ACIs.
-   * We use the copy-on-write technique to avoid locking when reading.
+   * We use the copy-on-write technique to avoid locking when reading. The
+   * lists of ACIs it contains must never be modified once added to the map.
    */
-  private volatile DITCacheMap<List<Aci>> aciList = new DITCacheMap<>();
-
-  /**
-   * Lock to protect internal data structures.
-   */
-  private final ReentrantReadWriteLock lock =
-          new ReentrantReadWriteLock();
+  private final ConcurrentDITCacheMap<List<Aci>> aciList =
+          new ConcurrentDITCacheMap<>();
 
   /** The configuration DN used to compare against the global ACI entry DN. */
   private DN configDN;
@@ -88,44 +86,36 @@ public class AciList {
       return candidates;
     }
 
-    lock.readLock().lock();
-    try
-    {
-      //Save the baseDN in case we need to evaluate a global ACI.
-      DN entryDN=baseDN;
-      while (baseDN != null) {
-        List<Aci> acis = aciList.get(baseDN);
-        if (acis != null) {
-          //Check if there are global ACIs. Global ACI has a NULL DN.
-          if (baseDN.isRootDN()) {
-            for (Aci aci : acis) {
-              AciTargets targets = aci.getTargets();
-              //If there is a target, evaluate it to see if this ACI should
-              //be included in the candidate set.
-              if (targets != null
-                  && AciTargets.isTargetApplicable(aci, targets, entryDN))
-              {
-                  candidates.add(aci);  //Add this ACI to the candidates.
-              }
+    //Save the baseDN in case we need to evaluate a global ACI.
+    DN entryDN=baseDN;
+    while (baseDN != null) {
+      List<Aci> acis = aciList.get(baseDN);
+      if (acis != null) {
+        //Check if there are global ACIs. Global ACI has a NULL DN.
+        if (baseDN.isRootDN()) {
+          for (Aci aci : acis) {
+            AciTargets targets = aci.getTargets();
+            //If there is a target, evaluate it to see if this ACI should
+            //be included in the candidate set.
+            if (targets != null
+                && AciTargets.isTargetApplicable(aci, targets, entryDN))
+            {
+                candidates.add(aci);  //Add this ACI to the candidates.
             }
-          } else {
-            candidates.addAll(acis);
           }
-        }
-        if(baseDN.isRootDN()) {
-          break;
-        }
-        DN parentDN=baseDN.parent();
-        if(parentDN == null) {
-          baseDN=DN.rootDN();
         } else {
-          baseDN=parentDN;
+          candidates.addAll(acis);
         }
       }
-    }
-    finally
-    {
-      lock.readLock().unlock();
+      if(baseDN.isRootDN()) {
+        break;
+      }
+      DN parentDN=baseDN.parent();
+      if(parentDN == null) {
+        baseDN=DN.rootDN();
+      } else {
+        baseDN=parentDN;
+      }
     }
 
     return candidates;
@@ -140,28 +130,24 @@ public class AciList {
    *                      exceptions.
    * @return The number of valid ACI attribute values added to the ACI list.
    */
-  public int addAci(List<? extends Entry> entries,
-                                 LinkedList<LocalizableMessage> failedACIMsgs)
+  public int addAci(final List<? extends Entry> entries,
+                    final LinkedList<LocalizableMessage> failedACIMsgs)
   {
-    int validAcis=0;
-
-    lock.writeLock().lock();
-    try
-    {
-      for (Entry entry : entries) {
-        DN dn=entry.getName();
-        List<Attribute> attributeList =
-             entry.getOperationalAttribute(AciHandler.aciType);
-        validAcis += addAciAttributeList(aciList, dn, configDN,
-                                         attributeList, failedACIMsgs);
+    return aciList.update(
+        new Function<DITCacheMap<List<Aci>>, Integer, NeverThrowsException>() {
+      @Override
+      public Integer apply(DITCacheMap<List<Aci>> acis) {
+        int validAcis=0;
+        for (Entry entry : entries) {
+          DN dn=entry.getName();
+          List<Attribute> attributeList =
+               entry.getOperationalAttribute(AciHandler.aciType);
+          validAcis += addAciAttributeList(acis, dn, configDN,
+                                           attributeList, failedACIMsgs);
+        }
+        return validAcis;
       }
-    }
-    finally
-    {
-      lock.writeLock().unlock();
-    }
-
-    return validAcis;
+    });
   }
 
   /**
@@ -174,15 +160,7 @@ public class AciList {
    *
    */
   public void addAci(DN dn, SortedSet<Aci> acis) {
-    lock.writeLock().lock();
-    try
-    {
-      aciList.put(dn, new LinkedList<>(acis));
-    }
-    finally
-    {
-      lock.writeLock().unlock();
-    }
+    aciList.put(dn, new ArrayList<>(acis));
   }
 
   /**
@@ -196,35 +174,31 @@ public class AciList {
    *                      exceptions.
    * @return The number of valid ACI attribute values added to the ACI list.
    */
-  public int addAci(Entry entry, boolean hasAci,
-                                 boolean hasGlobalAci,
-                                 List<LocalizableMessage> failedACIMsgs) {
-    int validAcis=0;
-
-    lock.writeLock().lock();
-    try
-    {
-      //Process global "ds-cfg-global-aci" attribute type. The oldentry
-      //DN is checked to verify it is equal to the config DN. If not those
-      //attributes are skipped.
-      if(hasGlobalAci && entry.getName().equals(configDN)) {
-          List<Attribute> attributeList = entry.getAttribute(globalAciType);
-          validAcis = addAciAttributeList(aciList, DN.rootDN(), configDN,
-                                          attributeList, failedACIMsgs);
-      }
+  public int addAci(final Entry entry, final boolean hasAci,
+                    final boolean hasGlobalAci,
+                    final List<LocalizableMessage> failedACIMsgs) {
+    return aciList.update(
+        new Function<DITCacheMap<List<Aci>>, Integer, NeverThrowsException>() {
+      @Override
+      public Integer apply(DITCacheMap<List<Aci>> acis) {
+        int validAcis=0;
+        //Process global "ds-cfg-global-aci" attribute type. The oldentry
+        //DN is checked to verify it is equal to the config DN. If not those
+        //attributes are skipped.
+        if(hasGlobalAci && entry.getName().equals(configDN)) {
+            List<Attribute> attributeList = entry.getAttribute(globalAciType);
+            validAcis = addAciAttributeList(acis, DN.rootDN(), configDN,
+                                            attributeList, failedACIMsgs);
+        }
 
-      if(hasAci) {
-          List<Attribute> attributeList = entry.getAttribute(aciType);
-          validAcis += addAciAttributeList(aciList, entry.getName(), configDN,
-                                           attributeList, failedACIMsgs);
+        if(hasAci) {
+            List<Attribute> attributeList = entry.getAttribute(aciType);
+            validAcis += addAciAttributeList(acis, entry.getName(), configDN,
+                                             attributeList, failedACIMsgs);
+        }
+        return validAcis;
       }
-    }
-    finally
-    {
-      lock.writeLock().unlock();
-    }
-
-    return validAcis;
+    });
   }
 
   /**
@@ -273,7 +247,8 @@ public class AciList {
 
   /**
    * Remove all of the ACIs related to the old entry and then add all of the
-   * ACIs related to the new entry. This method locks/unlocks the list.
+   * ACIs related to the new entry. Readers of the list see either the old or
+   * the new ACIs, never a mix of both.
    * In the case of global ACIs the DN of the entry is checked to make sure it
    * is equal to the config DN. If not, the global ACI attribute type is
    * silently skipped.
@@ -285,43 +260,42 @@ public class AciList {
    * @param hasGlobalAci True if the "ds-cfg-global-aci" attribute type was
    * seen in the entry.
    */
-  public void modAciOldNewEntry(Entry oldEntry, Entry newEntry,
-                                             boolean hasAci,
-                                             boolean hasGlobalAci) {
-
-    lock.writeLock().lock();
-    try
-    {
-      List<LocalizableMessage> failedACIMsgs=new LinkedList<>();
-      //Process "aci" attribute types.
-      if(hasAci) {
-          aciList.remove(oldEntry.getName());
-          List<Attribute> attributeList =
-                  newEntry.getOperationalAttribute(aciType);
-          addAciAttributeList(aciList,newEntry.getName(), configDN,
-                              attributeList, failedACIMsgs);
-      }
-      //Process global "ds-cfg-global-aci" attribute type. The oldentry
-      //DN is checked to verify it is equal to the config DN. If not those
-      //attributes are skipped.
-      if(hasGlobalAci && oldEntry.getName().equals(configDN)) {
-          aciList.remove(DN.rootDN());
-          List<Attribute> attributeList =
-                  newEntry.getAttribute(globalAciType);
-          addAciAttributeList(aciList, DN.rootDN(), configDN,
-                              attributeList, failedACIMsgs);
+  public void modAciOldNewEntry(final Entry oldEntry, final Entry newEntry,
+                                final boolean hasAci,
+                                final boolean hasGlobalAci) {
+    aciList.update(
+        new Function<DITCacheMap<List<Aci>>, Void, NeverThrowsException>() {
+      @Override
+      public Void apply(DITCacheMap<List<Aci>> acis) {
+        List<LocalizableMessage> failedACIMsgs=new LinkedList<>();
+        //Process "aci" attribute types.
+        if(hasAci) {
+            acis.remove(oldEntry.getName());
+            List<Attribute> attributeList =
+                    newEntry.getOperationalAttribute(aciType);
+            addAciAttributeList(acis,newEntry.getName(), configDN,
+                                attributeList, failedACIMsgs);
+        }
+        //Process global "ds-cfg-global-aci" attribute type. The oldentry
+        //DN is checked to verify it is equal to the config DN. If not those
+        //attributes are skipped.
+        if(hasGlobalAci && oldEntry.getName().equals(configDN)) {
+            acis.remove(DN.rootDN());
+            List<Attribute> attributeList =
+                    newEntry.getAttribute(globalAciType);
+            addAciAttributeList(acis, DN.rootDN(), configDN,
+                                attributeList, failedACIMsgs);
+        }
+        return null;
       }
-    }
-    finally
-    {
-      lock.writeLock().unlock();
-    }
+    });
   }
 
   /**
    * Add ACI using the DN as a key. If the DN already
    * has ACI(s) on the list, then the new ACI is added to the
-   * end of the array.
+   * end of a copy of the array, because published arrays are shared with
+   * readers and older copies of the ACI list.
    * @param aciList The set of ACIs to which ACI is to be added.
    * @param dn The DN to use as the key.
    * @param acis The ACI to be added.
@@ -329,9 +303,12 @@ public class AciList {
   private static void addAci(DITCacheMap<List<Aci>> aciList, DN dn,
                              List<Aci> acis)
   {
-    if(aciList.containsKey(dn)) {
-      List<Aci> tmpAci = aciList.get(dn);
+    List<Aci> existingAcis = aciList.get(dn);
+    if(existingAcis != null) {
+      List<Aci> tmpAci = new ArrayList<>(existingAcis.size() + acis.size());
+      tmpAci.addAll(existingAcis);
       tmpAci.addAll(acis);
+      aciList.put(dn, tmpAci);
     } else {
       aciList.put(dn, acis);
     }
@@ -349,29 +326,26 @@ public class AciList {
    * seen in the entry.
    * @return  True if the ACI set was deleted.
    */
-  public boolean removeAci(Entry entry,  boolean hasAci,
-                                                      boolean hasGlobalAci) {
-    DN entryDN = entry.getName();
-
-    lock.writeLock().lock();
-    try
-    {
-      if (hasGlobalAci && entryDN.equals(configDN) &&
-          aciList.remove(DN.rootDN()) == null)
-      {
-        return false;
-      }
-      if (hasAci || !hasGlobalAci)
-      {
-        return aciList.removeSubtree(entryDN, null);
+  public boolean removeAci(Entry entry, final boolean hasAci,
+                           final boolean hasGlobalAci) {
+    final DN entryDN = entry.getName();
+
+    return aciList.update(
+        new Function<DITCacheMap<List<Aci>>, Boolean, NeverThrowsException>() {
+      @Override
+      public Boolean apply(DITCacheMap<List<Aci>> acis) {
+        if (hasGlobalAci && entryDN.equals(configDN) &&
+            acis.remove(DN.rootDN()) == null)
+        {
+          return false;
+        }
+        if (hasAci || !hasGlobalAci)
+        {
+          return acis.removeSubtree(entryDN, null);
+        }
+        return true;
       }
-    }
-    finally
-    {
-      lock.writeLock().unlock();
-    }
-
-    return true;
+    });
   }
 
   /**
@@ -379,26 +353,24 @@ public class AciList {
    * @param backend  The backend to check if each DN is handled by that
    * backend.
    */
-  public void removeAci(Backend<?> backend) {
-
-    lock.writeLock().lock();
-    try
-    {
-      Iterator<Map.Entry<DN,List<Aci>>> iterator =
-              aciList.entrySet().iterator();
-      while (iterator.hasNext())
-      {
-        Map.Entry<DN,List<Aci>> mapEntry = iterator.next();
-        if (backend.handlesEntry(mapEntry.getKey()))
+  public void removeAci(final Backend<?> backend) {
+    aciList.update(
+        new Function<DITCacheMap<List<Aci>>, Void, NeverThrowsException>() {
+      @Override
+      public Void apply(DITCacheMap<List<Aci>> acis) {
+        Iterator<Map.Entry<DN,List<Aci>>> iterator =
+                acis.entrySet().iterator();
+        while (iterator.hasNext())
         {
-          iterator.remove();
+          Map.Entry<DN,List<Aci>> mapEntry = iterator.next();
+          if (backend.handlesEntry(mapEntry.getKey()))
+          {
+            iterator.remove();
+          }
         }
+        return null;
       }
-    }
-    finally
-    {
-      lock.writeLock().unlock();
-    }
+    });
   }
 
   /**
@@ -407,52 +379,61 @@ public class AciList {
    * @param oldDN The DN of the original entry that was moved.
    * @param newDN The DN of the new entry.
    */
-  public void renameAci(DN oldDN, DN newDN ) {
+  public void renameAci(final DN oldDN, final DN newDN ) {
+    aciList.update(
+        new Function<DITCacheMap<List<Aci>>, Void, NeverThrowsException>() {
+      @Override
+      public Void apply(DITCacheMap<List<Aci>> acis) {
+        renameAci(acis, oldDN, newDN);
+        return null;
+      }
+    });
+  }
 
+  /**
+   * Rename all ACIs under the specified old DN to the new DN.
+   * @param aciList The ACI list in which the ACIs are renamed.
+   * @param oldDN The DN of the original entry that was moved.
+   * @param newDN The DN of the new entry.
+   */
+  private static void renameAci(DITCacheMap<List<Aci>> aciList,
+                                DN oldDN, DN newDN) {
     int oldRDNCount=oldDN.size();
     int newRDNCount=newDN.size();
 
-    lock.writeLock().lock();
-    try
-    {
-      Map<DN,List<Aci>> tempAciList = new HashMap<>();
-      Iterator<Map.Entry<DN,List<Aci>>> iterator =
-              aciList.entrySet().iterator();
-      while (iterator.hasNext()) {
-        Map.Entry<DN,List<Aci>> hashEntry = iterator.next();
-        if(hashEntry.getKey().isDescendantOf(oldDN)) {
-          int keyRDNCount=hashEntry.getKey().size();
-          int keepRDNCount=keyRDNCount - oldRDNCount;
-          RDN[] newRDNs = new RDN[keepRDNCount + newRDNCount];
-          for (int i=0; i < keepRDNCount; i++) {
-            newRDNs[i] = hashEntry.getKey().getRDN(i);
-          }
-          for (int i=keepRDNCount, j=0; j < newRDNCount; i++,j++) {
-            newRDNs[i] = newDN.getRDN(j);
-          }
-          DN relocateDN=new DN(newRDNs);
-          List<Aci> acis = new LinkedList<>();
-          for(Aci aci : hashEntry.getValue()) {
-            try {
-               Aci newAci =
-                 Aci.decode(ByteString.valueOfUtf8(aci.toString()), relocateDN);
-               acis.add(newAci);
-            } catch (AciException ex) {
-              //This should never happen since only a copy of the
-              //ACI with a new DN is being made. Log a message if it does and
-              //keep going.
-              logger.warn(WARN_ACI_ADD_LIST_FAILED_DECODE, aci, relocateDN, ex.getMessage());
-            }
+    Map<DN,List<Aci>> tempAciList = new HashMap<>();
+    Iterator<Map.Entry<DN,List<Aci>>> iterator =
+            aciList.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<DN,List<Aci>> hashEntry = iterator.next();
+      if(hashEntry.getKey().isDescendantOf(oldDN)) {
+        int keyRDNCount=hashEntry.getKey().size();
+        int keepRDNCount=keyRDNCount - oldRDNCount;
+        RDN[] newRDNs = new RDN[keepRDNCount + newRDNCount];
+        for (int i=0; i < keepRDNCount; i++) {
+          newRDNs[i] = hashEntry.getKey().getRDN(i);
+        }
+        for (int i=keepRDNCount, j=0; j < newRDNCount; i++,j++) {
+          newRDNs[i] = newDN.getRDN(j);
+        }
+        DN relocateDN=new DN(newRDNs);
+        List<Aci> acis = new LinkedList<>();
+        for(Aci aci : hashEntry.getValue()) {
+          try {
+             Aci newAci =
+               Aci.decode(ByteString.valueOfUtf8(aci.toString()), relocateDN);
+             acis.add(newAci);
+          } catch (AciException ex) {
+            //This should never happen since only a copy of the
+            //ACI with a new DN is being made. Log a message if it does and
+            //keep going.
+            logger.warn(WARN_ACI_ADD_LIST_FAILED_DECODE, aci, relocateDN, ex.getMessage());
           }
-          tempAciList.put(relocateDN, acis);
-          iterator.remove();
         }
+        tempAciList.put(relocateDN, acis);
+        iterator.remove();
       }
-      aciList.putAll(tempAciList);
-    }
-    finally
-    {
-      lock.writeLock().unlock();
     }
+    aciList.putAll(tempAciList);
   }
 }
@@ -55,6 +55,16 @@ public class BindRule {
     /** The keyword of a simple bind rule. */
     private EnumBindRuleKeyword keyword;
 
+    /**
+     * Indicates whether the evaluation of this bind rule only depends on the
+     * identity of the client, and not on the target entry, the connection or
+     * the time of the evaluation.
+     */
+    private final boolean clientIdentityOnly;
+
+    /** Indicates whether this bind rule evaluates group memberships. */
+    private final boolean usesGroups;
+
     /** Regular expression group position of a bind rule keyword. */
     private static final int keywordPos = 1;
     /** Regular expression group position of a bind rule operation. */
@@ -99,6 +109,9 @@ public class BindRule {
     private BindRule(EnumBindRuleKeyword keyword, KeywordBindRule rule) {
         this.keyword=keyword;
         this.keywordRuleMap.put(keyword.toString(), rule);
+        this.clientIdentityOnly = rule instanceof GroupDN
+            || (rule instanceof UserDN && ((UserDN) rule).isClientIdentityOnly());
+        this.usesGroups = rule instanceof GroupDN;
     }
 
 
@@ -139,6 +152,8 @@ public class BindRule {
         this.booleanType = booleanType;
         this.left = left;
         this.right = right;
+        this.clientIdentityOnly = left.clientIdentityOnly && right.clientIdentityOnly;
+        this.usesGroups = left.usesGroups || right.usesGroups;
     }
 
     /*
@@ -481,6 +496,28 @@ public class BindRule {
         return EnumEvalResult.negateIfNeeded(ret, negate);
     }
 
+    /**
+     * Indicates whether the evaluation of this bind rule only depends on the
+     * identity of the client (and on group memberships when
+     * {@link #usesGroups()} returns true). The result of the evaluation of
+     * such a bind rule can be reused for all the entries targeted by the
+     * client.
+     *
+     * @return true if the evaluation only depends on the identity of the client
+     */
+    boolean isClientIdentityOnly() {
+        return clientIdentityOnly;
+    }
+
+    /**
+     * Indicates whether this bind rule evaluates group memberships.
+     *
+     * @return true if this bind rule contains a groupdn keyword
+     */
+    boolean usesGroups() {
+        return usesGroups;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString() {
@@ -26,6 +26,7 @@
  */
 package org.opends.server.authorization.dseecompat;
 
+import org.opends.server.types.DirectoryException;
 import org.opends.server.types.LDAPURL;
 
 /**
@@ -40,6 +41,12 @@ public class UserDNTypeURL {
     /** The URL value. Maybe a dummy value for types such as ANYONE or SELF. */
     private LDAPURL url;
 
+    /**
+     * The DN pattern of a DNPATTERN URL, decoded once instead of at each
+     * evaluation. It is null for other types or if the pattern is invalid.
+     */
+    private PatternDN patternDN;
+
     /**
      * Create a class representing the "userdn" URL decoded by the
      * UserDN.decode() method.
@@ -50,6 +57,13 @@ public class UserDNTypeURL {
     UserDNTypeURL(EnumUserDNType dnType, LDAPURL url) {
         this.url=url;
         this.dnType=dnType;
+        if (dnType == EnumUserDNType.DNPATTERN) {
+            try {
+                this.patternDN = PatternDN.decode(url.getRawBaseDN());
+            } catch (DirectoryException ex) {
+                // the pattern never matches
+            }
+        }
     }
 
     /**
@@ -66,4 +80,12 @@ public class UserDNTypeURL {
     public LDAPURL getURL() {
         return this.url;
     }
+
+    /**
+     * Returns the decoded DN pattern of a DNPATTERN URL.
+     * @return The DN pattern, or null if this URL is not a valid DN pattern.
+     */
+    PatternDN getPatternDN() {
+        return this.patternDN;
+    }
 }
@@ -47,6 +47,9 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.forgerock.i18n.LocalizableMessage;
@@ -58,7 +61,10 @@ import org.forgerock.opendj.ldap.ModificationType;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
 import org.opends.server.admin.Configuration;
+import org.opends.server.admin.std.server.MonitorProviderCfg;
 import org.opends.server.api.Backend;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.MonitorProvider;
 import org.opends.server.config.ConfigConstants;
 import org.opends.server.controls.EntryChangelogNotificationControl;
 import org.opends.server.controls.ExternalChangelogRequestControl;
@@ -81,6 +87,7 @@ import org.opends.server.replication.protocol.ModifyDNMsg;
 import org.opends.server.replication.protocol.UpdateMsg;
 import org.opends.server.replication.server.ReplicationServer;
 import org.opends.server.replication.server.ReplicationServerDomain;
+import org.opends.server.replication.server.changelog.api.AbortedChangelogCursorException;
 import org.opends.server.replication.server.changelog.api.ChangeNumberIndexDB;
 import org.opends.server.replication.server.changelog.api.ChangeNumberIndexRecord;
 import org.opends.server.replication.server.changelog.api.ChangelogDB;
@@ -176,6 +183,13 @@ public class ChangelogBackend extends Backend<Configuration>
 
   private static final long CHANGE_NUMBER_FOR_EMPTY_CURSOR = 0L;
 
+  /** Maximum number of positioned cursors kept for cookie-based searches. */
+  private static final int COOKIE_CURSOR_CACHE_SIZE = 32;
+  /** Time after which an unused positioned cursor is closed. */
+  private static final long COOKIE_CURSOR_CACHE_MAX_IDLE_TIME_MILLIS = 60 * 1000;
+  /** The interval between two checks for idle positioned cursors, in milliseconds. */
+  private static final long COOKIE_CURSOR_CACHE_EXPIRY_INTERVAL_MILLIS = COOKIE_CURSOR_CACHE_MAX_IDLE_TIME_MILLIS / 2;
+
   private static final String CHANGE_NUMBER_ATTR = "changeNumber";
   private static final String CHANGE_NUMBER_ATTR_LC = CHANGE_NUMBER_ATTR.toLowerCase();
   private static final String ENTRY_SENDER_ATTACHMENT = OID_ECL_COOKIE_EXCHANGE_CONTROL + ".entrySender";
@@ -237,6 +251,14 @@ public class ChangelogBackend extends Backend<Configuration>
   private final ConcurrentLinkedQueue<PersistentSearch> changeNumberBasedPersistentSearches =
       new ConcurrentLinkedQueue<>();
 
+  /** Cursors left positioned by completed cookie-based searches, for reuse by the next poll with the same cookie. */
+  private final ChangelogCursorCache<ECLMultiDomainDBCursor> cookieCursorCache =
+      new ChangelogCursorCache<>(COOKIE_CURSOR_CACHE_SIZE, COOKIE_CURSOR_CACHE_MAX_IDLE_TIME_MILLIS);
+  private final MonitorProvider<MonitorProviderCfg> cookieCursorCacheMonitor =
+      cookieCursorCache.newMonitorProvider("Changelog Cookie Cursor Cache");
+  /** The thread closing the idle positioned cursors, null when the backend is closed. */
+  private ScheduledExecutorService cookieCursorCacheExpirer;
+
   /**
    * Creates a new backend with the provided replication server.
    *
@@ -291,11 +313,17 @@ public class ChangelogBackend extends Backend<Configuration>
       throw new InitializationException(
           ERR_BACKEND_CANNOT_REGISTER_BASEDN.get(DN_EXTERNAL_CHANGELOG_ROOT, getExceptionMessage(e)), e);
     }
+    DirectoryServer.deregisterMonitorProvider(cookieCursorCacheMonitor);
+    DirectoryServer.registerMonitorProvider(cookieCursorCacheMonitor);
+    startCookieCursorCacheExpirer();
   }
 
   @Override
   public void closeBackend()
   {
+    DirectoryServer.deregisterMonitorProvider(cookieCursorCacheMonitor);
+    stopCookieCursorCacheExpirer();
+    cookieCursorCache.clear();
     try
     {
       DirectoryServer.deregisterBaseDN(CHANGELOG_BASE_DN);
@@ -306,6 +334,30 @@ public class ChangelogBackend extends Backend<Configuration>
     }
   }
 
+  private synchronized void startCookieCursorCacheExpirer()
+  {
+    stopCookieCursorCacheExpirer();
+    cookieCursorCacheExpirer = Executors.newSingleThreadScheduledExecutor(
+        new DirectoryThread.Factory("Changelog Cookie Cursor Cache Expirer"));
+    cookieCursorCacheExpirer.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        cookieCursorCache.closeIdleCursors();
+      }
+    }, COOKIE_CURSOR_CACHE_EXPIRY_INTERVAL_MILLIS, COOKIE_CURSOR_CACHE_EXPIRY_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void stopCookieCursorCacheExpirer()
+  {
+    if (cookieCursorCacheExpirer != null)
+    {
+      cookieCursorCacheExpirer.shutdownNow();
+      cookieCursorCacheExpirer = null;
+    }
+  }
+
   @Override
   public DN[] getBaseDNs()
   {
@@ -538,7 +590,8 @@ public class ChangelogBackend extends Backend<Configuration>
       if (cookie != null)
       {
         initialSearchFromCookie(
-            getCookieEntrySender(SearchPhase.INITIAL, searchOperation, cookie, excludedBaseDNs, isPersistentSearch));
+            getCookieEntrySender(SearchPhase.INITIAL, searchOperation, cookie, excludedBaseDNs, isPersistentSearch),
+            isPersistentSearch);
       }
       else
       {
@@ -818,7 +871,7 @@ public class ChangelogBackend extends Backend<Configuration>
   }
 
   /** Search the changelog when a cookie control is provided. */
-  private void initialSearchFromCookie(final CookieEntrySender entrySender)
+  private void initialSearchFromCookie(final CookieEntrySender entrySender, boolean isPersistentSearch)
       throws DirectoryException, ChangelogException
   {
     if (!sendBaseChangelogEntry(entrySender.searchOp))
@@ -826,24 +879,78 @@ public class ChangelogBackend extends Backend<Configuration>
       return;
     }
 
-    final ReplicationDomainDB replicationDomainDB = getChangelogDB().getReplicationDomainDB();
-    CursorOptions options = new CursorOptions(GREATER_THAN_OR_EQUAL_TO_KEY, AFTER_MATCHING_KEY);
-    try (final MultiDomainDBCursor cursor =
-        replicationDomainDB.getCursorFrom(entrySender.cookie, options, entrySender.excludedBaseDNs);
-        ECLMultiDomainDBCursor replicaUpdatesCursor = new ECLMultiDomainDBCursor(domainPredicate, cursor))
+    ECLMultiDomainDBCursor replicaUpdatesCursor = null;
+    try
     {
-      if (sendCookieEntriesFromCursor(entrySender, replicaUpdatesCursor))
+      boolean hasRecord = false;
+      replicaUpdatesCursor = takeCachedCookieCursor(entrySender);
+      if (replicaUpdatesCursor != null)
+      {
+        try
+        {
+          hasRecord = replicaUpdatesCursor.next();
+        }
+        catch (AbortedChangelogCursorException e)
+        {
+          // a purge or a clear of the changelog aborted the cursor while it was cached:
+          // no entries have been sent yet, so start again from the cookie
+          logger.traceException(e);
+          StaticUtils.close(replicaUpdatesCursor);
+          replicaUpdatesCursor = null;
+        }
+      }
+      if (replicaUpdatesCursor == null)
+      {
+        replicaUpdatesCursor = newCookieCursor(entrySender);
+        hasRecord = replicaUpdatesCursor.next();
+      }
+
+      if (sendCookieEntriesFromCursor(entrySender, replicaUpdatesCursor, hasRecord))
       {
         entrySender.transitioningToPersistentSearchPhase();
-        sendCookieEntriesFromCursor(entrySender, replicaUpdatesCursor);
+        if (sendCookieEntriesFromCursor(entrySender, replicaUpdatesCursor) && !isPersistentSearch)
+        {
+          // the cursor has been fully read: it is now positioned on the returned cookie
+          cookieCursorCache.put(
+              ChangelogCursorCache.toKey(entrySender.cookie, entrySender.excludedBaseDNs), replicaUpdatesCursor);
+          replicaUpdatesCursor = null;
+        }
       }
     }
     finally
     {
+      StaticUtils.close(replicaUpdatesCursor);
       entrySender.finalizeInitialSearch();
     }
   }
 
+  /**
+   * Returns the cursor left positioned on the cookie of the provided entry sender by a previous search, or null if
+   * there is none or if it can no longer be used. A returned cursor may still have been aborted by a purge or a clear
+   * of the changelog, which is only reported by its first call to next().
+   */
+  private ECLMultiDomainDBCursor takeCachedCookieCursor(final CookieEntrySender entrySender)
+  {
+    final ECLMultiDomainDBCursor cachedCursor =
+        cookieCursorCache.take(ChangelogCursorCache.toKey(entrySender.cookie, entrySender.excludedBaseDNs));
+    if (cachedCursor == null || (!cachedCursor.isClosed() && !cachedCursor.shouldReInitialize()))
+    {
+      return cachedCursor;
+    }
+    StaticUtils.close(cachedCursor);
+    return null;
+  }
+
+  /** Returns a new cursor positioned on the cookie of the provided entry sender. */
+  private ECLMultiDomainDBCursor newCookieCursor(final CookieEntrySender entrySender) throws ChangelogException
+  {
+    final ReplicationDomainDB replicationDomainDB = getChangelogDB().getReplicationDomainDB();
+    CursorOptions options = new CursorOptions(GREATER_THAN_OR_EQUAL_TO_KEY, AFTER_MATCHING_KEY);
+    final MultiDomainDBCursor cursor =
+        replicationDomainDB.getCursorFrom(entrySender.cookie, options, entrySender.excludedBaseDNs);
+    return new ECLMultiDomainDBCursor(domainPredicate, cursor);
+  }
+
   private CookieEntrySender getCookieEntrySender(SearchPhase startPhase, final SearchOperation searchOperation,
       MultiDomainServerState cookie, Set<DN> excludedBaseDNs, boolean isPersistentSearch)
   {
@@ -856,13 +963,23 @@ public class ChangelogBackend extends Backend<Configuration>
 
   private boolean sendCookieEntriesFromCursor(final CookieEntrySender entrySender,
       final ECLMultiDomainDBCursor replicaUpdatesCursor) throws ChangelogException, DirectoryException
+  {
+    return sendCookieEntriesFromCursor(entrySender, replicaUpdatesCursor, replicaUpdatesCursor.next());
+  }
+
+  /** Sends the entries read from a cursor whose last call to next() returned hasRecord. */
+  private boolean sendCookieEntriesFromCursor(final CookieEntrySender entrySender,
+      final ECLMultiDomainDBCursor replicaUpdatesCursor, boolean hasRecord)
+      throws ChangelogException, DirectoryException
   {
     boolean continueSearch = true;
-    while (continueSearch && replicaUpdatesCursor.next())
+    boolean hasNext = hasRecord;
+    while (continueSearch && hasNext)
     {
       final UpdateMsg updateMsg = replicaUpdatesCursor.getRecord();
       final DN domainBaseDN = replicaUpdatesCursor.getData();
       continueSearch = entrySender.initialSearchSendEntry(updateMsg, domainBaseDN);
+      hasNext = continueSearch && replicaUpdatesCursor.next();
     }
     return continueSearch;
   }
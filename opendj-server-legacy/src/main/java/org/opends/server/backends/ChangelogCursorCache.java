@@ -0,0 +1,299 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS.
+ */
+package org.opends.server.backends;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opends.server.admin.std.server.MonitorProviderCfg;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.replication.common.MultiDomainServerState;
+import org.opends.server.replication.server.changelog.api.DBCursor;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.DN;
+import org.opends.server.util.StaticUtils;
+
+/**
+ * Keeps the cursors of completed cookie-based changelog searches positioned,
+ * so that the next search made with the returned cookie can resume reading
+ * where the previous one stopped instead of opening new cursors on every
+ * replica.
+ * <p>
+ * A cursor is only cached after it has been fully read, i.e. when it is
+ * positioned exactly on the state described by the last returned cookie.
+ * Cached cursors are handed out at most once: a search taking a cursor owns it
+ * until it either closes it or gives it back to the cache. The least recently
+ * used cursors are closed when the cache is full, and idle cursors are closed
+ * after a timeout so they do not pin changelog files that could be purged.
+ * Callers must check a cursor taken from the cache is still usable: a purge or
+ * a clear of the changelog aborts the cursors opened on the removed files.
+ *
+ * @param <C>
+ *          The type of cursors held by this cache
+ */
+final class ChangelogCursorCache<C extends DBCursor<?>>
+{
+  /** A cursor and the last time it was given back to the cache. */
+  private static final class CachedCursor<C>
+  {
+    private final C cursor;
+    private final long lastUsedTime;
+
+    private CachedCursor(C cursor, long lastUsedTime)
+    {
+      this.cursor = cursor;
+      this.lastUsedTime = lastUsedTime;
+    }
+  }
+
+  private final int maxSize;
+  private final long maxIdleTimeMillis;
+  /** Cached cursors in access order, guarded by itself. */
+  private final LinkedHashMap<String, CachedCursor<C>> cursors;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Creates a new cursor cache.
+   *
+   * @param maxSize
+   *          the maximum number of cursors kept by this cache
+   * @param maxIdleTimeMillis
+   *          the time after which a cursor that has not been reused is closed
+   */
+  ChangelogCursorCache(final int maxSize, long maxIdleTimeMillis)
+  {
+    this.maxSize = maxSize;
+    this.maxIdleTimeMillis = maxIdleTimeMillis;
+    this.cursors = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Returns the key identifying the cursor positioned on the provided cookie.
+   *
+   * @param cookie
+   *          the cookie on which the cursor is positioned
+   * @param excludedBaseDNs
+   *          the base DNs excluded from the cursor
+   * @return the key identifying the cursor positioned on the provided cookie
+   */
+  static String toKey(MultiDomainServerState cookie, Set<DN> excludedBaseDNs)
+  {
+    final StringBuilder key = new StringBuilder(cookie.toString());
+    if (!excludedBaseDNs.isEmpty())
+    {
+      for (DN excludedBaseDN : new TreeSet<>(excludedBaseDNs))
+      {
+        key.append('|').append(excludedBaseDN.toNormalizedUrlSafeString());
+      }
+    }
+    return key.toString();
+  }
+
+  /**
+   * Removes and returns the cursor positioned on the provided key.
+   *
+   * @param key
+   *          the key identifying the cursor, as returned by
+   *          {@link #toKey(MultiDomainServerState, Set)}
+   * @return the cursor, or {@code null} if no usable cursor is cached for this
+   *         key. The caller owns the returned cursor.
+   */
+  C take(String key)
+  {
+    final CachedCursor<C> cached;
+    synchronized (cursors)
+    {
+      closeIdleCursors(System.currentTimeMillis());
+      cached = cursors.remove(key);
+    }
+    if (cached != null)
+    {
+      hits.incrementAndGet();
+      return cached.cursor;
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Gives back to this cache a cursor fully positioned on the provided key.
+   *
+   * @param key
+   *          the key identifying the cursor, as returned by
+   *          {@link #toKey(MultiDomainServerState, Set)}
+   * @param cursor
+   *          the cursor to cache. The cache takes ownership of it.
+   */
+  void put(String key, C cursor)
+  {
+    final List<C> toClose = new ArrayList<>(2);
+    synchronized (cursors)
+    {
+      final long now = System.currentTimeMillis();
+      final CachedCursor<C> previous = cursors.put(key, new CachedCursor<>(cursor, now));
+      if (previous != null)
+      {
+        toClose.add(previous.cursor);
+      }
+      if (cursors.size() > maxSize)
+      {
+        final Iterator<CachedCursor<C>> it = cursors.values().iterator();
+        toClose.add(it.next().cursor);
+        it.remove();
+        evictions.incrementAndGet();
+      }
+      closeIdleCursors(now);
+    }
+    StaticUtils.close(toClose);
+  }
+
+  /**
+   * Closes the cursors which have not been reused for longer than the maximum
+   * idle time. This is called periodically, so idle cursors are closed even
+   * when no cookie-based searches are performed.
+   */
+  void closeIdleCursors()
+  {
+    synchronized (cursors)
+    {
+      closeIdleCursors(System.currentTimeMillis());
+    }
+  }
+
+  /** Must be called while holding the lock on {@link #cursors}. */
+  private void closeIdleCursors(long now)
+  {
+    for (Iterator<CachedCursor<C>> it = cursors.values().iterator(); it.hasNext();)
+    {
+      final CachedCursor<C> cached = it.next();
+      if (now - cached.lastUsedTime > maxIdleTimeMillis)
+      {
+        StaticUtils.close(cached.cursor);
+        it.remove();
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  /** Closes all the cursors held by this cache. */
+  void clear()
+  {
+    final List<C> toClose = new ArrayList<>();
+    synchronized (cursors)
+    {
+      for (CachedCursor<C> cached : cursors.values())
+      {
+        toClose.add(cached.cursor);
+      }
+      cursors.clear();
+    }
+    StaticUtils.close(toClose);
+  }
+
+  /**
+   * Returns the number of cursors currently held by this cache.
+   *
+   * @return the number of cursors currently held by this cache
+   */
+  int size()
+  {
+    synchronized (cursors)
+    {
+      return cursors.size();
+    }
+  }
+
+  /**
+   * Returns the number of searches that reused a cached cursor.
+   *
+   * @return the number of searches that reused a cached cursor
+   */
+  long getHits()
+  {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of searches that had to open new cursors.
+   *
+   * @return the number of searches that had to open new cursors
+   */
+  long getMisses()
+  {
+    return misses.get();
+  }
+
+  /**
+   * Returns a monitor provider publishing the statistics of this cache.
+   *
+   * @param instanceName
+   *          the name of the monitor instance
+   * @return a monitor provider publishing the statistics of this cache
+   */
+  MonitorProvider<MonitorProviderCfg> newMonitorProvider(final String instanceName)
+  {
+    return new MonitorProvider<MonitorProviderCfg>()
+    {
+      @Override
+      public String getMonitorInstanceName()
+      {
+        return instanceName;
+      }
+
+      @Override
+      public List<Attribute> getMonitorData()
+      {
+        final long hitCount = hits.get();
+        final long missCount = misses.get();
+        final long total = hitCount + missCount;
+        final List<Attribute> attrs = new ArrayList<>();
+        attrs.add(Attributes.create("cachedCursors", String.valueOf(size())));
+        attrs.add(Attributes.create("maxCachedCursors", String.valueOf(maxSize)));
+        attrs.add(Attributes.create("cursorCacheHits", String.valueOf(hitCount)));
+        attrs.add(Attributes.create("cursorCacheMisses", String.valueOf(missCount)));
+        attrs.add(Attributes.create("cursorCacheEvictions", String.valueOf(evictions.get())));
+        attrs.add(Attributes.create("cursorCacheHitRatio",
+            String.valueOf(total > 0 ? (hitCount * 100) / total : 0)));
+        return attrs;
+      }
+    };
+  }
+
+  @Override
+  public String toString()
+  {
+    return getClass().getSimpleName() + "(size=" + size() + ", hits=" + hits + ", misses=" + misses + ")";
+  }
+}
@@ -52,6 +52,7 @@ import org.opends.server.types.*;
 import org.opends.server.util.LDIFException;
 import org.opends.server.util.LDIFReader;
 import org.opends.server.util.LDIFWriter;
+import org.opends.server.util.ParallelLDIFReader;
 import org.opends.server.util.StaticUtils;
 
 /**
@@ -1062,7 +1063,14 @@ public class LDIFBackend
       LDIFReader reader;
       try
       {
-        reader = new LDIFReader(importConfig);
+        // Entries are parsed in parallel but added in the order of the LDIF
+        // file, which the parent checks below rely on.
+        int nbThreads = importConfig.getThreadCount() > 0
+            ? importConfig.getThreadCount()
+            : Runtime.getRuntime().availableProcessors();
+        reader = nbThreads > 1
+            ? new ParallelLDIFReader(importConfig, nbThreads, true)
+            : new LDIFReader(importConfig);
       }
       catch (Exception e)
       {
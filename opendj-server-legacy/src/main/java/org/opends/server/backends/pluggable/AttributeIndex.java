@@ -668,6 +668,29 @@ class AttributeIndex implements ConfigurationChangeListener<BackendIndexCfg>, Cl
     }
   }
 
+  /**
+   * Estimates the number of entry IDs that might match a filter, without reading the indexes.
+   *
+   * @param indexQueryFactory the index query factory to use for the estimation
+   * @param indexFilterType the index type filter
+   * @param filter The filter.
+   * @return The estimated number of candidate entry IDs,
+   *         or {@link IndexStatistics#UNKNOWN} if it cannot be estimated.
+   */
+  static long estimateFilter(IndexQueryFactory<IndexQuery> indexQueryFactory, IndexFilterType indexFilterType,
+      SearchFilter filter)
+  {
+    try
+    {
+      return getIndexQuery(indexQueryFactory, indexFilterType, filter).estimateSize();
+    }
+    catch (DecodeException e)
+    {
+      logger.traceException(e);
+      return IndexStatistics.UNKNOWN;
+    }
+  }
+
   private static IndexQuery getIndexQuery(IndexQueryFactory<IndexQuery> indexQueryFactory,
       IndexFilterType indexFilterType, SearchFilter filter) throws DecodeException
   {
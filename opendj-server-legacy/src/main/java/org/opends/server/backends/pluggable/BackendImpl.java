@@ -33,8 +33,10 @@ import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.concurrent.ExecutionException;
@@ -44,6 +46,7 @@ import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.config.server.ConfigChangeResult;
 import org.forgerock.opendj.config.server.ConfigException;
+import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ConditionResult;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.util.Reject;
@@ -286,6 +289,43 @@ public abstract class BackendImpl<C extends PluggableBackendCfg> extends Backend
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public Map<ByteString, List<DN>> getEntryDNsByEqualityIndex(DN baseDN, AttributeType attributeType,
+      Collection<ByteString> values, int limit) throws DirectoryException
+  {
+    EntryContainer ec;
+    try
+    {
+      ec = accessBegin(null, baseDN);
+    }
+    catch (DirectoryException de)
+    {
+      if (de.getResultCode() == ResultCode.UNDEFINED || rootContainer == null)
+      {
+        // No entry container for the base DN, or the backend is offline:
+        // the caller processes a search instead, which reports the problem.
+        return null;
+      }
+      throw de;
+    }
+
+    ec.sharedLock.lock();
+    try
+    {
+      return ec.getEntryDNsByEqualityIndex(baseDN, attributeType, values, limit);
+    }
+    catch (StorageRuntimeException e)
+    {
+      throw createDirectoryException(e);
+    }
+    finally
+    {
+      ec.sharedLock.unlock();
+      accessEnd();
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean supports(BackendOperation backendOperation)
@@ -436,6 +476,61 @@ public abstract class BackendImpl<C extends PluggableBackendCfg> extends Backend
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public long[] getNumberOfChildren(List<DN> parentDNs) throws DirectoryException
+  {
+    checkNotNull(parentDNs, "parentDNs must not be null");
+    if (parentDNs.isEmpty())
+    {
+      return new long[0];
+    }
+
+    final EntryContainer ec;
+    try
+    {
+      ec = accessBegin(null, parentDNs.get(0));
+    }
+    catch (DirectoryException de)
+    {
+      if (de.getResultCode() == ResultCode.UNDEFINED)
+      {
+        return super.getNumberOfChildren(parentDNs);
+      }
+      throw de;
+    }
+
+    try
+    {
+      for (DN parentDN : parentDNs)
+      {
+        if (rootContainer.getEntryContainer(parentDN) != ec)
+        {
+          // the entries span several base DNs: look them up one by one
+          return super.getNumberOfChildren(parentDNs);
+        }
+      }
+
+      ec.sharedLock.lock();
+      try
+      {
+        return ec.getNumberOfChildren(parentDNs);
+      }
+      catch (StorageRuntimeException e)
+      {
+        throw createDirectoryException(e);
+      }
+      finally
+      {
+        ec.sharedLock.unlock();
+      }
+    }
+    finally
+    {
+      accessEnd();
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean entryExists(final DN entryDN) throws DirectoryException
@@ -61,6 +61,8 @@ class DefaultIndex extends AbstractTree implements Index
   private final EntryContainer entryContainer;
   private int indexEntryLimit;
   private EntryIDSetCodec codec;
+  /** The statistics used to estimate the size of the queries on this index. */
+  private final IndexStatistics statistics = new IndexStatistics();
 
   /**
    * A flag to indicate if this index should be trusted to be consistent with the entries tree.
@@ -186,7 +188,13 @@ class DefaultIndex extends AbstractTree implements Index
            * If index is not trusted then this will cause all subsequent reads for this key to
            * return undefined set.
            */
-          return entryIDSet.size() == 0 ? null : toValue(entryIDSet);
+          if (entryIDSet.size() == 0)
+          {
+            statistics.recordUpdate(-1, -sizeOf(deletedIDs));
+            return null;
+          }
+          statistics.recordUpdate(0, sizeOf(addedIDs) - sizeOf(deletedIDs));
+          return toValue(entryIDSet);
         }
         else if (trusted)
         {
@@ -196,6 +204,7 @@ class DefaultIndex extends AbstractTree implements Index
           }
           if (isNotEmpty(addedIDs))
           {
+            statistics.recordUpdate(1, addedIDs.size());
             return toValue(addedIDs);
           }
         }
@@ -209,6 +218,11 @@ class DefaultIndex extends AbstractTree implements Index
     return entryIDSet == null || entryIDSet.size() == 0;
   }
 
+  private static long sizeOf(EntryIDSet entryIDSet)
+  {
+    return entryIDSet != null && entryIDSet.isDefined() ? entryIDSet.size() : 0;
+  }
+
   private static boolean isNotEmpty(EntryIDSet entryIDSet)
   {
     return entryIDSet != null && entryIDSet.size() > 0;
@@ -298,6 +312,8 @@ class DefaultIndex extends AbstractTree implements Index
     else
     {
       state.removeFlagsFromIndex(txn, getName(), TRUSTED);
+      // the index is going to be rebuilt
+      statistics.reset();
     }
   }
 
@@ -306,4 +322,14 @@ class DefaultIndex extends AbstractTree implements Index
   {
     return trusted;
   }
+
+  /**
+   * Returns the statistics used to estimate the size of the queries on this index.
+   *
+   * @return the statistics of this index
+   */
+  final IndexStatistics getStatistics()
+  {
+    return statistics;
+  }
 }
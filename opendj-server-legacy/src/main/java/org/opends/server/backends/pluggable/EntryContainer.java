@@ -37,16 +37,21 @@ import static org.opends.server.protocols.ldap.LDAPResultCode.*;
 import static org.opends.server.types.AdditionalLogItem.*;
 import static org.opends.server.util.StaticUtils.*;
 
+import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -58,8 +63,10 @@ import org.forgerock.opendj.config.server.ConfigException;
 import org.forgerock.opendj.ldap.ByteSequence;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.forgerock.opendj.ldap.DecodeException;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.opendj.ldap.schema.MatchingRule;
 import org.forgerock.util.Pair;
 import org.opends.messages.CoreMessages;
 import org.opends.server.admin.server.ConfigurationAddListener;
@@ -88,22 +95,24 @@ import org.opends.server.controls.ServerSideSortRequestControl;
 import org.opends.server.controls.ServerSideSortResponseControl;
 import org.opends.server.controls.SubtreeDeleteControl;
 import org.opends.server.controls.VLVRequestControl;
-import org.opends.server.controls.VLVResponseControl;
 import org.opends.server.core.AddOperation;
 import org.opends.server.core.DeleteOperation;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.core.ModifyDNOperation;
 import org.opends.server.core.ModifyOperation;
 import org.opends.server.core.SearchOperation;
-import org.opends.server.protocols.ldap.LDAPResultCode;
+import org.opends.server.core.SubentryManager;
+import org.opends.server.core.VirtualAttributeBatch;
 import org.opends.server.types.Attribute;
 import org.opends.server.types.AttributeType;
 import org.opends.server.types.Attributes;
 import org.opends.server.types.CanceledOperationException;
+import org.opends.server.types.CompiledSearchFilter;
 import org.opends.server.types.Control;
 import org.opends.server.types.DN;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
+import org.opends.server.types.IndexType;
 import org.opends.server.types.Modification;
 import org.opends.server.types.Operation;
 import org.opends.server.types.Privilege;
@@ -135,6 +144,8 @@ public class EntryContainer
   private static final String REFERRAL_TREE_NAME = REFERRAL_INDEX_NAME;
   /** The name of the state tree. */
   private static final String STATE_TREE_NAME = STATE_INDEX_NAME;
+  /** The default temporary directory of the imports and index rebuilds, also used by the large sorts. */
+  private static final String SORT_TMP_DIR = "import-tmp";
 
   /** The attribute index configuration manager. */
   private final AttributeIndexCfgManager attributeIndexCfgManager;
@@ -167,6 +178,8 @@ public class EntryContainer
   private final Map<AttributeType, AttributeIndex> attrIndexMap = new HashMap<>();
   /** The set of VLV (Virtual List View) indexes. */
   private final Map<String, VLVIndex> vlvIndexMap = new HashMap<>();
+  /** The sorted results of the searches browsing their results page after page. */
+  private final SortedResultsCache sortedResultsCache = new SortedResultsCache();
 
   /**
    * Prevents name clashes for common indexes (like id2entry) across multiple suffixes.
@@ -681,6 +694,40 @@ public class EntryContainer
     }
   }
 
+  /**
+   * Determine the number of children entries for several entries, reading
+   * them all in a single transaction.
+   *
+   * @param entryDNs The distinguished names of the entries.
+   * @return The number of children entries for each of the given entries, in
+   *         the same order, or -1 for the entries which do not exist.
+   * @throws StorageRuntimeException If an error occurs in the storage.
+   */
+  long[] getNumberOfChildren(final List<DN> entryDNs) throws StorageRuntimeException
+  {
+    try
+    {
+      return storage.read(new ReadOperation<long[]>()
+      {
+        @Override
+        public long[] run(ReadableTransaction txn) throws Exception
+        {
+          final long[] counts = new long[entryDNs.size()];
+          for (int i = 0; i < counts.length; i++)
+          {
+            final EntryID entryID = dn2id.get(txn, entryDNs.get(i));
+            counts[i] = entryID != null ? id2childrenCount.getCount(txn, entryID) : -1;
+          }
+          return counts;
+        }
+      });
+    }
+    catch (Exception e)
+    {
+      throw new StorageRuntimeException(e);
+    }
+  }
+
   /**
    * Processes the specified search in this entryContainer.
    * Matching entries should be provided back to the core server using the
@@ -850,7 +897,7 @@ public class EntryContainer
               try
               {
                 SortOrder sortOrder = sortRequest.getSortOrder();
-                entryIDReorderedSet = sort(txn, entryIDSet, searchOperation, sortOrder, vlvRequest);
+                entryIDReorderedSet = sort(txn, entryIDSet, searchOperation, sortOrder, vlvRequest, pageRequest);
               }
               catch (DirectoryException de)
               {
@@ -1175,6 +1222,7 @@ public class EntryContainer
 
     int lookthroughCount = 0;
     int lookthroughLimit = searchOperation.getClientConnection().getLookthroughLimit();
+    final CompiledSearchFilter filter = CompiledSearchFilter.compile(searchOperation.getFilter());
 
     try (final Cursor<ByteString, ByteString> cursor = txn.openCursor(dn2id.getName()))
     {
@@ -1207,7 +1255,7 @@ public class EntryContainer
             lookthroughCount++;
 
             if ((manageDsaIT || entry.getReferralURLs() == null)
-                && searchOperation.getFilter().matchesEntry(entry))
+                && filter.matchesEntry(entry))
             {
               if (pageRequest != null
                   && searchOperation.getEntriesSent() == pageRequest.getSize())
@@ -1347,46 +1395,43 @@ public class EntryContainer
     // Iterate through the index candidates.
     if (continueSearch)
     {
-      final SearchFilter filter = searchOperation.getFilter();
-      for (int i = findStartIndex(beginEntryID, entryIDReorderedSet); i < entryIDReorderedSet.length; i++)
+      final CompiledSearchFilter filter = CompiledSearchFilter.compile(searchOperation.getFilter());
+      // Matching entries are returned in batches when virtual attribute values can be generated in bulk
+      final List<VirtualAttributeRule> batchRules = VirtualAttributeBatch.getBatchRules(searchOperation);
+      final List<Entry> batchEntries = new ArrayList<>();
+      final List<EntryID> batchEntryIDs = new ArrayList<>();
+      final CandidateMatcher matcher =
+          new CandidateMatcher(filter, candidatesAreInScope, searchScope, aBaseDN, manageDsaIT);
+      try (CandidateEntries candidates = new CandidateEntries(
+          txn, entryIDReorderedSet, findStartIndex(beginEntryID, entryIDReorderedSet), matcher))
       {
-        EntryID entryID = new EntryID(entryIDReorderedSet[i]);
-        Entry entry;
-        try
+        while (candidates.next())
         {
-          entry = getEntry(txn, entryID);
-        }
-        catch (Exception e)
-        {
-          logger.traceException(e);
-          continue;
-        }
-
-        // Process the candidate entry.
-        if (entry != null
-              && isInScope(candidatesAreInScope, searchScope, aBaseDN, entry)
-              && (manageDsaIT || entry.getReferralURLs() == null)
-              && filter.matchesEntry(entry))
+          // Process the candidate entry.
+          final Entry entry = candidates.getMatchingEntry();
+          if (entry != null)
           {
-            if (pageRequest != null
-                && searchOperation.getEntriesSent() == pageRequest.getSize())
+            batchEntries.add(entry);
+            batchEntryIDs.add(candidates.getEntryID());
+            if (batchEntries.size() >= getBatchSize(batchRules, searchOperation, pageRequest))
             {
-              // The current page is full.
-              // Set the cookie to remember where we were.
-              ByteString cookie = entryID.toByteString();
-              Control control = new PagedResultsControl(pageRequest.isCritical(), 0, cookie);
-              searchOperation.getResponseControls().add(control);
-              return;
-            }
-
-            if (!searchOperation.returnEntry(entry, null))
-            {
-              // We have been told to discontinue processing of the
-              // search. This could be due to size limit exceeded or
-              // operation cancelled.
-              break;
+              final BatchResult result = returnBatch(batchRules, batchEntries, batchEntryIDs,
+                  searchOperation, pageRequest);
+              if (result == BatchResult.PAGE_FULL)
+              {
+                return;
+              }
+              else if (result == BatchResult.STOP)
+              {
+                break;
+              }
             }
           }
+        }
+      }
+      if (returnBatch(batchRules, batchEntries, batchEntryIDs, searchOperation, pageRequest) == BatchResult.PAGE_FULL)
+      {
+        return;
       }
       searchOperation.checkIfCanceled(false);
     }
@@ -1412,6 +1457,268 @@ public class EntryContainer
     }
   }
 
+  /** Tells whether the candidate entries of an indexed search match the search. */
+  private final class CandidateMatcher
+  {
+    private final CompiledSearchFilter filter;
+    private final boolean candidatesAreInScope;
+    private final SearchScope searchScope;
+    private final DN baseDN;
+    private final boolean manageDsaIT;
+
+    private CandidateMatcher(CompiledSearchFilter filter, boolean candidatesAreInScope, SearchScope searchScope,
+        DN baseDN, boolean manageDsaIT)
+    {
+      this.filter = filter;
+      this.candidatesAreInScope = candidatesAreInScope;
+      this.searchScope = searchScope;
+      this.baseDN = baseDN;
+      this.manageDsaIT = manageDsaIT;
+    }
+
+    private boolean matches(Entry entry) throws DirectoryException
+    {
+      return isInScope(candidatesAreInScope, searchScope, baseDN, entry)
+          && (manageDsaIT || entry.getReferralURLs() == null)
+          && filter.matchesEntry(entry);
+    }
+  }
+
+  /**
+   * Iterates over the candidate entries of an indexed search, in the order of
+   * their IDs, telling which ones match the search.
+   * <p>
+   * When there are many candidates and the {@link SearchPrefetcher} is
+   * enabled, the encoded entries are read ahead by the thread processing the
+   * search, while the prefetcher threads decode and filter them, unless they
+   * are busy with other searches: the search then does it itself. Otherwise
+   * each entry is read, decoded and filtered in turn. Entries which cannot be
+   * read or decoded are skipped in both cases.
+   */
+  private final class CandidateEntries implements AutoCloseable
+  {
+    private final ReadableTransaction txn;
+    private final long[] entryIDs;
+    private final CandidateMatcher matcher;
+    /** The prefetcher, null if the entries are not read ahead. */
+    private final SearchPrefetcher prefetcher;
+    private final ArrayDeque<Pair<EntryID, FutureTask<Entry>>> readAhead = new ArrayDeque<>();
+    private int nextIndex;
+
+    private EntryID entryID;
+    private Entry matchingEntry;
+
+    private CandidateEntries(ReadableTransaction txn, long[] entryIDs, int startIndex, CandidateMatcher matcher)
+    {
+      this.txn = txn;
+      this.entryIDs = entryIDs;
+      this.nextIndex = startIndex;
+      this.matcher = matcher;
+      final SearchPrefetcher searchPrefetcher = rootContainer.getSearchPrefetcher();
+      this.prefetcher = searchPrefetcher.isEnabled(entryIDs.length - startIndex) ? searchPrefetcher : null;
+    }
+
+    /**
+     * Moves to the next candidate entry.
+     *
+     * @return {@code true} if there is a next candidate entry
+     * @throws DirectoryException
+     *           if the filter could not be evaluated
+     */
+    private boolean next() throws DirectoryException
+    {
+      if (prefetcher == null)
+      {
+        if (nextIndex >= entryIDs.length)
+        {
+          return false;
+        }
+        entryID = new EntryID(entryIDs[nextIndex++]);
+        Entry entry;
+        try
+        {
+          entry = getEntry(txn, entryID);
+        }
+        catch (Exception e)
+        {
+          logger.traceException(e);
+          entry = null;
+        }
+        matchingEntry = entry != null && matcher.matches(entry) ? entry : null;
+        return true;
+      }
+
+      while (readAhead.size() < SearchPrefetcher.READ_AHEAD_SIZE && nextIndex < entryIDs.length)
+      {
+        final EntryID id = new EntryID(entryIDs[nextIndex++]);
+        readAhead.add(Pair.of(id, prefetcher.submit(newMatchingTask(id))));
+      }
+      final Pair<EntryID, FutureTask<Entry>> next = readAhead.poll();
+      if (next == null)
+      {
+        return false;
+      }
+      entryID = next.getFirst();
+      matchingEntry = SearchPrefetcher.get(next.getSecond());
+      return true;
+    }
+
+    /**
+     * Reads the candidate entry from the entry cache or id2entry, and returns
+     * the task decoding it if needed then filtering it. Only the thread owning
+     * the transaction may read id2entry.
+     */
+    private Callable<Entry> newMatchingTask(final EntryID id)
+    {
+      final Entry cachedEntry = getEntryCache().getEntry(backendID, id.longValue());
+      ByteString encoded = null;
+      if (cachedEntry == null)
+      {
+        try
+        {
+          encoded = id2entry.getEncodedEntry(txn, id);
+        }
+        catch (Exception e)
+        {
+          logger.traceException(e);
+        }
+      }
+      final ByteString encodedEntry = encoded;
+      return new Callable<Entry>()
+      {
+        @Override
+        public Entry call() throws DirectoryException
+        {
+          Entry entry = cachedEntry;
+          if (entry == null)
+          {
+            try
+            {
+              entry = id2entry.decodeEntry(id, encodedEntry);
+            }
+            catch (DirectoryException e)
+            {
+              logger.traceException(e);
+              return null;
+            }
+            if (entry == null)
+            {
+              return null;
+            }
+            // Put the entry in the cache making sure not to overwrite a newer copy
+            // that may have been inserted since the time we read the cache.
+            getEntryCache().putEntryIfAbsent(entry, backendID, id.longValue());
+          }
+          return matcher.matches(entry) ? entry : null;
+        }
+      };
+    }
+
+    /**
+     * Returns the ID of the current candidate entry.
+     *
+     * @return the ID of the current candidate entry
+     */
+    private EntryID getEntryID()
+    {
+      return entryID;
+    }
+
+    /**
+     * Returns the current candidate entry if it matches the search.
+     *
+     * @return the current candidate entry, or null if it does not match the
+     *         search or could not be read
+     */
+    private Entry getMatchingEntry()
+    {
+      return matchingEntry;
+    }
+
+    /** Cancels the entries read ahead which will not be returned. */
+    @Override
+    public void close()
+    {
+      for (Pair<EntryID, FutureTask<Entry>> pair : readAhead)
+      {
+        pair.getSecond().cancel(false);
+      }
+      readAhead.clear();
+    }
+  }
+
+  /** The outcome of returning a batch of matching entries. */
+  private enum BatchResult
+  {
+    /** All the entries have been returned, the search may continue. */
+    CONTINUE,
+    /** The current page is full: the cookie has been set. */
+    PAGE_FULL,
+    /** The search must stop, e.g. because the size limit has been exceeded. */
+    STOP
+  }
+
+  /**
+   * Returns the number of matching entries to collect before returning them.
+   * It never exceeds what may still be sent in the current page or before
+   * the size limit is reached, so that few entries are read for nothing.
+   */
+  private static int getBatchSize(List<VirtualAttributeRule> batchRules, SearchOperation searchOperation,
+      PagedResultsControl pageRequest)
+  {
+    if (batchRules.isEmpty())
+    {
+      return 1;
+    }
+    int batchSize = VirtualAttributeBatch.MAX_BATCH_SIZE;
+    if (pageRequest != null)
+    {
+      batchSize = Math.min(batchSize, pageRequest.getSize() - searchOperation.getEntriesSent() + 1);
+    }
+    if (searchOperation.getSizeLimit() > 0)
+    {
+      batchSize = Math.min(batchSize, searchOperation.getSizeLimit() - searchOperation.getEntriesSent() + 1);
+    }
+    return Math.max(batchSize, 1);
+  }
+
+  /** Returns the provided batch of matching entries, then empties it. */
+  private static BatchResult returnBatch(List<VirtualAttributeRule> batchRules, List<Entry> batchEntries,
+      List<EntryID> batchEntryIDs, SearchOperation searchOperation, PagedResultsControl pageRequest)
+  {
+    try
+    {
+      VirtualAttributeBatch.generateValues(searchOperation, batchRules, batchEntries);
+      for (int i = 0; i < batchEntries.size(); i++)
+      {
+        if (pageRequest != null
+            && searchOperation.getEntriesSent() == pageRequest.getSize())
+        {
+          // The current page is full.
+          // Set the cookie to remember where we were.
+          ByteString cookie = batchEntryIDs.get(i).toByteString();
+          Control control = new PagedResultsControl(pageRequest.isCritical(), 0, cookie);
+          searchOperation.getResponseControls().add(control);
+          return BatchResult.PAGE_FULL;
+        }
+
+        if (!searchOperation.returnEntry(batchEntries.get(i), null))
+        {
+          // We have been told to discontinue processing of the
+          // search. This could be due to size limit exceeded or
+          // operation cancelled.
+          return BatchResult.STOP;
+        }
+      }
+      return BatchResult.CONTINUE;
+    }
+    finally
+    {
+      batchEntries.clear();
+      batchEntryIDs.clear();
+    }
+  }
+
   private int findStartIndex(Long beginEntryID, long[] entryIDReorderedSet)
   {
     if (beginEntryID == null)
@@ -1558,6 +1865,7 @@ public class EntryContainer
       throwAllowedExceptionTypes(e, DirectoryException.class, CanceledOperationException.class);
     }
 
+    sortedResultsCache.invalidate(entry.getName());
     final EntryCache<?> entryCache = DirectoryServer.getEntryCache();
     if (entryCache != null)
     {
@@ -1779,6 +2087,7 @@ public class EntryContainer
       writeTrustState(indexBuffer);
       throwAllowedExceptionTypes(e, DirectoryException.class, CanceledOperationException.class);
     }
+    sortedResultsCache.invalidate(entryDN);
   }
 
   /**
@@ -1862,6 +2171,91 @@ public class EntryContainer
     }
   }
 
+  /**
+   * Retrieves the DNs of the entries below a base DN which hold some values of an attribute, by
+   * reading its equality index rather than processing a search.
+   *
+   * @param baseDN The base DN below which the entries must be.
+   * @param attributeType The attribute type holding the values.
+   * @param values The values for which to retrieve the entries.
+   * @param limit The maximum number of entry DNs to return for each value.
+   * @return The DNs of the entries holding each value, where values held by no entry are absent,
+   *         or <CODE>null</CODE> if the equality index cannot tell which entries hold the values.
+   * @throws DirectoryException If a problem occurs while reading an entry.
+   * @throws StorageRuntimeException An error occurred during a storage operation.
+   */
+  Map<ByteString, List<DN>> getEntryDNsByEqualityIndex(final DN baseDN, AttributeType attributeType,
+      final Collection<ByteString> values, final int limit) throws StorageRuntimeException, DirectoryException
+  {
+    final AttributeIndex attributeIndex = getAttributeIndex(attributeType);
+    final MatchingRule rule = attributeType.getEqualityMatchingRule();
+    if (attributeIndex == null
+        || rule == null
+        || !attributeIndex.isIndexed(IndexType.EQUALITY)
+        || !attributeIndex.isTrusted())
+    {
+      return null;
+    }
+
+    try
+    {
+      return storage.read(new ReadOperation<Map<ByteString, List<DN>>>()
+      {
+        @Override
+        public Map<ByteString, List<DN>> run(ReadableTransaction txn) throws Exception
+        {
+          final IndexQueryFactoryImpl indexQueryFactory = new IndexQueryFactoryImpl(txn, attributeIndex);
+          final Map<ByteString, List<DN>> results = new HashMap<>();
+          for (ByteString value : values)
+          {
+            final EntryIDSet entryIDs;
+            try
+            {
+              entryIDs = rule.getAssertion(value).createIndexQuery(indexQueryFactory).evaluate(null, null);
+            }
+            catch (DecodeException e)
+            {
+              logger.traceException(e);
+              return null;
+            }
+            if (!entryIDs.isDefined())
+            {
+              // Above the index entry limit
+              return null;
+            }
+
+            final List<DN> entryDNs = new ArrayList<>(limit);
+            for (EntryID entryID : entryIDs)
+            {
+              if (entryDNs.size() >= limit)
+              {
+                break;
+              }
+              final Entry entry = getEntry(txn, entryID);
+              if (entry != null
+                  && !entry.isSubentry()
+                  && !entry.isLDAPSubentry()
+                  && entry.getName().isDescendantOf(baseDN))
+              {
+                entryDNs.add(entry.getName());
+              }
+            }
+            if (!entryDNs.isEmpty())
+            {
+              results.put(value, entryDNs);
+            }
+          }
+          return results;
+        }
+      });
+    }
+    catch (Exception e)
+    {
+      throwAllowedExceptionTypes(e, DirectoryException.class, StorageRuntimeException.class);
+      return null; // it can never happen
+    }
+  }
+
   private Entry getEntry0(ReadableTransaction txn, final DN entryDN) throws StorageRuntimeException, DirectoryException
   {
     final EntryCache<?> entryCache = DirectoryServer.getEntryCache();
@@ -2000,6 +2394,7 @@ public class EntryContainer
       writeTrustState(indexBuffer);
       throwAllowedExceptionTypes(e, DirectoryException.class, CanceledOperationException.class);
     }
+    sortedResultsCache.invalidate(newEntry.getName());
   }
 
   /**
@@ -2250,6 +2645,8 @@ public class EntryContainer
       writeTrustState(indexBuffer);
       throwAllowedExceptionTypes(e, DirectoryException.class, CanceledOperationException.class);
     }
+    sortedResultsCache.invalidate(oldTargetDN);
+    sortedResultsCache.invalidate(newTargetEntry.getName());
   }
 
   /**
@@ -2422,6 +2819,7 @@ public class EntryContainer
    */
   void delete(WriteableTransaction txn) throws StorageRuntimeException
   {
+    sortedResultsCache.clear();
     for (Tree tree : listTrees())
     {
       tree.delete(txn);
@@ -2534,6 +2932,7 @@ public class EntryContainer
    */
   public void clear() throws StorageRuntimeException
   {
+    sortedResultsCache.clear();
     try
     {
       storage.write(new WriteOperation()
@@ -2642,185 +3041,133 @@ public class EntryContainer
   }
 
   private long[] sort(ReadableTransaction txn, EntryIDSet entryIDSet, SearchOperation searchOperation,
-      SortOrder sortOrder, VLVRequestControl vlvRequest) throws DirectoryException
+      SortOrder sortOrder, VLVRequestControl vlvRequest, PagedResultsControl pageRequest) throws DirectoryException
   {
     if (!entryIDSet.isDefined())
     {
       return null;
     }
 
-    final DN baseDN = searchOperation.getBaseDN();
-    final SearchScope scope = searchOperation.getScope();
-    final SearchFilter filter = searchOperation.getFilter();
-
-    final TreeMap<ByteString, EntryID> sortMap = new TreeMap<>();
-    for (EntryID id : entryIDSet)
+    // Clients browsing sorted results page after page send the same search for each page: reuse the sorted
+    // results of the previous pages when possible.
+    final boolean isBrowsing = vlvRequest != null
+        ? vlvRequest.getTargetType() == VLVRequestControl.TYPE_TARGET_BYOFFSET
+        : pageRequest != null;
+    if (isBrowsing && entryIDSet.size() <= SortedResultsCache.MAX_CACHED_IDS)
     {
-      try
+      final SortedResultsCache.Key key = new SortedResultsCache.Key(searchOperation, sortOrder);
+      long[] sortedIDs = sortedResultsCache.get(key);
+      if (sortedIDs == null)
       {
-        Entry e = getEntry(txn, id);
-        if (e.matchesBaseAndScope(baseDN, scope) && filter.matchesEntry(e))
-        {
-          sortMap.put(encodeVLVKey(sortOrder, e, id.longValue()), id);
-        }
+        final long generation = sortedResultsCache.getGeneration();
+        sortedIDs = sortCandidates(txn, entryIDSet, searchOperation, sortOrder, null, true);
+        sortedResultsCache.put(key, sortedIDs, generation);
       }
-      catch (Exception e)
-      {
-        LocalizableMessage message = ERR_ENTRYIDSORTER_CANNOT_EXAMINE_ENTRY.get(id, getExceptionMessage(e));
-        throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), message, e);
-      }
-    }
-
-    // See if there is a VLV request to further pare down the set of results, and if there is where it should be
-    // processed by offset or assertion value.
-    if (vlvRequest == null)
-    {
-      return toArray(sortMap.values());
-    }
-
-    if (vlvRequest.getTargetType() == VLVRequestControl.TYPE_TARGET_BYOFFSET)
-    {
-      return sortByOffset(searchOperation, vlvRequest, sortMap);
-    }
-    return sortByGreaterThanOrEqualAssertion(searchOperation, vlvRequest, sortOrder, sortMap);
-  }
-
-  private static final long[] toArray(Collection<EntryID> entryIDs)
-  {
-    final long[] array = new long[entryIDs.size()];
-    int i = 0;
-    for (EntryID entryID : entryIDs)
-    {
-      array[i++] = entryID.longValue();
+      return vlvRequest != null ? EntryIDSorter.getWindowByOffset(sortedIDs, vlvRequest, searchOperation) : sortedIDs;
     }
-    return array;
+    return sortCandidates(txn, entryIDSet, searchOperation, sortOrder, vlvRequest, false);
   }
 
-  private static final long[] sortByGreaterThanOrEqualAssertion(SearchOperation searchOperation,
-      VLVRequestControl vlvRequest, SortOrder sortOrder, final TreeMap<ByteString, EntryID> sortMap)
-      throws DirectoryException
+  /**
+   * Sorts the candidate entries of a search. Candidates not matching the search are not returned if
+   * {@code filterCandidates} is true or if there is a VLV request, otherwise they are filtered out
+   * while returning the sorted entries.
+   */
+  private long[] sortCandidates(ReadableTransaction txn, EntryIDSet entryIDSet, SearchOperation searchOperation,
+      SortOrder sortOrder, VLVRequestControl vlvRequest, boolean filterCandidates) throws DirectoryException
   {
-    ByteString assertionValue = vlvRequest.getGreaterThanOrEqualAssertion();
-    ByteSequence encodedTargetAssertion =
-        encodeTargetAssertion(sortOrder, assertionValue, searchOperation, sortMap.size());
+    final DN baseDN = searchOperation.getBaseDN();
+    final SearchScope scope = searchOperation.getScope();
+    final CompiledSearchFilter filter = CompiledSearchFilter.compile(searchOperation.getFilter());
+    // Without VLV request, all the sorted candidates are checked against the base, scope and filter
+    // while returning them, so only their sort attributes are needed.
+    final Set<AttributeType> sortAttributeTypes =
+        vlvRequest == null && !filterCandidates ? getSortAttributeTypes(sortOrder, baseDN) : null;
 
-    boolean targetFound = false;
-    int index = 0;
-    int targetIndex = 0;
-    int startIndex = 0;
-    int includedAfterCount = 0;
-    long[] idSet = new long[sortMap.size()];
-    for (Map.Entry<ByteString, EntryID> entry : sortMap.entrySet())
+    try (EntryIDSorter sorter =
+        EntryIDSorter.newSorter(sortOrder, vlvRequest, EntryIDSorter.MAX_BUFFER_SIZE, getSortTmpDirectory()))
     {
-      ByteString vlvKey = entry.getKey();
-      EntryID id = entry.getValue();
-      idSet[index++] = id.longValue();
-
-      if (targetFound)
+      for (EntryID id : entryIDSet)
       {
-        includedAfterCount++;
-        if (includedAfterCount >= vlvRequest.getAfterCount())
+        Entry e;
+        try
         {
-          break;
+          if (sortAttributeTypes != null)
+          {
+            e = getSortAttributes(txn, id, sortAttributeTypes);
+          }
+          else
+          {
+            e = getEntry(txn, id);
+            if (!e.matchesBaseAndScope(baseDN, scope) || !filter.matchesEntry(e))
+            {
+              e = null;
+            }
+          }
         }
-      }
-      else
-      {
-        targetFound = vlvKey.compareTo(encodedTargetAssertion) >= 0;
-        if (targetFound)
+        catch (Exception ex)
         {
-          startIndex = Math.max(0, targetIndex - vlvRequest.getBeforeCount());
+          LocalizableMessage message = ERR_ENTRYIDSORTER_CANNOT_EXAMINE_ENTRY.get(id, getExceptionMessage(ex));
+          throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), message, ex);
+        }
+        if (e != null)
+        {
+          sorter.add(encodeVLVKey(sortOrder, e, id.longValue()));
         }
-        targetIndex++;
       }
-    }
 
-    final long[] result;
-    if (targetFound)
-    {
-      final long[] array = new long[index - startIndex];
-      System.arraycopy(idSet, startIndex, array, 0, array.length);
-      result = array;
-    }
-    else
-    {
-      /*
-       * No entry was found to be greater than or equal to the sort key, so the target offset will
-       * be one greater than the content count.
-       */
-      targetIndex = sortMap.size() + 1;
-      result = new long[0];
+      // If there is a VLV request, the sorter only returns the requested window.
+      return sorter.sort(searchOperation);
     }
-    searchOperation.addResponseControl(new VLVResponseControl(targetIndex, sortMap.size(), LDAPResultCode.SUCCESS));
-    return result;
   }
 
-  private static final long[] sortByOffset(SearchOperation searchOperation, VLVRequestControl vlvRequest,
-      TreeMap<ByteString, EntryID> sortMap) throws DirectoryException
+  /**
+   * Returns the types of the sort attributes and of their subtypes, or {@code null} if any of them
+   * may have virtual or collective values, in which case the entries must be fully decoded.
+   */
+  private static Set<AttributeType> getSortAttributeTypes(SortOrder sortOrder, DN baseDN)
   {
-    int targetOffset = vlvRequest.getOffset();
-    if (targetOffset < 0)
-    {
-      // The client specified a negative target offset. This
-      // should never be allowed.
-      searchOperation.addResponseControl(new VLVResponseControl(targetOffset, sortMap.size(),
-          LDAPResultCode.OFFSET_RANGE_ERROR));
-
-      LocalizableMessage message = ERR_ENTRYIDSORTER_NEGATIVE_START_POS.get();
-      throw new DirectoryException(ResultCode.VIRTUAL_LIST_VIEW_ERROR, message);
-    }
-
-    // This is an easy mistake to make, since VLV offsets start at 1 instead of 0. We'll assume the client meant
-    // to use 1.
-    targetOffset = (targetOffset == 0) ? 1 : targetOffset;
-
-    int beforeCount = vlvRequest.getBeforeCount();
-    int afterCount = vlvRequest.getAfterCount();
-    int listOffset = targetOffset - 1; // VLV offsets start at 1, not 0.
-    int startPos = listOffset - beforeCount;
-    if (startPos < 0)
+    final SubentryManager subentryManager = DirectoryServer.getSubentryManager();
+    if (subentryManager != null && subentryManager.hasCollectiveSubentries(baseDN))
     {
-      // This can happen if beforeCount >= offset, and in this case we'll just adjust the start position to ignore
-      // the range of beforeCount that doesn't exist.
-      startPos = 0;
-      beforeCount = listOffset;
+      // Inherited collective attributes may supply values to any attribute type
+      return null;
     }
-    else if (startPos >= sortMap.size())
+    final Set<AttributeType> attributeTypes = new HashSet<>();
+    for (SortKey sortKey : sortOrder.getSortKeys())
     {
-      // The start position is beyond the end of the list. In this case, we'll assume that the start position was
-      // one greater than the size of the list and will only return the beforeCount entries.
-      targetOffset = sortMap.size() + 1;
-      listOffset = sortMap.size();
-      startPos = listOffset - beforeCount;
-      afterCount = 0;
+      attributeTypes.add(sortKey.getAttributeType());
+      attributeTypes.addAll(DirectoryServer.getSchema().getSubTypes(sortKey.getAttributeType()));
     }
-
-    int count = 1 + beforeCount + afterCount;
-    long[] sortedIDs = new long[count];
-    int treePos = 0;
-    int arrayPos = 0;
-    for (EntryID id : sortMap.values())
+    for (VirtualAttributeRule rule : DirectoryServer.getVirtualAttributes())
     {
-      if (treePos++ < startPos)
-      {
-        continue;
-      }
-
-      sortedIDs[arrayPos++] = id.longValue();
-      if (arrayPos >= count)
+      if (attributeTypes.contains(rule.getAttributeType()))
       {
-        break;
+        return null;
       }
     }
+    return attributeTypes;
+  }
+
+  /**
+   * Returns the directory holding the keys of the sorts which do not fit in memory, below the default temporary
+   * directory of the imports and index rebuilds.
+   */
+  private File getSortTmpDirectory()
+  {
+    return new File(getFileForPath(SORT_TMP_DIR), backendID + "-sort");
+  }
 
-    if (arrayPos < count)
+  /** Returns the entry from the entry cache, or else a partial entry holding only the sort attributes. */
+  private Entry getSortAttributes(ReadableTransaction txn, EntryID entryID, Set<AttributeType> sortAttributeTypes)
+      throws DirectoryException
+  {
+    final Entry cacheEntry = getEntryCache().getEntry(backendID, entryID.longValue());
+    if (cacheEntry != null)
     {
-      // We don't have enough entries in the set to meet the requested page size, so we'll need to shorten the array.
-      sortedIDs = Arrays.copyOf(sortedIDs, arrayPos);
+      return cacheEntry;
     }
-
-    searchOperation.addResponseControl(new VLVResponseControl(targetOffset, sortMap.size(), LDAPResultCode.SUCCESS));
-    return sortedIDs;
+    return id2entry.getPartialEntry(txn, entryID, sortAttributeTypes);
   }
 
   /** Get the exclusive lock. */
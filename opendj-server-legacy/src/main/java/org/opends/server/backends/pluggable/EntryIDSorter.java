@@ -0,0 +1,599 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.forgerock.util.Utils.*;
+import static org.opends.messages.BackendMessages.*;
+import static org.opends.server.backends.pluggable.VLVIndex.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.controls.VLVRequestControl;
+import org.opends.server.controls.VLVResponseControl;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.SearchOperation;
+import org.opends.server.protocols.ldap.LDAPResultCode;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.SortOrder;
+
+/**
+ * Sorts the candidate entries of a search using their server side sort keys, as encoded by
+ * {@link VLVIndex#encodeVLVKey(SortOrder, org.opends.server.types.Entry, long)}. The keys end with
+ * the entry ID, so they are unique and the sorted entry IDs are decoded from them.
+ * <p>
+ * When a virtual list view request only needs a window of the sorted entries, only the keys of this
+ * window are kept in memory. Otherwise the keys are sorted in memory until they exceed a maximum
+ * size, then written to sorted temporary files which are merged once all the keys have been added.
+ */
+abstract class EntryIDSorter implements Closeable
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The maximum size of the keys sorted in memory before being written to a temporary file. */
+  static final long MAX_BUFFER_SIZE = 16 * 1024 * 1024;
+  /** The estimated memory used by each key kept in memory, in addition to its bytes. */
+  private static final int KEY_OVERHEAD = 64;
+
+  /** The number of keys added to this sorter. */
+  private int size;
+
+  /**
+   * Returns a new sorter for a server side sort request.
+   *
+   * @param sortOrder
+   *          the sort order of the request
+   * @param vlvRequest
+   *          the virtual list view request, or {@code null} if all the entries must be returned
+   * @param maxBufferSize
+   *          the maximum size of the keys sorted in memory
+   * @param tmpDirectory
+   *          the directory of the temporary files holding the keys which do not fit in memory
+   * @return a new sorter
+   */
+  static EntryIDSorter newSorter(SortOrder sortOrder, VLVRequestControl vlvRequest, long maxBufferSize,
+      File tmpDirectory)
+  {
+    if (vlvRequest == null)
+    {
+      return new ExternalSorter(maxBufferSize, tmpDirectory);
+    }
+    else if (vlvRequest.getTargetType() == VLVRequestControl.TYPE_TARGET_BYOFFSET)
+    {
+      return new OffsetSorter(vlvRequest);
+    }
+    return new AssertionSorter(sortOrder, vlvRequest);
+  }
+
+  /**
+   * Adds the sort key of a candidate entry.
+   *
+   * @param key
+   *          the sort key of the entry, ending with its entry ID
+   * @throws DirectoryException
+   *           if the key could not be written to a temporary file
+   */
+  final void add(ByteString key) throws DirectoryException
+  {
+    size++;
+    add0(key);
+  }
+
+  abstract void add0(ByteString key) throws DirectoryException;
+
+  /**
+   * Returns the number of keys added to this sorter.
+   *
+   * @return the number of keys added to this sorter
+   */
+  final int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the sorted entry IDs to return, and adds the virtual list view response control to the
+   * search operation if needed.
+   *
+   * @param searchOperation
+   *          the search operation
+   * @return the sorted entry IDs to return
+   * @throws DirectoryException
+   *           if the virtual list view request cannot be processed, or if the temporary files could
+   *           not be read
+   */
+  abstract long[] sort(SearchOperation searchOperation) throws DirectoryException;
+
+  @Override
+  public void close()
+  {
+    // Nothing to do by default.
+  }
+
+  /**
+   * Returns the window of a virtual list view request targeting an offset, and adds the virtual list
+   * view response control to the search operation.
+   *
+   * @param sortedIDs
+   *          all the sorted entry IDs
+   * @param vlvRequest
+   *          the virtual list view request, targeting an offset
+   * @param searchOperation
+   *          the search operation
+   * @return the sorted entry IDs of the window
+   * @throws DirectoryException
+   *           if the target offset is negative
+   */
+  static long[] getWindowByOffset(long[] sortedIDs, VLVRequestControl vlvRequest, SearchOperation searchOperation)
+      throws DirectoryException
+  {
+    int targetOffset = getTargetOffset(vlvRequest, sortedIDs.length, searchOperation);
+    final int listOffset = targetOffset - 1; // VLV offsets start at 1, not 0.
+    int startPos = listOffset - vlvRequest.getBeforeCount();
+    int endPos = (int) Math.min((long) listOffset + vlvRequest.getAfterCount() + 1, sortedIDs.length);
+    if (startPos < 0)
+    {
+      // Ignore the range of beforeCount that doesn't exist.
+      startPos = 0;
+    }
+    else if (startPos >= sortedIDs.length)
+    {
+      // Assume that the start position was one greater than the size of the list and only return the beforeCount
+      // entries.
+      targetOffset = sortedIDs.length + 1;
+      startPos = Math.max(sortedIDs.length - vlvRequest.getBeforeCount(), 0);
+      endPos = sortedIDs.length;
+    }
+
+    searchOperation.addResponseControl(new VLVResponseControl(targetOffset, sortedIDs.length,
+        LDAPResultCode.SUCCESS));
+    return Arrays.copyOfRange(sortedIDs, startPos, endPos);
+  }
+
+  /** Returns the target offset of a virtual list view request, starting at 1. */
+  private static int getTargetOffset(VLVRequestControl vlvRequest, int size, SearchOperation searchOperation)
+      throws DirectoryException
+  {
+    final int targetOffset = vlvRequest.getOffset();
+    if (targetOffset < 0)
+    {
+      // The client specified a negative target offset. This should never be allowed.
+      searchOperation.addResponseControl(new VLVResponseControl(targetOffset, size,
+          LDAPResultCode.OFFSET_RANGE_ERROR));
+
+      LocalizableMessage message = ERR_ENTRYIDSORTER_NEGATIVE_START_POS.get();
+      throw new DirectoryException(ResultCode.VIRTUAL_LIST_VIEW_ERROR, message);
+    }
+
+    // This is an easy mistake to make, since VLV offsets start at 1 instead of 0. We'll assume the client meant
+    // to use 1.
+    return (targetOffset == 0) ? 1 : targetOffset;
+  }
+
+  private static long[] toEntryIDs(List<ByteString> keys, int fromIndex, int toIndex)
+  {
+    final long[] entryIDs = new long[Math.max(toIndex - fromIndex, 0)];
+    for (int i = 0; i < entryIDs.length; i++)
+    {
+      entryIDs[i] = decodeEntryIDFromVLVKey(keys.get(fromIndex + i));
+    }
+    return entryIDs;
+  }
+
+  /** Keeps the {@code limit} lowest or highest keys added to it. */
+  private static final class BoundedKeys
+  {
+    private final int limit;
+    private final boolean keepLowest;
+    /** The head of the heap is the kept key to evict first. */
+    private final PriorityQueue<ByteString> heap;
+
+    private BoundedKeys(int limit, boolean keepLowest)
+    {
+      this.limit = limit;
+      this.keepLowest = keepLowest;
+      final Comparator<ByteString> evictionOrder = keepLowest ? Collections.<ByteString> reverseOrder() : null;
+      this.heap = new PriorityQueue<>(Math.max(Math.min(limit, 1024), 1), evictionOrder);
+    }
+
+    private void add(ByteString key)
+    {
+      if (heap.size() < limit)
+      {
+        heap.add(key);
+      }
+      else if (limit > 0)
+      {
+        final int cmp = key.compareTo(heap.peek());
+        if (keepLowest ? cmp < 0 : cmp > 0)
+        {
+          heap.poll();
+          heap.add(key);
+        }
+      }
+    }
+
+    private boolean isEmpty()
+    {
+      return heap.isEmpty();
+    }
+
+    private List<ByteString> toSortedList()
+    {
+      final List<ByteString> keys = new ArrayList<>(heap);
+      Collections.sort(keys);
+      return keys;
+    }
+  }
+
+  /** Returns the window of a virtual list view request targeting an offset. */
+  private static final class OffsetSorter extends EntryIDSorter
+  {
+    private final VLVRequestControl vlvRequest;
+    /** The lowest keys, up to the last key of the window. */
+    private final BoundedKeys head;
+    /** The highest keys, in case the target offset is beyond the end of the list. */
+    private final BoundedKeys tail;
+
+    private OffsetSorter(VLVRequestControl vlvRequest)
+    {
+      this.vlvRequest = vlvRequest;
+      // VLV offsets start at 1, not 0, and 0 is understood as 1.
+      final long listOffset = Math.max(vlvRequest.getOffset() - 1, 0);
+      final long headSize = vlvRequest.getOffset() < 0 ? 0 : listOffset + vlvRequest.getAfterCount() + 1;
+      this.head = new BoundedKeys((int) Math.min(headSize, Integer.MAX_VALUE), true);
+      this.tail = new BoundedKeys(vlvRequest.getBeforeCount(), false);
+    }
+
+    @Override
+    void add0(ByteString key)
+    {
+      head.add(key);
+      tail.add(key);
+    }
+
+    @Override
+    long[] sort(SearchOperation searchOperation) throws DirectoryException
+    {
+      int targetOffset = getTargetOffset(vlvRequest, size(), searchOperation);
+      final int listOffset = targetOffset - 1; // VLV offsets start at 1, not 0.
+      final int startPos = listOffset - vlvRequest.getBeforeCount();
+      final long[] entryIDs;
+      if (startPos < 0)
+      {
+        // This can happen if beforeCount >= offset, and in this case we'll just ignore the range of beforeCount
+        // that doesn't exist.
+        final List<ByteString> keys = head.toSortedList();
+        entryIDs = toEntryIDs(keys, 0, keys.size());
+      }
+      else if (startPos >= size())
+      {
+        // The start position is beyond the end of the list. In this case, we'll assume that the start position was
+        // one greater than the size of the list and will only return the beforeCount entries.
+        targetOffset = size() + 1;
+        final List<ByteString> keys = tail.toSortedList();
+        entryIDs = toEntryIDs(keys, 0, keys.size());
+      }
+      else
+      {
+        final List<ByteString> keys = head.toSortedList();
+        entryIDs = toEntryIDs(keys, startPos, keys.size());
+      }
+
+      searchOperation.addResponseControl(new VLVResponseControl(targetOffset, size(), LDAPResultCode.SUCCESS));
+      return entryIDs;
+    }
+  }
+
+  /** Returns the window of a virtual list view request targeting a greater than or equal assertion. */
+  private static final class AssertionSorter extends EntryIDSorter
+  {
+    private final SortOrder sortOrder;
+    private final VLVRequestControl vlvRequest;
+    /** The encoded assertion, or {@code null} if the assertion cannot be normalized. */
+    private final ByteSequence encodedTargetAssertion;
+    /** The highest keys lower than the assertion. */
+    private final BoundedKeys before;
+    /** The lowest keys greater than or equal to the assertion, starting with the target. */
+    private final BoundedKeys after;
+    /** The number of keys lower than the assertion. */
+    private int beforeSize;
+
+    private AssertionSorter(SortOrder sortOrder, VLVRequestControl vlvRequest)
+    {
+      this.sortOrder = sortOrder;
+      this.vlvRequest = vlvRequest;
+      this.encodedTargetAssertion = encodeTargetAssertionOrNull(sortOrder, vlvRequest);
+      this.before = new BoundedKeys(vlvRequest.getBeforeCount(), false);
+      this.after = new BoundedKeys((int) Math.min(vlvRequest.getAfterCount() + 1L, Integer.MAX_VALUE), true);
+    }
+
+    private static ByteSequence encodeTargetAssertionOrNull(SortOrder sortOrder, VLVRequestControl vlvRequest)
+    {
+      try
+      {
+        return encodeTargetAssertion(sortOrder, vlvRequest.getGreaterThanOrEqualAssertion());
+      }
+      catch (DecodeException e)
+      {
+        logger.traceException(e);
+        return null;
+      }
+    }
+
+    @Override
+    void add0(ByteString key)
+    {
+      if (encodedTargetAssertion == null)
+      {
+        return;
+      }
+      if (key.compareTo(encodedTargetAssertion) < 0)
+      {
+        before.add(key);
+        beforeSize++;
+      }
+      else
+      {
+        after.add(key);
+      }
+    }
+
+    @Override
+    long[] sort(SearchOperation searchOperation) throws DirectoryException
+    {
+      if (encodedTargetAssertion == null)
+      {
+        // Normalizing the assertion again reports the error with the size of the result set.
+        encodeTargetAssertion(sortOrder, vlvRequest.getGreaterThanOrEqualAssertion(), searchOperation, size());
+      }
+
+      final long[] entryIDs;
+      final int targetPosition;
+      if (!after.isEmpty())
+      {
+        final List<ByteString> keys = before.toSortedList();
+        keys.addAll(after.toSortedList());
+        entryIDs = toEntryIDs(keys, 0, keys.size());
+        targetPosition = beforeSize + 1;
+      }
+      else
+      {
+        // No entry was found to be greater than or equal to the sort key, so the target offset will be one greater
+        // than the content count.
+        entryIDs = new long[0];
+        targetPosition = size() + 1;
+      }
+      searchOperation.addResponseControl(new VLVResponseControl(targetPosition, size(), LDAPResultCode.SUCCESS));
+      return entryIDs;
+    }
+  }
+
+  /** Returns all the entries, spilling the keys to sorted temporary files when they do not fit in memory. */
+  private static final class ExternalSorter extends EntryIDSorter
+  {
+    private final long maxBufferSize;
+    private final File tmpDirectory;
+    private final List<ByteString> buffer = new ArrayList<>();
+    private long bufferSize;
+    /** The temporary files, each holding a sorted run of keys. */
+    private final List<File> runs = new ArrayList<>();
+
+    private ExternalSorter(long maxBufferSize, File tmpDirectory)
+    {
+      this.maxBufferSize = maxBufferSize;
+      this.tmpDirectory = tmpDirectory;
+    }
+
+    @Override
+    void add0(ByteString key) throws DirectoryException
+    {
+      buffer.add(key);
+      bufferSize += key.length() + KEY_OVERHEAD;
+      if (bufferSize >= maxBufferSize)
+      {
+        spill();
+      }
+    }
+
+    private void spill() throws DirectoryException
+    {
+      Collections.sort(buffer);
+      File file = null;
+      try
+      {
+        if (!tmpDirectory.isDirectory() && !tmpDirectory.mkdirs())
+        {
+          throw new IOException(ERR_IMPORT_CREATE_TMPDIR_ERROR.get(tmpDirectory).toString());
+        }
+        file = File.createTempFile("opendj-sort-", ".tmp", tmpDirectory);
+        runs.add(file);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+        {
+          out.writeInt(buffer.size());
+          for (ByteString key : buffer)
+          {
+            out.writeInt(key.length());
+            key.copyTo(out);
+          }
+        }
+      }
+      catch (IOException e)
+      {
+        throw newDirectoryException(file != null ? file : tmpDirectory, e);
+      }
+      buffer.clear();
+      bufferSize = 0;
+    }
+
+    @Override
+    long[] sort(SearchOperation searchOperation) throws DirectoryException
+    {
+      if (runs.isEmpty())
+      {
+        Collections.sort(buffer);
+        return toEntryIDs(buffer, 0, buffer.size());
+      }
+      if (!buffer.isEmpty())
+      {
+        spill();
+      }
+      return merge();
+    }
+
+    private long[] merge() throws DirectoryException
+    {
+      final long[] entryIDs = new long[size()];
+      final PriorityQueue<Run> queue = new PriorityQueue<>(runs.size());
+      final List<Run> openedRuns = new ArrayList<>(runs.size());
+      File file = null;
+      try
+      {
+        for (File run : runs)
+        {
+          file = run;
+          final Run r = new Run(run);
+          openedRuns.add(r);
+          if (r.next())
+          {
+            queue.add(r);
+          }
+        }
+        int i = 0;
+        while (!queue.isEmpty())
+        {
+          final Run r = queue.poll();
+          file = r.file;
+          entryIDs[i++] = decodeEntryIDFromVLVKey(r.key);
+          if (r.next())
+          {
+            queue.add(r);
+          }
+        }
+        return entryIDs;
+      }
+      catch (IOException e)
+      {
+        throw newDirectoryException(file, e);
+      }
+      finally
+      {
+        closeSilently(openedRuns);
+      }
+    }
+
+    private static DirectoryException newDirectoryException(File file, IOException e)
+    {
+      logger.traceException(e);
+      LocalizableMessage message = ERR_ENTRYIDSORTER_CANNOT_USE_TEMP_FILE.get(file, getExceptionMessage(e));
+      return new DirectoryException(DirectoryServer.getServerErrorResultCode(), message, e);
+    }
+
+    @Override
+    public void close()
+    {
+      for (File run : runs)
+      {
+        if (!run.delete())
+        {
+          logger.trace("Unable to delete the temporary file %s", run);
+        }
+      }
+      runs.clear();
+      buffer.clear();
+    }
+  }
+
+  /** Reads the sorted keys of a temporary file. */
+  private static final class Run implements Closeable, Comparable<Run>
+  {
+    private final File file;
+    private final DataInputStream in;
+    private int remaining;
+    private ByteString key;
+
+    private Run(File file) throws IOException
+    {
+      this.file = file;
+      this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try
+      {
+        this.remaining = in.readInt();
+      }
+      catch (IOException e)
+      {
+        closeSilently(in);
+        throw e;
+      }
+    }
+
+    private boolean next() throws IOException
+    {
+      if (remaining == 0)
+      {
+        key = null;
+        return false;
+      }
+      remaining--;
+      final byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      key = ByteString.wrap(bytes);
+      return true;
+    }
+
+    @Override
+    public int compareTo(Run o)
+    {
+      return key.compareTo(o.key);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+      in.close();
+    }
+  }
+}
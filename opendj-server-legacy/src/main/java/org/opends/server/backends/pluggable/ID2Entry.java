@@ -34,6 +34,7 @@ import static org.opends.server.backends.pluggable.CursorTransformer.transformKe
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Set;
 import java.util.zip.DataFormatException;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterOutputStream;
@@ -55,6 +56,7 @@ import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
 import org.opends.server.backends.pluggable.spi.TreeName;
 import org.opends.server.backends.pluggable.spi.WriteableTransaction;
 import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.AttributeType;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.Entry;
 import org.opends.server.types.LDAPException;
@@ -137,7 +139,7 @@ class ID2Entry extends AbstractTree
       compressedEntryBuffer.clearAndTruncate(maxBufferSize, BUFFER_INIT_SIZE);
     }
 
-    private Entry decode(ByteString bytes, CompressedSchema compressedSchema)
+    private Entry decode(ByteString bytes, CompressedSchema compressedSchema, Set<AttributeType> attributeTypes)
         throws DirectoryException, DecodeException, IOException
     {
       // Get the format version.
@@ -172,14 +174,14 @@ class ID2Entry extends AbstractTree
         // Since we are used the cached buffers (ByteStringBuilders),
         // the decoded attribute values will not refer back to the
         // original buffer.
-        return Entry.decode(entryBuffer.asReader(), compressedSchema);
+        return Entry.decode(entryBuffer.asReader(), compressedSchema, attributeTypes);
       }
       else
       {
         // Since we don't have to do any decompression, we can just decode
         // the entry directly.
         ByteString encodedEntry = reader.readOctetString();
-        return Entry.decode(encodedEntry.asReader(), compressedSchema);
+        return Entry.decode(encodedEntry.asReader(), compressedSchema, attributeTypes);
       }
     }
 
@@ -296,11 +298,17 @@ class ID2Entry extends AbstractTree
   static Entry entryFromDatabase(ByteString bytes,
       CompressedSchema compressedSchema) throws DirectoryException,
       DecodeException, LDAPException, DataFormatException, IOException
+  {
+    return entryFromDatabase(bytes, compressedSchema, null);
+  }
+
+  private static Entry entryFromDatabase(ByteString bytes, CompressedSchema compressedSchema,
+      Set<AttributeType> attributeTypes) throws DirectoryException, DecodeException, IOException
   {
     EntryCodec codec = acquireEntryCodec();
     try
     {
-      return codec.decode(bytes, compressedSchema);
+      return codec.decode(bytes, compressedSchema, attributeTypes);
     }
     finally
     {
@@ -393,6 +401,73 @@ class ID2Entry extends AbstractTree
     }
   }
 
+  /**
+   * Fetch an encoded record from the entry tree, so that it can be decoded
+   * later by {@link #decodeEntry(EntryID, ByteString)}, possibly by another
+   * thread than the one owning the transaction.
+   *
+   * @param txn a non null transaction
+   * @param entryID The desired entry ID which forms the key.
+   * @return The encoded entry, or null if there is no such record.
+   * @throws StorageRuntimeException If an error occurs in the storage.
+   */
+  ByteString getEncodedEntry(ReadableTransaction txn, EntryID entryID)
+  {
+    return txn.read(getName(), entryID.toByteString());
+  }
+
+  /**
+   * Decodes a record fetched by
+   * {@link #getEncodedEntry(ReadableTransaction, EntryID)}.
+   *
+   * @param entryID The ID of the entry.
+   * @param encodedEntry The encoded entry, may be null.
+   * @return The decoded entry, or null if the encoded entry is null.
+   * @throws DirectoryException If a problem occurs while decoding the entry.
+   */
+  Entry decodeEntry(EntryID entryID, ByteString encodedEntry) throws DirectoryException
+  {
+    try
+    {
+      return get0(encodedEntry);
+    }
+    catch (Exception e)
+    {
+      throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), ERR_ENTRY_DATABASE_CORRUPT.get(entryID));
+    }
+  }
+
+  /**
+   * Fetch a partial entry holding only the requested attributes, without
+   * decoding the values of the other attributes. Virtual attributes are not
+   * processed.
+   *
+   * @param txn a non null transaction
+   * @param entryID The desired entry ID which forms the key.
+   * @param attributeTypes The types of the attributes to decode, including
+   *          their subtypes if needed.
+   * @return The partial entry, or null if there is no such record.
+   * @throws DirectoryException If a problem occurs while decoding the entry.
+   * @throws StorageRuntimeException If an error occurs in the storage.
+   */
+  Entry getPartialEntry(ReadableTransaction txn, EntryID entryID, Set<AttributeType> attributeTypes)
+      throws DirectoryException, StorageRuntimeException
+  {
+    final ByteString value = txn.read(getName(), entryID.toByteString());
+    if (value == null)
+    {
+      return null;
+    }
+    try
+    {
+      return entryFromDatabase(value, dataConfig.getEntryEncodeConfig().getCompressedSchema(), attributeTypes);
+    }
+    catch (Exception e)
+    {
+      throw new DirectoryException(DirectoryServer.getServerErrorResultCode(), ERR_ENTRY_DATABASE_CORRUPT.get(entryID));
+    }
+  }
+
   Cursor<EntryID, Entry> openCursor(ReadableTransaction txn)
   {
     return transformKeysAndValues(txn.openCursor(getName()), TO_ENTRY_ID, TO_ENTRY);
@@ -30,8 +30,11 @@ import static org.opends.messages.BackendMessages.*;
 import static org.opends.server.backends.pluggable.EntryIDSet.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 import org.opends.server.backends.pluggable.AttributeIndex.IndexFilterType;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
@@ -55,6 +58,12 @@ class IndexFilter
   /** Limit on the number of entry IDs that may be retrieved by cursoring through an index. */
   static final int CURSOR_ENTRY_LIMIT = 100000;
 
+  /**
+   * Approximate ratio between the cost of reading and filtering a candidate entry
+   * and the cost of reading an entry ID from an index.
+   */
+  private static final int ENTRY_TO_ENTRY_ID_COST_RATIO = 100;
+
   /** The entry container holding the attribute indexes. */
   private final EntryContainer entryContainer;
   private final ReadableTransaction txn;
@@ -172,20 +181,66 @@ class IndexFilter
     }
   }
 
+  /**
+   * A component of an AND filter, or a pair of range filters like (cn>=A)(cn<=B),
+   * with the estimated number of entry IDs returned by its evaluation.
+   */
+  private static final class AndComponent
+  {
+    private final SearchFilter filter;
+    /** The second range filter of a pair, null otherwise. */
+    private final SearchFilter rangeFilter;
+    /** Orders the components with the same estimate: faster kinds of filters first. */
+    private final int rank;
+    private final long estimate;
+
+    private AndComponent(SearchFilter filter, SearchFilter rangeFilter, int rank, long estimate)
+    {
+      this.filter = filter;
+      this.rangeFilter = rangeFilter;
+      this.rank = rank;
+      this.estimate = estimate;
+    }
+
+    private void toString(StringBuilder buffer)
+    {
+      filter.toString(buffer);
+      if (rangeFilter != null)
+      {
+        rangeFilter.toString(buffer);
+      }
+      buffer.append("~").append(estimate != IndexStatistics.UNKNOWN ? Long.toString(estimate) : "?");
+    }
+  }
+
+  /** Orders the components of an AND filter by ascending estimates. */
+  private static final Comparator<AndComponent> BY_ESTIMATE = new Comparator<AndComponent>()
+  {
+    @Override
+    public int compare(AndComponent c1, AndComponent c2)
+    {
+      final int cmp = Long.compare(c1.estimate, c2.estimate);
+      return cmp != 0 ? cmp : Integer.compare(c1.rank, c2.rank);
+    }
+  };
+
   /**
    * Evaluate a logical AND search filter against the indexes.
+   * <p>
+   * The components are evaluated by ascending estimated number of entry IDs,
+   * according to the statistics of the indexes. The evaluation stops once
+   * reading the candidate entries is expected to be cheaper than reading the
+   * entry IDs of the next component. Without statistics, the fast components
+   * (equality, presence, approx) are evaluated first, then the other
+   * (non-range) components, then the range component pairs like
+   * (cn>=A)(cn<=B), and finally the remaining range components.
    *
    * @param andFilter The AND search filter to be evaluated.
    * @return A set of entry IDs representing candidate entries.
    */
   private EntryIDSet evaluateLogicalAndFilter(SearchFilter andFilter)
   {
-    // Put the slow range filters (greater-or-equal, less-or-equal)
-    // into a hash map, the faster components (equality, presence, approx)
-    // into one list and the remainder into another list.
-
-    ArrayList<SearchFilter> fastComps = new ArrayList<>();
-    ArrayList<SearchFilter> otherComps = new ArrayList<>();
+    final List<AndComponent> plan = new ArrayList<>();
     HashMap<AttributeType, ArrayList<SearchFilter>> rangeComps = new HashMap<>();
 
     for (SearchFilter filter : andFilter.getFilterComponents())
@@ -207,77 +262,172 @@ class IndexFilter
            filterType == FilterType.PRESENT ||
            filterType == FilterType.APPROXIMATE_MATCH)
       {
-        fastComps.add(filter);
+        plan.add(new AndComponent(filter, null, 0, estimateFilter(filter)));
       }
       else
       {
-        otherComps.add(filter);
+        plan.add(new AndComponent(filter, null, 1, estimateFilter(filter)));
       }
     }
 
-    EntryIDSet results = newUndefinedSet();
-    // First, process the fast components.
-    results = applyFiltersUntilThreshold(results, fastComps);
-    // Next, process the other (non-range) components.
-    results = applyFiltersUntilThreshold(results, otherComps);
-
-    if ( isBelowFilterThreshold(results) || rangeComps.isEmpty() ) {
-      return results;
-    }
-
-    // Next, process range component pairs like (cn>=A)(cn<=B).
-    ArrayList<SearchFilter> remainComps = new ArrayList<>();
-    for (Map.Entry<AttributeType, ArrayList<SearchFilter>> rangeEntry : rangeComps.entrySet())
+    for (ArrayList<SearchFilter> rangeList : rangeComps.values())
     {
-      ArrayList<SearchFilter> rangeList = rangeEntry.getValue();
       if (rangeList.size() == 2)
       {
         SearchFilter filter1 = rangeList.get(0);
         SearchFilter filter2 = rangeList.get(1);
-
-        AttributeIndex attributeIndex = entryContainer.getAttributeIndex(rangeEntry.getKey());
-        if (attributeIndex == null)
+        long estimate = Math.min(estimateFilter(filter1), estimateFilter(filter2));
+        plan.add(new AndComponent(filter1, filter2, 2, estimate));
+      }
+      else
+      {
+        for (SearchFilter filter : rangeList)
         {
-          if(monitor.isFilterUseEnabled())
-          {
-            monitor.updateStats(SearchFilter.createANDFilter(rangeList),
-                INFO_INDEX_FILTER_INDEX_TYPE_DISABLED.get("ordering", rangeEntry.getKey().getNameOrOID()));
-          }
-          continue;
+          plan.add(new AndComponent(filter, null, 3, estimateFilter(filter)));
         }
+      }
+    }
 
-        final IndexQueryFactoryImpl indexQueryFactory = new IndexQueryFactoryImpl(txn, attributeIndex);
-        EntryIDSet set = attributeIndex.evaluateBoundedRange(indexQueryFactory, filter1, filter2, buffer, monitor);
-        if(monitor.isFilterUseEnabled() && set.isDefined())
-        {
-          monitor.updateStats(SearchFilter.createANDFilter(rangeList), set.size());
-        }
-        results.retainAll(set);
-        if (isBelowFilterThreshold(results))
+    // stable sort: components with the same estimate and rank keep the order of the filter
+    Collections.sort(plan, BY_ESTIMATE);
+    if (buffer != null)
+    {
+      appendPlan("[PLAN:", plan, 0);
+    }
+
+    EntryIDSet results = newUndefinedSet();
+    for (int i = 0; i < plan.size(); i++)
+    {
+      final AndComponent component = plan.get(i);
+      if (isBelowFilterThreshold(results) || isCheaperToReadEntries(results, component.estimate))
+      {
+        if (buffer != null)
         {
-          return results;
+          appendPlan("[SKIPPED:", plan, i);
         }
+        break;
+      }
+      if (component.rangeFilter != null)
+      {
+        results.retainAll(evaluateBoundedRange(component.filter, component.rangeFilter));
       }
       else
       {
-        // Add to the remaining range components to be processed.
-        remainComps.addAll(rangeList);
+        results.retainAll(evaluateFilter(component.filter));
+      }
+    }
+    return results;
+  }
+
+  private void appendPlan(String prefix, List<AndComponent> plan, int fromIndex)
+  {
+    buffer.append(prefix);
+    for (int i = fromIndex; i < plan.size(); i++)
+    {
+      if (i > fromIndex)
+      {
+        buffer.append(" ");
       }
+      plan.get(i).toString(buffer);
     }
+    buffer.append("]");
+  }
 
-    // Finally, process the remaining slow range components.
-    return applyFiltersUntilThreshold(results, remainComps);
+  /**
+   * Indicates whether reading and filtering the candidate entries is expected to be
+   * cheaper than narrowing them down with an index query returning the estimated number
+   * of entry IDs. Unknown estimates never stop the evaluation.
+   */
+  private static boolean isCheaperToReadEntries(EntryIDSet candidates, long estimate)
+  {
+    return candidates.isDefined()
+        && estimate != IndexStatistics.UNKNOWN
+        && estimate / ENTRY_TO_ENTRY_ID_COST_RATIO > candidates.size();
   }
 
-  private EntryIDSet applyFiltersUntilThreshold(EntryIDSet results, ArrayList<SearchFilter> filters)
+  private EntryIDSet evaluateBoundedRange(SearchFilter filter1, SearchFilter filter2)
   {
-    for(SearchFilter filter : filters) {
-      if (isBelowFilterThreshold(results)) {
-        return results;
+    AttributeType attributeType = filter1.getAttributeType();
+    AttributeIndex attributeIndex = entryContainer.getAttributeIndex(attributeType);
+    if (attributeIndex == null)
+    {
+      if (monitor.isFilterUseEnabled())
+      {
+        monitor.updateStats(SearchFilter.createANDFilter(Arrays.asList(filter1, filter2)),
+            INFO_INDEX_FILTER_INDEX_TYPE_DISABLED.get("ordering", attributeType.getNameOrOID()));
       }
-      results.retainAll(evaluateFilter(filter));
+      return newUndefinedSet();
     }
-    return results;
+
+    final IndexQueryFactoryImpl indexQueryFactory = new IndexQueryFactoryImpl(txn, attributeIndex);
+    EntryIDSet set = attributeIndex.evaluateBoundedRange(indexQueryFactory, filter1, filter2, buffer, monitor);
+    if (monitor.isFilterUseEnabled() && set.isDefined())
+    {
+      monitor.updateStats(SearchFilter.createANDFilter(Arrays.asList(filter1, filter2)), set.size());
+    }
+    return set;
+  }
+
+  /**
+   * Estimates the number of entry IDs returned by the evaluation of a search filter
+   * against the indexes, without reading the indexes.
+   *
+   * @param filter The search filter to be estimated.
+   * @return The estimated number of entry IDs, or {@link IndexStatistics#UNKNOWN}.
+   */
+  private long estimateFilter(SearchFilter filter)
+  {
+    switch (filter.getFilterType())
+    {
+    case AND:
+      long andEstimate = IndexStatistics.UNKNOWN;
+      for (SearchFilter component : filter.getFilterComponents())
+      {
+        andEstimate = Math.min(andEstimate, estimateFilter(component));
+      }
+      return andEstimate;
+
+    case OR:
+      long orEstimate = 0;
+      for (SearchFilter component : filter.getFilterComponents())
+      {
+        orEstimate = IndexStatistics.add(orEstimate, estimateFilter(component));
+      }
+      return orEstimate;
+
+    case EQUALITY:
+      return estimateFilter(IndexFilterType.EQUALITY, filter);
+
+    case GREATER_OR_EQUAL:
+      return estimateFilter(IndexFilterType.GREATER_OR_EQUAL, filter);
+
+    case SUBSTRING:
+      return estimateFilter(IndexFilterType.SUBSTRING, filter);
+
+    case LESS_OR_EQUAL:
+      return estimateFilter(IndexFilterType.LESS_OR_EQUAL, filter);
+
+    case PRESENT:
+      return estimateFilter(IndexFilterType.PRESENCE, filter);
+
+    case APPROXIMATE_MATCH:
+      return estimateFilter(IndexFilterType.APPROXIMATE, filter);
+
+    case EXTENSIBLE_MATCH:
+    case NOT:
+    default:
+      return IndexStatistics.UNKNOWN;
+    }
+  }
+
+  private long estimateFilter(IndexFilterType indexFilterType, SearchFilter filter)
+  {
+    AttributeIndex attributeIndex = entryContainer.getAttributeIndex(filter.getAttributeType());
+    if (attributeIndex == null)
+    {
+      return IndexStatistics.UNKNOWN;
+    }
+    return AttributeIndex.estimateFilter(new IndexQueryFactoryImpl(txn, attributeIndex), indexFilterType, filter);
   }
 
   static boolean isBelowFilterThreshold(EntryIDSet set)
@@ -43,4 +43,12 @@ interface IndexQuery
    * @return The non null EntryIDSet as a result of evaluating this query
    */
   EntryIDSet evaluate(LocalizableMessageBuilder debugMessage, StringBuilder indexNameOut);
+
+  /**
+   * Estimates the number of entry IDs returned by this query, without evaluating it.
+   *
+   * @return The estimated number of entry IDs returned by this query,
+   *         or {@link IndexStatistics#UNKNOWN} if it cannot be estimated
+   */
+  long estimateSize();
 }
@@ -41,6 +41,7 @@ import org.forgerock.opendj.ldap.spi.IndexQueryFactory;
 import org.forgerock.opendj.ldap.spi.IndexingOptions;
 import org.forgerock.util.Utils;
 import org.opends.server.backends.pluggable.AttributeIndex.IndexFilterType;
+import org.opends.server.backends.pluggable.AttributeIndex.MatchingRuleIndex;
 import org.opends.server.backends.pluggable.spi.Cursor;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
 import org.opends.server.backends.pluggable.spi.StorageRuntimeException;
@@ -66,6 +67,12 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
       return newUndefinedSet();
     }
 
+    @Override
+    public long estimateSize()
+    {
+      return IndexStatistics.UNKNOWN;
+    }
+
     @Override
     public String toString()
     {
@@ -105,6 +112,17 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
       return entryIDs;
     }
 
+    @Override
+    public long estimateSize()
+    {
+      long estimate = IndexStatistics.UNKNOWN;
+      for (IndexQuery query : subIndexQueries)
+      {
+        estimate = Math.min(estimate, query.estimateSize());
+      }
+      return estimate;
+    }
+
     @Override
     public String toString()
     {
@@ -144,6 +162,17 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
       return entryIDs;
     }
 
+    @Override
+    public long estimateSize()
+    {
+      long estimate = 0;
+      for (IndexQuery query : subIndexQueries)
+      {
+        estimate = IndexStatistics.add(estimate, query.estimateSize());
+      }
+      return estimate;
+    }
+
     @Override
     public String toString()
     {
@@ -196,6 +225,19 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
           return entrySet;
         }
 
+        @Override
+        public long estimateSize()
+        {
+          final MatchingRuleIndex index = attributeIndex.getNameToIndexes().get(indexID);
+          if (index == null)
+          {
+            return createMatchAllQuery().estimateSize();
+          }
+          return index.isTrusted()
+              ? index.getStatistics().estimateKeySize(index.getIndexEntryLimit())
+              : IndexStatistics.UNKNOWN;
+        }
+
         @Override
         public String toString()
         {
@@ -225,6 +267,19 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
         return entrySet;
       }
 
+      @Override
+      public long estimateSize()
+      {
+        final MatchingRuleIndex index = attributeIndex.getNameToIndexes().get(indexID);
+        if (index == null)
+        {
+          return createMatchAllQuery().estimateSize();
+        }
+        return index.isTrusted()
+            ? index.getStatistics().estimateRangeSize(lowerBound, upperBound, index.getIndexEntryLimit())
+            : IndexStatistics.UNKNOWN;
+      }
+
       private final EntryIDSet readRange(Index index, ReadableTransaction txn, ByteSequence lower, ByteSequence upper,
           boolean lowerIncluded, boolean upperIncluded)
       {
@@ -369,6 +424,17 @@ final class IndexQueryFactoryImpl implements IndexQueryFactory<IndexQuery>
           return entrySet;
         }
 
+        @Override
+        public long estimateSize()
+        {
+          final MatchingRuleIndex index = attributeIndex.getNameToIndexes().get(PRESENCE_INDEX_KEY);
+          if (index == null || !index.isTrusted())
+          {
+            return IndexStatistics.UNKNOWN;
+          }
+          return index.getStatistics().estimateKeySize(index.getIndexEntryLimit());
+        }
+
         @Override
         public String toString()
         {
@@ -0,0 +1,371 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.backends.pluggable.spi.Cursor;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+
+/**
+ * Statistics about the keys of an index, used to estimate the number of entry
+ * IDs returned by an index query before evaluating it.
+ * <p>
+ * The statistics are computed by {@link #refresh(ReadableTransaction, Index)},
+ * which reads at most {@link #MAX_SCANNED_KEYS} keys of the index and builds an
+ * equi-depth histogram of their entry IDs. The number of keys and entry IDs
+ * added or removed since then are maintained on write, and the statistics are
+ * considered stale once these changes exceed a fraction of the scanned keys.
+ * <p>
+ * All the estimates are approximate: they are only used to order the index
+ * queries of a search, never to compute its candidate entries.
+ */
+final class IndexStatistics
+{
+  /** The estimate returned when the statistics cannot tell. */
+  static final long UNKNOWN = Long.MAX_VALUE;
+
+  /** The maximum number of keys read when refreshing the statistics. */
+  static final int MAX_SCANNED_KEYS = 100000;
+  /** The maximum number of buckets of the histograms. */
+  private static final int MAX_BUCKETS = 128;
+  /** The ratio of changed keys or entry IDs making the statistics stale. */
+  private static final double STALE_RATIO = 0.1;
+
+  /** The statistics computed by the last refresh, null until the first refresh. */
+  private volatile Snapshot snapshot;
+  /** The number of keys added minus the number of keys removed since the last refresh. */
+  private final AtomicLong keyCountDelta = new AtomicLong();
+  /** The number of entry IDs added minus the number of entry IDs removed since the last refresh. */
+  private final AtomicLong idCountDelta = new AtomicLong();
+  /** The number of updated keys since the last refresh. */
+  private final AtomicLong updateCount = new AtomicLong();
+
+  /** Immutable statistics computed by scanning the index. */
+  private static final class Snapshot
+  {
+    private final long keyCount;
+    private final long idCount;
+    private final long undefinedKeyCount;
+    /** The number of entry IDs, counting the index entry limit for each undefined key. */
+    private final long totalIDCount;
+    /** Whether all the keys of the index were read. */
+    private final boolean complete;
+    /** The last key of each bucket of the histogram, in ascending order. */
+    private final ByteString[] bucketKeys;
+    /** The number of entry IDs of the keys lower than or equal to the last key of each bucket. */
+    private final long[] cumulativeIDCounts;
+
+    private Snapshot(long keyCount, long idCount, long undefinedKeyCount, long totalIDCount, boolean complete,
+        List<ByteString> bucketKeys, List<Long> cumulativeIDCounts)
+    {
+      this.keyCount = keyCount;
+      this.idCount = idCount;
+      this.undefinedKeyCount = undefinedKeyCount;
+      this.totalIDCount = totalIDCount;
+      this.complete = complete;
+      this.bucketKeys = bucketKeys.toArray(new ByteString[bucketKeys.size()]);
+      this.cumulativeIDCounts = new long[cumulativeIDCounts.size()];
+      for (int i = 0; i < this.cumulativeIDCounts.length; i++)
+      {
+        this.cumulativeIDCounts[i] = cumulativeIDCounts.get(i);
+      }
+    }
+  }
+
+  /**
+   * Records the update of a key of the index.
+   *
+   * @param keyDelta
+   *          1 if the key was added, -1 if it was removed, 0 otherwise
+   * @param idDelta
+   *          the number of entry IDs added minus the number of entry IDs
+   *          removed
+   */
+  void recordUpdate(int keyDelta, long idDelta)
+  {
+    if (keyDelta != 0)
+    {
+      keyCountDelta.addAndGet(keyDelta);
+    }
+    if (idDelta != 0)
+    {
+      idCountDelta.addAndGet(idDelta);
+    }
+    updateCount.incrementAndGet();
+  }
+
+  /**
+   * Indicates whether the statistics should be refreshed, because they were
+   * never computed or because the index changed too much since then.
+   *
+   * @return {@code true} if the statistics should be refreshed
+   */
+  boolean needsRefresh()
+  {
+    final Snapshot s = snapshot;
+    return s == null || updateCount.get() > Math.max(s.keyCount, 1) * STALE_RATIO;
+  }
+
+  /** Forgets the statistics, e.g. because the index was cleared or rebuilt. */
+  void reset()
+  {
+    snapshot = null;
+    resetDeltas();
+  }
+
+  private void resetDeltas()
+  {
+    keyCountDelta.set(0);
+    idCountDelta.set(0);
+    updateCount.set(0);
+  }
+
+  /**
+   * Recomputes the statistics by reading the keys of the index.
+   *
+   * @param txn
+   *          a non null transaction
+   * @param index
+   *          the index described by these statistics
+   */
+  void refresh(ReadableTransaction txn, Index index)
+  {
+    final long limit = Math.max(index.getIndexEntryLimit(), 1);
+    // writes racing with the scan are counted twice at worst
+    resetDeltas();
+
+    long keyCount = 0;
+    long idCount = 0;
+    long undefinedKeyCount = 0;
+    // keep one key every "stride" keys, and halve the keys whenever there are too many
+    int stride = 1;
+    final List<ByteString> bucketKeys = new ArrayList<>();
+    final List<Long> cumulativeIDCounts = new ArrayList<>();
+    boolean complete = true;
+    try (Cursor<ByteString, EntryIDSet> cursor = index.openCursor(txn))
+    {
+      while (cursor.next())
+      {
+        if (keyCount >= MAX_SCANNED_KEYS)
+        {
+          complete = false;
+          break;
+        }
+        final EntryIDSet ids = cursor.getValue();
+        keyCount++;
+        if (ids.isDefined())
+        {
+          idCount += ids.size();
+        }
+        else
+        {
+          undefinedKeyCount++;
+        }
+        if (keyCount % stride == 0)
+        {
+          bucketKeys.add(cursor.getKey());
+          cumulativeIDCounts.add(idCount + undefinedKeyCount * limit);
+          if (bucketKeys.size() >= 2 * MAX_BUCKETS)
+          {
+            halve(bucketKeys);
+            halve(cumulativeIDCounts);
+            stride *= 2;
+          }
+        }
+      }
+    }
+    snapshot = new Snapshot(keyCount, idCount, undefinedKeyCount, idCount + undefinedKeyCount * limit, complete,
+        bucketKeys, cumulativeIDCounts);
+  }
+
+  /** Keeps the elements with an odd index, i.e. the last key of each pair of buckets. */
+  private static <T> void halve(List<T> list)
+  {
+    int j = 0;
+    for (int i = 1; i < list.size(); i += 2)
+    {
+      list.set(j++, list.get(i));
+    }
+    list.subList(j, list.size()).clear();
+  }
+
+  /**
+   * Returns the estimated number of keys of the index.
+   *
+   * @return the estimated number of keys of the index, or {@link #UNKNOWN}
+   */
+  long getKeyCount()
+  {
+    final Snapshot s = snapshot;
+    if (s == null || !s.complete)
+    {
+      return UNKNOWN;
+    }
+    return Math.max(s.keyCount + keyCountDelta.get(), 0);
+  }
+
+  /**
+   * Returns the estimated number of entry IDs matching one key of the index.
+   *
+   * @param indexEntryLimit
+   *          the index entry limit of the index
+   * @return the estimated number of entry IDs matching one key, or
+   *         {@link #UNKNOWN}
+   */
+  long estimateKeySize(int indexEntryLimit)
+  {
+    final Snapshot s = snapshot;
+    if (s == null)
+    {
+      return UNKNOWN;
+    }
+    final long keyCount = s.keyCount + keyCountDelta.get();
+    if (keyCount <= 0)
+    {
+      return 0;
+    }
+    final long idCount = s.idCount + s.undefinedKeyCount * Math.max(indexEntryLimit, 1) + idCountDelta.get();
+    return Math.max(ceilDiv(idCount, keyCount), 1);
+  }
+
+  /**
+   * Returns the estimated number of entry IDs matching the keys of a range.
+   *
+   * @param lower
+   *          the lower bound of the range, empty if the range has no lower
+   *          bound
+   * @param upper
+   *          the upper bound of the range, empty if the range has no upper
+   *          bound
+   * @param indexEntryLimit
+   *          the index entry limit of the index
+   * @return the estimated number of entry IDs matching the keys of the range,
+   *         or {@link #UNKNOWN}
+   */
+  long estimateRangeSize(ByteSequence lower, ByteSequence upper, int indexEntryLimit)
+  {
+    final Snapshot s = snapshot;
+    if (s == null || s.bucketKeys.length == 0)
+    {
+      return s != null && s.complete ? 0 : UNKNOWN;
+    }
+    final long upperCount = upper.length() > 0 ? cumulativeIDCount(s, upper) : totalIDCount(s);
+    if (upperCount == UNKNOWN)
+    {
+      return UNKNOWN;
+    }
+    final long lowerCount = lower.length() > 0 ? cumulativeIDCount(s, lower) : 0;
+    // the bucket holding a bound may be partly out of the range: count one more key
+    return Math.max(upperCount - lowerCount, 0) + estimateKeySize(indexEntryLimit);
+  }
+
+  /** Returns the number of entry IDs of the keys lower than or equal to the last key of the bucket holding a key. */
+  private static long cumulativeIDCount(Snapshot s, ByteSequence key)
+  {
+    int pos = binarySearch(s.bucketKeys, key);
+    if (pos < 0)
+    {
+      pos = -(pos + 1);
+    }
+    return pos < s.bucketKeys.length ? s.cumulativeIDCounts[pos] : totalIDCount(s);
+  }
+
+  private static long totalIDCount(Snapshot s)
+  {
+    if (!s.complete)
+    {
+      return UNKNOWN;
+    }
+    return s.totalIDCount;
+  }
+
+  private static int binarySearch(ByteString[] keys, ByteSequence key)
+  {
+    int low = 0;
+    int high = keys.length - 1;
+    while (low <= high)
+    {
+      final int mid = (low + high) >>> 1;
+      final int cmp = keys[mid].compareTo(key);
+      if (cmp < 0)
+      {
+        low = mid + 1;
+      }
+      else if (cmp > 0)
+      {
+        high = mid - 1;
+      }
+      else
+      {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private static long ceilDiv(long dividend, long divisor)
+  {
+    return (dividend + divisor - 1) / divisor;
+  }
+
+  /**
+   * Returns the sum of two estimates.
+   *
+   * @param estimate1
+   *          the first estimate, may be {@link #UNKNOWN}
+   * @param estimate2
+   *          the second estimate, may be {@link #UNKNOWN}
+   * @return the sum of the two estimates, or {@link #UNKNOWN}
+   */
+  static long add(long estimate1, long estimate2)
+  {
+    if (estimate1 == UNKNOWN || estimate2 == UNKNOWN || estimate1 > UNKNOWN - estimate2)
+    {
+      return UNKNOWN;
+    }
+    return estimate1 + estimate2;
+  }
+
+  @Override
+  public String toString()
+  {
+    final Snapshot s = snapshot;
+    if (s == null)
+    {
+      return "IndexStatistics(unknown)";
+    }
+    return "IndexStatistics(keys=" + s.keyCount + (s.complete ? "" : "+")
+        + ", ids=" + s.idCount
+        + ", undefinedKeys=" + s.undefinedKeyCount
+        + ", buckets=" + s.bucketKeys.length
+        + ", updates=" + updateCount.get() + ")";
+  }
+}
@@ -36,6 +36,9 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.LocalizableMessage;
@@ -46,6 +49,8 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.opends.server.admin.server.ConfigurationChangeListener;
 import org.opends.server.admin.std.server.PluggableBackendCfg;
 import org.opends.server.api.CompressedSchema;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.backends.pluggable.AttributeIndex.MatchingRuleIndex;
 import org.opends.server.backends.pluggable.spi.AccessMode;
 import org.opends.server.backends.pluggable.spi.ReadOperation;
 import org.opends.server.backends.pluggable.spi.ReadableTransaction;
@@ -89,6 +94,14 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
   /** The compressed schema manager for this backend. */
   private PersistentCompressedSchema compressedSchema;
 
+  /** The threads decoding and filtering the candidate entries of the indexed searches. */
+  private final SearchPrefetcher searchPrefetcher;
+
+  /** The interval between two refreshes of the stale index statistics, in seconds. */
+  private static final long INDEX_STATISTICS_REFRESH_INTERVAL = 60;
+  /** The thread refreshing the index statistics, null when the root container is closed. */
+  private ScheduledExecutorService indexStatisticsRefresher;
+
   /**
    * Creates a new RootContainer object representing a storage.
    *
@@ -106,10 +119,23 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
 
     getMonitorProvider().enableFilterUseStats(config.isIndexFilterAnalyzerEnabled());
     getMonitorProvider().setMaxEntries(config.getIndexFilterAnalyzerMaxFilters());
+    searchPrefetcher = new SearchPrefetcher(backendID, config.getSearchPrefetchThreads());
 
     config.addPluggableChangeListener(this);
   }
 
+  /**
+   * Returns the threads decoding and filtering the candidate entries of the
+   * indexed searches.
+   *
+   * @return the threads decoding and filtering the candidate entries of the
+   *         indexed searches
+   */
+  SearchPrefetcher getSearchPrefetcher()
+  {
+    return searchPrefetcher;
+  }
+
   /**
    * Returns the underlying storage engine.
    *
@@ -144,6 +170,7 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
           openAndRegisterEntryContainers(txn, config.getBaseDN(), accessMode);
         }
       });
+      startIndexStatisticsRefresher();
     }
     catch(StorageRuntimeException e)
     {
@@ -323,6 +350,7 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
    */
   void close() throws StorageRuntimeException
   {
+    stopIndexStatisticsRefresher();
     for (DN baseDN : entryContainers.keySet())
     {
       EntryContainer ec = unregisterEntryContainer(baseDN);
@@ -337,12 +365,100 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
       }
     }
     config.removePluggableChangeListener(this);
+    searchPrefetcher.shutdown();
     if (storage != null)
     {
       storage.close();
     }
   }
 
+  private synchronized void startIndexStatisticsRefresher()
+  {
+    indexStatisticsRefresher = Executors.newSingleThreadScheduledExecutor(
+        new DirectoryThread.Factory("Index Statistics Refresher " + backendId));
+    indexStatisticsRefresher.scheduleWithFixedDelay(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        refreshIndexStatistics();
+      }
+    }, INDEX_STATISTICS_REFRESH_INTERVAL, INDEX_STATISTICS_REFRESH_INTERVAL, TimeUnit.SECONDS);
+  }
+
+  private synchronized void stopIndexStatisticsRefresher()
+  {
+    if (indexStatisticsRefresher != null)
+    {
+      indexStatisticsRefresher.shutdownNow();
+      try
+      {
+        // the refresh in progress may hold the shared lock of an entry container
+        indexStatisticsRefresher.awaitTermination(10, TimeUnit.SECONDS);
+      }
+      catch (InterruptedException e)
+      {
+        logger.traceException(e);
+        Thread.currentThread().interrupt();
+      }
+      indexStatisticsRefresher = null;
+    }
+  }
+
+  /**
+   * Refreshes the statistics of the trusted indexes which were never computed or
+   * which are stale, for estimating the size of the index queries of the searches.
+   */
+  void refreshIndexStatistics()
+  {
+    for (EntryContainer ec : entryContainers.values())
+    {
+      ec.sharedLock.lock();
+      try
+      {
+        for (AttributeIndex attributeIndex : ec.getAttributeIndexes())
+        {
+          for (final MatchingRuleIndex index : attributeIndex.getNameToIndexes().values())
+          {
+            if (Thread.currentThread().isInterrupted())
+            {
+              return;
+            }
+            if (index.isTrusted() && index.getStatistics().needsRefresh())
+            {
+              refreshIndexStatistics(index);
+            }
+          }
+        }
+      }
+      finally
+      {
+        ec.sharedLock.unlock();
+      }
+    }
+  }
+
+  private void refreshIndexStatistics(final MatchingRuleIndex index)
+  {
+    try
+    {
+      storage.read(new ReadOperation<Void>()
+      {
+        @Override
+        public Void run(ReadableTransaction txn) throws Exception
+        {
+          index.getStatistics().refresh(txn, index);
+          return null;
+        }
+      });
+    }
+    catch (Exception e)
+    {
+      // the statistics will be refreshed later
+      logger.traceException(e);
+    }
+  }
+
   /**
    * Return all the entry containers in this root container.
    *
@@ -455,6 +571,7 @@ public class RootContainer implements ConfigurationChangeListener<PluggableBacke
   {
     getMonitorProvider().enableFilterUseStats(configuration.isIndexFilterAnalyzerEnabled());
     getMonitorProvider().setMaxEntries(configuration.getIndexFilterAnalyzerMaxFilters());
+    searchPrefetcher.setThreadCount(configuration.getSearchPrefetchThreads());
 
     return new ConfigChangeResult();
   }
@@ -0,0 +1,215 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.opends.messages.BackendMessages.*;
+import static org.opends.server.core.DirectoryServer.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.types.DirectoryException;
+
+/**
+ * The pool of threads decoding and filtering the candidate entries of the
+ * indexed searches of a backend ahead of their return to the client.
+ * <p>
+ * The storage transactions may only be used by the thread which opened them:
+ * the thread processing a search reads the encoded entries, and submits their
+ * decoding and filtering to this pool. The number of entries read ahead by a
+ * search is bounded by {@link #READ_AHEAD_SIZE}, so the tasks queued by a
+ * search never exceed this number.
+ * <p>
+ * A search waiting for a task which no thread of the pool has started yet runs
+ * it itself: the pool only speeds up the searches, which never wait behind the
+ * tasks queued by the other searches when all its threads are busy.
+ */
+final class SearchPrefetcher
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The maximum number of candidate entries read ahead by a search. */
+  static final int READ_AHEAD_SIZE = 64;
+
+  private final String backendID;
+  /** The pool of threads, null when reading ahead is disabled. */
+  private volatile ThreadPoolExecutor executor;
+
+  /**
+   * Creates a new search prefetcher.
+   *
+   * @param backendID
+   *          the ID of the backend whose searches are processed
+   * @param nbThreads
+   *          the number of threads, 0 to disable reading ahead
+   */
+  SearchPrefetcher(String backendID, int nbThreads)
+  {
+    this.backendID = backendID;
+    setThreadCount(nbThreads);
+  }
+
+  /**
+   * Changes the number of threads.
+   *
+   * @param nbThreads
+   *          the number of threads, 0 to disable reading ahead
+   */
+  synchronized void setThreadCount(int nbThreads)
+  {
+    if (nbThreads <= 0)
+    {
+      shutdown();
+    }
+    else if (executor == null)
+    {
+      executor = new ThreadPoolExecutor(nbThreads, nbThreads, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(), new DirectoryThread.Factory("Search Prefetcher " + backendID));
+    }
+    else if (nbThreads > executor.getMaximumPoolSize())
+    {
+      executor.setMaximumPoolSize(nbThreads);
+      executor.setCorePoolSize(nbThreads);
+    }
+    else
+    {
+      executor.setCorePoolSize(nbThreads);
+      executor.setMaximumPoolSize(nbThreads);
+    }
+  }
+
+  /**
+   * Stops the threads once the submitted tasks are done. Reading ahead is
+   * disabled until the number of threads is changed.
+   */
+  synchronized void shutdown()
+  {
+    if (executor != null)
+    {
+      // let the queued tasks run: searches are waiting for them
+      executor.shutdown();
+      executor = null;
+    }
+  }
+
+  /**
+   * Indicates whether a search should read its candidate entries ahead.
+   *
+   * @param nbCandidates
+   *          the number of candidate entries of the search
+   * @return {@code true} if the search should read its candidate entries
+   *         ahead
+   */
+  boolean isEnabled(int nbCandidates)
+  {
+    return executor != null && nbCandidates > READ_AHEAD_SIZE;
+  }
+
+  /**
+   * Submits the decoding and filtering of a candidate entry. The task is run
+   * by the current thread if the pool is not available.
+   *
+   * @param <T>
+   *          the type of the result of the task
+   * @param task
+   *          the task
+   * @return the future result of the task
+   */
+  <T> FutureTask<T> submit(Callable<T> task)
+  {
+    final FutureTask<T> future = new FutureTask<>(task);
+    final ThreadPoolExecutor pool = executor;
+    if (pool != null)
+    {
+      try
+      {
+        pool.execute(future);
+        return future;
+      }
+      catch (RejectedExecutionException e)
+      {
+        // the backend is being closed or reconfigured
+        logger.traceException(e);
+      }
+    }
+    future.run();
+    return future;
+  }
+
+  /**
+   * Returns the result of a task submitted by {@link #submit(Callable)}. The
+   * task is run by the current thread if no thread of the pool has started it
+   * yet, otherwise this method waits for its result.
+   *
+   * @param <T>
+   *          the type of the result of the task
+   * @param future
+   *          the future result of the task
+   * @return the result of the task
+   * @throws DirectoryException
+   *           if the task failed, or if the current thread was interrupted
+   */
+  static <T> T get(FutureTask<T> future) throws DirectoryException
+  {
+    // does nothing if the task has already been started by the pool
+    future.run();
+    try
+    {
+      return future.get();
+    }
+    catch (ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof DirectoryException)
+      {
+        throw (DirectoryException) cause;
+      }
+      else if (cause instanceof RuntimeException)
+      {
+        throw (RuntimeException) cause;
+      }
+      else if (cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+      throw new DirectoryException(getServerErrorResultCode(),
+          ERR_UNCHECKED_EXCEPTION.get(stackTraceToSingleLineString(cause)), cause);
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new DirectoryException(getServerErrorResultCode(), ERR_INTERRUPTED_ERROR.get(e.getMessage()), e);
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.core.SearchOperation;
+import org.opends.server.types.DN;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.types.SortOrder;
+
+/**
+ * Caches the sorted entry IDs of the searches browsing their results page after page, with the
+ * paged results or the virtual list view controls, so that the next pages do not sort the candidate
+ * entries again.
+ * <p>
+ * Cached results expire after {@link #TTL_MILLIS}, and are invalidated by any write to an entry
+ * above or under the base DN of their search. The total number of cached entry IDs is bounded by
+ * {@link #MAX_CACHED_IDS}, and the least recently used results are evicted first.
+ * <p>
+ * Results computed while entries above or under their base DN were written are not cached. The
+ * latest {@link #MAX_RECENT_INVALIDATIONS} invalidated DNs are remembered to tell them from the
+ * writes to unrelated entries, which do not prevent caching the results.
+ */
+final class SortedResultsCache
+{
+  /** The time to live of cached results, in milliseconds. */
+  static final long TTL_MILLIS = 60 * 1000;
+  /** The maximum number of entry IDs of all the cached results. */
+  static final int MAX_CACHED_IDS = 1000000;
+  /** The maximum number of invalidated DNs remembered for the results being computed. */
+  static final int MAX_RECENT_INVALIDATIONS = 1024;
+
+  /** The cached results, in access order. */
+  private final LinkedHashMap<Key, CachedResults> results = new LinkedHashMap<>(16, 0.75f, true);
+  /** The number of entry IDs of all the cached results. */
+  private long cachedIDs;
+  /** Incremented on each invalidation, so that results computed meanwhile are not cached. */
+  private long generation;
+  /** The latest invalidated DNs, the last one invalidated by the current generation. */
+  private final ArrayDeque<DN> recentInvalidations = new ArrayDeque<>();
+
+  /** Identifies the results of a sorted search. */
+  static final class Key
+  {
+    private final DN authorizationDN;
+    private final DN baseDN;
+    private final SearchScope scope;
+    private final SearchFilter filter;
+    private final SortOrder sortOrder;
+
+    Key(SearchOperation searchOperation, SortOrder sortOrder)
+    {
+      this.authorizationDN = searchOperation.getAuthorizationDN();
+      this.baseDN = searchOperation.getBaseDN();
+      this.scope = searchOperation.getScope();
+      this.filter = searchOperation.getFilter();
+      this.sortOrder = sortOrder;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+      if (this == o)
+      {
+        return true;
+      }
+      if (!(o instanceof Key))
+      {
+        return false;
+      }
+      final Key other = (Key) o;
+      return Objects.equals(authorizationDN, other.authorizationDN)
+          && baseDN.equals(other.baseDN)
+          && scope.equals(other.scope)
+          && filter.equals(other.filter)
+          && sortOrder.equals(other.sortOrder);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hash(authorizationDN, baseDN, scope, filter, sortOrder);
+    }
+  }
+
+  /** The sorted entry IDs of a search. */
+  private static final class CachedResults
+  {
+    private final long[] entryIDs;
+    private final long expirationTime;
+
+    private CachedResults(long[] entryIDs, long expirationTime)
+    {
+      this.entryIDs = entryIDs;
+      this.expirationTime = expirationTime;
+    }
+  }
+
+  /**
+   * Returns the current generation, to provide to {@link #put(Key, long[], long)} once the results
+   * have been computed.
+   *
+   * @return the current generation
+   */
+  synchronized long getGeneration()
+  {
+    return generation;
+  }
+
+  /**
+   * Returns the cached results of a search.
+   *
+   * @param key
+   *          identifies the search
+   * @return the sorted entry IDs of the search, or {@code null} if they are not cached or expired
+   */
+  synchronized long[] get(Key key)
+  {
+    final CachedResults cached = results.get(key);
+    if (cached == null)
+    {
+      return null;
+    }
+    if (cached.expirationTime <= System.currentTimeMillis())
+    {
+      remove(key);
+      return null;
+    }
+    return cached.entryIDs;
+  }
+
+  /**
+   * Caches the results of a search, unless they are too large or an entry above or under the base DN
+   * of the search was written while computing them.
+   *
+   * @param key
+   *          identifies the search
+   * @param entryIDs
+   *          the sorted entry IDs of the search, which must not be modified afterwards
+   * @param resultsGeneration
+   *          the generation returned by {@link #getGeneration()} before computing the results
+   */
+  synchronized void put(Key key, long[] entryIDs, long resultsGeneration)
+  {
+    if (entryIDs.length > MAX_CACHED_IDS || isInvalidatedSince(key.baseDN, resultsGeneration))
+    {
+      return;
+    }
+    remove(key);
+    results.put(key, new CachedResults(entryIDs, System.currentTimeMillis() + TTL_MILLIS));
+    cachedIDs += entryIDs.length;
+
+    final Iterator<CachedResults> it = results.values().iterator();
+    while (cachedIDs > MAX_CACHED_IDS && it.hasNext())
+    {
+      cachedIDs -= it.next().entryIDs.length;
+      it.remove();
+    }
+  }
+
+  /**
+   * Returns whether an entry above or under the provided base DN was invalidated after the provided
+   * generation, or whether it cannot be told.
+   */
+  private boolean isInvalidatedSince(DN baseDN, long resultsGeneration)
+  {
+    final long nbInvalidations = generation - resultsGeneration;
+    if (nbInvalidations > recentInvalidations.size())
+    {
+      // the cache was cleared, or too many invalidations are forgotten
+      return true;
+    }
+    final Iterator<DN> it = recentInvalidations.descendingIterator();
+    for (long i = 0; i < nbInvalidations; i++)
+    {
+      if (isAboveOrUnder(baseDN, it.next()))
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isAboveOrUnder(DN baseDN, DN entryDN)
+  {
+    return baseDN.isAncestorOf(entryDN) || entryDN.isAncestorOf(baseDN);
+  }
+
+  private void remove(Key key)
+  {
+    final CachedResults removed = results.remove(key);
+    if (removed != null)
+    {
+      cachedIDs -= removed.entryIDs.length;
+    }
+  }
+
+  /**
+   * Invalidates the results of the searches whose base DN is above or under a modified entry.
+   *
+   * @param entryDN
+   *          the DN of the added, deleted, modified or renamed entry
+   */
+  synchronized void invalidate(DN entryDN)
+  {
+    generation++;
+    if (recentInvalidations.size() >= MAX_RECENT_INVALIDATIONS)
+    {
+      recentInvalidations.removeFirst();
+    }
+    recentInvalidations.addLast(entryDN);
+    final Iterator<Map.Entry<Key, CachedResults>> it = results.entrySet().iterator();
+    while (it.hasNext())
+    {
+      final Map.Entry<Key, CachedResults> entry = it.next();
+      if (isAboveOrUnder(entry.getKey().baseDN, entryDN))
+      {
+        cachedIDs -= entry.getValue().entryIDs.length;
+        it.remove();
+      }
+    }
+  }
+
+  /** Invalidates all the cached results. */
+  synchronized void clear()
+  {
+    generation++;
+    // results computed meanwhile are not cached: they are older than all the remembered invalidations
+    recentInvalidations.clear();
+    results.clear();
+    cachedIDs = 0;
+  }
+
+  /**
+   * Returns the number of cached results.
+   *
+   * @return the number of cached results
+   */
+  synchronized int size()
+  {
+    return results.size();
+  }
+}
@@ -599,28 +599,35 @@ class VLVIndex extends AbstractTree implements ConfigurationChangeListener<Backe
   static ByteSequence encodeTargetAssertion(final SortOrder sortOrder, final ByteString assertion,
       final SearchOperation searchOperation, final int resultSetSize) throws DirectoryException
   {
-    final SortKey primarySortKey = sortOrder.getSortKeys()[0];
     try
     {
-      /*
-       * Over-allocate the buffer for the primary key since it will be larger than the unnormalized
-       * value. For example it will definitely include a trailing separator byte, but may also
-       * include some escaped bytes as well. 10 extra bytes should accommodate most inputs.
-       */
-      final ByteStringBuilder encodedPrimaryKey = new ByteStringBuilder(assertion.length() + 10);
-      final MatchingRule matchingRule = primarySortKey.getEffectiveOrderingRule();
-      final ByteString normalizedAttributeValue = matchingRule.normalizeAttributeValue(assertion);
-      encodeVLVKeyValue(normalizedAttributeValue, encodedPrimaryKey, primarySortKey.ascending());
-      return encodedPrimaryKey;
+      return encodeTargetAssertion(sortOrder, assertion);
     }
     catch (final DecodeException e)
     {
       searchOperation.addResponseControl(new VLVResponseControl(0, resultSetSize, LDAPResultCode.OFFSET_RANGE_ERROR));
-      final String attributeName = primarySortKey.getAttributeType().getNameOrOID();
+      final String attributeName = sortOrder.getSortKeys()[0].getAttributeType().getNameOrOID();
       throw new DirectoryException(ResultCode.VIRTUAL_LIST_VIEW_ERROR, ERR_VLV_BAD_ASSERTION.get(attributeName));
     }
   }
 
+  /** Normalize the assertion using the primary key's ordering matching rule, without reporting errors. */
+  static ByteSequence encodeTargetAssertion(final SortOrder sortOrder, final ByteString assertion)
+      throws DecodeException
+  {
+    final SortKey primarySortKey = sortOrder.getSortKeys()[0];
+    /*
+     * Over-allocate the buffer for the primary key since it will be larger than the unnormalized
+     * value. For example it will definitely include a trailing separator byte, but may also
+     * include some escaped bytes as well. 10 extra bytes should accommodate most inputs.
+     */
+    final ByteStringBuilder encodedPrimaryKey = new ByteStringBuilder(assertion.length() + 10);
+    final MatchingRule matchingRule = primarySortKey.getEffectiveOrderingRule();
+    final ByteString normalizedAttributeValue = matchingRule.normalizeAttributeValue(assertion);
+    encodeVLVKeyValue(normalizedAttributeValue, encodedPrimaryKey, primarySortKey.ascending());
+    return encodedPrimaryKey;
+  }
+
   private EntryIDSet evaluateVLVRequestByOffset(final ReadableTransaction txn, final SearchOperation searchOperation,
       final VLVRequestControl vlvRequest, final StringBuilder debugBuilder) throws DirectoryException
   {
@@ -123,6 +123,8 @@ public class CoreConfigManager
 
     // Apply the configuration to the server.
     applyGlobalConfiguration(globalConfig, serverContext);
+    // The configuration changes are applied to the same pool: register it once.
+    registerMonitorProvider(getPasswordVerificationPool().getMonitorProvider());
   }
 
 
@@ -162,6 +164,8 @@ public class CoreConfigManager
     setMaxAllowedConnections(globalConfig.getMaxAllowedClientConnections());
     setMaxPersistentSearchLimit(globalConfig.getMaxPsearches());
     setMaxInternalBufferSize((int) globalConfig.getMaxInternalBufferSize());
+    getPasswordVerificationPool().configure(globalConfig.getPasswordVerificationThreads(),
+        globalConfig.getPasswordVerificationQueueSize(), globalConfig.getPasswordVerificationCacheDuration());
 
     // For tools, common audit may not be available
     CommonAudit commonAudit = serverContext.getCommonAudit();
@@ -285,6 +285,8 @@ public final class DirectoryServer
   private AttributeType objectClassAttributeType;
   /** The authenticated users manager for the server. */
   private AuthenticatedUsers authenticatedUsers;
+  /** The cache of the password policy states of the users binding to the server. */
+  private PasswordPolicyStateCache passwordPolicyStateCache;
   /** The configuration manager that will handle the server backends. */
   private BackendConfigManager backendConfigManager;
 
@@ -556,6 +558,9 @@ public final class DirectoryServer
   /** The maximum number of concurrent persistent searches. */
   private int maxPSearches;
 
+  /** The pool verifying the passwords provided in simple binds. */
+  private final PasswordVerificationPool passwordVerificationPool = new PasswordVerificationPool();
+
   /** Whether to use collect operation processing times in nanosecond resolution. */
   private boolean useNanoTime;
 
@@ -1437,6 +1442,9 @@ public final class DirectoryServer
       monitorConfigManager.initializeMonitorProviders();
 
       initializeAuthenticationPolicyComponents();
+      // After the password policy subentries listener, so that the cached
+      // policies are discarded once the new subentry policies are registered
+      initializePasswordPolicyStateCache();
 
       pluginConfigManager.initializeUserPlugins(null);
 
@@ -1630,6 +1638,18 @@ public final class DirectoryServer
     return directoryServer.authenticatedUsers;
   }
 
+  /**
+   * Retrieves the cache of the password policy states of the users binding to
+   * the Directory Server.
+   *
+   * @return  The cache of the password policy states, or {@code null} if the
+   *          Directory Server is not running.
+   */
+  public static PasswordPolicyStateCache getPasswordPolicyStateCache()
+  {
+    return directoryServer.passwordPolicyStateCache;
+  }
+
   /**
    * Initializes the crypto manager for the Directory Server.
    *
@@ -2140,6 +2160,27 @@ public final class DirectoryServer
     }
   }
 
+  /**
+   * Initializes the cache of the password policy states of the users binding
+   * to the server. The subentry manager and the authentication policies must
+   * have been initialized.
+   *
+   * @throws InitializationException If a problem occurs while
+   *                                 initializing the cache.
+   */
+  public void initializePasswordPolicyStateCache()
+          throws InitializationException
+  {
+    try
+    {
+      passwordPolicyStateCache = new PasswordPolicyStateCache();
+    }
+    catch (DirectoryException de)
+    {
+      throw new InitializationException(de.getMessageObject());
+    }
+  }
+
   /**
    * Initializes the set of authentication policy components for use by the
    * Directory Server.
@@ -6186,6 +6227,8 @@ public final class DirectoryServer
       directoryServer.workQueue.finalizeWorkQueue(reason);
       directoryServer.workQueue.waitUntilIdle(ServerShutdownMonitor.WAIT_TIME);
     }
+    directoryServer.passwordVerificationPool.shutdown();
+    deregisterMonitorProvider(directoryServer.passwordVerificationPool.getMonitorProvider());
 
     // shutdown replication
     for (SynchronizationProvider provider :
@@ -6810,6 +6853,16 @@ public final class DirectoryServer
         || directoryServer.activePSearches.get() < directoryServer.maxPSearches;
   }
 
+  /**
+   * Retrieves the pool verifying the passwords provided in simple binds.
+   *
+   * @return  The pool verifying the passwords provided in simple binds.
+   */
+  public static PasswordVerificationPool getPasswordVerificationPool()
+  {
+    return directoryServer.passwordVerificationPool;
+  }
+
   /**
    * Retrieves the default maximum length of time in seconds that should be
    * allowed when processing a search.
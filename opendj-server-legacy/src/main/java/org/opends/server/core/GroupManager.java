@@ -34,9 +34,12 @@ import static org.opends.server.util.ServerConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,7 +53,9 @@ import org.forgerock.opendj.config.server.ConfigChangeResult;
 import org.forgerock.opendj.config.server.ConfigException;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
+import org.forgerock.util.Function;
 import org.forgerock.util.Utils;
+import org.forgerock.util.promise.NeverThrowsException;
 import org.opends.server.admin.ClassPropertyDefinition;
 import org.opends.server.admin.server.ConfigurationAddListener;
 import org.opends.server.admin.server.ConfigurationChangeListener;
@@ -61,12 +66,14 @@ import org.opends.server.admin.std.server.GroupImplementationCfg;
 import org.opends.server.admin.std.server.RootCfg;
 import org.opends.server.api.Backend;
 import org.opends.server.api.BackendInitializationListener;
+import org.opends.server.api.ConcurrentDITCacheMap;
 import org.opends.server.api.DITCacheMap;
 import org.opends.server.api.Group;
 import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
 import org.opends.server.api.plugin.PluginResult;
 import org.opends.server.api.plugin.PluginResult.PostOperation;
 import org.opends.server.api.plugin.PluginType;
+import org.opends.server.extensions.DynamicGroup;
 import org.opends.server.protocols.internal.InternalClientConnection;
 import org.opends.server.protocols.internal.InternalSearchOperation;
 import org.opends.server.protocols.internal.SearchRequest;
@@ -123,9 +130,14 @@ public class GroupManager extends InternalDirectoryServerPlugin
 
   /**
    * A mapping between the DNs of all group entries and the corresponding group
-   * instances.
+   * instances. It can be read without holding the lock, but it must only be
+   * modified while holding the write lock, to keep it consistent with the
+   * membership index.
    */
-  private DITCacheMap<Group<?>> groupInstances;
+  private final ConcurrentDITCacheMap<Group<?>> groupInstances = new ConcurrentDITCacheMap<>();
+
+  /** Reverse membership index of the group instances. */
+  private final GroupMembershipIndex membershipIndex = new GroupMembershipIndex();
 
   /** Lock to protect internal data structures. */
   private final ReentrantReadWriteLock lock;
@@ -156,7 +168,6 @@ public class GroupManager extends InternalDirectoryServerPlugin
     this.serverContext = serverContext;
 
     groupImplementations = new ConcurrentHashMap<>();
-    groupInstances = new DITCacheMap<>();
 
     lock = new ReentrantReadWriteLock();
 
@@ -302,28 +313,48 @@ public class GroupManager extends InternalDirectoryServerPlugin
     Group<?> group = groupImplementations.remove(configuration.dn());
     if (group != null)
     {
-      lock.writeLock().lock();
-      try
+      deregisterGroupInstances(group);
+      group.finalizeGroupImplementation();
+    }
+
+    return ccr;
+  }
+
+  /**
+   * Deregisters all the group instances of the provided group implementation.
+   *
+   * @param groupImplementation
+   *          the group implementation whose instances must be deregistered
+   */
+  private void deregisterGroupInstances(final Group<?> groupImplementation)
+  {
+    final String className = groupImplementation.getClass().getName();
+    lock.writeLock().lock();
+    try
+    {
+      groupInstances.update(new Function<DITCacheMap<Group<?>>, Void, NeverThrowsException>()
       {
-        Iterator<Group<?>> iterator = groupInstances.values().iterator();
-        while (iterator.hasNext())
+        @Override
+        public Void apply(DITCacheMap<Group<?>> instances)
         {
-          Group<?> g = iterator.next();
-          if (g.getClass().getName().equals(group.getClass().getName()))
+          Iterator<Group<?>> iterator = instances.values().iterator();
+          while (iterator.hasNext())
           {
-            iterator.remove();
+            Group<?> g = iterator.next();
+            if (g.getClass().getName().equals(className))
+            {
+              membershipIndex.removeGroup(g);
+              iterator.remove();
+            }
           }
+          return null;
         }
-      }
-      finally
-      {
-        lock.writeLock().unlock();
-      }
-
-      group.finalizeGroupImplementation();
+      });
+    }
+    finally
+    {
+      lock.writeLock().unlock();
     }
-
-    return ccr;
   }
 
 
@@ -369,24 +400,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
         Group<?> group = groupImplementations.remove(configuration.dn());
         if (group != null)
         {
-          lock.writeLock().lock();
-          try
-          {
-            Iterator<Group<?>> iterator = groupInstances.values().iterator();
-            while (iterator.hasNext())
-            {
-              Group<?> g = iterator.next();
-              if (g.getClass().getName().equals(group.getClass().getName()))
-              {
-                iterator.remove();
-              }
-            }
-          }
-          finally
-          {
-            lock.writeLock().unlock();
-          }
-
+          deregisterGroupInstances(group);
           group.finalizeGroupImplementation();
         }
       }
@@ -536,16 +550,8 @@ public class GroupManager extends InternalDirectoryServerPlugin
    */
   public Iterable<Group<?>> getGroupInstances()
   {
-    lock.readLock().lock();
-    try
-    {
-      // Return a copy to protect from structural changes.
-      return new ArrayList<>(groupInstances.values());
-    }
-    finally
-    {
-      lock.readLock().unlock();
-    }
+    // Return a copy to protect from structural changes.
+    return new ArrayList<>(groupInstances.values());
   }
 
 
@@ -561,15 +567,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
    */
   public Group<?> getGroupInstance(DN entryDN)
   {
-    lock.readLock().lock();
-    try
-    {
-      return groupInstances.get(entryDN);
-    }
-    finally
-    {
-      lock.readLock().unlock();
-    }
+    return groupInstances.get(entryDN);
   }
 
 
@@ -584,6 +582,8 @@ public class GroupManager extends InternalDirectoryServerPlugin
   {
     InternalClientConnection conn = getRootConnection();
 
+    // register all the groups of the backend at once, instead of copying the registered groups for each of them
+    final Map<DN, Group<?>> loadedGroups = new LinkedHashMap<>();
     LDAPControl control = new LDAPControl(OID_INTERNAL_GROUP_MEMBERSHIP_UPDATE, false);
     for (DN configEntryDN : groupImplementations.keySet())
     {
@@ -638,28 +638,32 @@ public class GroupManager extends InternalDirectoryServerPlugin
           continue;
         }
 
-        lock.writeLock().lock();
-        try
+        for (SearchResultEntry entry : internalSearch.getSearchEntries())
         {
-          for (SearchResultEntry entry : internalSearch.getSearchEntries())
+          try
           {
-            try
-            {
-              Group<?> groupInstance = groupImplementation.newInstance(null, entry);
-              groupInstances.put(entry.getName(), groupInstance);
-              refreshToken++;
-            }
-            catch (DirectoryException e)
-            {
-              logger.traceException(e);
-              // Nothing specific to do, as it's already logged.
-            }
+            loadedGroups.put(entry.getName(), groupImplementation.newInstance(null, entry));
+          }
+          catch (DirectoryException e)
+          {
+            logger.traceException(e);
+            // Nothing specific to do, as it's already logged.
           }
         }
-        finally
-        {
-          lock.writeLock().unlock();
-        }
+      }
+    }
+
+    if (!loadedGroups.isEmpty())
+    {
+      lock.writeLock().lock();
+      try
+      {
+        putGroupInstances(loadedGroups);
+        refreshToken++;
+      }
+      finally
+      {
+        lock.writeLock().unlock();
       }
     }
   }
@@ -671,21 +675,30 @@ public class GroupManager extends InternalDirectoryServerPlugin
    * instances associated with entries in the provided backend.
    */
   @Override
-  public void performBackendPostFinalizationProcessing(Backend<?> backend)
+  public void performBackendPostFinalizationProcessing(final Backend<?> backend)
   {
     lock.writeLock().lock();
     try
     {
-      Iterator<Map.Entry<DN, Group<?>>> iterator = groupInstances.entrySet().iterator();
-      while (iterator.hasNext())
+      groupInstances.update(new Function<DITCacheMap<Group<?>>, Void, NeverThrowsException>()
       {
-        Map.Entry<DN, Group<?>> mapEntry = iterator.next();
-        DN groupEntryDN = mapEntry.getKey();
-        if (backend.handlesEntry(groupEntryDN))
+        @Override
+        public Void apply(DITCacheMap<Group<?>> instances)
         {
-          iterator.remove();
+          Iterator<Map.Entry<DN, Group<?>>> iterator = instances.entrySet().iterator();
+          while (iterator.hasNext())
+          {
+            Map.Entry<DN, Group<?>> mapEntry = iterator.next();
+            DN groupEntryDN = mapEntry.getKey();
+            if (backend.handlesEntry(groupEntryDN))
+            {
+              membershipIndex.removeGroup(mapEntry.getValue());
+              iterator.remove();
+            }
+          }
+          return null;
         }
-      }
+      });
     }
     finally
     {
@@ -711,6 +724,11 @@ public class GroupManager extends InternalDirectoryServerPlugin
    */
   private void doPostAdd(PluginOperation addOperation, Entry entry)
   {
+    for (DynamicGroup group : getMaterializedDynamicGroups())
+    {
+      group.entryAdded(entry);
+    }
+
     if (hasGroupMembershipUpdateControl(addOperation))
     {
       return;
@@ -722,13 +740,20 @@ public class GroupManager extends InternalDirectoryServerPlugin
 
 
   private static boolean hasGroupMembershipUpdateControl(PluginOperation operation)
+  {
+    return hasRequestControl(operation, OID_INTERNAL_GROUP_MEMBERSHIP_UPDATE);
+  }
+
+
+
+  private static boolean hasRequestControl(PluginOperation operation, String oid)
   {
     List<Control> requestControls = operation.getRequestControls();
     if (requestControls != null)
     {
       for (Control c : requestControls)
       {
-        if (OID_INTERNAL_GROUP_MEMBERSHIP_UPDATE.equals(c.getOID()))
+        if (oid.equals(c.getOID()))
         {
           return true;
         }
@@ -745,6 +770,16 @@ public class GroupManager extends InternalDirectoryServerPlugin
    */
   private void doPostDelete(PluginOperation deleteOperation, Entry entry)
   {
+    final List<DynamicGroup> materializedGroups = getMaterializedDynamicGroups();
+    if (!materializedGroups.isEmpty())
+    {
+      final boolean subtree = hasRequestControl(deleteOperation, OID_SUBTREE_DELETE_CONTROL);
+      for (DynamicGroup group : materializedGroups)
+      {
+        group.entryDeleted(entry, subtree);
+      }
+    }
+
     if (hasGroupMembershipUpdateControl(deleteOperation))
     {
       return;
@@ -753,8 +788,13 @@ public class GroupManager extends InternalDirectoryServerPlugin
     lock.writeLock().lock();
     try
     {
-      if (groupInstances.removeSubtree(entry.getName(), null))
+      final List<Group<?>> removedGroups = new ArrayList<>();
+      if (groupInstances.removeSubtree(entry.getName(), removedGroups))
       {
+        for (Group<?> group : removedGroups)
+        {
+          membershipIndex.removeGroup(group);
+        }
         refreshToken++;
       }
     }
@@ -775,24 +815,21 @@ public class GroupManager extends InternalDirectoryServerPlugin
   private void doPostModify(PluginOperation modifyOperation,
           Entry oldEntry, Entry newEntry)
   {
-    if (hasGroupMembershipUpdateControl(modifyOperation))
+    for (DynamicGroup group : getMaterializedDynamicGroups())
     {
-      return;
+      group.entryModified(oldEntry, newEntry);
     }
 
-    lock.readLock().lock();
-    try
+    if (hasGroupMembershipUpdateControl(modifyOperation))
     {
-      if (!groupInstances.containsKey(oldEntry.getName()))
-      {
-        // If the modified entry is not in any group instance, it's probably
-        // not a group, exit fast
-        return;
-      }
+      return;
     }
-    finally
+
+    if (!groupInstances.containsKey(oldEntry.getName()))
     {
-      lock.readLock().unlock();
+      // If the modified entry is not in any group instance, it's probably
+      // not a group, exit fast
+      return;
     }
 
     lock.writeLock().lock();
@@ -803,7 +840,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
         if (! oldEntry.getName().equals(newEntry.getName()))
         {
           // This should never happen, but check for it anyway.
-          groupInstances.remove(oldEntry.getName());
+          membershipIndex.removeGroup(groupInstances.remove(oldEntry.getName()));
         }
         createAndRegisterGroup(newEntry);
       }
@@ -826,26 +863,46 @@ public class GroupManager extends InternalDirectoryServerPlugin
   private void doPostModifyDN(PluginOperation modifyDNOperation,
           Entry oldEntry, Entry newEntry)
   {
+    for (DynamicGroup group : getMaterializedDynamicGroups())
+    {
+      group.entryRenamed(oldEntry, newEntry);
+    }
+
     if (hasGroupMembershipUpdateControl(modifyDNOperation))
     {
       return;
     }
 
+    final DN oldDN = oldEntry.getName();
+    if (!groupInstances.getSubtree(oldDN).iterator().hasNext())
+    {
+      // no groups were renamed: avoid copying the registered groups
+      return;
+    }
+
     lock.writeLock().lock();
     try
     {
-      Set<Group<?>> groupSet = new HashSet<>();
-      final DN oldDN = oldEntry.getName();
       final DN newDN = newEntry.getName();
-      groupInstances.removeSubtree(oldDN, groupSet);
-      for (Group<?> group : groupSet)
+      final Boolean renamed = groupInstances.update(
+          new Function<DITCacheMap<Group<?>>, Boolean, NeverThrowsException>()
       {
-        final DN groupDN = group.getGroupDN();
-        final DN renamedGroupDN = groupDN.rename(oldDN, newDN);
-        group.setGroupDN(renamedGroupDN);
-        groupInstances.put(renamedGroupDN, group);
-      }
-      if (!groupSet.isEmpty())
+        @Override
+        public Boolean apply(DITCacheMap<Group<?>> instances)
+        {
+          final Set<Group<?>> groupSet = new HashSet<>();
+          instances.removeSubtree(oldDN, groupSet);
+          for (Group<?> group : groupSet)
+          {
+            membershipIndex.removeGroup(group);
+            final DN renamedGroupDN = group.getGroupDN().rename(oldDN, newDN);
+            group.setGroupDN(renamedGroupDN);
+            putGroupInstance(instances, renamedGroupDN, group);
+          }
+          return !groupSet.isEmpty();
+        }
+      });
+      if (renamed)
       {
         refreshToken++;
       }
@@ -987,24 +1044,194 @@ public class GroupManager extends InternalDirectoryServerPlugin
    */
   private void createAndRegisterGroup(Entry entry)
   {
+    Group<?> groupInstance = null;
     for (Group<?> groupImplementation : groupImplementations.values())
     {
       try
       {
         if (groupImplementation.isGroupDefinition(entry))
         {
-          Group<?> groupInstance = groupImplementation.newInstance(null, entry);
+          groupInstance = groupImplementation.newInstance(null, entry);
+        }
+      }
+      catch (DirectoryException e)
+      {
+        logger.traceException(e);
+      }
+    }
 
-          lock.writeLock().lock();
-          try
-          {
-            groupInstances.put(entry.getName(), groupInstance);
-            refreshToken++;
-          }
-          finally
-          {
-            lock.writeLock().unlock();
-          }
+    if (groupInstance != null)
+    {
+      lock.writeLock().lock();
+      try
+      {
+        putGroupInstances(Collections.<DN, Group<?>> singletonMap(entry.getName(), groupInstance));
+        refreshToken++;
+      }
+      finally
+      {
+        lock.writeLock().unlock();
+      }
+    }
+  }
+
+
+
+  /**
+   * Registers the provided group instances with a single copy of the
+   * registered groups, replacing any group instance registered with the same
+   * DN. Must be called while holding the write lock.
+   */
+  private void putGroupInstances(final Map<DN, Group<?>> groups)
+  {
+    groupInstances.update(new Function<DITCacheMap<Group<?>>, Void, NeverThrowsException>()
+    {
+      @Override
+      public Void apply(DITCacheMap<Group<?>> instances)
+      {
+        for (Map.Entry<DN, Group<?>> mapEntry : groups.entrySet())
+        {
+          putGroupInstance(instances, mapEntry.getKey(), mapEntry.getValue());
+        }
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Registers the provided group instance in the provided copy of the
+   * registered groups, replacing any group instance registered with the same
+   * DN.
+   */
+  private void putGroupInstance(DITCacheMap<Group<?>> instances, DN groupDN, Group<?> groupInstance)
+  {
+    final Group<?> previousInstance = instances.put(groupDN, groupInstance);
+    if (previousInstance != null)
+    {
+      membershipIndex.removeGroup(previousInstance);
+    }
+    membershipIndex.addGroup(groupInstance);
+  }
+
+
+
+  /**
+   * Returns the number of copies of the registered group instances made so far.
+   * <p>
+   * For test purpose.
+   *
+   * @return the number of copies of the registered group instances made so far
+   */
+  long getGroupInstancesCopyCount()
+  {
+    return groupInstances.getCopyCount();
+  }
+
+
+
+  /**
+   * Notifies this group manager that a member has been added to a static group
+   * without modifying the group entry through a regular operation.
+   *
+   * @param group
+   *          the group whose member list has been modified
+   * @param memberDN
+   *          the DN of the added member
+   */
+  public void memberAdded(Group<?> group, DN memberDN)
+  {
+    lock.writeLock().lock();
+    try
+    {
+      if (groupInstances.get(group.getGroupDN()) == group)
+      {
+        membershipIndex.addMember(group.getGroupDN(), memberDN);
+      }
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+  }
+
+
+
+  /**
+   * Notifies this group manager that a member has been removed from a static
+   * group without modifying the group entry through a regular operation.
+   *
+   * @param group
+   *          the group whose member list has been modified
+   * @param memberDN
+   *          the DN of the removed member
+   */
+  public void memberRemoved(Group<?> group, DN memberDN)
+  {
+    lock.writeLock().lock();
+    try
+    {
+      if (groupInstances.get(group.getGroupDN()) == group)
+      {
+        membershipIndex.removeMember(group.getGroupDN(), memberDN);
+      }
+    }
+    finally
+    {
+      lock.writeLock().unlock();
+    }
+  }
+
+
+
+  /**
+   * Retrieves the registered dynamic groups whose members are kept in memory,
+   * which must be notified of the changes made to the entries.
+   *
+   * @return the registered dynamic groups whose members are kept in memory
+   */
+  private List<DynamicGroup> getMaterializedDynamicGroups()
+  {
+    // an immutable snapshot: no need to lock nor copy on every write operation
+    return membershipIndex.getMaterializedDynamicGroups();
+  }
+
+
+
+  /**
+   * Retrieves the DNs of all the groups the provided entry is a member of,
+   * either directly or through nested groups and virtual static groups.
+   * <p>
+   * Static and virtual static groups are looked up in a reverse membership
+   * index, so only the groups that cannot be indexed, like dynamic groups,
+   * are evaluated against the entry.
+   *
+   * @param userEntry
+   *          the entry for which to retrieve the groups
+   * @return the DNs of all the groups the provided entry is a member of
+   */
+  public Set<DN> getGroupDNsOfMember(Entry userEntry)
+  {
+    final Set<DN> groupDNs = new LinkedHashSet<>();
+    final List<Group<?>> unindexedGroups;
+    lock.readLock().lock();
+    try
+    {
+      membershipIndex.addGroupDNsContaining(userEntry.getName(), groupDNs);
+      unindexedGroups = membershipIndex.getUnindexedGroups();
+    }
+    finally
+    {
+      lock.readLock().unlock();
+    }
+
+    final List<DN> matchingGroupDNs = new ArrayList<>();
+    for (Group<?> group : unindexedGroups)
+    {
+      try
+      {
+        if (!groupDNs.contains(group.getGroupDN()) && group.isMember(userEntry))
+        {
+          matchingGroupDNs.add(group.getGroupDN());
         }
       }
       catch (DirectoryException e)
@@ -1012,6 +1239,60 @@ public class GroupManager extends InternalDirectoryServerPlugin
         logger.traceException(e);
       }
     }
+    if (!matchingGroupDNs.isEmpty())
+    {
+      lock.readLock().lock();
+      try
+      {
+        for (DN groupDN : matchingGroupDNs)
+        {
+          if (groupDNs.add(groupDN))
+          {
+            // the groups containing this group also contain the user
+            membershipIndex.addGroupDNsContaining(groupDN, groupDNs);
+          }
+        }
+      }
+      finally
+      {
+        lock.readLock().unlock();
+      }
+    }
+    return groupDNs;
+  }
+
+  /**
+   * Returns a version number which changes each time a static or virtual
+   * static group is registered or deregistered, or a member is added to or
+   * removed from a static group. Memberships computed for a given version
+   * remain valid as long as this version does not change, unless
+   * {@link #hasUnindexedGroups()} returns true.
+   *
+   * @return the current membership version
+   */
+  public long getMembershipVersion()
+  {
+    return membershipIndex.getVersion();
+  }
+
+  /**
+   * Indicates whether some registered groups, like dynamic groups, have
+   * members which can change without changing the
+   * {@link #getMembershipVersion() membership version}.
+   *
+   * @return true if some registered groups cannot be indexed
+   */
+  public boolean hasUnindexedGroups()
+  {
+    lock.readLock().lock();
+    try
+    {
+      return membershipIndex.hasUnindexedGroups();
+    }
+    finally
+    {
+      lock.readLock().unlock();
+    }
   }
 
 
@@ -1027,6 +1308,7 @@ public class GroupManager extends InternalDirectoryServerPlugin
     try
     {
       groupInstances.clear();
+      membershipIndex.clear();
     }
     finally
     {
@@ -0,0 +1,316 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.opendj.adapter.server3x.Converters;
+import org.forgerock.opendj.ldap.DN.CompactDn;
+import org.opends.server.api.Group;
+import org.opends.server.extensions.DynamicGroup;
+import org.opends.server.extensions.StaticGroup;
+import org.opends.server.extensions.VirtualStaticGroup;
+import org.opends.server.types.DN;
+
+/**
+ * A reverse membership index, mapping member DNs to the groups containing
+ * them. It allows to find all the groups of a user without asking each group
+ * whether it contains the user.
+ * <p>
+ * Static groups are indexed by the DNs of their direct members, which include
+ * their nested groups. Virtual static groups are indexed by the DN of their
+ * target group. Other groups (e.g. dynamic groups) cannot be indexed: their
+ * members must be evaluated against each of them.
+ * <p>
+ * This class is not thread safe: it is guarded by the lock of the
+ * {@link GroupManager}.
+ */
+final class GroupMembershipIndex
+{
+  /** Maps the DNs of the members of static groups to the DNs of these groups. */
+  private final Map<CompactDn, Set<DN>> memberToGroupDNs = new HashMap<>();
+  /** Maps the DNs of target groups to the DNs of the virtual static groups targeting them. */
+  private final Map<DN, Set<DN>> targetToVirtualGroupDNs = new HashMap<>();
+  /** The groups whose members cannot be indexed, by group DN. */
+  private final Map<DN, Group<?>> unindexedGroups = new LinkedHashMap<>();
+  /**
+   * The unindexed dynamic groups whose members are kept in memory, as an
+   * immutable list replaced on each change. It can be read without holding the
+   * lock of the {@link GroupManager}.
+   */
+  private volatile List<DynamicGroup> materializedDynamicGroups = Collections.emptyList();
+  /**
+   * Incremented on each change to this index. It can be read without holding
+   * the lock of the {@link GroupManager}.
+   */
+  private final AtomicLong version = new AtomicLong();
+
+  /**
+   * Indexes the provided group.
+   *
+   * @param group
+   *          the group to index
+   */
+  void addGroup(Group<?> group)
+  {
+    version.incrementAndGet();
+    final DN groupDN = group.getGroupDN();
+    if (group instanceof StaticGroup)
+    {
+      for (CompactDn memberDN : ((StaticGroup) group).getDirectMemberDNs())
+      {
+        add(memberToGroupDNs, memberDN, groupDN);
+      }
+    }
+    else if (group instanceof VirtualStaticGroup)
+    {
+      add(targetToVirtualGroupDNs, ((VirtualStaticGroup) group).getTargetGroupDN(), groupDN);
+    }
+    else
+    {
+      unindexedGroups.put(groupDN, group);
+      updateMaterializedDynamicGroups();
+    }
+  }
+
+  /**
+   * Removes the provided group from this index.
+   *
+   * @param group
+   *          the group to remove, which must have the same DN and members as
+   *          when it was indexed
+   */
+  void removeGroup(Group<?> group)
+  {
+    version.incrementAndGet();
+    final DN groupDN = group.getGroupDN();
+    if (group instanceof StaticGroup)
+    {
+      for (CompactDn memberDN : ((StaticGroup) group).getDirectMemberDNs())
+      {
+        remove(memberToGroupDNs, memberDN, groupDN);
+      }
+    }
+    else if (group instanceof VirtualStaticGroup)
+    {
+      remove(targetToVirtualGroupDNs, ((VirtualStaticGroup) group).getTargetGroupDN(), groupDN);
+    }
+    else if (unindexedGroups.remove(groupDN) != null)
+    {
+      updateMaterializedDynamicGroups();
+    }
+  }
+
+  /**
+   * Records that a member has been added to an indexed static group.
+   *
+   * @param groupDN
+   *          the DN of the static group
+   * @param memberDN
+   *          the DN of the added member
+   */
+  void addMember(DN groupDN, DN memberDN)
+  {
+    version.incrementAndGet();
+    add(memberToGroupDNs, toCompactDn(memberDN), groupDN);
+  }
+
+  /**
+   * Records that a member has been removed from an indexed static group.
+   *
+   * @param groupDN
+   *          the DN of the static group
+   * @param memberDN
+   *          the DN of the removed member
+   */
+  void removeMember(DN groupDN, DN memberDN)
+  {
+    version.incrementAndGet();
+    remove(memberToGroupDNs, toCompactDn(memberDN), groupDN);
+  }
+
+  /** Removes all the groups from this index. */
+  void clear()
+  {
+    version.incrementAndGet();
+    memberToGroupDNs.clear();
+    targetToVirtualGroupDNs.clear();
+    unindexedGroups.clear();
+    materializedDynamicGroups = Collections.emptyList();
+  }
+
+  private void updateMaterializedDynamicGroups()
+  {
+    final List<DynamicGroup> groups = new ArrayList<>();
+    for (Group<?> group : unindexedGroups.values())
+    {
+      if (group instanceof DynamicGroup && ((DynamicGroup) group).isMaterialized())
+      {
+        groups.add((DynamicGroup) group);
+      }
+    }
+    materializedDynamicGroups = groups.isEmpty()
+        ? Collections.<DynamicGroup> emptyList() : Collections.unmodifiableList(groups);
+  }
+
+  /**
+   * Returns the version of this index, which changes each time a group or a
+   * member is added to or removed from this index.
+   *
+   * @return the version of this index
+   */
+  long getVersion()
+  {
+    return version.get();
+  }
+
+  /**
+   * Indicates whether some groups have members that cannot be indexed.
+   *
+   * @return true if some groups have members that cannot be indexed
+   */
+  boolean hasUnindexedGroups()
+  {
+    return !unindexedGroups.isEmpty();
+  }
+
+  /**
+   * Returns the groups whose members cannot be indexed.
+   *
+   * @return a copy of the groups whose members cannot be indexed
+   */
+  List<Group<?>> getUnindexedGroups()
+  {
+    return new ArrayList<>(unindexedGroups.values());
+  }
+
+  /**
+   * Returns the dynamic groups whose members are kept in memory. This method
+   * does not need the lock of the {@link GroupManager}.
+   *
+   * @return an immutable list of the dynamic groups whose members are kept in
+   *         memory
+   */
+  List<DynamicGroup> getMaterializedDynamicGroups()
+  {
+    return materializedDynamicGroups;
+  }
+
+  /**
+   * Adds to the provided set the DNs of the indexed groups containing the
+   * provided member, either directly or through nested groups and virtual
+   * static groups.
+   *
+   * @param memberDN
+   *          the DN of the member
+   * @param groupDNs
+   *          the set to which the group DNs are added. Groups already present
+   *          in this set are not examined again.
+   */
+  void addGroupDNsContaining(DN memberDN, Set<DN> groupDNs)
+  {
+    final Deque<DN> toExamine = new ArrayDeque<>();
+    toExamine.add(memberDN);
+    while (!toExamine.isEmpty())
+    {
+      final DN dn = toExamine.poll();
+      addNewGroupDNs(memberToGroupDNs.get(toCompactDn(dn)), groupDNs, toExamine);
+      addNewGroupDNs(targetToVirtualGroupDNs.get(dn), groupDNs, toExamine);
+    }
+  }
+
+  private void addNewGroupDNs(Set<DN> containingGroupDNs, Set<DN> groupDNs, Deque<DN> toExamine)
+  {
+    if (containingGroupDNs != null)
+    {
+      for (DN groupDN : containingGroupDNs)
+      {
+        if (groupDNs.add(groupDN))
+        {
+          toExamine.add(groupDN);
+        }
+      }
+    }
+  }
+
+  private static <K> void add(Map<K, Set<DN>> map, K key, DN groupDN)
+  {
+    final Set<DN> groupDNs = map.get(key);
+    if (groupDNs == null)
+    {
+      // most members belong to few groups: save memory for the common case
+      map.put(key, Collections.singleton(groupDN));
+    }
+    else if (groupDNs.size() == 1)
+    {
+      if (!groupDNs.contains(groupDN))
+      {
+        final Set<DN> newGroupDNs = new LinkedHashSet<>(groupDNs);
+        newGroupDNs.add(groupDN);
+        map.put(key, newGroupDNs);
+      }
+    }
+    else
+    {
+      groupDNs.add(groupDN);
+    }
+  }
+
+  private static <K> void remove(Map<K, Set<DN>> map, K key, DN groupDN)
+  {
+    final Set<DN> groupDNs = map.get(key);
+    if (groupDNs == null)
+    {
+      return;
+    }
+    if (groupDNs.size() == 1)
+    {
+      if (groupDNs.contains(groupDN))
+      {
+        map.remove(key);
+      }
+    }
+    else
+    {
+      groupDNs.remove(groupDN);
+    }
+  }
+
+  private static CompactDn toCompactDn(DN dn)
+  {
+    return Converters.from(dn).compact();
+  }
+}
@@ -47,6 +47,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.LocalizableMessageBuilder;
@@ -225,6 +226,12 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
   private List<Long> getGeneralizedTimes(AttributeType attributeType)
           throws DirectoryException
   {
+    final List<Long> cachedTimeValues = getCachedGeneralizedTimes(attributeType);
+    if (cachedTimeValues != null)
+    {
+      return cachedTimeValues;
+    }
+
     ArrayList<Long> timeValues = new ArrayList<>();
 
     List<Attribute> attrList = userEntry.getAttribute(attributeType);
@@ -351,7 +358,40 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
 
   private long getGeneralizedTime0(Entry userEntry, String attrName) throws DirectoryException
   {
-    return getGeneralizedTime(userEntry, DirectoryServer.getAttributeTypeOrDefault(attrName));
+    return getFirstGeneralizedTime(DirectoryServer.getAttributeTypeOrDefault(attrName));
+  }
+
+  /**
+   * Retrieves the first value of the specified attribute from the user's entry in generalized time format.
+   *
+   * @param  attributeType  The attribute type whose value should be parsed as a generalized time value.
+   *
+   * @return  The requested time, or -1 if it could not be determined.
+   *
+   * @throws  DirectoryException  If a problem occurs while attempting to decode the value as a generalized time.
+   */
+  private long getFirstGeneralizedTime(AttributeType attributeType) throws DirectoryException
+  {
+    final List<Long> cachedTimeValues = getCachedGeneralizedTimes(attributeType);
+    if (cachedTimeValues != null)
+    {
+      return !cachedTimeValues.isEmpty() ? cachedTimeValues.get(0) : -1;
+    }
+    return getGeneralizedTime(userEntry, attributeType);
+  }
+
+  /**
+   * Retrieves the values of the specified attribute from the user's entry, as parsed by the password policy state
+   * cache when binding with the same account.
+   *
+   * @param  attributeType  The attribute type whose values should be parsed as generalized time values.
+   *
+   * @return  A new list of the generalized time values, or {@code null} if they are not cached or cannot be parsed.
+   */
+  private List<Long> getCachedGeneralizedTimes(AttributeType attributeType)
+  {
+    final PasswordPolicyStateCache cache = DirectoryServer.getPasswordPolicyStateCache();
+    return cache != null ? cache.getGeneralizedTimes(userEntry, attributeType) : null;
   }
 
   /**
@@ -831,7 +871,7 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
         OP_ATTR_PWPOLICY_LOCKED_TIME_LC, OP_ATTR_PWPOLICY_LOCKED_TIME);
     try
     {
-      failureLockedTime = getGeneralizedTime(userEntry, type);
+      failureLockedTime = getFirstGeneralizedTime(type);
     }
     catch (Exception e)
     {
@@ -2177,6 +2217,39 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
 
   @Override
   public boolean passwordMatches(ByteString password)
+  {
+    try
+    {
+      return passwordMatches(password, null);
+    }
+    catch (DirectoryException e)
+    {
+      // Only thrown by the password verification pool, which is not used
+      logger.traceException(e);
+      return false;
+    }
+  }
+
+  /**
+   * Indicates whether the password provided in a simple bind matches any of
+   * the user's passwords. The password is verified by the password
+   * verification pool of the server, which bounds the number of threads
+   * hashing passwords concurrently and may cache the successful verifications.
+   *
+   * @param  password  The password provided in the simple bind.
+   *
+   * @return  {@code true} if the provided password matches any of the user's
+   *          passwords, or {@code false} if not.
+   *
+   * @throws  DirectoryException  If too many password verifications are
+   *                              already in progress.
+   */
+  public boolean bindPasswordMatches(ByteString password) throws DirectoryException
+  {
+    return passwordMatches(password, DirectoryServer.getPasswordVerificationPool());
+  }
+
+  private boolean passwordMatches(ByteString password, PasswordVerificationPool pool) throws DirectoryException
   {
     List<Attribute> attrList = userEntry.getAttribute(passwordPolicy.getPasswordAttribute());
     if (attrList == null || attrList.isEmpty())
@@ -2210,7 +2283,11 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
             continue;
           }
 
-          if (passwordMatches(password, pwComponents, scheme))
+          final boolean matches = pool != null
+              ? pool.passwordMatches(userEntry.getName(), password, v, schemeName,
+                    newVerification(password, pwComponents, scheme))
+              : passwordMatches(password, pwComponents, scheme);
+          if (matches)
           {
             if (logger.isTraceEnabled())
             {
@@ -2221,6 +2298,16 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
             return true;
           }
         }
+        catch (DirectoryException e)
+        {
+          if (e.getResultCode() == ResultCode.BUSY)
+          {
+            // Too many verifications in progress: reject the bind.
+            throw e;
+          }
+          logger.traceException(e, "An error occurred while attempting to process a password value for user %s",
+              userDNString);
+        }
         catch (Exception e)
         {
           logger.traceException(e, "An error occurred while attempting to process a password value for user %s",
@@ -2472,6 +2559,19 @@ public final class PasswordPolicyState extends AuthenticationPolicyState
         : DirectoryServer.getPasswordStorageScheme(schemeName);
   }
 
+  private Callable<Boolean> newVerification(final ByteString password, final String[] pwComponents,
+      final PasswordStorageScheme<?> scheme)
+  {
+    return new Callable<Boolean>()
+    {
+      @Override
+      public Boolean call()
+      {
+        return passwordMatches(password, pwComponents, scheme);
+      }
+    };
+  }
+
   private boolean passwordMatches(ByteString password, String[] pwComponents, PasswordStorageScheme<?> scheme)
   {
     return passwordPolicy.isAuthPasswordSyntax()
@@ -0,0 +1,517 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import static org.opends.server.api.plugin.PluginType.*;
+import static org.opends.server.config.ConfigConstants.*;
+import static org.opends.server.util.ServerConstants.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ConditionResult;
+import org.forgerock.opendj.ldap.GeneralizedTime;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.api.AuthenticationPolicy;
+import org.opends.server.api.Backend;
+import org.opends.server.api.SubentryChangeListener;
+import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
+import org.opends.server.api.plugin.PluginResult.PostOperation;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.Control;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.ObjectClass;
+import org.opends.server.types.operation.PluginOperation;
+import org.opends.server.types.operation.PostOperationAddOperation;
+import org.opends.server.types.operation.PostOperationDeleteOperation;
+import org.opends.server.types.operation.PostOperationModifyDNOperation;
+import org.opends.server.types.operation.PostOperationModifyOperation;
+import org.opends.server.types.operation.PostSynchronizationAddOperation;
+import org.opends.server.types.operation.PostSynchronizationDeleteOperation;
+import org.opends.server.types.operation.PostSynchronizationModifyDNOperation;
+import org.opends.server.types.operation.PostSynchronizationModifyOperation;
+
+/**
+ * This class caches, for the users binding to the server, the authentication
+ * policy applicable to their entry and the parsed values of their password
+ * policy state attributes, so that repeated binds with the same accounts do
+ * not resolve the policy and parse the generalized time values every time.
+ * <BR><BR>
+ * The cached policy of a user is forgotten whenever the user entry is added,
+ * modified, renamed or deleted, locally or through synchronization, and the
+ * whole cache is cleared whenever a subentry changes. The parsed time values
+ * are only reused while the attribute values in the user entry are unchanged.
+ */
+public final class PasswordPolicyStateCache extends InternalDirectoryServerPlugin
+    implements SubentryChangeListener
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The maximum number of users whose state is cached. */
+  static final int MAX_CACHED_USERS = 10000;
+
+  /** Dummy configuration DN. */
+  private static final String CONFIG_DN = "cn=Password Policy State Cache,cn=config";
+
+  /** The cached states, keyed by user DN. */
+  private final ConcurrentMap<DN, UserState> userStates = new ConcurrentHashMap<>();
+  /**
+   * Incremented on every invalidation, so that the policies resolved while the
+   * user entries were changing are not cached.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  /** The cached state of a user. */
+  private static final class UserState
+  {
+    /** The authentication policy of the user. */
+    private final AuthenticationPolicy policy;
+    /** The values of the password policy DN attribute from which the policy was resolved. */
+    private final List<ByteString> policyDNValues;
+    /** The object classes of the entry from which the policy was resolved. */
+    private final Map<ObjectClass, String> objectClasses;
+    /** The parsed generalized time values, keyed by attribute type. */
+    private final ConcurrentMap<AttributeType, ParsedTimes> times = new ConcurrentHashMap<>();
+
+    private UserState(AuthenticationPolicy policy, List<ByteString> policyDNValues,
+        Map<ObjectClass, String> objectClasses)
+    {
+      this.policy = policy;
+      this.policyDNValues = policyDNValues;
+      this.objectClasses = objectClasses;
+    }
+  }
+
+  /** The generalized time values of an attribute, with their parsed times. */
+  private static final class ParsedTimes
+  {
+    private final List<ByteString> values;
+    private final long[] times;
+
+    private ParsedTimes(List<ByteString> values, long[] times)
+    {
+      this.values = values;
+      this.times = times;
+    }
+  }
+
+  /**
+   * Creates a new password policy state cache, and registers it with the
+   * Directory Server and the subentry manager.
+   *
+   * @throws DirectoryException
+   *           If a problem occurs while creating the cache.
+   */
+  public PasswordPolicyStateCache() throws DirectoryException
+  {
+    super(DN.valueOf(CONFIG_DN), EnumSet.of(
+        POST_OPERATION_ADD, POST_OPERATION_DELETE, POST_OPERATION_MODIFY, POST_OPERATION_MODIFY_DN,
+        POST_SYNCHRONIZATION_ADD, POST_SYNCHRONIZATION_DELETE,
+        POST_SYNCHRONIZATION_MODIFY, POST_SYNCHRONIZATION_MODIFY_DN),
+        true);
+
+    DirectoryServer.registerInternalPlugin(this);
+    DirectoryServer.getSubentryManager().registerChangeListener(this);
+  }
+
+  /**
+   * Returns the current generation of this cache, to be passed to
+   * {@link #putPolicy(Entry, AuthenticationPolicy, long)} once the policy has
+   * been resolved.
+   *
+   * @return the current generation of this cache
+   */
+  public long getGeneration()
+  {
+    return generation.get();
+  }
+
+  /**
+   * Returns the cached authentication policy of a user.
+   *
+   * @param userEntry
+   *          the user entry
+   * @return the cached authentication policy of the user, or {@code null} if
+   *         it must be resolved
+   */
+  public AuthenticationPolicy getPolicy(Entry userEntry)
+  {
+    final UserState state = userStates.get(userEntry.getName());
+    if (state == null
+        || !state.policyDNValues.equals(getPolicyDNValues(userEntry))
+        || !state.objectClasses.equals(userEntry.getObjectClasses()))
+    {
+      return null;
+    }
+
+    // the policy may have been removed or reconfigured
+    final AuthenticationPolicy policy = state.policy;
+    if (policy != DirectoryServer.getAuthenticationPolicy(policy.getDN())
+        && policy != DirectoryServer.getDefaultPasswordPolicy())
+    {
+      userStates.remove(userEntry.getName(), state);
+      return null;
+    }
+    return policy;
+  }
+
+  /**
+   * Caches the authentication policy resolved for a user.
+   *
+   * @param userEntry
+   *          the user entry
+   * @param policy
+   *          the authentication policy of the user
+   * @param resolutionGeneration
+   *          the generation returned by {@link #getGeneration()} before the
+   *          policy was resolved
+   */
+  public void putPolicy(Entry userEntry, AuthenticationPolicy policy, long resolutionGeneration)
+  {
+    if (userStates.size() >= MAX_CACHED_USERS)
+    {
+      userStates.clear();
+    }
+    final UserState state = new UserState(policy, getPolicyDNValues(userEntry),
+        Collections.unmodifiableMap(userEntry.getObjectClasses()));
+    userStates.put(userEntry.getName(), state);
+    if (generation.get() != resolutionGeneration)
+    {
+      // the user entry or a subentry may have changed in the meantime
+      userStates.remove(userEntry.getName(), state);
+    }
+  }
+
+  private static List<ByteString> getPolicyDNValues(Entry userEntry)
+  {
+    return getValues(userEntry, DirectoryServer.getAttributeTypeOrDefault(OP_ATTR_PWPOLICY_POLICY_DN));
+  }
+
+  /**
+   * Returns the generalized time values of an attribute of a user entry,
+   * parsed as times in milliseconds.
+   *
+   * @param userEntry
+   *          the user entry
+   * @param attributeType
+   *          the type of the attribute holding generalized time values
+   * @return a new modifiable list of the times held by the attribute, in the
+   *         order of the values, or {@code null} if the user state is not
+   *         cached or if some values cannot be parsed
+   */
+  public List<Long> getGeneralizedTimes(Entry userEntry, AttributeType attributeType)
+  {
+    final UserState state = userStates.get(userEntry.getName());
+    if (state == null)
+    {
+      return null;
+    }
+
+    final List<ByteString> values = getValues(userEntry, attributeType);
+    ParsedTimes parsedTimes = state.times.get(attributeType);
+    if (parsedTimes == null || !parsedTimes.values.equals(values))
+    {
+      final long[] times = parseGeneralizedTimes(values);
+      if (times == null)
+      {
+        return null;
+      }
+      parsedTimes = new ParsedTimes(values, times);
+      state.times.put(attributeType, parsedTimes);
+    }
+
+    final List<Long> results = new ArrayList<>(parsedTimes.times.length);
+    for (long time : parsedTimes.times)
+    {
+      results.add(time);
+    }
+    return results;
+  }
+
+  private static List<ByteString> getValues(Entry entry, AttributeType attributeType)
+  {
+    final List<Attribute> attrList = entry.getAttribute(attributeType);
+    if (attrList == null)
+    {
+      return Collections.emptyList();
+    }
+    final List<ByteString> values = new ArrayList<>();
+    for (Attribute a : attrList)
+    {
+      for (ByteString v : a)
+      {
+        values.add(v);
+      }
+    }
+    return values;
+  }
+
+  private static long[] parseGeneralizedTimes(List<ByteString> values)
+  {
+    final long[] times = new long[values.size()];
+    for (int i = 0; i < times.length; i++)
+    {
+      try
+      {
+        times[i] = GeneralizedTime.valueOf(values.get(i).toString()).getTimeInMillis();
+      }
+      catch (Exception e)
+      {
+        // let the caller report the invalid value
+        logger.traceException(e);
+        return null;
+      }
+    }
+    return times;
+  }
+
+  /**
+   * Returns the number of users whose state is cached.
+   *
+   * @return the number of users whose state is cached
+   */
+  int size()
+  {
+    return userStates.size();
+  }
+
+  /** Forgets the states of all the users. */
+  public void clear()
+  {
+    generation.incrementAndGet();
+    userStates.clear();
+  }
+
+  private void invalidate(DN userDN)
+  {
+    generation.incrementAndGet();
+    userStates.remove(userDN);
+  }
+
+  /**
+   * Forgets the state of a user, and the states of its subordinate users if
+   * the entry had any: scanning all the cached users is only needed then.
+   */
+  private void invalidateSubtree(DN baseDN, boolean hadSubordinates)
+  {
+    generation.incrementAndGet();
+    userStates.remove(baseDN);
+    if (hadSubordinates)
+    {
+      for (Iterator<DN> it = userStates.keySet().iterator(); it.hasNext();)
+      {
+        if (it.next().isDescendantOf(baseDN))
+        {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether a deleted entry had subordinates: they are only deleted
+   * with it by the subtree delete control.
+   */
+  private static boolean isSubtreeDelete(PluginOperation deleteOperation)
+  {
+    final List<Control> requestControls = deleteOperation.getRequestControls();
+    if (requestControls != null)
+    {
+      for (Control control : requestControls)
+      {
+        if (OID_SUBTREE_DELETE_CONTROL.equals(control.getOID()))
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether a renamed entry may have subordinates, which have been
+   * renamed with it.
+   */
+  private static boolean mayHaveSubordinates(Entry renamedEntry)
+  {
+    if (renamedEntry == null)
+    {
+      return true;
+    }
+    final DN entryDN = renamedEntry.getName();
+    final Backend<?> backend = DirectoryServer.getBackend(entryDN);
+    try
+    {
+      return backend == null || backend.hasSubordinates(entryDN) != ConditionResult.FALSE;
+    }
+    catch (DirectoryException e)
+    {
+      logger.traceException(e);
+      return true;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public PostOperation doPostOperation(PostOperationAddOperation addOperation)
+  {
+    if (addOperation.getResultCode() == ResultCode.SUCCESS)
+    {
+      invalidate(addOperation.getEntryDN());
+    }
+    return PostOperation.continueOperationProcessing();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public PostOperation doPostOperation(PostOperationDeleteOperation deleteOperation)
+  {
+    if (deleteOperation.getResultCode() == ResultCode.SUCCESS)
+    {
+      // the subtree delete control removes the subordinate entries too
+      invalidateSubtree(deleteOperation.getEntryDN(), isSubtreeDelete(deleteOperation));
+    }
+    return PostOperation.continueOperationProcessing();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public PostOperation doPostOperation(PostOperationModifyOperation modifyOperation)
+  {
+    if (modifyOperation.getResultCode() == ResultCode.SUCCESS)
+    {
+      invalidate(modifyOperation.getEntryDN());
+    }
+    return PostOperation.continueOperationProcessing();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public PostOperation doPostOperation(PostOperationModifyDNOperation modifyDNOperation)
+  {
+    if (modifyDNOperation.getResultCode() == ResultCode.SUCCESS)
+    {
+      invalidateSubtree(modifyDNOperation.getEntryDN(), mayHaveSubordinates(modifyDNOperation.getUpdatedEntry()));
+    }
+    return PostOperation.continueOperationProcessing();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doPostSynchronization(PostSynchronizationAddOperation addOperation)
+  {
+    invalidate(addOperation.getEntryDN());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doPostSynchronization(PostSynchronizationDeleteOperation deleteOperation)
+  {
+    invalidateSubtree(deleteOperation.getEntryDN(), isSubtreeDelete(deleteOperation));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doPostSynchronization(PostSynchronizationModifyOperation modifyOperation)
+  {
+    invalidate(modifyOperation.getEntryDN());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doPostSynchronization(PostSynchronizationModifyDNOperation modifyDNOperation)
+  {
+    invalidateSubtree(modifyDNOperation.getEntryDN(), mayHaveSubordinates(modifyDNOperation.getUpdatedEntry()));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void checkSubentryAddAcceptable(Entry entry) throws DirectoryException
+  {
+    // Nothing to check.
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void checkSubentryDeleteAcceptable(Entry entry) throws DirectoryException
+  {
+    // Nothing to check.
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void checkSubentryModifyAcceptable(Entry oldEntry, Entry newEntry) throws DirectoryException
+  {
+    // Nothing to check.
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void checkSubentryModifyDNAcceptable(Entry oldEntry, Entry newEntry) throws DirectoryException
+  {
+    // Nothing to check.
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void handleSubentryAdd(Entry entry)
+  {
+    clear();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void handleSubentryDelete(Entry entry)
+  {
+    clear();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void handleSubentryModify(Entry oldEntry, Entry newEntry)
+  {
+    clear();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void handleSubentryModifyDN(Entry oldEntry, Entry newEntry)
+  {
+    clear();
+  }
+}
@@ -0,0 +1,505 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import static org.opends.messages.CoreMessages.*;
+import static org.opends.server.core.DirectoryServer.*;
+import static org.opends.server.util.StaticUtils.*;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteSequence;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.admin.std.server.MonitorProviderCfg;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.MonitorProvider;
+import org.opends.server.api.WorkQueue;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.util.LatencyHistogram;
+
+/**
+ * Verifies the passwords provided in simple binds.
+ * <p>
+ * Password storage schemes such as PBKDF2 or salted SHA-2 crypt are
+ * deliberately expensive. Their hashing is delegated to a bounded pool of
+ * threads, so that a storm of binds cannot use more threads than this pool for
+ * hashing: the worker thread processing a bind waits for the verification of
+ * its password. The verifications in progress, running or queued, are
+ * bounded below the number of worker threads, so that binds waiting for
+ * their verification cannot tie up all the worker threads: binds exceeding
+ * this bound are rejected with a busy result code.
+ * <p>
+ * Successful verifications may also be cached for a short time. The cache only
+ * holds HMAC digests of the user DN, stored password and provided password,
+ * computed with a key randomly generated when the pool is created: changing
+ * the stored password therefore invalidates its cached verifications.
+ */
+public final class PasswordVerificationPool
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The maximum number of cached successful verifications. */
+  static final int MAX_CACHED_VERIFICATIONS = 10000;
+  /** The algorithm of the keyed digests of the cached verifications. */
+  private static final String CACHE_KEY_ALGORITHM = "HmacSHA256";
+
+  /** The pool of threads, null when passwords are verified by the calling thread. */
+  private volatile ThreadPoolExecutor executor;
+  /** The configured maximum number of verifications in progress, null to derive it from the worker threads. */
+  private volatile Integer maxInProgress;
+  /** The number of verifications in progress, running or waiting for a thread. */
+  private final AtomicInteger inProgress = new AtomicInteger();
+  /** The time to live of the cached verifications, 0 when the cache is disabled. */
+  private volatile long cacheDurationMillis;
+  /** The expiration time of the cached verifications, in insertion order. */
+  private final LinkedHashMap<ByteString, Long> cachedVerifications = new LinkedHashMap<>();
+
+  private final SecretKeySpec cacheKey;
+  /** The keyed digest of each thread. */
+  private final ThreadLocal<Mac> mac = new ThreadLocal<>();
+
+  /** The duration of the verifications, per storage scheme. */
+  private final ConcurrentMap<String, LatencyHistogram> verificationTimes = new ConcurrentHashMap<>();
+  /** The time spent by the verifications waiting for an available thread. */
+  private final LatencyHistogram queueTime = new LatencyHistogram();
+  private final AtomicLong rejectedVerifications = new AtomicLong();
+  private final AtomicLong cacheHits = new AtomicLong();
+  private final AtomicLong cacheMisses = new AtomicLong();
+  private final PasswordVerificationMonitorProvider monitorProvider = new PasswordVerificationMonitorProvider();
+
+  /** Creates a new password verification pool, verifying the passwords with the calling thread. */
+  public PasswordVerificationPool()
+  {
+    final byte[] key = new byte[32];
+    new SecureRandom().nextBytes(key);
+    cacheKey = new SecretKeySpec(key, CACHE_KEY_ALGORITHM);
+  }
+
+  /**
+   * Applies the password verification settings of the global configuration.
+   *
+   * @param nbThreads
+   *          the number of threads, {@code null} to let the server decide, 0
+   *          to verify the passwords with the calling thread
+   * @param maxInProgress
+   *          the maximum number of verifications in progress, running or
+   *          waiting for a thread, {@code null} to derive it from the number
+   *          of worker threads
+   * @param cacheDurationMillis
+   *          the time to live of the cached successful verifications, 0 to
+   *          disable the cache
+   */
+  public synchronized void configure(Integer nbThreads, Integer maxInProgress, long cacheDurationMillis)
+  {
+    final int threads = nbThreads != null
+        ? nbThreads
+        : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    if (executor != null && threads != executor.getMaximumPoolSize())
+    {
+      // let the queued verifications run: binds are waiting for them
+      executor.shutdown();
+      executor = null;
+    }
+    if (threads > 0 && executor == null)
+    {
+      // the queue is bounded by the maximum number of verifications in progress
+      final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new DirectoryThread.Factory("Password Verifier"));
+      pool.allowCoreThreadTimeOut(true);
+      executor = pool;
+    }
+
+    this.maxInProgress = maxInProgress;
+    this.cacheDurationMillis = cacheDurationMillis;
+    if (cacheDurationMillis <= 0)
+    {
+      synchronized (cachedVerifications)
+      {
+        cachedVerifications.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns the maximum number of verifications in progress. Unless
+   * configured, it is half the number of worker threads, so that the other
+   * operations can still be processed during a storm of binds.
+   *
+   * @return the maximum number of verifications in progress
+   */
+  int getMaxInProgress()
+  {
+    final Integer configured = maxInProgress;
+    if (configured != null)
+    {
+      return configured;
+    }
+    final WorkQueue<?> workQueue = DirectoryServer.getWorkQueue();
+    final int workerThreads = workQueue != null
+        ? workQueue.getNumWorkerThreads()
+        : Runtime.getRuntime().availableProcessors() * 2;
+    return Math.max(1, workerThreads / 2);
+  }
+
+  /** Stops the threads once the queued verifications are done, and clears the cache. */
+  public synchronized void shutdown()
+  {
+    if (executor != null)
+    {
+      executor.shutdown();
+      executor = null;
+    }
+    synchronized (cachedVerifications)
+    {
+      cachedVerifications.clear();
+    }
+  }
+
+  /**
+   * Returns the monitor provider publishing the password verification metrics.
+   *
+   * @return the monitor provider publishing the password verification metrics
+   */
+  MonitorProvider<MonitorProviderCfg> getMonitorProvider()
+  {
+    return monitorProvider;
+  }
+
+  /**
+   * Verifies a password provided by a user against one of the user's stored
+   * passwords.
+   *
+   * @param userDN
+   *          the DN of the user
+   * @param password
+   *          the password provided by the user
+   * @param storedPassword
+   *          the stored password, including its storage scheme
+   * @param schemeName
+   *          the name of the storage scheme of the stored password
+   * @param verification
+   *          verifies the provided password against the stored password
+   * @return {@code true} if the provided password matches the stored password
+   * @throws DirectoryException
+   *           if too many verifications are already in progress, or if the
+   *           verification unexpectedly failed
+   */
+  public boolean passwordMatches(DN userDN, ByteSequence password, ByteSequence storedPassword,
+      String schemeName, Callable<Boolean> verification) throws DirectoryException
+  {
+    final ByteString cacheEntryKey = cacheDurationMillis > 0
+        ? getCacheEntryKey(userDN, password, storedPassword)
+        : null;
+    if (cacheEntryKey != null)
+    {
+      if (isCached(cacheEntryKey))
+      {
+        cacheHits.incrementAndGet();
+        return true;
+      }
+      cacheMisses.incrementAndGet();
+    }
+
+    if (inProgress.incrementAndGet() > getMaxInProgress())
+    {
+      inProgress.decrementAndGet();
+      rejectedVerifications.incrementAndGet();
+      throw new DirectoryException(ResultCode.BUSY, ERR_PASSWORD_VERIFICATION_BUSY.get());
+    }
+    final boolean matches;
+    try
+    {
+      matches = verify(schemeName, verification);
+    }
+    finally
+    {
+      inProgress.decrementAndGet();
+    }
+    if (matches && cacheEntryKey != null)
+    {
+      cache(cacheEntryKey);
+    }
+    return matches;
+  }
+
+  private boolean verify(final String schemeName, final Callable<Boolean> verification) throws DirectoryException
+  {
+    final long queuedTime = System.nanoTime();
+    final Callable<Boolean> timedVerification = new Callable<Boolean>()
+    {
+      @Override
+      public Boolean call() throws Exception
+      {
+        final long startTime = System.nanoTime();
+        queueTime.record(startTime - queuedTime);
+        try
+        {
+          return verification.call();
+        }
+        finally
+        {
+          getVerificationTime(schemeName).recordSince(startTime);
+        }
+      }
+    };
+
+    final ThreadPoolExecutor pool = executor;
+    if (pool == null)
+    {
+      return call(timedVerification);
+    }
+
+    final Future<Boolean> future;
+    try
+    {
+      future = pool.submit(timedVerification);
+    }
+    catch (RejectedExecutionException e)
+    {
+      // the pool is being reconfigured
+      logger.traceException(e);
+      return call(timedVerification);
+    }
+
+    try
+    {
+      return future.get();
+    }
+    catch (ExecutionException e)
+    {
+      throw verificationFailed(e.getCause());
+    }
+    catch (InterruptedException e)
+    {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw verificationFailed(e);
+    }
+  }
+
+  private static boolean call(Callable<Boolean> verification) throws DirectoryException
+  {
+    try
+    {
+      return verification.call();
+    }
+    catch (Exception e)
+    {
+      throw verificationFailed(e);
+    }
+  }
+
+  private static DirectoryException verificationFailed(Throwable cause)
+  {
+    logger.traceException(cause);
+    return new DirectoryException(getServerErrorResultCode(),
+        ERR_PASSWORD_VERIFICATION_FAILED.get(stackTraceToSingleLineString(cause)), cause);
+  }
+
+  private LatencyHistogram getVerificationTime(String schemeName)
+  {
+    LatencyHistogram histogram = verificationTimes.get(schemeName);
+    if (histogram == null)
+    {
+      final LatencyHistogram newHistogram = new LatencyHistogram();
+      histogram = verificationTimes.putIfAbsent(schemeName, newHistogram);
+      if (histogram == null)
+      {
+        histogram = newHistogram;
+      }
+    }
+    return histogram;
+  }
+
+  /** Returns the keyed digest identifying a successful verification, or null if it cannot be computed. */
+  private ByteString getCacheEntryKey(DN userDN, ByteSequence password, ByteSequence storedPassword)
+  {
+    try
+    {
+      Mac threadMac = mac.get();
+      if (threadMac == null)
+      {
+        threadMac = Mac.getInstance(CACHE_KEY_ALGORITHM);
+        threadMac.init(cacheKey);
+        mac.set(threadMac);
+      }
+      update(threadMac, userDN.toNormalizedByteString());
+      update(threadMac, storedPassword);
+      update(threadMac, password);
+      return ByteString.wrap(threadMac.doFinal());
+    }
+    catch (GeneralSecurityException e)
+    {
+      logger.traceException(e);
+      return null;
+    }
+  }
+
+  /** Updates the digest with the length then the bytes of a value, so that values cannot be confused. */
+  private static void update(Mac mac, ByteSequence value)
+  {
+    final int length = value.length();
+    mac.update((byte) (length >>> 24));
+    mac.update((byte) (length >>> 16));
+    mac.update((byte) (length >>> 8));
+    mac.update((byte) length);
+    mac.update(value.toByteArray());
+  }
+
+  private boolean isCached(ByteString cacheEntryKey)
+  {
+    synchronized (cachedVerifications)
+    {
+      final Long expirationTime = cachedVerifications.get(cacheEntryKey);
+      if (expirationTime == null)
+      {
+        return false;
+      }
+      if (expirationTime <= System.currentTimeMillis())
+      {
+        cachedVerifications.remove(cacheEntryKey);
+        return false;
+      }
+      return true;
+    }
+  }
+
+  private void cache(ByteString cacheEntryKey)
+  {
+    final long now = System.currentTimeMillis();
+    synchronized (cachedVerifications)
+    {
+      cachedVerifications.remove(cacheEntryKey);
+      cachedVerifications.put(cacheEntryKey, now + cacheDurationMillis);
+
+      // verifications are in insertion order: the first ones expire first
+      final Iterator<Long> it = cachedVerifications.values().iterator();
+      while (it.hasNext())
+      {
+        final long expirationTime = it.next();
+        if (cachedVerifications.size() <= MAX_CACHED_VERIFICATIONS && expirationTime > now)
+        {
+          break;
+        }
+        it.remove();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of verifications waiting for an available thread.
+   *
+   * @return the number of verifications waiting for an available thread
+   */
+  int getQueuedVerificationCount()
+  {
+    final ThreadPoolExecutor pool = executor;
+    return pool != null ? pool.getQueue().size() : 0;
+  }
+
+  /**
+   * Returns the number of verifications in progress, running or waiting for
+   * an available thread.
+   *
+   * @return the number of verifications in progress
+   */
+  int getVerificationsInProgressCount()
+  {
+    return inProgress.get();
+  }
+
+  /**
+   * Returns the number of cached successful verifications.
+   *
+   * @return the number of cached successful verifications
+   */
+  int getCachedVerificationCount()
+  {
+    synchronized (cachedVerifications)
+    {
+      return cachedVerifications.size();
+    }
+  }
+
+  /** Publishes the password verification metrics. */
+  private final class PasswordVerificationMonitorProvider extends MonitorProvider<MonitorProviderCfg>
+  {
+    /** {@inheritDoc} */
+    @Override
+    public String getMonitorInstanceName()
+    {
+      return "Password Verification";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Attribute> getMonitorData()
+    {
+      final ThreadPoolExecutor pool = executor;
+      final List<Attribute> attrs = new ArrayList<>();
+      attrs.add(Attributes.create("threads", String.valueOf(pool != null ? pool.getMaximumPoolSize() : 0)));
+      attrs.add(Attributes.create("queued-verifications", String.valueOf(getQueuedVerificationCount())));
+      attrs.add(Attributes.create("verifications-in-progress", String.valueOf(getVerificationsInProgressCount())));
+      attrs.add(Attributes.create("max-verifications-in-progress", String.valueOf(getMaxInProgress())));
+      attrs.add(Attributes.create("rejected-verifications", String.valueOf(rejectedVerifications.get())));
+      attrs.add(Attributes.create("cached-verifications", String.valueOf(getCachedVerificationCount())));
+      attrs.add(Attributes.create("cache-hits", String.valueOf(cacheHits.get())));
+      attrs.add(Attributes.create("cache-misses", String.valueOf(cacheMisses.get())));
+      queueTime.addMonitorData(attrs, "queue-time");
+      for (Map.Entry<String, LatencyHistogram> entry : verificationTimes.entrySet())
+      {
+        entry.getValue().addMonitorData(attrs, toLowerCase(entry.getKey()) + "-verification-time");
+      }
+      return attrs;
+    }
+  }
+}
@@ -486,6 +486,9 @@ public class SearchOperationBasis
       return false;
     }
 
+    // Use the virtual attribute values generated for a batch of entries, if any.
+    entry = VirtualAttributeBatch.withGeneratedValues(this, entry);
+
     // Determine whether the provided entry is a subentry and if so whether it
     // should be returned.
     if (entry.isSubentry() || entry.isLDAPSubentry())
@@ -0,0 +1,355 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.SubEntry;
+import org.opends.server.types.SubtreeSpecification;
+import org.opends.server.types.SubtreeSpecification.Refinement;
+
+/**
+ * An index of the subentries applicable to the children of an entry.
+ * <p>
+ * All the children of an entry share the same ancestors, so the subentries
+ * which may apply to them, and the base DN, depth and exclusion parts of the
+ * subtree specifications of these subentries, only depend on the DN of their
+ * parent. They are compiled once per parent DN and cached: only the parts of
+ * the subtree specifications depending on the entry itself, namely the
+ * exclusions naming the entry and the specification filters, are evaluated
+ * for each entry.
+ * <p>
+ * The compiled parents are read without locking. They are computed while
+ * holding the read lock of the {@link SubentryManager}, and discarded by
+ * {@link #invalidate()} which must be called while holding its write lock.
+ */
+final class SubentryApplicabilityIndex
+{
+  /** The default maximum number of compiled parents. */
+  static final int DEFAULT_MAX_SIZE = 10000;
+
+  /** A subentry which applies to the children of a parent, except the excluded ones. */
+  private static final class Candidate
+  {
+    private final SubEntry subEntry;
+    /** The DNs of the children excluded by a chop before exclusion. */
+    private final Set<DN> excludedChildDNs;
+    /** The specification filter, or null if there is none. */
+    private final Refinement refinements;
+
+    private Candidate(SubEntry subEntry, Set<DN> excludedChildDNs)
+    {
+      this.subEntry = subEntry;
+      this.excludedChildDNs = excludedChildDNs;
+      this.refinements = subEntry.getSubTreeSpecification().getRefinements();
+    }
+  }
+
+  /** The subentries which may apply to the children of a parent. */
+  private static final class CompiledParent
+  {
+    /** The subentries whose base is the parent or one of its ancestors, nearest first. */
+    private final List<Candidate> inherited = new ArrayList<>();
+    /** The subentries whose base is a child of the parent, by base DN. */
+    private final Map<DN, List<SubEntry>> basedOnChildren = new HashMap<>();
+  }
+
+  /** The subentries indexed by the base DN of their subtree specification. */
+  private final Map<DN, List<SubEntry>> baseDN2SubEntries;
+  /** The read lock guarding {@link #baseDN2SubEntries}. */
+  private final Lock readLock;
+  private final int maxSize;
+
+  /** The compiled parents, replaced each time the subentries change. */
+  private volatile Map<DN, CompiledParent> compiledParents = new ConcurrentHashMap<>();
+
+  private final AtomicLong lookups = new AtomicLong();
+  private final AtomicLong compilations = new AtomicLong();
+  private final AtomicLong evaluations = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  /**
+   * Creates a new subentry applicability index.
+   *
+   * @param baseDN2SubEntries
+   *          the subentries indexed by the base DN of their subtree
+   *          specification
+   * @param readLock
+   *          the read lock guarding the provided map
+   * @param maxSize
+   *          the maximum number of compiled parents
+   */
+  SubentryApplicabilityIndex(Map<DN, List<SubEntry>> baseDN2SubEntries, Lock readLock, int maxSize)
+  {
+    this.baseDN2SubEntries = baseDN2SubEntries;
+    this.readLock = readLock;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Returns the subentries applicable to the provided entry.
+   *
+   * @param entry
+   *          the entry
+   * @return the subentries applicable to the provided entry
+   */
+  List<SubEntry> getSubentries(Entry entry)
+  {
+    return getSubentries(entry.getName(), entry);
+  }
+
+  /**
+   * Returns the subentries applicable to the provided DN, ignoring the
+   * specification filters.
+   *
+   * @param dn
+   *          the DN
+   * @return the subentries applicable to the provided DN
+   */
+  List<SubEntry> getSubentries(DN dn)
+  {
+    return getSubentries(dn, null);
+  }
+
+  private List<SubEntry> getSubentries(DN dn, Entry entry)
+  {
+    lookups.incrementAndGet();
+    final DN parentDN = dn.parent();
+    if (parentDN == null)
+    {
+      return getRootSubentries(dn, entry);
+    }
+
+    final CompiledParent parent = getCompiledParent(parentDN);
+    final List<SubEntry> subentries = new ArrayList<>();
+    final List<SubEntry> basedOnEntry = parent.basedOnChildren.get(dn);
+    if (basedOnEntry != null)
+    {
+      for (SubEntry subEntry : basedOnEntry)
+      {
+        if (isWithinScope(subEntry.getSubTreeSpecification(), dn, entry))
+        {
+          subentries.add(subEntry);
+        }
+      }
+    }
+    for (Candidate candidate : parent.inherited)
+    {
+      if (!candidate.excludedChildDNs.contains(dn)
+          && (entry == null || candidate.refinements == null || matches(candidate.refinements, entry)))
+      {
+        subentries.add(candidate.subEntry);
+      }
+    }
+    return subentries;
+  }
+
+  private boolean isWithinScope(SubtreeSpecification subSpec, DN dn, Entry entry)
+  {
+    evaluations.incrementAndGet();
+    return entry != null ? subSpec.isWithinScope(entry) : subSpec.isDNWithinScope(dn);
+  }
+
+  private boolean matches(Refinement refinements, Entry entry)
+  {
+    evaluations.incrementAndGet();
+    return refinements.matches(entry);
+  }
+
+  /** The root DN has no parent: evaluate the subentries based on it directly. */
+  private List<SubEntry> getRootSubentries(DN dn, Entry entry)
+  {
+    final List<SubEntry> subentries = new ArrayList<>();
+    readLock.lock();
+    try
+    {
+      final List<SubEntry> subList = baseDN2SubEntries.get(dn);
+      if (subList != null)
+      {
+        for (SubEntry subEntry : subList)
+        {
+          if (isWithinScope(subEntry.getSubTreeSpecification(), dn, entry))
+          {
+            subentries.add(subEntry);
+          }
+        }
+      }
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+    return subentries;
+  }
+
+  private CompiledParent getCompiledParent(DN parentDN)
+  {
+    final Map<DN, CompiledParent> parents = compiledParents;
+    final CompiledParent parent = parents.get(parentDN);
+    if (parent != null)
+    {
+      return parent;
+    }
+
+    readLock.lock();
+    try
+    {
+      // Subentries may have changed since the compiled parents were read:
+      // compile against the current subentries and cache into the current map
+      final Map<DN, CompiledParent> currentParents = compiledParents;
+      final CompiledParent newParent = compile(parentDN);
+      if (currentParents.size() >= maxSize)
+      {
+        currentParents.clear();
+      }
+      currentParents.put(parentDN, newParent);
+      return newParent;
+    }
+    finally
+    {
+      readLock.unlock();
+    }
+  }
+
+  /** Must be called while holding the read lock. */
+  private CompiledParent compile(DN parentDN)
+  {
+    compilations.incrementAndGet();
+    final CompiledParent parent = new CompiledParent();
+    for (Map.Entry<DN, List<SubEntry>> mapEntry : baseDN2SubEntries.entrySet())
+    {
+      if (parentDN.equals(mapEntry.getKey().parent()))
+      {
+        parent.basedOnChildren.put(mapEntry.getKey(), new ArrayList<>(mapEntry.getValue()));
+      }
+    }
+
+    for (DN baseDN = parentDN; baseDN != null; baseDN = baseDN.parent())
+    {
+      final List<SubEntry> subList = baseDN2SubEntries.get(baseDN);
+      if (subList != null)
+      {
+        for (SubEntry subEntry : subList)
+        {
+          final Candidate candidate = compile(subEntry, parentDN);
+          if (candidate != null)
+          {
+            parent.inherited.add(candidate);
+          }
+        }
+      }
+    }
+    return parent;
+  }
+
+  /**
+   * Evaluates the parts of the subtree specification of the provided
+   * subentry which are the same for all the children of the provided parent.
+   *
+   * @return the candidate, or null if the subentry applies to none of the
+   *         children of the parent
+   */
+  private static Candidate compile(SubEntry subEntry, DN parentDN)
+  {
+    final SubtreeSpecification subSpec = subEntry.getSubTreeSpecification();
+    final DN baseDN = subSpec.getBaseDN();
+    final int childDepth = parentDN.size() + 1 - baseDN.size();
+    if (childDepth < subSpec.getMinimumDepth()
+        || (subSpec.getMaximumDepth() >= 0 && childDepth > subSpec.getMaximumDepth()))
+    {
+      return null;
+    }
+
+    // chop after exclusions keep the chop DN itself, which cannot be a child
+    // here since the base is the parent or one of its ancestors
+    for (DN chopAfterDN : subSpec.getChopAfter())
+    {
+      if (parentDN.isDescendantOf(baseDN.child(chopAfterDN)))
+      {
+        return null;
+      }
+    }
+
+    Set<DN> excludedChildDNs = Collections.emptySet();
+    for (DN chopBeforeDN : subSpec.getChopBefore())
+    {
+      final DN absoluteDN = baseDN.child(chopBeforeDN);
+      if (parentDN.isDescendantOf(absoluteDN))
+      {
+        return null;
+      }
+      if (parentDN.equals(absoluteDN.parent()))
+      {
+        if (excludedChildDNs.isEmpty())
+        {
+          excludedChildDNs = new HashSet<>();
+        }
+        excludedChildDNs.add(absoluteDN);
+      }
+    }
+    return new Candidate(subEntry, excludedChildDNs);
+  }
+
+  /**
+   * Discards all the compiled parents. It must be called while holding the
+   * write lock guarding the subentries, each time they change.
+   */
+  void invalidate()
+  {
+    invalidations.incrementAndGet();
+    compiledParents = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Adds the counters of this index to the provided monitor data.
+   *
+   * @param attrs
+   *          the monitor data
+   * @param prefix
+   *          the prefix of the names of the monitor attributes
+   */
+  void addMonitorData(List<Attribute> attrs, String prefix)
+  {
+    attrs.add(Attributes.create(prefix + "-compiled-parent-count", String.valueOf(compiledParents.size())));
+    attrs.add(Attributes.create(prefix + "-lookups", String.valueOf(lookups.get())));
+    attrs.add(Attributes.create(prefix + "-compilations", String.valueOf(compilations.get())));
+    attrs.add(Attributes.create(prefix + "-specification-evaluations", String.valueOf(evaluations.get())));
+    attrs.add(Attributes.create(prefix + "-invalidations", String.valueOf(invalidations.get())));
+  }
+}
@@ -34,10 +34,12 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.admin.std.server.MonitorProviderCfg;
 import org.opends.server.api.Backend;
 import org.opends.server.api.BackendInitializationListener;
 import org.opends.server.api.ClientConnection;
-import org.opends.server.api.DITCacheMap;
+import org.opends.server.api.ConcurrentDITCacheMap;
+import org.opends.server.api.MonitorProvider;
 import org.opends.server.api.SubentryChangeListener;
 import org.opends.server.api.plugin.InternalDirectoryServerPlugin;
 import org.opends.server.api.plugin.PluginResult;
@@ -91,8 +93,20 @@ public class SubentryManager extends InternalDirectoryServerPlugin
   /** A mapping between the DNs and applicable collective subentries. */
   private Map<DN,List<SubEntry>> dn2CollectiveSubEntry;
 
-  /** A mapping between subentry DNs and subentry objects. */
-  private DITCacheMap<SubEntry> dit2SubEntry;
+  /**
+   * A mapping between subentry DNs and subentry objects. It can be read
+   * without holding the lock.
+   */
+  private final ConcurrentDITCacheMap<SubEntry> dit2SubEntry;
+
+  /** The precompiled applicability of the regular subentries. */
+  private final SubentryApplicabilityIndex subentryIndex;
+
+  /** The precompiled applicability of the collective subentries. */
+  private final SubentryApplicabilityIndex collectiveSubentryIndex;
+
+  /** Publishes the counters of the applicability indexes. */
+  private final MonitorProvider<MonitorProviderCfg> monitor = new SubentryMonitorProvider();
 
   /** Internal search all operational attributes. */
   private Set<String> requestAttrs;
@@ -134,12 +148,17 @@ public class SubentryManager extends InternalDirectoryServerPlugin
 
     dn2SubEntry = new HashMap<>();
     dn2CollectiveSubEntry = new HashMap<>();
-    dit2SubEntry = new DITCacheMap<>();
+    dit2SubEntry = new ConcurrentDITCacheMap<>();
+    subentryIndex = new SubentryApplicabilityIndex(dn2SubEntry, lock.readLock(),
+        SubentryApplicabilityIndex.DEFAULT_MAX_SIZE);
+    collectiveSubentryIndex = new SubentryApplicabilityIndex(dn2CollectiveSubEntry, lock.readLock(),
+        SubentryApplicabilityIndex.DEFAULT_MAX_SIZE);
     changeListeners = new CopyOnWriteArrayList<>();
     requestAttrs = newLinkedHashSet("*", "+");
 
     DirectoryServer.registerInternalPlugin(this);
     DirectoryServer.registerBackendInitializationListener(this);
+    DirectoryServer.registerMonitorProvider(monitor);
   }
 
   /**
@@ -152,6 +171,7 @@ public class SubentryManager extends InternalDirectoryServerPlugin
     // backend initialization listener.
     DirectoryServer.deregisterInternalPlugin(this);
     DirectoryServer.deregisterBackendInitializationListener(this);
+    DirectoryServer.deregisterMonitorProvider(monitor);
   }
 
   /**
@@ -218,6 +238,7 @@ public class SubentryManager extends InternalDirectoryServerPlugin
       }
       dit2SubEntry.put(entry.getName(), subEntry);
       subList.add(subEntry);
+      invalidateIndexes();
     }
     finally
     {
@@ -234,6 +255,7 @@ public class SubentryManager extends InternalDirectoryServerPlugin
     lock.writeLock().lock();
     try
     {
+      invalidateIndexes();
       boolean removed = false;
       Iterator<Map.Entry<DN, List<SubEntry>>> setIterator =
               dn2SubEntry.entrySet().iterator();
@@ -438,34 +460,7 @@ public class SubentryManager extends InternalDirectoryServerPlugin
       return Collections.emptyList();
     }
 
-    List<SubEntry> subentries = new ArrayList<>();
-    lock.readLock().lock();
-    try
-    {
-      for (DN subDN = dn; subDN != null;
-           subDN = subDN.parent())
-      {
-        List<SubEntry> subList = dn2SubEntry.get(subDN);
-        if (subList != null)
-        {
-          for (SubEntry subEntry : subList)
-          {
-            SubtreeSpecification subSpec =
-                    subEntry.getSubTreeSpecification();
-            if (subSpec.isDNWithinScope(dn))
-            {
-              subentries.add(subEntry);
-            }
-          }
-        }
-      }
-    }
-    finally
-    {
-      lock.readLock().unlock();
-    }
-
-    return subentries;
+    return subentryIndex.getSubentries(dn);
   }
 
   /**
@@ -483,35 +478,7 @@ public class SubentryManager extends InternalDirectoryServerPlugin
       return Collections.emptyList();
     }
 
-    List<SubEntry> subentries = new ArrayList<>();
-
-    lock.readLock().lock();
-    try
-    {
-      for (DN subDN = entry.getName(); subDN != null;
-           subDN = subDN.parent())
-      {
-        List<SubEntry> subList = dn2SubEntry.get(subDN);
-        if (subList != null)
-        {
-          for (SubEntry subEntry : subList)
-          {
-            SubtreeSpecification subSpec =
-                    subEntry.getSubTreeSpecification();
-            if (subSpec.isWithinScope(entry))
-            {
-              subentries.add(subEntry);
-            }
-          }
-        }
-      }
-    }
-    finally
-    {
-      lock.readLock().unlock();
-    }
-
-    return subentries;
+    return subentryIndex.getSubentries(entry);
   }
 
   /**
@@ -529,35 +496,7 @@ public class SubentryManager extends InternalDirectoryServerPlugin
       return Collections.emptyList();
     }
 
-    List<SubEntry> subentries = new ArrayList<>();
-
-    lock.readLock().lock();
-    try
-    {
-      for (DN subDN = dn; subDN != null;
-           subDN = subDN.parent())
-      {
-        List<SubEntry> subList = dn2CollectiveSubEntry.get(subDN);
-        if (subList != null)
-        {
-          for (SubEntry subEntry : subList)
-          {
-            SubtreeSpecification subSpec =
-                    subEntry.getSubTreeSpecification();
-            if (subSpec.isDNWithinScope(dn))
-            {
-              subentries.add(subEntry);
-            }
-          }
-        }
-      }
-    }
-    finally
-    {
-      lock.readLock().unlock();
-    }
-
-    return subentries;
+    return collectiveSubentryIndex.getSubentries(dn);
   }
 
   /**
@@ -575,35 +514,50 @@ public class SubentryManager extends InternalDirectoryServerPlugin
       return Collections.emptyList();
     }
 
-    List<SubEntry> subentries = new ArrayList<>();
+    return collectiveSubentryIndex.getSubentries(entry);
+  }
+
+  /**
+   * Indicates whether collective subentries may apply to some of the
+   * entries of the subtree of the provided DN.
+   * @param  dn  the base DN of the subtree.
+   * @return {@code true} if the subtree of some collective subentries
+   *         includes or is included in the subtree of the provided DN.
+   */
+  public boolean hasCollectiveSubentries(DN dn)
+  {
+    if (dn2CollectiveSubEntry.isEmpty())
+    {
+      return false;
+    }
 
     lock.readLock().lock();
     try
     {
-      for (DN subDN = entry.getName(); subDN != null;
-           subDN = subDN.parent())
+      for (DN subentryBaseDN : dn2CollectiveSubEntry.keySet())
       {
-        List<SubEntry> subList = dn2CollectiveSubEntry.get(subDN);
-        if (subList != null)
+        if (dn.isDescendantOf(subentryBaseDN)
+            || subentryBaseDN.isDescendantOf(dn))
         {
-          for (SubEntry subEntry : subList)
-          {
-            SubtreeSpecification subSpec =
-                    subEntry.getSubTreeSpecification();
-            if (subSpec.isWithinScope(entry))
-            {
-              subentries.add(subEntry);
-            }
-          }
+          return true;
         }
       }
+      return false;
     }
     finally
     {
       lock.readLock().unlock();
     }
+  }
 
-    return subentries;
+  /**
+   * Discards the precompiled applicability of the subentries. It must be
+   * called while holding the write lock, each time the subentries change.
+   */
+  private void invalidateIndexes()
+  {
+    subentryIndex.invalidate();
+    collectiveSubentryIndex.invalidate();
   }
 
   /**
@@ -616,6 +570,7 @@ public class SubentryManager extends InternalDirectoryServerPlugin
     lock.writeLock().lock();
     try
     {
+      invalidateIndexes();
       Iterator<Map.Entry<DN, List<SubEntry>>> setIterator =
               dn2SubEntry.entrySet().iterator();
       while (setIterator.hasNext())
@@ -916,46 +871,38 @@ public class SubentryManager extends InternalDirectoryServerPlugin
     Entry entry = deleteOperation.getEntryToDelete();
     boolean hasSubentryWritePrivilege = false;
 
-    lock.readLock().lock();
-    try
+    for (SubEntry subEntry : dit2SubEntry.getSubtree(entry.getName()))
     {
-      for (SubEntry subEntry : dit2SubEntry.getSubtree(entry.getName()))
+      if (!hasSubentryWritePrivilege)
       {
-        if (!hasSubentryWritePrivilege)
+        ClientConnection conn = deleteOperation.getClientConnection();
+        if (!conn.hasPrivilege(Privilege.SUBENTRY_WRITE,
+             conn.getOperationInProgress(
+               deleteOperation.getMessageID())))
         {
-          ClientConnection conn = deleteOperation.getClientConnection();
-          if (!conn.hasPrivilege(Privilege.SUBENTRY_WRITE,
-               conn.getOperationInProgress(
-                 deleteOperation.getMessageID())))
-          {
-            return PluginResult.PreOperation.stopProcessing(
-                    ResultCode.INSUFFICIENT_ACCESS_RIGHTS,
-                    ERR_SUBENTRY_WRITE_INSUFFICIENT_PRIVILEGES.get());
-          }
-          hasSubentryWritePrivilege = true;
+          return PluginResult.PreOperation.stopProcessing(
+                  ResultCode.INSUFFICIENT_ACCESS_RIGHTS,
+                  ERR_SUBENTRY_WRITE_INSUFFICIENT_PRIVILEGES.get());
         }
-        for (SubentryChangeListener changeListener :
-                changeListeners)
+        hasSubentryWritePrivilege = true;
+      }
+      for (SubentryChangeListener changeListener :
+              changeListeners)
+      {
+        try
         {
-          try
-          {
-            changeListener.checkSubentryDeleteAcceptable(
-                    subEntry.getEntry());
-          }
-          catch (DirectoryException de)
-          {
-            logger.traceException(de);
+          changeListener.checkSubentryDeleteAcceptable(
+                  subEntry.getEntry());
+        }
+        catch (DirectoryException de)
+        {
+          logger.traceException(de);
 
-            return PluginResult.PreOperation.stopProcessing(
-                    de.getResultCode(), de.getMessageObject());
-          }
+          return PluginResult.PreOperation.stopProcessing(
+                  de.getResultCode(), de.getMessageObject());
         }
       }
     }
-    finally
-    {
-      lock.readLock().unlock();
-    }
 
     return PluginResult.PreOperation.continueOperationProcessing();
   }
@@ -1007,54 +954,46 @@ public class SubentryManager extends InternalDirectoryServerPlugin
   {
     boolean hasSubentryWritePrivilege = false;
 
-    lock.readLock().lock();
-    try
+    final Entry oldEntry = modifyDNOperation.getOriginalEntry();
+    Collection<SubEntry> setToDelete =
+            dit2SubEntry.getSubtree(oldEntry.getName());
+    for (SubEntry subentry : setToDelete)
     {
-      final Entry oldEntry = modifyDNOperation.getOriginalEntry();
-      Collection<SubEntry> setToDelete =
-              dit2SubEntry.getSubtree(oldEntry.getName());
-      for (SubEntry subentry : setToDelete)
+      if (!hasSubentryWritePrivilege)
       {
-        if (!hasSubentryWritePrivilege)
+        ClientConnection conn = modifyDNOperation.getClientConnection();
+        if (!conn.hasPrivilege(Privilege.SUBENTRY_WRITE,
+             conn.getOperationInProgress(
+               modifyDNOperation.getMessageID())))
         {
-          ClientConnection conn = modifyDNOperation.getClientConnection();
-          if (!conn.hasPrivilege(Privilege.SUBENTRY_WRITE,
-               conn.getOperationInProgress(
-                 modifyDNOperation.getMessageID())))
-          {
-            return PluginResult.PreOperation.stopProcessing(
-                    ResultCode.INSUFFICIENT_ACCESS_RIGHTS,
-                    ERR_SUBENTRY_WRITE_INSUFFICIENT_PRIVILEGES.get());
-          }
-          hasSubentryWritePrivilege = true;
+          return PluginResult.PreOperation.stopProcessing(
+                  ResultCode.INSUFFICIENT_ACCESS_RIGHTS,
+                  ERR_SUBENTRY_WRITE_INSUFFICIENT_PRIVILEGES.get());
         }
+        hasSubentryWritePrivilege = true;
+      }
 
-        final Entry newEntry = modifyDNOperation.getUpdatedEntry();
-        final Entry currentSubentry = subentry.getEntry();
-        final Entry renamedSubentry = currentSubentry.duplicate(false);
-        final DN renamedDN = currentSubentry.getName().rename(oldEntry.getName(), newEntry.getName());
-        renamedSubentry.setDN(renamedDN);
+      final Entry newEntry = modifyDNOperation.getUpdatedEntry();
+      final Entry currentSubentry = subentry.getEntry();
+      final Entry renamedSubentry = currentSubentry.duplicate(false);
+      final DN renamedDN = currentSubentry.getName().rename(oldEntry.getName(), newEntry.getName());
+      renamedSubentry.setDN(renamedDN);
 
-        for (SubentryChangeListener changeListener : changeListeners)
+      for (SubentryChangeListener changeListener : changeListeners)
+      {
+        try
         {
-          try
-          {
-            changeListener.checkSubentryModifyAcceptable(currentSubentry, renamedSubentry);
-          }
-          catch (DirectoryException de)
-          {
-            logger.traceException(de);
+          changeListener.checkSubentryModifyAcceptable(currentSubentry, renamedSubentry);
+        }
+        catch (DirectoryException de)
+        {
+          logger.traceException(de);
 
-            return PluginResult.PreOperation.stopProcessing(
-                    de.getResultCode(), de.getMessageObject());
-          }
+          return PluginResult.PreOperation.stopProcessing(
+                  de.getResultCode(), de.getMessageObject());
         }
       }
     }
-    finally
-    {
-      lock.readLock().unlock();
-    }
 
     return PluginResult.PreOperation.continueOperationProcessing();
   }
@@ -1174,4 +1113,23 @@ public class SubentryManager extends InternalDirectoryServerPlugin
       doPostModifyDN(oldEntry, newEntry);
     }
   }
+
+  /** Publishes the counters of the subentry applicability indexes. */
+  private final class SubentryMonitorProvider extends MonitorProvider<MonitorProviderCfg>
+  {
+    @Override
+    public String getMonitorInstanceName()
+    {
+      return "Subentry Applicability";
+    }
+
+    @Override
+    public List<Attribute> getMonitorData()
+    {
+      final List<Attribute> attrs = new ArrayList<>();
+      subentryIndex.addMonitorData(attrs, "subentry");
+      collectiveSubentryIndex.addMonitorData(attrs, "collective-subentry");
+      return attrs;
+    }
+  }
 }
@@ -0,0 +1,280 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import static org.opends.server.util.StaticUtils.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.Entry;
+import org.opends.server.types.VirtualAttribute;
+import org.opends.server.types.VirtualAttributeRule;
+
+/**
+ * Generates the values of the virtual attributes requested by a search for
+ * batches of entries, before the entries are returned.
+ * <p>
+ * Only the virtual attribute providers which
+ * {@link org.opends.server.api.VirtualAttributeProvider#supportsBatchValues()
+ * support batches} and whose attribute is requested by the search are
+ * involved. Their values are remembered in the search operation, and used by
+ * {@link SearchOperation#returnEntry(Entry, List)} instead of asking the
+ * provider for each entry, which may be called several times per entry.
+ * <p>
+ * The entries passed to the search operation may be shared, e.g. with the
+ * entry cache, so they are never modified: a shallow copy holding the
+ * generated values is returned instead.
+ */
+public final class VirtualAttributeBatch
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The name of the search operation attachment holding the generated values. */
+  private static final String VALUES_ATTACHMENT = "VirtualAttributeBatch.values";
+
+  /** The maximum number of entries in a batch. */
+  public static final int MAX_BATCH_SIZE = 64;
+
+  private VirtualAttributeBatch()
+  {
+    // Utility class.
+  }
+
+  /**
+   * Returns the virtual attribute rules whose values can be generated in
+   * batches for the provided search.
+   *
+   * @param searchOperation
+   *          the search operation
+   * @return the virtual attribute rules whose providers support batches and
+   *         whose attribute is returned by the provided search. It is empty
+   *         if there is no need to batch the entries.
+   */
+  public static List<VirtualAttributeRule> getBatchRules(SearchOperation searchOperation)
+  {
+    if (searchOperation.getTypesOnly() || searchOperation.isRealAttributesOnly())
+    {
+      return Collections.emptyList();
+    }
+
+    List<VirtualAttributeRule> rules = null;
+    for (VirtualAttributeRule rule : DirectoryServer.getVirtualAttributes())
+    {
+      if (rule.getProvider().supportsBatchValues()
+          && isRequested(searchOperation.getAttributes(), rule.getAttributeType()))
+      {
+        if (rules == null)
+        {
+          rules = new ArrayList<>();
+        }
+        rules.add(rule);
+      }
+    }
+    return rules != null ? rules : Collections.<VirtualAttributeRule> emptyList();
+  }
+
+  private static boolean isRequested(Set<String> attrNames, AttributeType attrType)
+  {
+    if (attrNames == null || attrNames.isEmpty())
+    {
+      return !attrType.isOperational();
+    }
+    for (String attrName : attrNames)
+    {
+      if ("*".equals(attrName))
+      {
+        if (!attrType.isOperational())
+        {
+          return true;
+        }
+      }
+      else if ("+".equals(attrName))
+      {
+        if (attrType.isOperational())
+        {
+          return true;
+        }
+      }
+      else
+      {
+        final int semicolonPos = attrName.indexOf(';');
+        final String name = semicolonPos > 0 ? attrName.substring(0, semicolonPos) : attrName;
+        if (attrType.hasNameOrOID(toLowerCase(name)))
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Generates the values of the provided virtual attribute rules for a batch
+   * of entries about to be returned by the provided search.
+   *
+   * @param searchOperation
+   *          the search operation
+   * @param rules
+   *          the rules returned by {@link #getBatchRules(SearchOperation)}
+   * @param entries
+   *          the entries about to be returned
+   */
+  public static void generateValues(SearchOperation searchOperation, List<VirtualAttributeRule> rules,
+      List<Entry> entries)
+  {
+    if (rules.isEmpty() || entries.isEmpty())
+    {
+      return;
+    }
+
+    Map<Entry, Map<VirtualAttributeRule, Attribute>> values = searchOperation.getAttachment(VALUES_ATTACHMENT);
+    if (values == null)
+    {
+      values = new IdentityHashMap<>();
+      searchOperation.setAttachment(VALUES_ATTACHMENT, values);
+    }
+
+    for (VirtualAttributeRule rule : rules)
+    {
+      final List<Entry> ruleEntries = new ArrayList<>(entries.size());
+      for (Entry entry : entries)
+      {
+        if (getVirtualAttribute(entry, rule) != null)
+        {
+          ruleEntries.add(entry);
+        }
+      }
+      if (ruleEntries.isEmpty())
+      {
+        continue;
+      }
+
+      final List<Attribute> ruleValues;
+      try
+      {
+        ruleValues = rule.getProvider().getValues(ruleEntries, rule);
+      }
+      catch (RuntimeException e)
+      {
+        // the values will be generated for each entry
+        logger.traceException(e);
+        continue;
+      }
+      for (int i = 0; i < ruleEntries.size(); i++)
+      {
+        final Entry entry = ruleEntries.get(i);
+        Map<VirtualAttributeRule, Attribute> entryValues = values.get(entry);
+        if (entryValues == null)
+        {
+          entryValues = new IdentityHashMap<>();
+          values.put(entry, entryValues);
+        }
+        entryValues.put(rule, ruleValues.get(i));
+      }
+    }
+  }
+
+  /**
+   * Returns the provided entry with the virtual attribute values generated
+   * for it by {@link #generateValues(SearchOperation, List, List)}, if any.
+   * The generated values are forgotten by the search operation.
+   *
+   * @param searchOperation
+   *          the search operation returning the entry
+   * @param entry
+   *          the entry to return
+   * @return a shallow copy of the provided entry whose virtual attributes
+   *         hold the generated values, or the provided entry if no values
+   *         were generated for it
+   */
+  static Entry withGeneratedValues(SearchOperation searchOperation, Entry entry)
+  {
+    final Map<Entry, Map<VirtualAttributeRule, Attribute>> values = searchOperation.getAttachment(VALUES_ATTACHMENT);
+    if (values == null)
+    {
+      return entry;
+    }
+    final Map<VirtualAttributeRule, Attribute> entryValues = values.remove(entry);
+    if (entryValues == null)
+    {
+      return entry;
+    }
+
+    final Map<AttributeType, List<Attribute>> userAttrs = new LinkedHashMap<>(entry.getUserAttributes());
+    final Map<AttributeType, List<Attribute>> operationalAttrs =
+        new LinkedHashMap<>(entry.getOperationalAttributes());
+    final Entry copy = new Entry(entry.getName(), entry.getObjectClasses(), userAttrs, operationalAttrs);
+    for (Map.Entry<VirtualAttributeRule, Attribute> mapEntry : entryValues.entrySet())
+    {
+      final VirtualAttributeRule rule = mapEntry.getKey();
+      final AttributeType attrType = rule.getAttributeType();
+      final Map<AttributeType, List<Attribute>> attrs = attrType.isOperational() ? operationalAttrs : userAttrs;
+      final List<Attribute> attrList = attrs.get(attrType);
+      if (attrList != null)
+      {
+        final List<Attribute> newAttrList = new ArrayList<>(attrList.size());
+        for (Attribute attr : attrList)
+        {
+          if (attr instanceof VirtualAttribute && ((VirtualAttribute) attr).getVirtualAttributeRule() == rule)
+          {
+            attr = new VirtualAttribute(attrType, entry, rule, mapEntry.getValue());
+          }
+          newAttrList.add(attr);
+        }
+        attrs.put(attrType, newAttrList);
+      }
+    }
+    return copy;
+  }
+
+  private static VirtualAttribute getVirtualAttribute(Entry entry, VirtualAttributeRule rule)
+  {
+    final AttributeType attrType = rule.getAttributeType();
+    final List<Attribute> attrList = attrType.isOperational()
+        ? entry.getOperationalAttributes().get(attrType)
+        : entry.getUserAttributes().get(attrType);
+    if (attrList != null)
+    {
+      for (Attribute attr : attrList)
+      {
+        if (attr instanceof VirtualAttribute && ((VirtualAttribute) attr).getVirtualAttributeRule() == rule)
+        {
+          return (VirtualAttribute) attr;
+        }
+      }
+    }
+    return null;
+  }
+}
@@ -28,21 +28,32 @@ package org.opends.server.extensions;
 
 
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.ConditionResult;
+import org.forgerock.opendj.ldap.DN.CompactDn;
 import org.opends.server.admin.std.server.DynamicGroupImplementationCfg;
+import org.opends.server.admin.std.server.MonitorProviderCfg;
+import org.opends.server.api.Backend;
+import org.opends.server.api.DirectoryThread;
 import org.opends.server.api.Group;
+import org.opends.server.api.MonitorProvider;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.core.ServerContext;
 import org.forgerock.opendj.config.server.ConfigException;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.opends.server.types.Attribute;
 import org.opends.server.types.AttributeType;
+import org.opends.server.types.Attributes;
 import org.forgerock.opendj.ldap.ByteString;
 import org.opends.server.types.DirectoryConfig;
 import org.opends.server.types.DirectoryException;
@@ -80,6 +91,21 @@ public class DynamicGroup
   /** The set of the LDAP URLs that define the membership criteria. */
   private LinkedHashSet<LDAPURL> memberURLs;
 
+  /**
+   * The in-memory members of this group, or null if the membership is not
+   * materialized.
+   */
+  private DynamicGroupMemberSet materializedMembers;
+
+  /**
+   * The executor rebuilding the in-memory members of the groups. It is only
+   * set on the group implementation, when the membership is materialized.
+   */
+  private ScheduledExecutorService rebuildExecutor;
+
+  /** Publishes the state of the in-memory members of the groups. */
+  private MonitorProvider<MonitorProviderCfg> membershipMonitor;
+
 
 
   /**
@@ -116,13 +142,91 @@ public class DynamicGroup
 
 
 
+  /**
+   * Creates a new dynamic group instance whose members are kept in memory.
+   *
+   * @param  groupEntryDN     The DN of the entry that holds the definition for
+   *                          this group.
+   * @param  memberURLs       The set of LDAP URLs that define the membership
+   *                          criteria for this group.
+   * @param  rebuildExecutor  The executor rebuilding the in-memory members.
+   */
+  private DynamicGroup(DN groupEntryDN, LinkedHashSet<LDAPURL> memberURLs,
+                       ScheduledExecutorService rebuildExecutor)
+  {
+    this(groupEntryDN, memberURLs);
+    this.materializedMembers = new DynamicGroupMemberSet(this, rebuildExecutor);
+  }
+
+
+
   /** {@inheritDoc} */
   @Override
   public void initializeGroupImplementation(
                    DynamicGroupImplementationCfg configuration)
          throws ConfigException, InitializationException
   {
-    // No additional initialization is required.
+    if (configuration.isMaterializedMembership())
+    {
+      rebuildExecutor = Executors.newSingleThreadScheduledExecutor(
+          new DirectoryThread.Factory("Dynamic Group Membership Rebuild"));
+      long interval = configuration.getMaterializedMembershipRebuildInterval();
+      if (interval > 0)
+      {
+        rebuildExecutor.scheduleWithFixedDelay(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            for (DynamicGroup group : getMaterializedGroups())
+            {
+              group.materializedMembers.scheduleRebuild();
+            }
+          }
+        }, interval, interval, TimeUnit.SECONDS);
+      }
+      membershipMonitor = new MembershipMonitorProvider();
+      DirectoryServer.registerMonitorProvider(membershipMonitor);
+    }
+  }
+
+
+
+  /** {@inheritDoc} */
+  @Override
+  public void finalizeGroupImplementation()
+  {
+    if (membershipMonitor != null)
+    {
+      DirectoryServer.deregisterMonitorProvider(membershipMonitor);
+      membershipMonitor = null;
+    }
+    if (rebuildExecutor != null)
+    {
+      rebuildExecutor.shutdownNow();
+      rebuildExecutor = null;
+    }
+  }
+
+
+
+  /**
+   * Retrieves the registered dynamic groups whose members are kept in memory.
+   *
+   * @return  The registered dynamic groups whose members are kept in memory.
+   */
+  private static List<DynamicGroup> getMaterializedGroups()
+  {
+    List<DynamicGroup> groups = new ArrayList<>();
+    for (Group<?> group : DirectoryServer.getGroupManager().getGroupInstances())
+    {
+      if (group instanceof DynamicGroup
+          && ((DynamicGroup) group).materializedMembers != null)
+      {
+        groups.add((DynamicGroup) group);
+      }
+    }
+    return groups;
   }
 
 
@@ -161,6 +265,11 @@ public class DynamicGroup
       }
     }
 
+    if (rebuildExecutor != null)
+    {
+      return new DynamicGroup(groupEntry.getName(), memberURLs,
+                              rebuildExecutor);
+    }
     return new DynamicGroup(groupEntry.getName(), memberURLs);
   }
 
@@ -225,6 +334,163 @@ public class DynamicGroup
 
 
 
+  /**
+   * Indicates whether the members of this group are kept in memory.
+   *
+   * @return  {@code true} if the members of this group are kept in memory.
+   */
+  public boolean isMaterialized()
+  {
+    return materializedMembers != null;
+  }
+
+
+
+  /**
+   * Retrieves the in-memory members of this group.
+   * <p>
+   * For test purpose.
+   *
+   * @return  The in-memory members of this group, or {@code null} if the
+   *          members of this group are not kept in memory.
+   */
+  DynamicGroupMemberSet getMaterializedMembers()
+  {
+    return materializedMembers;
+  }
+
+
+
+  /**
+   * Updates the in-memory members of this group after an entry has been
+   * added. It does nothing if the members of this group are not kept in
+   * memory.
+   *
+   * @param  entry  The added entry.
+   */
+  public void entryAdded(Entry entry)
+  {
+    if (materializedMembers != null)
+    {
+      materializedMembers.update(entry.getName(), matchesMemberURLs(entry));
+    }
+  }
+
+
+
+  /**
+   * Updates the in-memory members of this group after an entry has been
+   * deleted. It does nothing if the members of this group are not kept in
+   * memory.
+   *
+   * @param  entry    The deleted entry.
+   * @param  subtree  Indicates whether the subordinates of the entry have
+   *                  been deleted too.
+   */
+  public void entryDeleted(Entry entry, boolean subtree)
+  {
+    if (materializedMembers != null)
+    {
+      if (subtree)
+      {
+        materializedMembers.invalidate();
+      }
+      else
+      {
+        materializedMembers.update(entry.getName(), false);
+      }
+    }
+  }
+
+
+
+  /**
+   * Updates the in-memory members of this group after an entry has been
+   * modified. It does nothing if the members of this group are not kept in
+   * memory.
+   *
+   * @param  oldEntry  The entry before the modification.
+   * @param  newEntry  The entry after the modification.
+   */
+  public void entryModified(Entry oldEntry, Entry newEntry)
+  {
+    if (materializedMembers != null)
+    {
+      boolean wasMember = matchesMemberURLs(oldEntry);
+      boolean isMember = matchesMemberURLs(newEntry);
+      if (wasMember != isMember)
+      {
+        materializedMembers.update(newEntry.getName(), isMember);
+      }
+    }
+  }
+
+
+
+  /**
+   * Updates the in-memory members of this group after an entry has been
+   * renamed. It does nothing if the members of this group are not kept in
+   * memory.
+   *
+   * @param  oldEntry  The entry before it was renamed.
+   * @param  newEntry  The entry after it was renamed.
+   */
+  public void entryRenamed(Entry oldEntry, Entry newEntry)
+  {
+    if (materializedMembers != null)
+    {
+      if (mayHaveSubordinates(newEntry.getName()))
+      {
+        // the subordinate entries have been renamed too
+        materializedMembers.invalidate();
+        return;
+      }
+      materializedMembers.update(oldEntry.getName(), false);
+      materializedMembers.update(newEntry.getName(),
+                                 matchesMemberURLs(newEntry));
+    }
+  }
+
+
+
+  private static boolean mayHaveSubordinates(DN entryDN)
+  {
+    Backend<?> backend = DirectoryServer.getBackend(entryDN);
+    try
+    {
+      return backend == null
+          || backend.hasSubordinates(entryDN) != ConditionResult.FALSE;
+    }
+    catch (DirectoryException e)
+    {
+      logger.traceException(e);
+      return true;
+    }
+  }
+
+
+
+  private boolean matchesMemberURLs(Entry entry)
+  {
+    for (LDAPURL memberURL : memberURLs)
+    {
+      try
+      {
+        if (memberURL.matchesEntry(entry))
+        {
+          return true;
+        }
+      }
+      catch (DirectoryException e)
+      {
+        logger.traceException(e);
+      }
+    }
+    return false;
+  }
+
+
+
   /** {@inheritDoc} */
   @Override
   public boolean supportsNestedGroups()
@@ -279,6 +545,15 @@ public class DynamicGroup
       return false;
     }
 
+    if (materializedMembers != null)
+    {
+      Boolean isMember = materializedMembers.isMember(userDN);
+      if (isMember != null)
+      {
+        return isMember;
+      }
+    }
+
     Entry entry = DirectoryConfig.getEntry(userDN);
     return entry != null && isMember(entry);
   }
@@ -295,6 +570,15 @@ public class DynamicGroup
       return false;
     }
 
+    if (materializedMembers != null)
+    {
+      Boolean isMember = materializedMembers.isMember(userEntry.getName());
+      if (isMember != null)
+      {
+        return isMember;
+      }
+    }
+
     for (LDAPURL memberURL : memberURLs)
     {
       if (memberURL.matchesEntry(userEntry))
@@ -313,6 +597,14 @@ public class DynamicGroup
   public MemberList getMembers()
          throws DirectoryException
   {
+    if (materializedMembers != null)
+    {
+      Set<CompactDn> memberDNs = materializedMembers.getMemberDNs();
+      if (memberDNs != null)
+      {
+        return new SimpleStaticGroupMemberList(groupEntryDN, memberDNs);
+      }
+    }
     return new DynamicGroupMemberList(groupEntryDN, memberURLs);
   }
 
@@ -326,7 +618,7 @@ public class DynamicGroup
   {
     if (baseDN == null && filter == null)
     {
-      return new DynamicGroupMemberList(groupEntryDN, memberURLs);
+      return getMembers();
     }
     else
     {
@@ -370,6 +662,64 @@ public class DynamicGroup
 
 
 
+  /** Publishes the size and freshness of the in-memory members. */
+  private static final class MembershipMonitorProvider
+          extends MonitorProvider<MonitorProviderCfg>
+  {
+    /** {@inheritDoc} */
+    @Override
+    public String getMonitorInstanceName()
+    {
+      return "Dynamic Group Membership";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Attribute> getMonitorData()
+    {
+      long now = System.currentTimeMillis();
+      int nbGroups = 0;
+      int nbUsableGroups = 0;
+      long nbMembers = 0;
+      long oldestRebuildAge = 0;
+      long maxRebuildDuration = 0;
+      long nbRebuilds = 0;
+      long nbFailedRebuilds = 0;
+      long nbIncrementalUpdates = 0;
+      for (DynamicGroup group : getMaterializedGroups())
+      {
+        DynamicGroupMemberSet members = group.materializedMembers;
+        nbGroups++;
+        int size = members.size();
+        if (size >= 0)
+        {
+          nbUsableGroups++;
+          nbMembers += size;
+          oldestRebuildAge =
+              Math.max(oldestRebuildAge, now - members.getLastRebuildTime());
+        }
+        maxRebuildDuration = Math.max(maxRebuildDuration,
+                                      members.getLastRebuildDurationInMillis());
+        nbRebuilds += members.getNbRebuilds();
+        nbFailedRebuilds += members.getNbFailedRebuilds();
+        nbIncrementalUpdates += members.getNbIncrementalUpdates();
+      }
+
+      List<Attribute> attrs = new ArrayList<>();
+      attrs.add(Attributes.create("materialized-groups", String.valueOf(nbGroups)));
+      attrs.add(Attributes.create("usable-materialized-groups", String.valueOf(nbUsableGroups)));
+      attrs.add(Attributes.create("materialized-members", String.valueOf(nbMembers)));
+      attrs.add(Attributes.create("oldest-rebuild-age", String.valueOf(oldestRebuildAge)));
+      attrs.add(Attributes.create("max-rebuild-duration", String.valueOf(maxRebuildDuration)));
+      attrs.add(Attributes.create("rebuilds", String.valueOf(nbRebuilds)));
+      attrs.add(Attributes.create("failed-rebuilds", String.valueOf(nbFailedRebuilds)));
+      attrs.add(Attributes.create("incremental-updates", String.valueOf(nbIncrementalUpdates)));
+      return attrs;
+    }
+  }
+
+
+
   /** {@inheritDoc} */
   @Override
   public void toString(StringBuilder buffer)
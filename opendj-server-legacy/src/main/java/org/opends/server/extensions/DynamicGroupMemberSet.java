@@ -0,0 +1,389 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static org.opends.messages.ExtensionMessages.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.adapter.server3x.Converters;
+import org.forgerock.opendj.ldap.DN.CompactDn;
+import org.opends.server.types.DN;
+import org.opends.server.types.MemberList;
+import org.opends.server.types.MembershipException;
+
+/**
+ * The in-memory set of the DNs of the members of a dynamic group.
+ * <p>
+ * The set is first built by running the internal searches of the memberURLs of
+ * the group, then it is maintained incrementally from the changes made to the
+ * entries. It is not usable until it has been built: callers must then
+ * evaluate the memberURLs themselves.
+ * <p>
+ * Changes received while the set is being rebuilt are recorded, then replayed
+ * on the rebuilt set, so that they are not lost if the searches did not see
+ * them. Changes which cannot be applied incrementally, like the renaming of a
+ * subtree, invalidate the set until it is rebuilt.
+ */
+final class DynamicGroupMemberSet
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** A change of the membership of an entry. */
+  private static final class Change
+  {
+    private final CompactDn dn;
+    private final boolean isMember;
+
+    private Change(CompactDn dn, boolean isMember)
+    {
+      this.dn = dn;
+      this.isMember = isMember;
+    }
+  }
+
+  /** The dynamic group whose members are stored in this set. */
+  private final DynamicGroup group;
+  /** The executor running the rebuilds. */
+  private final Executor rebuildExecutor;
+  /** Guards the updates of members, pendingChanges and invalidatedDuringRebuild. */
+  private final Object lock = new Object();
+
+  /** The DNs of the members, or null if this set is not usable. */
+  private volatile Set<CompactDn> members;
+  /** The changes received during the current rebuild, null if there is none. */
+  private List<Change> pendingChanges;
+  /** Whether this set has been invalidated during the current rebuild. */
+  private boolean invalidatedDuringRebuild;
+  /** Whether a rebuild is scheduled or running. */
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+  private volatile long lastRebuildTime;
+  private volatile long lastRebuildDurationInMillis;
+  private final AtomicLong nbRebuilds = new AtomicLong();
+  private final AtomicLong nbFailedRebuilds = new AtomicLong();
+  private final AtomicLong nbIncrementalUpdates = new AtomicLong();
+
+  /**
+   * Creates a new, not yet built, member set.
+   *
+   * @param group
+   *          the dynamic group whose members are stored in this set
+   * @param rebuildExecutor
+   *          the executor running the rebuilds
+   */
+  DynamicGroupMemberSet(DynamicGroup group, Executor rebuildExecutor)
+  {
+    this.group = group;
+    this.rebuildExecutor = rebuildExecutor;
+  }
+
+  /**
+   * Returns the DNs of the members of the group, and schedules the build of
+   * this set if it is not usable.
+   *
+   * @return the DNs of the members of the group, or null if this set is not
+   *         usable yet
+   */
+  Set<CompactDn> getMemberDNs()
+  {
+    final Set<CompactDn> memberDNs = members;
+    if (memberDNs == null)
+    {
+      scheduleRebuild();
+      return null;
+    }
+    return Collections.unmodifiableSet(memberDNs);
+  }
+
+  /**
+   * Indicates whether the provided DN is a member of the group.
+   *
+   * @param dn
+   *          the DN to check
+   * @return {@code TRUE} or {@code FALSE}, or null if this set is not usable
+   *         yet
+   */
+  Boolean isMember(DN dn)
+  {
+    final Set<CompactDn> memberDNs = members;
+    if (memberDNs == null)
+    {
+      scheduleRebuild();
+      return null;
+    }
+    return memberDNs.contains(toCompactDn(dn));
+  }
+
+  /**
+   * Records the membership of an entry after it has been added, modified or
+   * deleted.
+   *
+   * @param dn
+   *          the DN of the entry
+   * @param isMember
+   *          whether the entry is now a member of the group
+   */
+  void update(DN dn, boolean isMember)
+  {
+    final Change change = new Change(toCompactDn(dn), isMember);
+    synchronized (lock)
+    {
+      if (pendingChanges != null)
+      {
+        pendingChanges.add(change);
+      }
+      if (members != null)
+      {
+        apply(members, change);
+      }
+    }
+    nbIncrementalUpdates.incrementAndGet();
+  }
+
+  /**
+   * Makes this set unusable until it is rebuilt, and schedules its rebuild.
+   */
+  void invalidate()
+  {
+    synchronized (lock)
+    {
+      members = null;
+      if (pendingChanges != null)
+      {
+        invalidatedDuringRebuild = true;
+      }
+    }
+    scheduleRebuild();
+  }
+
+  /** Schedules the rebuild of this set, unless one is already scheduled. */
+  void scheduleRebuild()
+  {
+    if (rebuilding.compareAndSet(false, true))
+    {
+      try
+      {
+        rebuildExecutor.execute(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            rebuild();
+          }
+        });
+      }
+      catch (RejectedExecutionException e)
+      {
+        // the group implementation is being finalized
+        logger.traceException(e);
+        rebuilding.set(false);
+      }
+    }
+  }
+
+  /** Rebuilds this set by running the internal searches of the memberURLs. */
+  private void rebuild()
+  {
+    try
+    {
+      boolean rebuilt;
+      do
+      {
+        rebuilt = rebuildOnce();
+      }
+      while (!rebuilt && members == null && wasInvalidatedDuringRebuild());
+    }
+    finally
+    {
+      rebuilding.set(false);
+    }
+  }
+
+  private boolean wasInvalidatedDuringRebuild()
+  {
+    synchronized (lock)
+    {
+      return invalidatedDuringRebuild;
+    }
+  }
+
+  private boolean rebuildOnce()
+  {
+    final long startTime = System.currentTimeMillis();
+    synchronized (lock)
+    {
+      pendingChanges = new ArrayList<>();
+      invalidatedDuringRebuild = false;
+    }
+
+    final Set<CompactDn> newMembers = Collections.newSetFromMap(new ConcurrentHashMap<CompactDn, Boolean>());
+    try (MemberList memberList = new DynamicGroupMemberList(group.getGroupDN(), group.getMemberURLs()))
+    {
+      while (memberList.hasMoreMembers())
+      {
+        try
+        {
+          final DN memberDN = memberList.nextMemberDN();
+          if (memberDN != null)
+          {
+            newMembers.add(toCompactDn(memberDN));
+          }
+        }
+        catch (MembershipException e)
+        {
+          if (!e.continueIterating())
+          {
+            throw e;
+          }
+          logger.traceException(e);
+        }
+      }
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      logger.warn(WARN_DYNAMICGROUP_MEMBERSHIP_REBUILD_FAILED, group.getGroupDN(), e.getLocalizedMessage());
+      nbFailedRebuilds.incrementAndGet();
+      synchronized (lock)
+      {
+        pendingChanges = null;
+      }
+      return false;
+    }
+
+    synchronized (lock)
+    {
+      final boolean invalidated = invalidatedDuringRebuild;
+      if (!invalidated)
+      {
+        for (Change change : pendingChanges)
+        {
+          apply(newMembers, change);
+        }
+        members = newMembers;
+      }
+      pendingChanges = null;
+      if (invalidated)
+      {
+        return false;
+      }
+    }
+    lastRebuildTime = System.currentTimeMillis();
+    lastRebuildDurationInMillis = lastRebuildTime - startTime;
+    nbRebuilds.incrementAndGet();
+    return true;
+  }
+
+  private static void apply(Set<CompactDn> memberDNs, Change change)
+  {
+    if (change.isMember)
+    {
+      memberDNs.add(change.dn);
+    }
+    else
+    {
+      memberDNs.remove(change.dn);
+    }
+  }
+
+  private static CompactDn toCompactDn(DN dn)
+  {
+    return Converters.from(dn).compact();
+  }
+
+  /**
+   * Returns the number of members in this set.
+   *
+   * @return the number of members in this set, or -1 if this set is not
+   *         usable
+   */
+  int size()
+  {
+    final Set<CompactDn> memberDNs = members;
+    return memberDNs != null ? memberDNs.size() : -1;
+  }
+
+  /**
+   * Returns the time of the last successful rebuild of this set.
+   *
+   * @return the time of the last successful rebuild of this set, 0 if it was
+   *         never built
+   */
+  long getLastRebuildTime()
+  {
+    return lastRebuildTime;
+  }
+
+  /**
+   * Returns the duration of the last successful rebuild of this set.
+   *
+   * @return the duration of the last successful rebuild in milliseconds
+   */
+  long getLastRebuildDurationInMillis()
+  {
+    return lastRebuildDurationInMillis;
+  }
+
+  /**
+   * Returns the number of successful rebuilds of this set.
+   *
+   * @return the number of successful rebuilds of this set
+   */
+  long getNbRebuilds()
+  {
+    return nbRebuilds.get();
+  }
+
+  /**
+   * Returns the number of failed rebuilds of this set.
+   *
+   * @return the number of failed rebuilds of this set
+   */
+  long getNbFailedRebuilds()
+  {
+    return nbFailedRebuilds.get();
+  }
+
+  /**
+   * Returns the number of incremental updates applied to this set.
+   *
+   * @return the number of incremental updates applied to this set
+   */
+  long getNbIncrementalUpdates()
+  {
+    return nbIncrementalUpdates.get();
+  }
+}
@@ -75,21 +75,10 @@ public class IsMemberOfVirtualAttributeProvider
   @Override
   public Attribute getValues(Entry entry, VirtualAttributeRule rule)
   {
-    // FIXME -- This probably isn't the most efficient implementation.
     AttributeBuilder builder = new AttributeBuilder(rule.getAttributeType());
-    for (Group<?> g : DirectoryServer.getGroupManager().getGroupInstances())
+    for (DN groupDN : DirectoryServer.getGroupManager().getGroupDNsOfMember(entry))
     {
-      try
-      {
-        if (g.isMember(entry))
-        {
-          builder.add(g.getGroupDN().toString());
-        }
-      }
-      catch (Exception e)
-      {
-        logger.traceException(e);
-      }
+      builder.add(groupDN.toString());
     }
     return builder.toAttribute();
   }
@@ -98,23 +87,7 @@ public class IsMemberOfVirtualAttributeProvider
   @Override
   public boolean hasValue(Entry entry, VirtualAttributeRule rule)
   {
-    // FIXME -- This probably isn't the most efficient implementation.
-    for (Group<?> g : DirectoryServer.getGroupManager().getGroupInstances())
-    {
-      try
-      {
-        if (g.isMember(entry))
-        {
-          return true;
-        }
-      }
-      catch (Exception e)
-      {
-        logger.traceException(e);
-      }
-    }
-
-    return false;
+    return !DirectoryServer.getGroupManager().getGroupDNsOfMember(entry).isEmpty();
   }
 
   /** {@inheritDoc} */
@@ -26,7 +26,11 @@
  */
 package org.opends.server.extensions;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
@@ -92,6 +96,71 @@ public class NumSubordinatesVirtualAttributeProvider
     return Attributes.empty(rule.getAttributeType());
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public boolean supportsBatchValues()
+  {
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The children of all the entries held by the same backend are counted
+   * with a single request to the backend.
+   */
+  @Override
+  public List<Attribute> getValues(List<Entry> entries, VirtualAttributeRule rule)
+  {
+    final Attribute[] values = new Attribute[entries.size()];
+    final Map<Backend<?>, List<Integer>> backendToIndexes = new LinkedHashMap<>();
+    for (int i = 0; i < values.length; i++)
+    {
+      final Backend<?> backend = DirectoryServer.getBackend(entries.get(i).getName());
+      if (backend == null)
+      {
+        values[i] = Attributes.empty(rule.getAttributeType());
+        continue;
+      }
+      List<Integer> indexes = backendToIndexes.get(backend);
+      if (indexes == null)
+      {
+        indexes = new ArrayList<>();
+        backendToIndexes.put(backend, indexes);
+      }
+      indexes.add(i);
+    }
+
+    for (Map.Entry<Backend<?>, List<Integer>> mapEntry : backendToIndexes.entrySet())
+    {
+      final List<Integer> indexes = mapEntry.getValue();
+      final List<DN> parentDNs = new ArrayList<>(indexes.size());
+      for (int i : indexes)
+      {
+        parentDNs.add(entries.get(i).getName());
+      }
+      try
+      {
+        final long[] counts = mapEntry.getKey().getNumberOfChildren(parentDNs);
+        for (int j = 0; j < counts.length; j++)
+        {
+          values[indexes.get(j)] = counts[j] >= 0
+              ? Attributes.create(rule.getAttributeType(), String.valueOf(counts[j]))
+              : Attributes.empty(rule.getAttributeType());
+        }
+      }
+      catch (DirectoryException de)
+      {
+        logger.traceException(de);
+        for (int i : indexes)
+        {
+          values[i] = Attributes.empty(rule.getAttributeType());
+        }
+      }
+    }
+    return Arrays.asList(values);
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean hasValue(Entry entry, VirtualAttributeRule rule)
@@ -79,6 +79,9 @@ public class PKCS5S2PasswordStorageScheme
   /** The secure random number generator to use to generate the salt values. */
   private SecureRandom random;
 
+  /** The secret key factory of each thread, instantiating one being costly. */
+  private static final ThreadLocal<SecretKeyFactory> SECRET_KEY_FACTORY = new ThreadLocal<>();
+
   /**
    * Creates a new instance of this password storage scheme.  Note that no
    * initialization should be performed here, as all initialization should be
@@ -284,13 +287,24 @@ public class PKCS5S2PasswordStorageScheme
     }
   }
 
+  private static SecretKeyFactory getSecretKeyFactory() throws NoSuchAlgorithmException
+  {
+    SecretKeyFactory factory = SECRET_KEY_FACTORY.get();
+    if (factory == null)
+    {
+      factory = SecretKeyFactory.getInstance(MESSAGE_DIGEST_ALGORITHM_PBKDF2);
+      SECRET_KEY_FACTORY.set(factory);
+    }
+    return factory;
+  }
+
   private static byte[] encodeWithSalt(ByteSequence plaintext, byte[] saltBytes, int iterations)
       throws DirectoryException
   {
     final char[] plaintextChars = plaintext.toString().toCharArray();
     try
     {
-      final SecretKeyFactory factory = SecretKeyFactory.getInstance(MESSAGE_DIGEST_ALGORITHM_PBKDF2);
+      final SecretKeyFactory factory = getSecretKeyFactory();
       KeySpec spec = new PBEKeySpec(plaintextChars, saltBytes, iterations, SHA1_LENGTH * 8);
       return factory.generateSecret(spec).getEncoded();
     }
@@ -41,7 +41,10 @@
 package org.opends.server.extensions;
 
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Random;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -184,6 +187,44 @@ final class Sha2Crypt {
 
   static final String SHA512_PREFIX = "$6$";
 
+  /**
+   * The two digests of each algorithm reused by each thread, instead of
+   * instantiating new digests for each round.
+   */
+  private static final ThreadLocal<Map<String, MessageDigest[]>> DIGESTS =
+      new ThreadLocal<Map<String, MessageDigest[]>>() {
+        @Override
+        protected Map<String, MessageDigest[]> initialValue() {
+          return new HashMap<>(2);
+        }
+      };
+
+  /**
+   * Returns the two reset digests of the current thread for the provided
+   * algorithm.
+   *
+   * @param algorithm
+   *          The MessageDigest algorithm identifier string.
+   * @return the digest A/C, followed by the alternate digest
+   * @throws NoSuchAlgorithmException
+   *           if the algorithm is not supported
+   */
+  private static MessageDigest[] getDigests(String algorithm)
+      throws NoSuchAlgorithmException {
+    Map<String, MessageDigest[]> threadDigests = DIGESTS.get();
+    MessageDigest[] digests = threadDigests.get(algorithm);
+    if (digests == null) {
+      digests = new MessageDigest[] {
+        MessageDigest.getInstance(algorithm),
+        MessageDigest.getInstance(algorithm) };
+      threadDigests.put(algorithm, digests);
+    } else {
+      // A previous computation may have failed half way
+      digests[0].reset();
+      digests[1].reset();
+    }
+    return digests;
+  }
 
   /**
    * Returns the magic string denoting the SHA-256 scheme is being used.
@@ -293,7 +334,8 @@ final class Sha2Crypt {
 
     // 1. start digest A
     // Prepare for the real work.
-    MessageDigest ctx = MessageDigest.getInstance(algorithm);
+    MessageDigest[] digests = getDigests(algorithm);
+    MessageDigest ctx = digests[0];
 
     // 2. the password string is added to digest A
     /*
@@ -322,7 +364,7 @@ final class Sha2Crypt {
      * Compute alternate sha512 sum with input KEY, SALT, and KEY. The final
      * result will be added to the first context.
      */
-    MessageDigest altCtx = MessageDigest.getInstance(algorithm);
+    MessageDigest altCtx = digests[1];
 
     // 5. add the password to digest B
     /*
@@ -400,7 +442,7 @@ final class Sha2Crypt {
     /*
      * Start computation of P byte sequence.
      */
-    altCtx = MessageDigest.getInstance(algorithm);
+    altCtx.reset();
 
     // 14. for every byte in the password (excluding the terminating NUL byte
     // in the C representation of the string)
@@ -441,7 +483,7 @@ final class Sha2Crypt {
     /*
      * Start computation of S byte sequence.
      */
-    altCtx = MessageDigest.getInstance(algorithm);
+    altCtx.reset();
 
     // 18. repeast the following 16+A[0] times, where A[0] represents the first
     // byte in digest A interpreted as an 8-bit unsigned value
@@ -496,7 +538,7 @@ final class Sha2Crypt {
       /*
        * New context.
        */
-      ctx = MessageDigest.getInstance(algorithm);
+      ctx.reset();
 
       // b) for odd round numbers add the byte sequence P to digest C
       // c) for even round numbers add digest A/C
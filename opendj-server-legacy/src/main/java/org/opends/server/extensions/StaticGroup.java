@@ -340,6 +340,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
       LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>(memberDNs);
       newMemberDNs.add(toCompactDn(nestedGroupDN));
       memberDNs = newMemberDNs;
+      getGroupManager().memberAdded(this, nestedGroupDN);
     }
   }
 
@@ -374,6 +375,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
       LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>(memberDNs);
       newMemberDNs.remove(toCompactDn(nestedGroupDN));
       memberDNs = newMemberDNs;
+      getGroupManager().memberRemoved(this, nestedGroupDN);
     }
   }
 
@@ -482,6 +484,17 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
     return new FilteredStaticGroupMemberList(groupEntryDN, memberDNs, baseDN, scope, filter);
   }
 
+  /**
+   * Retrieves the DNs of the direct members of this group, including its
+   * nested groups, without reading their entries.
+   *
+   * @return an unmodifiable view of the DNs of the direct members of this group
+   */
+  public Set<CompactDn> getDirectMemberDNs()
+  {
+    return Collections.unmodifiableSet(memberDNs);
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean mayAlterMemberList()
@@ -517,6 +530,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
       LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<CompactDn>(memberDNs);
       newMemberDNs.add(compactUserDN);
       memberDNs = newMemberDNs;
+      getGroupManager().memberAdded(this, userDN);
     }
   }
 
@@ -546,6 +560,7 @@ public class StaticGroup extends Group<StaticGroupImplementationCfg>
       LinkedHashSet<CompactDn> newMemberDNs = new LinkedHashSet<>(memberDNs);
       newMemberDNs.remove(compactUserDN);
       memberDNs = newMemberDNs;
+      getGroupManager().memberRemoved(this, userDN);
       //If it is in the nested group list remove it.
       if(nestedGroups.contains(userDN)) {
         LinkedList<DN> newNestedGroups = new LinkedList<>(nestedGroups);
@@ -0,0 +1,338 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.plugins;
+
+import static org.opends.messages.PluginMessages.*;
+import static org.opends.server.protocols.internal.InternalClientConnection.*;
+import static org.opends.server.protocols.internal.Requests.*;
+import static org.opends.server.schema.SchemaConstants.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ModificationType;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.protocols.internal.InternalSearchOperation;
+import org.opends.server.protocols.internal.SearchRequest;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.opends.server.types.Entry;
+import org.opends.server.types.Modification;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.types.SearchResultEntry;
+
+/**
+ * A batch of deleted and renamed entries whose references must be removed or
+ * renamed by the referential integrity plugin.
+ * <p>
+ * Successive changes are coalesced: renaming A to B then B to C is recorded as
+ * renaming A to C, and renaming A to B then deleting B is recorded as deleting
+ * A. A change reusing a DN freed by a change of the batch is not coalesced,
+ * since the references to the freed DN must be updated first. The referencing entries are looked up with one search per attribute type
+ * and base DN, OR'ing the equality filters of up to
+ * {@link #MAX_DNS_PER_SEARCH} changed DNs, and each referencing entry is
+ * modified once for all the changes of the batch.
+ */
+final class ReferentialIntegrityBatch
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The maximum number of changed DNs looked up by a single search. */
+  static final int MAX_DNS_PER_SEARCH = 256;
+
+  /** Maps the old DNs to the new DNs, or to {@code null} for deleted entries. */
+  private final LinkedHashMap<DN, DN> changes = new LinkedHashMap<>();
+  /** Maps the new DNs to the old DNs renamed to them, to coalesce renames. */
+  private final Map<DN, List<DN>> renamedFrom = new HashMap<>();
+
+  /**
+   * Adds a change to this batch.
+   *
+   * @param oldEntryDN
+   *          the DN of the deleted or renamed entry
+   * @param newEntryDN
+   *          the new DN of the renamed entry, or {@code null} if the entry was
+   *          deleted
+   * @return {@code false} if the change cannot be coalesced with the changes
+   *         of this batch, which must then be processed first
+   */
+  boolean add(DN oldEntryDN, DN newEntryDN)
+  {
+    if (changes.containsKey(oldEntryDN))
+    {
+      // An entry was deleted or renamed, then another entry took its DN
+      return false;
+    }
+    final List<DN> previousDNs = renamedFrom.get(oldEntryDN);
+    if (newEntryDN != null
+        && changes.containsKey(newEntryDN)
+        && (previousDNs == null || !previousDNs.contains(newEntryDN)))
+    {
+      // The entry takes the DN of an entry deleted or renamed by this batch:
+      // the references to the freed DN must be removed or renamed first
+      return false;
+    }
+
+    renamedFrom.remove(oldEntryDN);
+    if (previousDNs != null)
+    {
+      for (DN previousDN : previousDNs)
+      {
+        if (previousDN.equals(newEntryDN))
+        {
+          // Renamed back to its original DN
+          changes.remove(previousDN);
+        }
+        else
+        {
+          changes.put(previousDN, newEntryDN);
+          addRenamedFrom(newEntryDN, previousDN);
+        }
+      }
+    }
+    changes.put(oldEntryDN, newEntryDN);
+    addRenamedFrom(newEntryDN, oldEntryDN);
+    return true;
+  }
+
+  private void addRenamedFrom(DN newEntryDN, DN oldEntryDN)
+  {
+    if (newEntryDN != null)
+    {
+      List<DN> oldDNs = renamedFrom.get(newEntryDN);
+      if (oldDNs == null)
+      {
+        oldDNs = new ArrayList<>(1);
+        renamedFrom.put(newEntryDN, oldDNs);
+      }
+      oldDNs.add(oldEntryDN);
+    }
+  }
+
+  /**
+   * Returns the coalesced changes of this batch.
+   *
+   * @return the map of the old DNs to the new DNs, or to {@code null} for the
+   *         deleted entries
+   */
+  Map<DN, DN> getChanges()
+  {
+    return Collections.unmodifiableMap(changes);
+  }
+
+  /**
+   * Returns the number of coalesced changes of this batch.
+   *
+   * @return the number of coalesced changes of this batch
+   */
+  int size()
+  {
+    return changes.size();
+  }
+
+  /**
+   * Indicates whether this batch holds no changes.
+   *
+   * @return {@code true} if this batch holds no changes
+   */
+  boolean isEmpty()
+  {
+    return changes.isEmpty();
+  }
+
+  /**
+   * Looks up the entries referencing the changed DNs below the provided base
+   * DNs, and returns the modifications removing or renaming their references.
+   *
+   * @param baseDNs
+   *          the base DNs below which to look up the referencing entries
+   * @param attributeTypes
+   *          the attribute types holding the references
+   * @return the modifications of each referencing entry
+   */
+  Map<DN, List<Modification>> getModifications(Set<DN> baseDNs, Set<AttributeType> attributeTypes)
+  {
+    final Map<DN, List<Modification>> modifications = new LinkedHashMap<>();
+    final Map<DN, Set<AttributeType>> modifiedTypes = new HashMap<>();
+    final List<DN> oldDNs = new ArrayList<>(changes.keySet());
+    for (DN baseDN : baseDNs)
+    {
+      for (AttributeType type : attributeTypes)
+      {
+        for (int i = 0; i < oldDNs.size(); i += MAX_DNS_PER_SEARCH)
+        {
+          final List<DN> dns = oldDNs.subList(i, Math.min(i + MAX_DNS_PER_SEARCH, oldDNs.size()));
+          for (Entry entry : searchReferencingEntries(baseDN, type, dns))
+          {
+            final DN entryDN = entry.getName();
+            Set<AttributeType> types = modifiedTypes.get(entryDN);
+            if (types == null)
+            {
+              types = new HashSet<>();
+              modifiedTypes.put(entryDN, types);
+            }
+            if (!types.add(type))
+            {
+              // The entry references DNs looked up by several searches
+              continue;
+            }
+
+            final List<Modification> mods = getModifications(entry, type);
+            if (!mods.isEmpty())
+            {
+              List<Modification> entryMods = modifications.get(entryDN);
+              if (entryMods == null)
+              {
+                entryMods = new LinkedList<>();
+                modifications.put(entryDN, entryMods);
+              }
+              entryMods.addAll(mods);
+            }
+          }
+        }
+      }
+    }
+    return modifications;
+  }
+
+  private List<SearchResultEntry> searchReferencingEntries(DN baseDN, AttributeType type, List<DN> dns)
+  {
+    final List<SearchFilter> componentFilters = new ArrayList<>(dns.size());
+    for (DN dn : dns)
+    {
+      componentFilters.add(SearchFilter.createEqualityFilter(type, ByteString.valueOfUtf8(dn.toString())));
+    }
+    final SearchFilter filter = componentFilters.size() == 1
+        ? componentFilters.get(0)
+        : SearchFilter.createORFilter(componentFilters);
+    final SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, filter)
+        .addAttribute(type.getNameOrOID());
+    final InternalSearchOperation operation = getRootConnection().processSearch(request);
+
+    switch (operation.getResultCode().asEnum())
+    {
+    case SUCCESS:
+      return operation.getSearchEntries();
+
+    case NO_SUCH_OBJECT:
+      logger.debug(INFO_PLUGIN_REFERENT_SEARCH_NO_SUCH_OBJECT, baseDN);
+      return Collections.emptyList();
+
+    default:
+      logger.error(ERR_PLUGIN_REFERENT_SEARCH_FAILED, operation.getErrorMessage());
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Returns the modifications removing or renaming the references of an entry
+   * to the changed DNs.
+   *
+   * @param entry
+   *          the referencing entry
+   * @param type
+   *          the attribute type holding the references
+   * @return the modifications removing or renaming the references of the entry
+   */
+  List<Modification> getModifications(Entry entry, AttributeType type)
+  {
+    final List<Modification> mods = new LinkedList<>();
+    final List<Attribute> attributes = entry.getAttribute(type);
+    if (attributes == null)
+    {
+      return mods;
+    }
+
+    final boolean hasOptionalUID = SYNTAX_NAME_AND_OPTIONAL_UID_OID.equals(type.getSyntax().getOID());
+    for (Attribute attribute : attributes)
+    {
+      for (ByteString value : attribute)
+      {
+        final String valueString = value.toString();
+        final String uid = hasOptionalUID ? getOptionalUID(valueString) : "";
+        final DN referencedDN = toDN(valueString.substring(0, valueString.length() - uid.length()));
+        if (referencedDN == null || !changes.containsKey(referencedDN))
+        {
+          continue;
+        }
+
+        mods.add(new Modification(ModificationType.DELETE, Attributes.create(type, value)));
+        final DN newEntryDN = changes.get(referencedDN);
+        if (newEntryDN != null)
+        {
+          mods.add(new Modification(ModificationType.ADD, Attributes.create(type, newEntryDN + uid)));
+        }
+      }
+    }
+    return mods;
+  }
+
+  /** Returns the trailing "#'0101'B" UID of a name and optional UID value, or an empty string. */
+  private static String getOptionalUID(String value)
+  {
+    final int uidIndex = value.lastIndexOf('#');
+    if (uidIndex > 0
+        && value.endsWith("'B")
+        && value.length() >= uidIndex + 4
+        && value.charAt(uidIndex + 1) == '\'')
+    {
+      for (int i = uidIndex + 2; i < value.length() - 2; i++)
+      {
+        if (value.charAt(i) != '0' && value.charAt(i) != '1')
+        {
+          return "";
+        }
+      }
+      return value.substring(uidIndex);
+    }
+    return "";
+  }
+
+  private static DN toDN(String value)
+  {
+    try
+    {
+      return DN.valueOf(value);
+    }
+    catch (DirectoryException e)
+    {
+      logger.traceException(e);
+      return null;
+    }
+  }
+}
@@ -28,8 +28,6 @@
 package org.opends.server.plugins;
 
 import static org.opends.messages.PluginMessages.*;
-import static org.opends.server.protocols.internal.InternalClientConnection.*;
-import static org.opends.server.protocols.internal.Requests.*;
 import static org.opends.server.schema.SchemaConstants.*;
 import static org.opends.server.util.StaticUtils.*;
 
@@ -39,7 +37,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -47,6 +45,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
@@ -59,10 +62,12 @@ import org.forgerock.opendj.ldap.SearchScope;
 import org.opends.server.admin.server.ConfigurationChangeListener;
 import org.opends.server.admin.std.meta.PluginCfgDefn;
 import org.opends.server.admin.std.meta.ReferentialIntegrityPluginCfgDefn.CheckReferencesScopeCriteria;
+import org.opends.server.admin.std.server.MonitorProviderCfg;
 import org.opends.server.admin.std.server.PluginCfg;
 import org.opends.server.admin.std.server.ReferentialIntegrityPluginCfg;
 import org.opends.server.api.Backend;
 import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.MonitorProvider;
 import org.opends.server.api.ServerShutdownListener;
 import org.opends.server.api.plugin.DirectoryServerPlugin;
 import org.opends.server.api.plugin.PluginResult;
@@ -71,14 +76,13 @@ import org.opends.server.core.DeleteOperation;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.core.ModifyOperation;
 import org.opends.server.protocols.internal.InternalClientConnection;
-import org.opends.server.protocols.internal.InternalSearchOperation;
-import org.opends.server.protocols.internal.SearchRequest;
 import org.opends.server.types.*;
 import org.opends.server.types.operation.PostOperationDeleteOperation;
 import org.opends.server.types.operation.PostOperationModifyDNOperation;
 import org.opends.server.types.operation.PreOperationAddOperation;
 import org.opends.server.types.operation.PreOperationModifyOperation;
 import org.opends.server.types.operation.SubordinateModifyDNOperation;
+import org.opends.server.util.LatencyHistogram;
 
 /**
  * This class implements a Directory Server post operation plugin that performs
@@ -91,7 +95,12 @@ import org.opends.server.types.operation.SubordinateModifyDNOperation;
  * <BR><BR>
  * The plugin also has an option to process changes in background using
  * a thread that wakes up periodically looking for change records in a log
- * file.
+ * file. The log file acts as a durable queue: its change records survive
+ * server restarts until they have been processed.
+ * <BR><BR>
+ * Changes are processed in batches, which coalesce successive changes, look
+ * up the referencing entries with one search per attribute type, and modify
+ * each referencing entry once, using several threads.
  */
 public class ReferentialIntegrityPlugin
         extends DirectoryServerPlugin<ReferentialIntegrityPluginCfg>
@@ -150,10 +159,33 @@ public class ReferentialIntegrityPlugin
   public static final String DELETE_DNS="deleteDNs";
 
   /**
-   * The buffered reader that is used to read the log file by the background
-   * thread.
+   * The log file holding the change records being processed by the background
+   * thread, while new change records are written to the log file.
    */
-  private BufferedReader reader;
+  private File processingLogFile;
+
+  /** The maximum number of coalesced changes processed in one batch. */
+  private static final int MAX_BATCH_SIZE = 10000;
+
+  /** The number of threads modifying the referencing entries in parallel. */
+  private static final int NB_UPDATE_THREADS =
+      Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+  /** The threads modifying the referencing entries of a batch. */
+  private ExecutorService updateExecutor;
+
+  /** Number of change records written to the log files, not yet processed. */
+  private final AtomicLong pendingChanges = new AtomicLong();
+  /** Number of coalesced changes processed. */
+  private final AtomicLong processedChanges = new AtomicLong();
+  /** Number of referencing entries modified. */
+  private final AtomicLong modifiedEntries = new AtomicLong();
+  /** Number of referencing entries which could not be modified. */
+  private final AtomicLong failedModifications = new AtomicLong();
+  /** Time spent processing each batch. */
+  private final LatencyHistogram batchTime = new LatencyHistogram();
+  /** Publishes the queue depth and the processing statistics. */
+  private MonitorProvider<MonitorProviderCfg> monitor;
 
   /**
    * The buffered writer that is used to write update records in the log
@@ -190,6 +222,12 @@ public class ReferentialIntegrityPlugin
     setUpLogFile(pluginCfg.getLogFile());
     interval=pluginCfg.getUpdateInterval();
 
+    updateExecutor = Executors.newFixedThreadPool(NB_UPDATE_THREADS,
+        new DirectoryThread.Factory("Referential Integrity Update Worker"));
+    monitor = new ReferentialIntegrityMonitorProvider(
+        pluginCfg.dn().rdn().getAttributeValue(0).toString());
+    DirectoryServer.registerMonitorProvider(monitor);
+
     //Set up background processing if interval > 0.
     if(interval > 0)
     {
@@ -557,10 +595,12 @@ public class ReferentialIntegrityPlugin
       }
       else
       {
-        for(DN baseDN : getBaseDNsToSearch())
+        ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+        for(Map.Entry<DN,DN> mapEntry : modDNMap.entrySet())
         {
-          doBaseDN(baseDN, modDNMap);
+          batch = addChange(batch, mapEntry.getKey(), mapEntry.getValue());
         }
+        processBatch(batch);
       }
     }
   }
@@ -594,182 +634,160 @@ public class ReferentialIntegrityPlugin
     }
     else
     {
-      for(DN baseDN : getBaseDNsToSearch())
+      ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+      for(DN deletedEntryDN : deleteDNset)
       {
-        doBaseDN(baseDN, deleteDNset);
+        batch = addChange(batch, deletedEntryDN, null);
       }
+      processBatch(batch);
     }
   }
 
   /**
-   * Used by the background thread to process the specified old entry DN and
-   * new entry DN. Each base DN or public naming context (if the base DN
-   * configuration is empty) is checked to see  if they contain entries with
-   * references to the old entry DN that need to be changed to the new entry DN.
+   * Adds a change to a batch. If the change cannot be coalesced with the
+   * changes of the batch, or if the batch is full, then the batch is processed
+   * and a new batch is returned holding the change.
    *
-   * @param oldEntryDN  The entry DN before the modify DN operation.
+   * @param batch The batch to add the change to.
    *
-   * @param newEntryDN The entry DN after the modify DN operation.
+   * @param oldEntryDN The DN of the deleted or renamed entry.
    *
-   */
-  private void processModifyDN(DN oldEntryDN, DN newEntryDN)
-  {
-    for(DN baseDN : getBaseDNsToSearch())
-    {
-      searchBaseDN(baseDN, oldEntryDN, newEntryDN);
-    }
-  }
-
-  /**
-   * Return a set of DNs that are used to search for references under. If the
-   * base DN configuration set is empty, then the public naming contexts
-   * are used.
-   *
-   * @return A set of DNs to use in the reference searches.
+   * @param newEntryDN The new DN of the renamed entry, or null if the entry
+   *                   was deleted.
    *
+   * @return The batch holding the change.
    */
-  private Set<DN> getBaseDNsToSearch()
+  private ReferentialIntegrityBatch addChange(ReferentialIntegrityBatch batch,
+      DN oldEntryDN, DN newEntryDN)
   {
-    if (baseDNs.isEmpty())
+    if (batch.size() < MAX_BATCH_SIZE && batch.add(oldEntryDN, newEntryDN))
     {
-      return DirectoryServer.getPublicNamingContexts().keySet();
+      return batch;
     }
-    return baseDNs;
+    processBatch(batch);
+    ReferentialIntegrityBatch newBatch = new ReferentialIntegrityBatch();
+    newBatch.add(oldEntryDN, newEntryDN);
+    return newBatch;
   }
 
   /**
-   * Search a base DN using a filter built from the configured attribute
-   * types and the specified old entry DN. For each entry that is found from
-   * the search, delete the old entry DN from the entry. If the new entry
-   * DN is not null, then add it to the entry.
-   *
-   * @param baseDN  The DN to base the search at.
-   *
-   * @param oldEntryDN The old entry DN that needs to be deleted or replaced.
-   *
-   * @param newEntryDN The new entry DN that needs to be added. May be null
-   *                   if the original operation was a delete.
+   * Removes or renames the references to the deleted or renamed entries of a
+   * batch. Each base DN or public naming context (if the base DN configuration
+   * is empty) is searched for referencing entries, which are then modified in
+   * parallel.
    *
+   * @param batch The batch of changes to process.
    */
-  private void searchBaseDN(DN baseDN, DN oldEntryDN, DN newEntryDN)
+  private void processBatch(ReferentialIntegrityBatch batch)
   {
-    //Build an equality search with all of the configured attribute types
-    //and the old entry DN.
-    HashSet<SearchFilter> componentFilters=new HashSet<>();
-    for(AttributeType attributeType : attributeTypes)
-    {
-      componentFilters.add(SearchFilter.createEqualityFilter(attributeType,
-          ByteString.valueOfUtf8(oldEntryDN.toString())));
-    }
-
-    SearchFilter orFilter = SearchFilter.createORFilter(componentFilters);
-    final SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, orFilter);
-    InternalSearchOperation operation = getRootConnection().processSearch(request);
-
-    switch (operation.getResultCode().asEnum())
+    if (batch.isEmpty())
     {
-      case SUCCESS:
-        break;
-
-      case NO_SUCH_OBJECT:
-        logger.debug(INFO_PLUGIN_REFERENT_SEARCH_NO_SUCH_OBJECT, baseDN);
-        return;
-
-      default:
-        logger.error(ERR_PLUGIN_REFERENT_SEARCH_FAILED, operation.getErrorMessage());
-        return;
+      return;
     }
 
-    for (SearchResultEntry entry : operation.getSearchEntries())
+    long startTime = System.nanoTime();
+    Map<DN, List<Modification>> modifications =
+        batch.getModifications(getBaseDNsToSearch(), attributeTypes);
+    List<Future<?>> futures = new ArrayList<>(modifications.size());
+    for (Map.Entry<DN, List<Modification>> mapEntry : modifications.entrySet())
     {
-      deleteAddAttributesEntry(entry, oldEntryDN, newEntryDN);
+      final DN entryDN = mapEntry.getKey();
+      final List<Modification> mods = mapEntry.getValue();
+      if (modifications.size() == 1)
+      {
+        modifyEntry(entryDN, mods);
+      }
+      else
+      {
+        futures.add(updateExecutor.submit(new Runnable()
+        {
+          @Override
+          public void run()
+          {
+            modifyEntry(entryDN, mods);
+          }
+        }));
+      }
     }
+    waitFor(futures);
+    processedChanges.addAndGet(batch.size());
+    batchTime.recordSince(startTime);
   }
 
   /**
-   * This method is used in foreground processing of a modify DN operation.
-   * It uses the specified map to perform base DN searching for each map
-   * entry. The key is the old entry DN and the value is the
-   * new entry DN.
-   *
-   * @param baseDN The DN to base the search at.
-   *
-   * @param modifyDNmap The map containing the modify DN old and new entry DNs.
-   *
+   * Waits for the modifications of the referencing entries to complete, even
+   * if the current thread is interrupted, since the background thread is
+   * interrupted to wake it up.
    */
-  private void doBaseDN(DN baseDN, Map<DN,DN> modifyDNmap)
+  private void waitFor(List<Future<?>> futures)
   {
-    for(Map.Entry<DN,DN> mapEntry: modifyDNmap.entrySet())
+    boolean interrupted = false;
+    for (Future<?> future : futures)
     {
-      searchBaseDN(baseDN, mapEntry.getKey(), mapEntry.getValue());
+      while (true)
+      {
+        try
+        {
+          future.get();
+          break;
+        }
+        catch (InterruptedException e)
+        {
+          interrupted = true;
+        }
+        catch (ExecutionException e)
+        {
+          logger.traceException(e);
+          break;
+        }
+      }
+    }
+    if (interrupted)
+    {
+      Thread.currentThread().interrupt();
     }
   }
 
   /**
-   * This method is used in foreground processing of a delete operation.
-   * It uses the specified set to perform base DN searching for each
-   * element.
-   *
-   * @param baseDN The DN to base the search at.
+   * Return a set of DNs that are used to search for references under. If the
+   * base DN configuration set is empty, then the public naming contexts
+   * are used.
    *
-   * @param deleteDNset The set containing the delete DNs.
+   * @return A set of DNs to use in the reference searches.
    *
    */
-  private void doBaseDN(DN baseDN, Set<DN> deleteDNset)
+  private Set<DN> getBaseDNsToSearch()
   {
-    for(DN deletedEntryDN : deleteDNset)
+    if (baseDNs.isEmpty())
     {
-      searchBaseDN(baseDN, deletedEntryDN, null);
+      return DirectoryServer.getPublicNamingContexts().keySet();
     }
+    return baseDNs;
   }
 
   /**
-   * For each attribute type, delete the specified old entry DN and
-   * optionally add the specified new entry DN if the DN is not null.
-   * The specified entry is used to see if it contains each attribute type so
-   * those types that the entry contains can be modified. An internal modify
-   * is performed to change the entry.
-   *
-   * @param e The entry that contains the old references.
+   * Performs an internal modify of a referencing entry, removing or renaming
+   * its references to deleted or renamed entries.
    *
-   * @param oldEntryDN The old entry DN to remove references to.
-   *
-   * @param newEntryDN The new entry DN to add a reference to, if it is not
-   *                   null.
+   * @param entryDN The DN of the referencing entry.
    *
+   * @param mods The modifications to apply to the entry.
    */
-  private void deleteAddAttributesEntry(Entry e, DN oldEntryDN, DN newEntryDN)
+  private void modifyEntry(DN entryDN, List<Modification> mods)
   {
-    LinkedList<Modification> mods = new LinkedList<>();
-    DN entryDN=e.getName();
-    for(AttributeType type : attributeTypes)
-    {
-      if(e.hasAttribute(type))
-      {
-        ByteString value = ByteString.valueOfUtf8(oldEntryDN.toString());
-        if (e.hasValue(type, null, value))
-        {
-          mods.add(new Modification(ModificationType.DELETE, Attributes
-              .create(type, value)));
-
-          // If the new entry DN exists, create an ADD modification for it.
-          if(newEntryDN != null)
-          {
-            mods.add(new Modification(ModificationType.ADD, Attributes
-                .create(type, newEntryDN.toString())));
-          }
-        }
-      }
-    }
-
     InternalClientConnection conn =
             InternalClientConnection.getRootConnection();
     ModifyOperation modifyOperation =
             conn.processModify(entryDN, mods);
     if(modifyOperation.getResultCode() != ResultCode.SUCCESS)
     {
+      failedModifications.incrementAndGet();
       logger.error(ERR_PLUGIN_REFERENT_MODIFY_FAILED, entryDN, modifyOperation.getErrorMessage());
     }
+    else
+    {
+      modifiedEntries.incrementAndGet();
+    }
   }
 
   /**
@@ -788,6 +806,7 @@ public class ReferentialIntegrityPlugin
   {
     this.logFileName=logFileName;
     logFile=getFileForPath(logFileName);
+    processingLogFile=new File(logFile.getPath() + ".processing");
 
     try
     {
@@ -795,6 +814,8 @@ public class ReferentialIntegrityPlugin
       {
         logFile.createNewFile();
       }
+      // Change records left by a previous run are still pending.
+      pendingChanges.set(countRecords(logFile) + countRecords(processingLogFile));
     }
     catch (IOException io)
     {
@@ -816,14 +837,29 @@ public class ReferentialIntegrityPlugin
 
 
   /**
-   * Sets up a buffered reader that the background thread can use to read
-   * update records with.
+   * Returns the number of change records of a log file.
+   *
+   * @param file The log file.
    *
-   * @throws IOException If a new file reader cannot be created.
+   * @return The number of change records of the log file, or 0 if it does
+   *         not exist.
    *
+   * @throws IOException If the log file cannot be read.
    */
-  private void setupReader() throws IOException {
-    reader=new BufferedReader(new FileReader(logFile));
+  private static long countRecords(File file) throws IOException {
+    if (!file.exists())
+    {
+      return 0;
+    }
+    long nbRecords = 0;
+    try (BufferedReader reader = new BufferedReader(new FileReader(file)))
+    {
+      while (reader.readLine() != null)
+      {
+        nbRecords++;
+      }
+    }
+    return nbRecords;
   }
 
   /**
@@ -849,6 +885,7 @@ public class ReferentialIntegrityPlugin
         }
         writer.flush();
         writer.close();
+        pendingChanges.addAndGet(modDNmap.size());
       }
       catch (IOException io)
       {
@@ -877,6 +914,7 @@ public class ReferentialIntegrityPlugin
         }
         writer.flush();
         writer.close();
+        pendingChanges.addAndGet(deleteDNset.size());
       }
       catch (IOException io)
       {
@@ -889,45 +927,73 @@ public class ReferentialIntegrityPlugin
    * Process all of the records in the log file. Each line of the file is read
    * and parsed to determine if it was a delete operation (a single normalized
    * DN) or a modify DN operation (two normalized DNs separated by a tab). The
-   * corresponding operation method is called to perform the referential
-   * integrity processing as though the operation was just processed. After
-   * all of the records in log file have been processed, the log file is
-   * cleared so that new records can be added.
+   * records are coalesced in batches, which are processed as though the
+   * operations were just processed.
    *
+   * The log file is first renamed, so that new records can be added while
+   * the records are processed. The renamed file is only deleted once all of
+   * its records have been processed: if the server stops meanwhile, they are
+   * processed again when it restarts.
    */
   private void processLog() {
     synchronized(logFile) {
-      try {
-        if(logFile.length() == 0)
+      if (!processingLogFile.exists())
+      {
+        if (logFile.length() == 0)
+        {
+          return;
+        }
+        try
+        {
+          if (!logFile.renameTo(processingLogFile))
+          {
+            throw new IOException(processingLogFile.getPath());
+          }
+          logFile.createNewFile();
+        }
+        catch (IOException io)
         {
+          logger.error(ERR_PLUGIN_REFERENT_REPLACE_LOGFILE, io.getMessage());
           return;
         }
+      }
+    }
 
-        setupReader();
-        String line;
-        while((line=reader.readLine()) != null) {
-          try {
-            String[] a=line.split("[\t]");
-            DN origDn = DN.valueOf(a[0]);
-            //If there is only a single DN string than it must be a delete.
-            if(a.length == 1) {
-              processDelete(Collections.singleton(origDn), false);
-            } else {
-              DN movedDN=DN.valueOf(a[1]);
-              processModifyDN(origDn, movedDN);
-            }
-          } catch (DirectoryException ex) {
-            //This exception should rarely happen since the plugin wrote the DN
-            //strings originally.
-            logger.error(ERR_PLUGIN_REFERENT_CANNOT_DECODE_STRING_AS_DN, ex.getMessage());
+    try (BufferedReader reader = new BufferedReader(new FileReader(processingLogFile))) {
+      ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+      long nbRecords = 0;
+      String line;
+      while((line=reader.readLine()) != null) {
+        nbRecords++;
+        try {
+          String[] a=line.split("[\t]");
+          DN origDn = DN.valueOf(a[0]);
+          //If there is only a single DN string than it must be a delete.
+          DN movedDN = a.length == 1 ? null : DN.valueOf(a[1]);
+          ReferentialIntegrityBatch newBatch = addChange(batch, origDn, movedDN);
+          if (newBatch != batch)
+          {
+            // The previous batch has been processed
+            pendingChanges.addAndGet(-(nbRecords - 1));
+            nbRecords = 1;
+            batch = newBatch;
           }
+        } catch (DirectoryException ex) {
+          //This exception should rarely happen since the plugin wrote the DN
+          //strings originally.
+          logger.error(ERR_PLUGIN_REFERENT_CANNOT_DECODE_STRING_AS_DN, ex.getMessage());
         }
-        reader.close();
-        logFile.delete();
-        logFile.createNewFile();
-      } catch (IOException io) {
-        logger.error(ERR_PLUGIN_REFERENT_REPLACE_LOGFILE, io.getMessage());
       }
+      processBatch(batch);
+      pendingChanges.addAndGet(-nbRecords);
+    } catch (IOException io) {
+      logger.error(ERR_PLUGIN_REFERENT_REPLACE_LOGFILE, io.getMessage());
+      return;
+    }
+
+    if (!processingLogFile.delete())
+    {
+      logger.error(ERR_PLUGIN_REFERENT_REPLACE_LOGFILE, processingLogFile.getPath());
     }
   }
 
@@ -951,6 +1017,44 @@ public class ReferentialIntegrityPlugin
     {
       processServerShutdown(null);
     }
+    updateExecutor.shutdown();
+    if (monitor != null)
+    {
+      DirectoryServer.deregisterMonitorProvider(monitor);
+      monitor = null;
+    }
+  }
+
+  /** Publishes the depth of the change records queue and the processing statistics. */
+  private final class ReferentialIntegrityMonitorProvider
+          extends MonitorProvider<MonitorProviderCfg>
+  {
+    private final String instanceName;
+
+    private ReferentialIntegrityMonitorProvider(String pluginName)
+    {
+      this.instanceName = pluginName + " Updates";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getMonitorInstanceName()
+    {
+      return instanceName;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Attribute> getMonitorData()
+    {
+      List<Attribute> attrs = new ArrayList<>();
+      attrs.add(Attributes.create("pending-changes", String.valueOf(pendingChanges.get())));
+      attrs.add(Attributes.create("processed-changes", String.valueOf(processedChanges.get())));
+      attrs.add(Attributes.create("modified-entries", String.valueOf(modifiedEntries.get())));
+      attrs.add(Attributes.create("failed-modifications", String.valueOf(failedModifications.get())));
+      batchTime.addMonitorData(attrs, "batch");
+      return attrs;
+    }
   }
 
   /**
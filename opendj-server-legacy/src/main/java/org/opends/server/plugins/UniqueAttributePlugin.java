@@ -28,6 +28,7 @@ package org.opends.server.plugins;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.i18n.slf4j.LocalizedLogger;
@@ -38,10 +39,12 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
 import org.opends.server.admin.server.ConfigurationChangeListener;
 import org.opends.server.admin.std.meta.PluginCfgDefn;
+import org.opends.server.admin.std.server.MonitorProviderCfg;
 import org.opends.server.admin.std.server.PluginCfg;
 import org.opends.server.admin.std.server.UniqueAttributePluginCfg;
 import org.opends.server.api.AlertGenerator;
 import org.opends.server.api.Backend;
+import org.opends.server.api.MonitorProvider;
 import org.opends.server.api.plugin.*;
 import org.opends.server.api.plugin.PluginResult.PostOperation;
 import org.opends.server.api.plugin.PluginResult.PreOperation;
@@ -53,6 +56,7 @@ import static org.opends.server.protocols.internal.Requests.*;
 import org.opends.server.schema.SchemaConstants;
 import org.opends.server.types.*;
 import org.opends.server.types.operation.*;
+import org.opends.server.util.LatencyHistogram;
 
 import static org.opends.messages.PluginMessages.*;
 import static org.opends.server.protocols.internal.InternalClientConnection.*;
@@ -105,6 +109,19 @@ public class UniqueAttributePlugin
 
 
 
+  /** Time spent checking the uniqueness of the values of each attribute. */
+  private final LatencyHistogram checkTime = new LatencyHistogram();
+  /** Number of checks answered by reading the equality indexes. */
+  private final AtomicLong indexedChecks = new AtomicLong();
+  /** Number of values checked by performing an internal search. */
+  private final AtomicLong searchChecks = new AtomicLong();
+  /** Number of operations rejected because of a conflicting value. */
+  private final AtomicLong conflicts = new AtomicLong();
+  /** Publishes the uniqueness checks statistics. */
+  private MonitorProvider<MonitorProviderCfg> monitor;
+
+
+
   /** {@inheritDoc} */
   @Override
   public final void initializePlugin(Set<PluginType> pluginTypes,
@@ -156,6 +173,9 @@ public class UniqueAttributePlugin
 
     uniqueAttrValue2Dn  = new ConcurrentHashMap<>();
     DirectoryServer.registerAlertGenerator(this);
+    monitor = new UniquenessCheckMonitorProvider(
+        configuration.dn().rdn().getAttributeValue(0).toString());
+    DirectoryServer.registerMonitorProvider(monitor);
   }
 
 
@@ -166,6 +186,56 @@ public class UniqueAttributePlugin
   {
     currentConfiguration.removeUniqueAttributeChangeListener(this);
     DirectoryServer.deregisterAlertGenerator(this);
+    if (monitor != null)
+    {
+      DirectoryServer.deregisterMonitorProvider(monitor);
+      monitor = null;
+    }
+  }
+
+
+
+  /**
+   * Returns the monitor provider publishing the uniqueness checks statistics.
+   *
+   * @return  The monitor provider of this plugin.
+   */
+  MonitorProvider<MonitorProviderCfg> getMonitorProvider()
+  {
+    return monitor;
+  }
+
+
+
+  /** Publishes the latency and the outcome of the uniqueness checks. */
+  private final class UniquenessCheckMonitorProvider
+          extends MonitorProvider<MonitorProviderCfg>
+  {
+    private final String instanceName;
+
+    private UniquenessCheckMonitorProvider(String pluginName)
+    {
+      this.instanceName = pluginName + " Uniqueness Checks";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getMonitorInstanceName()
+    {
+      return instanceName;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public List<Attribute> getMonitorData()
+    {
+      List<Attribute> attrs = new ArrayList<>();
+      attrs.add(Attributes.create("indexed-checks", String.valueOf(indexedChecks.get())));
+      attrs.add(Attributes.create("search-checks", String.valueOf(searchChecks.get())));
+      attrs.add(Attributes.create("conflicts", String.valueOf(conflicts.get())));
+      checkTime.addMonitorData(attrs, "uniqueness-check");
+      return attrs;
+    }
   }
 
 
@@ -192,17 +262,16 @@ public class UniqueAttributePlugin
       List<Attribute> attrList = entry.getAttribute(t);
       if (attrList != null)
       {
+        List<ByteString> values = new ArrayList<>();
         for (Attribute a : attrList)
         {
-          for (ByteString v : a)
-          {
-            PreOperation stop =
-                checkUniqueness(entryDN, t, v, baseDNs, recordedValues, config);
-            if (stop != null)
-            {
-              return stop;
-            }
-          }
+          addValues(values, a);
+        }
+        PreOperation stop =
+            checkUniqueness(entryDN, t, values, baseDNs, recordedValues, config);
+        if (stop != null)
+        {
+          return stop;
         }
       }
     }
@@ -242,14 +311,13 @@ public class UniqueAttributePlugin
       {
         case ADD:
         case REPLACE:
-          for (ByteString v : a)
+          List<ByteString> values = new ArrayList<>(a.size());
+          addValues(values, a);
+          PreOperation stop =
+            checkUniqueness(entryDN, t, values, baseDNs, recordedValues, config);
+          if (stop != null)
           {
-            PreOperation stop =
-              checkUniqueness(entryDN, t, v, baseDNs, recordedValues, config);
-            if (stop != null)
-            {
-              return stop;
-            }
+            return stop;
           }
           break;
 
@@ -261,23 +329,20 @@ public class UniqueAttributePlugin
                                                                a.getOptions());
           if (attrList != null)
           {
+            List<ByteString> updatedValues = new ArrayList<>();
             for (Attribute updatedAttr : attrList)
             {
-              if (! updatedAttr.optionsEqual(a.getOptions()))
-              {
-                continue;
-              }
-
-              for (ByteString v : updatedAttr)
+              if (updatedAttr.optionsEqual(a.getOptions()))
               {
-                PreOperation stop = checkUniqueness(
-                    entryDN, t, v, baseDNs, recordedValues, config);
-                if (stop != null)
-                {
-                  return stop;
-                }
+                addValues(updatedValues, updatedAttr);
               }
             }
+            PreOperation stopIncrement = checkUniqueness(
+                entryDN, t, updatedValues, baseDNs, recordedValues, config);
+            if (stopIncrement != null)
+            {
+              return stopIncrement;
+            }
           }
           break;
 
@@ -293,35 +358,58 @@ public class UniqueAttributePlugin
 
 
 
+  private static void addValues(List<ByteString> values, Attribute a)
+  {
+    for (ByteString v : a)
+    {
+      values.add(v);
+    }
+  }
+
+
+
+  /**
+   * Checks that the provided values of a unique attribute are not already
+   * held by other entries, or by concurrent operations on other entries.
+   * All the values are checked at once, to read the indexes only once for the
+   * multi-valued attributes.
+   */
   private PreOperation checkUniqueness(DN entryDN, AttributeType t,
-      ByteString v, Set<DN> baseDNs, List<ByteString> recordedValues,
+      List<ByteString> values, Set<DN> baseDNs, List<ByteString> recordedValues,
       UniqueAttributePluginCfg config)
   {
+    if (values.isEmpty())
+    {
+      return null;
+    }
+
+    final long startTime = System.nanoTime();
     try
     {
-      //Raise an exception if a conflicting concurrent operation is
-      //in progress. Otherwise, store this attribute value with its
-      //corresponding DN and proceed.
-      DN conflictDN = uniqueAttrValue2Dn.putIfAbsent(v, entryDN);
-      if (conflictDN == null)
+      List<ByteString> valuesToCheck = new ArrayList<>(values.size());
+      for (ByteString v : values)
       {
+        //Raise an exception if a conflicting concurrent operation is
+        //in progress. Otherwise, store this attribute value with its
+        //corresponding DN and proceed.
+        DN conflictDN = uniqueAttrValue2Dn.putIfAbsent(v, entryDN);
+        if (conflictDN != null)
+        {
+          return notUnique(t, v, conflictDN, recordedValues);
+        }
         recordedValues.add(v);
-        conflictDN = getConflictingEntryDN(baseDNs, entryDN,
-                                            config, v);
+        valuesToCheck.add(v);
       }
-      if (conflictDN != null)
+
+      Map<ByteString, DN> conflictDNs =
+          getConflictingEntryDNs(baseDNs, entryDN, config, valuesToCheck);
+      for (ByteString v : valuesToCheck)
       {
-        // Before returning, we need to remove all values added
-        // in the uniqueAttrValue2Dn map, because PostOperation
-        // plugin does not get called.
-        for (ByteString v2 : recordedValues)
+        DN conflictDN = conflictDNs.get(v);
+        if (conflictDN != null)
         {
-          uniqueAttrValue2Dn.remove(v2);
+          return notUnique(t, v, conflictDN, recordedValues);
         }
-        LocalizableMessage msg = ERR_PLUGIN_UNIQUEATTR_ATTR_NOT_UNIQUE.get(
-            t.getNameOrOID(), v, conflictDN);
-        return PluginResult.PreOperation.stopProcessing(
-            ResultCode.CONSTRAINT_VIOLATION, msg);
       }
     }
     catch (DirectoryException de)
@@ -332,17 +420,44 @@ public class UniqueAttributePlugin
           de.getResultCode(), de.getMessageObject());
 
       // Try some cleanup before returning, to avoid memory leaks
-      for (ByteString v2 : recordedValues)
-      {
-        uniqueAttrValue2Dn.remove(v2);
-      }
+      removeRecordedValues(recordedValues);
 
       return PluginResult.PreOperation.stopProcessing(
           DirectoryServer.getServerErrorResultCode(), message);
     }
+    finally
+    {
+      checkTime.recordSince(startTime);
+    }
     return null;
   }
 
+
+
+  private PreOperation notUnique(AttributeType t, ByteString v, DN conflictDN,
+      List<ByteString> recordedValues)
+  {
+    // Before returning, we need to remove all values added
+    // in the uniqueAttrValue2Dn map, because PostOperation
+    // plugin does not get called.
+    removeRecordedValues(recordedValues);
+    conflicts.incrementAndGet();
+    LocalizableMessage msg = ERR_PLUGIN_UNIQUEATTR_ATTR_NOT_UNIQUE.get(
+        t.getNameOrOID(), v, conflictDN);
+    return PluginResult.PreOperation.stopProcessing(
+        ResultCode.CONSTRAINT_VIOLATION, msg);
+  }
+
+
+
+  private void removeRecordedValues(List<ByteString> recordedValues)
+  {
+    for (ByteString v : recordedValues)
+    {
+      uniqueAttrValue2Dn.remove(v);
+    }
+  }
+
   /** {@inheritDoc} */
   @Override
   public final PluginResult.PreOperation doPreOperation(
@@ -369,10 +484,11 @@ public class UniqueAttributePlugin
         continue;
       }
 
-      ByteString v = newRDN.getAttributeValue(i);
+      List<ByteString> values =
+          Collections.singletonList(newRDN.getAttributeValue(i));
       DN entryDN = modifyDNOperation.getEntryDN();
       PreOperation stop =
-          checkUniqueness(entryDN, t, v, baseDNs, recordedValues, config);
+          checkUniqueness(entryDN, t, values, baseDNs, recordedValues, config);
       if (stop != null)
       {
         return stop;
@@ -533,7 +649,8 @@ public class UniqueAttributePlugin
       DN conflictDN = uniqueAttrValue2Dn.get(v);
       if (conflictDN == null)
       {
-        conflictDN = getConflictingEntryDN(baseDNs, entryDN, config, v);
+        conflictDN = getConflictingEntryDNs(baseDNs, entryDN, config,
+            Collections.singletonList(v)).get(v);
       }
       if (conflictDN != null)
       {
@@ -597,8 +714,9 @@ public class UniqueAttributePlugin
 
 
   /**
-   * Retrieves the DN of the first entry identified that conflicts with the
-   * provided value.
+   * Retrieves the DNs of the first entries identified that conflict with the
+   * provided values.  The equality indexes of the backends are directly read
+   * when possible, otherwise an internal search is performed for each value.
    *
    * @param  baseDNs   The set of base DNs below which the search is to be
    *                   performed.
@@ -607,6 +725,107 @@ public class UniqueAttributePlugin
    *                   ignored.
    * @param  config    The plugin configuration to use when making the
    *                   determination.
+   * @param  values    The values for which to identify any conflicting
+   *                   entries.
+   *
+   * @return  The DN of the first entry identified that contains a conflicting
+   *          value, for each value having a conflict.
+   *
+   * @throws  DirectoryException  If a problem occurred while attempting to
+   *                              make the determination.
+   */
+  private Map<ByteString, DN> getConflictingEntryDNs(Set<DN> baseDNs,
+      DN targetDN, UniqueAttributePluginCfg config,
+      Collection<ByteString> values) throws DirectoryException
+  {
+    Map<ByteString, DN> conflictDNs = new HashMap<>();
+    for (DN baseDN : baseDNs)
+    {
+      if (!getIndexedConflictingEntryDNs(baseDN, targetDN, config, values,
+                                         conflictDNs))
+      {
+        for (ByteString value : values)
+        {
+          if (!conflictDNs.containsKey(value))
+          {
+            DN conflictDN = searchConflictingEntryDN(baseDN, targetDN,
+                                                     config, value);
+            if (conflictDN != null)
+            {
+              conflictDNs.put(value, conflictDN);
+            }
+          }
+        }
+      }
+    }
+    return conflictDNs;
+  }
+
+
+
+  /**
+   * Retrieves the entries conflicting with the provided values by reading the
+   * equality indexes of the backend holding the base DN.
+   *
+   * @return  {@code true} if the indexes could tell which entries hold the
+   *          values, {@code false} if a search must be performed instead.
+   */
+  private boolean getIndexedConflictingEntryDNs(DN baseDN, DN targetDN,
+      UniqueAttributePluginCfg config, Collection<ByteString> values,
+      Map<ByteString, DN> conflictDNs) throws DirectoryException
+  {
+    Backend<?> backend = DirectoryServer.getBackend(baseDN);
+    if (backend == null || backend.getSubordinateBackends().length > 0)
+    {
+      // The search must span several backends.
+      return false;
+    }
+
+    Map<ByteString, DN> indexedConflictDNs = new HashMap<>();
+    for (AttributeType t : config.getType())
+    {
+      Map<ByteString, List<DN>> entryDNs =
+          backend.getEntryDNsByEqualityIndex(baseDN, t, values, 2);
+      if (entryDNs == null)
+      {
+        return false;
+      }
+      for (Map.Entry<ByteString, List<DN>> mapEntry : entryDNs.entrySet())
+      {
+        for (DN dn : mapEntry.getValue())
+        {
+          if (!dn.equals(targetDN)
+              && !indexedConflictDNs.containsKey(mapEntry.getKey()))
+          {
+            indexedConflictDNs.put(mapEntry.getKey(), dn);
+          }
+        }
+      }
+    }
+
+    indexedChecks.incrementAndGet();
+    for (Map.Entry<ByteString, DN> mapEntry : indexedConflictDNs.entrySet())
+    {
+      if (!conflictDNs.containsKey(mapEntry.getKey()))
+      {
+        conflictDNs.put(mapEntry.getKey(), mapEntry.getValue());
+      }
+    }
+    return true;
+  }
+
+
+
+  /**
+   * Retrieves the DN of the first entry identified that conflicts with the
+   * provided value, by performing an internal search.
+   *
+   * @param  baseDN    The base DN below which the search is to be performed.
+   * @param  targetDN  The DN of the entry at which the change is targeted.  If
+   *                   a conflict is found in that entry, then it will be
+   *                   ignored.
+   * @param  config    The plugin configuration to use when making the
+   *                   determination.
    * @param  value     The value for which to identify any conflicting entries.
    *
    * @return  The DN of the first entry identified that contains a conflicting
@@ -615,9 +834,9 @@ public class UniqueAttributePlugin
    * @throws  DirectoryException  If a problem occurred while attempting to
    *                              make the determination.
    */
-  private DN getConflictingEntryDN(Set<DN> baseDNs, DN targetDN,
-                                   UniqueAttributePluginCfg config,
-                                   ByteString value)
+  private DN searchConflictingEntryDN(DN baseDN, DN targetDN,
+                                      UniqueAttributePluginCfg config,
+                                      ByteString value)
           throws DirectoryException
   {
     SearchFilter filter;
@@ -637,35 +856,33 @@ public class UniqueAttributePlugin
       filter = SearchFilter.createORFilter(equalityFilters);
     }
 
+    searchChecks.incrementAndGet();
     InternalClientConnection conn = getRootConnection();
-    for (DN baseDN : baseDNs)
+    final SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, filter)
+        .setSizeLimit(2)
+        .addAttribute(SEARCH_ATTRS);
+    InternalSearchOperation searchOperation = conn.processSearch(request);
+    for (SearchResultEntry e : searchOperation.getSearchEntries())
     {
-      final SearchRequest request = newSearchRequest(baseDN, SearchScope.WHOLE_SUBTREE, filter)
-          .setSizeLimit(2)
-          .addAttribute(SEARCH_ATTRS);
-      InternalSearchOperation searchOperation = conn.processSearch(request);
-      for (SearchResultEntry e : searchOperation.getSearchEntries())
+      if (! e.getName().equals(targetDN))
       {
-        if (! e.getName().equals(targetDN))
-        {
-          return e.getName();
-        }
+        return e.getName();
       }
+    }
 
-      switch (searchOperation.getResultCode().asEnum())
-      {
-        case SUCCESS:
-        case NO_SUCH_OBJECT:
-          // These are fine.  Either the search was successful or the base DN
-          // didn't exist.
-          break;
-
-        default:
-          // An error occurred that prevented the search from completing
-          // successfully.
-          throw new DirectoryException(searchOperation.getResultCode(),
-                         searchOperation.getErrorMessage().toMessage());
-      }
+    switch (searchOperation.getResultCode().asEnum())
+    {
+      case SUCCESS:
+      case NO_SUCH_OBJECT:
+        // These are fine.  Either the search was successful or the base DN
+        // didn't exist.
+        break;
+
+      default:
+        // An error occurred that prevented the search from completing
+        // successfully.
+        throw new DirectoryException(searchOperation.getResultCode(),
+                       searchOperation.getErrorMessage().toMessage());
     }
 
     // If we've gotten here, then no conflict was found.
@@ -107,6 +107,14 @@ public class EntryHistorical
 
   /** Contains Historical information for each attribute description. */
   private final Map<AttributeDescription, AttrHistorical> attributesHistorical = new HashMap<>();
+  /**
+   * Contains the historical values read from the entry which have not been decoded yet, for each attribute
+   * description. They are only decoded when a modification targets their attribute, and are otherwise written back
+   * as is, minus the purged values.
+   */
+  private final Map<AttributeDescription, List<ByteString>> undecodedAttributesHistorical = new HashMap<>();
+  /** The DN of the entry this historical was read from, if any. */
+  private DN entryDN;
 
   @Override
   public String toString()
@@ -308,11 +316,41 @@ public class EntryHistorical
     if (attrHist == null)
     {
       attrHist = AttrHistorical.createAttributeHistorical(modAttr.getAttributeType());
+      decodeAttrHistorical(attrDesc, attrHist);
       attributesHistorical.put(attrDesc, attrHist);
     }
     return attrHist;
   }
 
+  /**
+   * Decodes into the provided attribute historical the values read from the
+   * entry for the provided attribute description, if any.
+   */
+  private void decodeAttrHistorical(AttributeDescription attrDesc, AttrHistorical attrHist)
+  {
+    final List<ByteString> histValues = undecodedAttributesHistorical.remove(attrDesc);
+    if (histValues == null)
+    {
+      return;
+    }
+
+    try
+    {
+      for (ByteString histValue : histValues)
+      {
+        final HistoricalAttributeValue histVal = new HistoricalAttributeValue(histValue.toString());
+        attrHist.assign(histVal.getHistKey(), histVal.getAttributeValue(), histVal.getCSN());
+      }
+    }
+    catch (Exception e)
+    {
+      // Any exception happening here means that the coding of the historical
+      // information was wrong.
+      // Log an error and continue with what could be decoded.
+      logger.error(ERR_BAD_HISTORICAL, entryDN);
+    }
+  }
+
   /**
    * For stats/monitoring purpose, returns the number of historical values
    * purged the last time a purge has been applied on this entry historical.
@@ -415,6 +453,19 @@ public class EntryHistorical
       }
     }
 
+    for (List<ByteString> histValues : undecodedAttributesHistorical.values())
+    {
+      for (ByteString histValue : histValues)
+      {
+        final CSN csn = getCSN(histValue.toString());
+        if (csn == null || !needsPurge(csn, purgeDate))
+        {
+          // not modified since it was read from the entry: no need to encode it again
+          builder.add(histValue);
+        }
+      }
+    }
+
     if (entryADDDate != null && !needsPurge(entryADDDate, purgeDate))
     {
       // Encode the historical information for the ADD Operation.
@@ -432,6 +483,30 @@ public class EntryHistorical
     return builder.toAttribute();
   }
 
+  /**
+   * Returns the CSN stored in the provided encoded historical value, without decoding the whole value.
+   *
+   * @return the CSN of the historical value, or null if it cannot be read
+   */
+  private static CSN getCSN(String histValue)
+  {
+    final int csnStart = histValue.indexOf(':') + 1;
+    if (csnStart == 0)
+    {
+      return null;
+    }
+    final int csnEnd = histValue.indexOf(':', csnStart);
+    try
+    {
+      return new CSN(csnEnd >= 0 ? histValue.substring(csnStart, csnEnd) : histValue.substring(csnStart));
+    }
+    catch (RuntimeException e)
+    {
+      logger.traceException(e);
+      return null;
+    }
+  }
+
   private boolean needsPurge(CSN csn, long purgeDate)
   {
     boolean needsPurge = purgeDelayInMillisec > 0 && csn.getTime() <= purgeDate;
@@ -518,6 +593,7 @@ public class EntryHistorical
 
     // Now we'll build the Historical object we want to construct
     final EntryHistorical newHistorical = new EntryHistorical();
+    newHistorical.entryDN = entry.getName();
     if (histAttrWithOptionsFromEntry == null)
     {
       // No historical attribute in the entry, return empty object
@@ -527,7 +603,9 @@ public class EntryHistorical
     try
     {
       // For each value of the historical attr read (mod. on a user attribute)
-      //   build an AttrInfo sub-object
+      // only read the attribute description and the CSN:
+      // the values are decoded when their attribute gets modified
+      final Map<String, AttributeDescription> attrDescs = new HashMap<>();
 
       // Traverse the Attributes (when several options for the hist attr)
       // of the historical attribute read from the entry
@@ -536,24 +614,35 @@ public class EntryHistorical
         // For each Attribute (option), traverse the values
         for (ByteString histAttrValueFromEntry : histAttrFromEntry)
         {
-          // From each value of the hist attr, create an object
-          final HistoricalAttributeValue histVal = new HistoricalAttributeValue(histAttrValueFromEntry.toString());
-          final CSN csn = histVal.getCSN();
-
-          // update the oldest CSN stored in the new entry historical
-          newHistorical.updateOldestCSN(csn);
+          final String histValue = histAttrValueFromEntry.toString();
+          final int attrEnd = histValue.indexOf(':');
+          final String attrString = attrEnd >= 0 ? histValue.substring(0, attrEnd) : histValue;
 
-          if (histVal.isADDOperation())
-          {
-            newHistorical.entryADDDate = csn;
-          }
-          else if (histVal.isMODDNOperation())
+          if ("dn".equalsIgnoreCase(attrString))
           {
-            newHistorical.entryMODDNDate = csn;
+            // From each value of the hist attr, create an object
+            final HistoricalAttributeValue histVal = new HistoricalAttributeValue(histValue);
+            final CSN csn = histVal.getCSN();
+
+            // update the oldest CSN stored in the new entry historical
+            newHistorical.updateOldestCSN(csn);
+
+            if (histVal.isADDOperation())
+            {
+              newHistorical.entryADDDate = csn;
+            }
+            else if (histVal.isMODDNOperation())
+            {
+              newHistorical.entryMODDNDate = csn;
+            }
+            continue;
           }
-          else
+
+          AttributeDescription attrDesc = attrDescs.get(attrString);
+          if (attrDesc == null)
           {
-            AttributeDescription attrDesc = histVal.getAttributeDescription();
+            final HistoricalAttributeValue histVal = new HistoricalAttributeValue(histValue);
+            attrDesc = histVal.getAttributeDescription();
             if (attrDesc == null)
             {
               /*
@@ -565,22 +654,19 @@ public class EntryHistorical
               logger.error(ERR_UNKNOWN_ATTRIBUTE_IN_HISTORICAL, entry.getName(), histVal.getAttrString());
               continue;
             }
+            attrDescs.put(attrString, attrDesc);
+          }
 
-            /* if attribute type does not match we create new
-             *   AttrInfoWithOptions and AttrInfo
-             *   we also add old AttrInfoWithOptions into histObj.attributesInfo
-             * if attribute type match but options does not match we create new
-             *   AttrInfo that we add to AttrInfoWithOptions
-             * if both match we keep everything
-             */
-            AttrHistorical attrInfo = newHistorical.attributesHistorical.get(attrDesc);
-            if (attrInfo == null)
-            {
-              attrInfo = AttrHistorical.createAttributeHistorical(attrDesc.getAttributeType());
-              newHistorical.attributesHistorical.put(attrDesc, attrInfo);
-            }
-            attrInfo.assign(histVal.getHistKey(), histVal.getAttributeValue(), csn);
+          // update the oldest CSN stored in the new entry historical
+          newHistorical.updateOldestCSN(getCSN(histValue));
+
+          List<ByteString> histValues = newHistorical.undecodedAttributesHistorical.get(attrDesc);
+          if (histValues == null)
+          {
+            histValues = new ArrayList<>();
+            newHistorical.undecodedAttributesHistorical.put(attrDesc, histValues);
           }
+          histValues.add(histAttrValueFromEntry);
         }
       }
     } catch (Exception e)
@@ -589,6 +675,7 @@ public class EntryHistorical
       // information was wrong.
       // Log an error and continue with an empty historical.
       logger.error(ERR_BAD_HISTORICAL, entry.getName());
+      newHistorical.undecodedAttributesHistorical.clear();
     }
 
     /* set the reference to the historical information in the entry */
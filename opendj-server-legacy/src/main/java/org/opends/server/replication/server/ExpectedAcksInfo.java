@@ -89,6 +89,9 @@ public abstract class ExpectedAcksInfo
    */
   protected List<Integer> serversInTimeout;
 
+  /** The time at which the assured update message was received, used to monitor the acknowledgment latency. */
+  private final long creationTimeNanos = System.nanoTime();
+
   /**
    * Creates a new ExpectedAcksInfo.
    * @param csn The CSN of the assured update message
@@ -130,6 +133,16 @@ public abstract class ExpectedAcksInfo
     return serversInTimeout;
   }
 
+  /**
+   * Gets the time at which the assured update message was received.
+   * @return The time at which the assured update message was received, as
+   * returned by {@link System#nanoTime()}.
+   */
+  public long getCreationTimeNanos()
+  {
+    return creationTimeNanos;
+  }
+
   /**
    * Gets the requested assured mode for the matching update message.
    * @return The requested assured mode for the matching update message.
@@ -74,6 +74,7 @@ import org.opends.server.types.Attributes;
 import org.opends.server.types.DN;
 import org.opends.server.types.DirectoryException;
 import org.opends.server.types.HostPort;
+import org.opends.server.util.LatencyHistogram;
 
 import static org.opends.messages.ReplicationMessages.*;
 import static org.opends.server.replication.common.ServerStatus.*;
@@ -171,6 +172,11 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
    *      classes javadoc.
    */
   private final Map<CSN, ExpectedAcksInfo> waitingAcks = new ConcurrentHashMap<>();
+  /**
+   * The time elapsed between the reception of assured update messages and the
+   * sending back of their final ack, timeouts included.
+   */
+  private final LatencyHistogram assuredAckLatency = new LatencyHistogram();
 
   /**
    * The timer used to run the timeout code (timer tasks) for the assured update
@@ -831,6 +837,7 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
         {
           // Remove the object from the map as no more needed
           waitingAcks.remove(csn);
+          assuredAckLatency.recordSince(expectedAcksInfo.getCreationTimeNanos());
           AckMsg finalAck = expectedAcksInfo.createAck(false);
           ServerHandler origServer = expectedAcksInfo.getRequesterServer();
           try
@@ -900,6 +907,7 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
           }
           // Remove the object from the map as no more needed
           waitingAcks.remove(csn);
+          assuredAckLatency.recordSince(expectedAcksInfo.getCreationTimeNanos());
           // Create the timeout ack and send him to the server the assured
           // update message came from
           AckMsg finalAck = expectedAcksInfo.createAck(true);
@@ -2302,6 +2310,10 @@ public class ReplicationServerDomain extends MonitorProvider<MonitorProviderCfg>
     attributes.add(Attributes.create("missing-changes",
         String.valueOf(missingChanges)));
 
+    // Assured replication acknowledgments
+    attributes.add(Attributes.create("assured-waiting-acks", String.valueOf(waitingAcks.size())));
+    assuredAckLatency.addMonitorData(attributes, "assured-ack-latency");
+
     return attributes;
   }
 
@@ -224,6 +224,16 @@ abstract class CompositeDBCursor<T> implements DBCursor<UpdateMsg>
     return null;
   }
 
+  /**
+   * Returns whether this cursor has been closed.
+   *
+   * @return whether this cursor has been closed
+   */
+  public boolean isClosed()
+  {
+    return state == CLOSED;
+  }
+
   @Override
   public void close()
   {
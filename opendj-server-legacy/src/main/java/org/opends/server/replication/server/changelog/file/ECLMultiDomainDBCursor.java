@@ -122,6 +122,16 @@ public final class ECLMultiDomainDBCursor implements DBCursor<UpdateMsg>
     return domain != null;
   }
 
+  /**
+   * Returns whether this cursor has been closed.
+   *
+   * @return whether this cursor has been closed
+   */
+  public boolean isClosed()
+  {
+    return cursor.isClosed();
+  }
+
   @Override
   public void close()
   {
@@ -30,16 +30,23 @@ import static org.opends.server.replication.server.changelog.api.DBCursor.Positi
 import static org.opends.server.util.StaticUtils.*;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.forgerock.i18n.LocalizableMessageBuilder;
@@ -47,9 +54,12 @@ import org.forgerock.i18n.slf4j.LocalizedLogger;
 import org.forgerock.opendj.config.server.ConfigException;
 import org.forgerock.util.Pair;
 import org.forgerock.util.time.TimeService;
+import org.opends.server.admin.std.server.MonitorProviderCfg;
 import org.opends.server.admin.std.server.ReplicationServerCfg;
 import org.opends.server.api.DirectoryThread;
+import org.opends.server.api.MonitorProvider;
 import org.opends.server.backends.ChangelogBackend;
+import org.opends.server.core.DirectoryServer;
 import org.opends.server.replication.common.CSN;
 import org.opends.server.replication.common.MultiDomainServerState;
 import org.opends.server.replication.common.ServerState;
@@ -65,6 +75,8 @@ import org.opends.server.replication.server.changelog.api.DBCursor.CursorOptions
 import org.opends.server.replication.server.changelog.api.ReplicaId;
 import org.opends.server.replication.server.changelog.api.ReplicationDomainDB;
 import org.opends.server.replication.server.changelog.file.Log.RepositionableCursor;
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Attributes;
 import org.opends.server.types.DN;
 import org.opends.server.util.StaticUtils;
 import org.opends.server.util.TimeThread;
@@ -118,6 +130,18 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
   private volatile long purgeDelayInMillis;
   private final AtomicReference<ChangelogDBPurger> cnPurger = new AtomicReference<>();
 
+  /**
+   * The maximum number of replication domains purged concurrently. Replicas of
+   * the same domain are always purged one after the other, so that purging a
+   * domain never competes with itself for disk I/O.
+   */
+  private static final int MAX_PURGE_THREADS = 4;
+  /** The number of bytes reclaimed on disk by purging the replicaDBs. */
+  private final AtomicLong purgedBytes = new AtomicLong();
+  /** The duration of the last purge of the replicaDBs, in milliseconds. */
+  private volatile long lastPurgeDurationInMillis;
+  private final PurgeMonitorProvider purgeMonitor = new PurgeMonitorProvider();
+
   /** The local replication server. */
   private final ReplicationServer replicationServer;
   private final AtomicBoolean shutdown = new AtomicBoolean();
@@ -297,6 +321,8 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
         startIndexer();
       }
       setPurgeDelay(replicationServer.getPurgeDelay());
+      DirectoryServer.deregisterMonitorProvider(purgeMonitor);
+      DirectoryServer.registerMonitorProvider(purgeMonitor);
     }
     catch (ChangelogException e)
     {
@@ -341,6 +367,7 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     }
 
     shutdownCNIndexerAndPurger();
+    DirectoryServer.deregisterMonitorProvider(purgeMonitor);
 
     // Remember the first exception because :
     // - we want to try to remove everything we want to remove
@@ -873,6 +900,56 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
     }
   }
 
+  /**
+   * Returns the time elapsed since the oldest change still present in the
+   * replicaDBs became eligible for purge. Because log files are purged as a
+   * whole, this is expected to be non-zero even when purging keeps up.
+   *
+   * @return the purge lag in milliseconds, 0 if nothing is waiting for purge
+   */
+  private long getPurgeLagInMillis()
+  {
+    if (purgeDelayInMillis <= 0)
+    {
+      return 0;
+    }
+    final long purgeTime = TimeThread.getTime() - purgeDelayInMillis;
+    long oldestTime = purgeTime;
+    for (final Map<Integer, FileReplicaDB> domainMap : domainToReplicaDBs.values())
+    {
+      for (final FileReplicaDB replicaDB : domainMap.values())
+      {
+        final CSN oldestCSN = replicaDB.getOldestCSN();
+        if (oldestCSN != null && oldestCSN.getTime() < oldestTime)
+        {
+          oldestTime = oldestCSN.getTime();
+        }
+      }
+    }
+    return purgeTime - oldestTime;
+  }
+
+  /** Publishes the statistics of the changelogDB purge. */
+  private final class PurgeMonitorProvider extends MonitorProvider<MonitorProviderCfg>
+  {
+    @Override
+    public String getMonitorInstanceName()
+    {
+      return "Changelog purge,cn=" + replicationServer.getMonitorInstanceName();
+    }
+
+    @Override
+    public List<Attribute> getMonitorData()
+    {
+      final List<Attribute> attributes = new ArrayList<>();
+      attributes.add(Attributes.create("purge-delay", String.valueOf(purgeDelayInMillis)));
+      attributes.add(Attributes.create("purged-bytes", String.valueOf(purgedBytes.get())));
+      attributes.add(Attributes.create("last-purge-duration", String.valueOf(lastPurgeDurationInMillis)));
+      attributes.add(Attributes.create("purge-lag", String.valueOf(getPurgeLagInMillis())));
+      return attributes;
+    }
+  }
+
   /**
    * The thread purging the changelogDB on a regular interval. Records are
    * purged from the changelogDB if they are older than a delay specified in
@@ -883,11 +960,16 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
    * <li>proceed to purge each replicaDBs based on the information collected
    * when purging the changeNumberIndexDB</li>
    * </ol>
+   * The replicaDBs of different domains are purged in parallel by a pool of
+   * worker threads.
    */
   private final class ChangelogDBPurger extends DirectoryThread
   {
     private static final int DEFAULT_SLEEP = 500;
 
+    /** Purges the replicaDBs of the domains, created when this thread starts. */
+    private ExecutorService purgeWorkers;
+
     protected ChangelogDBPurger()
     {
       super("Changelog DB purger");
@@ -895,6 +977,20 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
 
     @Override
     public void run()
+    {
+      final int nbThreads = Math.min(MAX_PURGE_THREADS, Runtime.getRuntime().availableProcessors());
+      purgeWorkers = Executors.newFixedThreadPool(nbThreads, new DirectoryThread.Factory("Changelog DB purger worker"));
+      try
+      {
+        purge();
+      }
+      finally
+      {
+        purgeWorkers.shutdownNow();
+      }
+    }
+
+    private void purge()
     {
       // initialize CNIndexDB
       getChangeNumberIndexDB();
@@ -944,13 +1040,7 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
             }
           }
 
-          for (final Map<Integer, FileReplicaDB> domainMap : domainToReplicaDBs.values())
-          {
-            for (final FileReplicaDB replicaDB : domainMap.values())
-            {
-              replicaDB.purgeUpTo(oldestNotPurgedCSN);
-            }
-          }
+          purgeReplicaDBs(oldestNotPurgedCSN);
 
           if (!isShutdownInitiated())
           {
@@ -978,6 +1068,55 @@ public class FileChangelogDB implements ChangelogDB, ReplicationDomainDB
       }
     }
 
+    private void purgeReplicaDBs(final CSN purgeCSN) throws InterruptedException, ChangelogException
+    {
+      final long startTime = System.currentTimeMillis();
+      final List<Callable<Long>> tasks = new ArrayList<>();
+      for (final Map<Integer, FileReplicaDB> domainMap : domainToReplicaDBs.values())
+      {
+        tasks.add(new Callable<Long>()
+        {
+          @Override
+          public Long call() throws ChangelogException
+          {
+            long domainPurgedBytes = 0;
+            for (final FileReplicaDB replicaDB : domainMap.values())
+            {
+              if (isShutdownInitiated())
+              {
+                break;
+              }
+              domainPurgedBytes += replicaDB.purgeUpTo(purgeCSN);
+            }
+            return domainPurgedBytes;
+          }
+        });
+      }
+
+      ChangelogException firstException = null;
+      for (Future<Long> result : purgeWorkers.invokeAll(tasks))
+      {
+        try
+        {
+          purgedBytes.addAndGet(result.get());
+        }
+        catch (ExecutionException e)
+        {
+          if (firstException == null)
+          {
+            firstException = e.getCause() instanceof ChangelogException
+                ? (ChangelogException) e.getCause()
+                : new ChangelogException(e.getCause());
+          }
+        }
+      }
+      lastPurgeDurationInMillis = System.currentTimeMillis() - startTime;
+      if (firstException != null)
+      {
+        throw firstException;
+      }
+    }
+
     private long computeSleepTimeUntilNextPurge(CSN notPurgedCSN)
     {
       final long nextPurgeTime = notPurgedCSN.getTime();
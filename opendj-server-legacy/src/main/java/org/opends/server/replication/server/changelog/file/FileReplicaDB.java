@@ -241,20 +241,23 @@ class FileReplicaDB
    * @param purgeCSN
    *          The CSN up to which changes can be purged. No purging happens when
    *          it is {@code null}.
+   * @return the number of bytes reclaimed on disk
    * @throws ChangelogException
    *           In case of database problem.
    */
-  void purgeUpTo(final CSN purgeCSN) throws ChangelogException
+  long purgeUpTo(final CSN purgeCSN) throws ChangelogException
   {
     if (purgeCSN == null)
     {
-      return;
+      return 0;
     }
+    final long purgedBytesBefore = log.getPurgedBytes();
     final Record<CSN, UpdateMsg> oldestRecord = log.purgeUpTo(purgeCSN);
     if (oldestRecord != null)
     {
       csnLimits = new CSNLimits(oldestRecord.getKey(), csnLimits.newestCSN);
     }
+    return log.getPurgedBytes() - purgedBytesBefore;
   }
 
   /**
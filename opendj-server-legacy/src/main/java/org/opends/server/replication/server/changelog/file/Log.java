@@ -42,6 +42,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -186,6 +187,9 @@ final class Log<K extends Comparable<K>, V> implements Closeable
   /** The last time a log file was rotated. */
   private long lastRotationTime;
 
+  /** The number of bytes reclaimed by purging log files since this log was opened. */
+  private final AtomicLong purgedBytes = new AtomicLong();
+
   /**
    * The exclusive lock used for writes and lifecycle operations on this log:
    * initialize, clear, sync and close.
@@ -726,10 +730,12 @@ final class Log<K extends Comparable<K>, V> implements Closeable
         final LogFile<K, V> logFile = entriesToPurge.next();
         try
         {
+          final long fileSize = logFile.getFile().length();
           abortCursorsOpenOnLogFile(logFile);
           logFile.close();
           logFile.delete();
           entriesToPurge.remove();
+          purgedBytes.addAndGet(fileSize);
         }
         catch (ChangelogException e)
         {
@@ -752,6 +758,17 @@ final class Log<K extends Comparable<K>, V> implements Closeable
 
   }
 
+  /**
+   * Returns the number of bytes reclaimed by purging log files since this log
+   * was opened.
+   *
+   * @return the number of bytes reclaimed by purging this log
+   */
+  long getPurgedBytes()
+  {
+    return purgedBytes.get();
+  }
+
   /**
    * Abort all cursors opened on the provided log file.
    */
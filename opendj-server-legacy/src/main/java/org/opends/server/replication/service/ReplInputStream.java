@@ -22,25 +22,54 @@
  *
  *
  *      Copyright 2006-2008 Sun Microsystems, Inc.
- *      Portions Copyright 2013-2014 ForgeRock AS.
+ *      Portions Copyright 2013-2015 ForgeRock AS.
  */
 package org.opends.server.replication.service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.api.DirectoryThread;
 
 /**
  * This class creates an input stream that can be used to read entries generated
  * by SynchroLDIF as if they were being read from another source like a file.
+ * <p>
+ * Entry messages are received from the replication server by a dedicated
+ * thread and buffered in a bounded queue, so that the network reads of the
+ * total update overlap with the LDIF parsing and the writes performed by the
+ * importing backend.
  */
 class ReplInputStream extends InputStream
 {
+  /** Maximum number of received entry messages waiting to be consumed. */
+  private static final int READ_AHEAD_QUEUE_SIZE = 64;
+
+  /** Marker put in the queue once the domain has no more entry bytes. */
+  private static final byte[] END_OF_STREAM = new byte[0];
+  /** Marker put in the queue when the read-ahead thread failed. */
+  private static final byte[] READ_AHEAD_FAILURE = new byte[0];
+  /** Maximum time waited by {@link #close()} for the read-ahead thread to stop. */
+  private static final long CLOSE_TIMEOUT_MS = 5000;
+
   /** Indicates whether this input stream has been closed. */
-  private boolean closed;
+  private volatile boolean closed;
 
   /** The domain associated to this import. */
   private final ReplicationDomain domain;
 
+  /** The entry bytes received ahead of the reads. */
+  private final BlockingQueue<byte[]> readAheadQueue =
+      new ArrayBlockingQueue<>(READ_AHEAD_QUEUE_SIZE);
+
+  /** The thread receiving the entry bytes, lazily started by the first read. */
+  private volatile DirectoryThread readAheadThread;
+  /** The error which stopped the read-ahead thread, if any. */
+  private volatile Throwable readAheadFailure;
+
   private byte[] bytes;
   private int index;
 
@@ -58,11 +87,129 @@ class ReplInputStream extends InputStream
 
   /**
    * Closes this input stream so that no more data may be read from it.
+   * <p>
+   * The domain is asked to stop receiving entry bytes, then this method waits
+   * for the read-ahead thread to terminate, so that it does not consume the
+   * messages of the session opened when the broker is restarted after the
+   * import.
    */
   @Override
   public void close()
   {
     closed      = true;
+    domain.stopReceivingEntryBytes();
+    final DirectoryThread thread = readAheadThread;
+    if (thread != null && thread != Thread.currentThread())
+    {
+      thread.interrupt();
+      try
+      {
+        thread.join(CLOSE_TIMEOUT_MS);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Returns the next bytes received from the domain, starting the read-ahead
+   * thread on the first call.
+   *
+   * @return the next entry bytes, or null if the end of the stream has been
+   *         reached.
+   * @throws IOException
+   *           if interrupted while waiting for the next entry bytes, or if the
+   *           read-ahead thread failed
+   */
+  private byte[] nextEntryBytes() throws IOException
+  {
+    if (readAheadThread == null)
+    {
+      readAheadThread = new DirectoryThread(new Runnable()
+      {
+        @Override
+        public void run()
+        {
+          readAhead();
+        }
+      }, "Replication total update read-ahead for domain " + domain.getBaseDN());
+      readAheadThread.start();
+    }
+
+    try
+    {
+      final byte[] received = readAheadQueue.take();
+      if (received == READ_AHEAD_FAILURE)
+      {
+        // Let the next reads fail as well
+        readAheadQueue.offer(READ_AHEAD_FAILURE);
+        throw new IOException(readAheadFailure);
+      }
+      return received != END_OF_STREAM ? received : null;
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Receives the entry bytes from the domain until the end of the import,
+   * or until this stream is closed. Any error is handed over to the importer
+   * thread, which would otherwise wait forever for the next entry bytes.
+   */
+  private void readAhead()
+  {
+    try
+    {
+      while (!closed)
+      {
+        final byte[] received = domain.receiveEntryBytes();
+        final byte[] toQueue = received != null ? received : END_OF_STREAM;
+        if (!queue(toQueue) || received == null)
+        {
+          return;
+        }
+      }
+    }
+    catch (InterruptedException e)
+    {
+      // The stream has been closed by the importer: stop receiving
+      Thread.currentThread().interrupt();
+    }
+    catch (Throwable t)
+    {
+      readAheadFailure = t;
+      try
+      {
+        queue(READ_AHEAD_FAILURE);
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Queues the provided bytes for the importer, waiting for room in the queue
+   * unless this stream is closed.
+   *
+   * @return true if the bytes were queued, false if this stream was closed
+   */
+  private boolean queue(byte[] toQueue) throws InterruptedException
+  {
+    while (!readAheadQueue.offer(toQueue, 100, TimeUnit.MILLISECONDS))
+    {
+      if (closed)
+      {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
@@ -95,7 +242,7 @@ class ReplInputStream extends InputStream
     {
       // First time this method is called or the previous entry was
       // finished. Read a new entry and return it.
-      bytes = domain.receiveEntryBytes();
+      bytes = nextEntryBytes();
 
       if (bytes==null)
       {
@@ -57,6 +57,7 @@ import org.opends.server.tasks.InitializeTask;
 import org.opends.server.types.Attribute;
 import org.opends.server.types.DN;
 import org.opends.server.types.DirectoryException;
+import org.opends.server.util.LatencyHistogram;
 
 /**
  * This class should be used as a base for Replication implementations.
@@ -210,6 +211,13 @@ public abstract class ReplicationDomain
   private ServerStatus status = ServerStatus.NOT_CONNECTED_STATUS;
   private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
 
+  /**
+   * Size of the buffer used to batch the exported LDIF before it is sent to
+   * the importers: each {@link EntryMsg} carries up to this many bytes, which
+   * limits the number of messages and flow control round trips per entry.
+   */
+  private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
   /** The configuration of the replication domain. */
   protected volatile ReplicationDomainCfg config;
   /**
@@ -237,6 +245,11 @@ public abstract class ReplicationDomain
    * Null when none is being processed.
    */
   private final AtomicReference<ImportExportContext> importExportContext = new AtomicReference<>();
+  /**
+   * Whether {@link #receiveEntryBytes()} must stop receiving messages, set
+   * when the stream of the current import is closed.
+   */
+  private volatile boolean entryBytesReceptionStopped;
 
   /**
    * The Thread waiting for incoming update messages for this domain and pushing
@@ -320,6 +333,11 @@ public abstract class ReplicationDomain
    * String format: &lt;server id&gt;:&lt;number of failed updates&gt;
    */
   private final Map<Integer, Integer> assuredSdServerTimeoutUpdates = new HashMap<>();
+  /**
+   * Time spent waiting for the acknowledgment of updates sent in assured mode,
+   * including the updates whose acknowledgment timed out.
+   */
+  private final LatencyHistogram assuredAckLatency = new LatencyHistogram();
 
   /* Status related monitoring fields */
 
@@ -1512,7 +1530,7 @@ public abstract class ReplicationDomain
               ERR_INIT_NO_SUCCESS_START_FROM_SERVERS.get(getBaseDN(), ieCtx.failureList));
         }
 
-        exportBackend(new BufferedOutputStream(new ReplOutputStream(this)));
+        exportBackend(new BufferedOutputStream(new ReplOutputStream(this), EXPORT_BUFFER_SIZE));
 
         // Notify the peer of the success
         broker.publish(
@@ -1860,7 +1878,7 @@ public abstract class ReplicationDomain
   protected byte[] receiveEntryBytes()
   {
     ReplicationMsg msg;
-    while (true)
+    while (!entryBytesReceptionStopped)
     {
       ImportExportContext ieCtx = importExportContext.get();
       try
@@ -1871,6 +1889,11 @@ public abstract class ReplicationDomain
         // We want to be notified of topology change in order to track a
         // potential disconnection of the exporter.
         msg = broker.receive(false, false, true);
+        if (entryBytesReceptionStopped)
+        {
+          // The import has been stopped, the broker may now be restarted
+          return null;
+        }
 
         if (logger.isTraceEnabled())
         {
@@ -1976,6 +1999,17 @@ public abstract class ReplicationDomain
             ERR_INIT_IMPORT_FAILURE.get(e.getLocalizedMessage())));
       }
     }
+    return null;
+  }
+
+  /**
+   * Stops the reception of entry bytes by {@link #receiveEntryBytes()}, which
+   * then returns null instead of consuming more messages from the broker.
+   * Called when the stream of the current import is closed.
+   */
+  void stopReceivingEntryBytes()
+  {
+    entryBytesReceptionStopped = true;
   }
 
   /**
@@ -2243,6 +2277,7 @@ public abstract class ReplicationDomain
     }
 
     InitializeTask initFromTask = null;
+    ReplInputStream input = null;
     int source = initTargetMsgReceived.getSenderID();
     ImportExportContext ieCtx = importExportContext.get();
     try
@@ -2272,7 +2307,9 @@ public abstract class ReplicationDomain
       initFromTask = (InitializeTask) ieCtx.initializeTask;
 
       // Launch the import
-      importBackend(new ReplInputStream(this));
+      entryBytesReceptionStopped = false;
+      input = new ReplInputStream(this);
+      importBackend(input);
     }
     catch (DirectoryException e)
     {
@@ -2298,7 +2335,13 @@ public abstract class ReplicationDomain
       - when we have connection failure, reconnect to retry a new import
       right here, right now
       we never want retryOnFailure if we fails reconnecting in the restart.
+      The import stream is closed first, so that its read-ahead thread does
+      not consume the messages received by the new session.
       */
+      if (input != null)
+      {
+        input.close();
+      }
       broker.reStart(false);
 
       if (ieCtx.getException() != null
@@ -2863,6 +2906,16 @@ public abstract class ReplicationDomain
     }
   }
 
+  /**
+   * Gets the distribution of the time spent waiting for the acknowledgment of
+   * updates sent in assured mode.
+   * @return The distribution of the acknowledgment waiting time.
+   */
+  public LatencyHistogram getAssuredAckLatency()
+  {
+    return assuredAckLatency;
+  }
+
   /**
    * Gets the date of the last status change.
    * @return The date of the last status change.
@@ -3309,6 +3362,7 @@ public abstract class ReplicationDomain
 
     // Wait for the ack to be received, timing out if necessary
     long startTime = System.currentTimeMillis();
+    final long startTimeNanos = System.nanoTime();
     synchronized (msg)
     {
       CSN csn = msg.getCSN();
@@ -3346,6 +3400,7 @@ public abstract class ReplicationDomain
           }
 
           // No luck, this is a real timeout
+          assuredAckLatency.recordSince(startTimeNanos);
           // Increment assured replication monitoring counters
           switch (msg.getAssuredMode())
           {
@@ -3372,6 +3427,7 @@ public abstract class ReplicationDomain
         }
       }
     }
+    assuredAckLatency.recordSince(startTimeNanos);
   }
 
   /**
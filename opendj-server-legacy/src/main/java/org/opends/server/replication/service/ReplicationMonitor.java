@@ -147,6 +147,7 @@ public class ReplicationMonitor extends MonitorProvider<MonitorProviderCfg>
     addMonitorData(attributes, "assured-sd-acknowledged-updates", domain.getAssuredSdAcknowledgedUpdates());
     addMonitorData(attributes, "assured-sd-timeout-updates", domain.getAssuredSdTimeoutUpdates());
     addMonitorData(attributes, "assured-sd-server-timeout-updates", domain.getAssuredSdServerTimeoutUpdates());
+    domain.getAssuredAckLatency().addMonitorData(attributes, "assured-ack-latency");
 
     // Status related monitoring fields
     addMonitorData(attributes, "last-status-change-date", domain.getLastStatusChangeDate());
@@ -646,7 +646,15 @@ public class ImportTask extends Task
         return TaskState.STOPPED_BY_ERROR;
       }
 
-      importConfig = new LDIFImportConfig(tf);
+      if (threadCount > 0)
+      {
+        // Generate the entries with the import threads, the same way whatever their number
+        importConfig = new LDIFImportConfig(tf, random.nextInt(), threadCount);
+      }
+      else
+      {
+        importConfig = new LDIFImportConfig(tf);
+      }
     }
     else
     {
@@ -0,0 +1,239 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.ExistingFileBehavior;
+import org.opends.server.types.LDIFExportConfig;
+import org.opends.server.types.LDIFImportConfig;
+import org.opends.server.util.LDIFException;
+import org.opends.server.util.LDIFReader;
+import org.opends.server.util.LDIFWriter;
+import org.opends.server.util.StaticUtils;
+
+/**
+ * Sorts entries by DN, keeping at most a given number of entries in memory.
+ * <p>
+ * Entries are buffered in memory. When the buffer is full, its entries are
+ * sorted and written to a temporary LDIF file, and the sorted runs are merged
+ * when the entries are read back. As with a map keyed by DN, when several
+ * entries have the same DN, the last one added wins.
+ */
+final class ExternalEntrySorter implements Closeable
+{
+  private final int bufferSize;
+  private final File tmpDirectory;
+  private TreeMap<DN, Entry> buffer = new TreeMap<>();
+  private final List<File> runFiles = new ArrayList<>();
+  private final List<LDIFReader> runReaders = new ArrayList<>();
+
+  /** The merge of the runs, ordered by DN then by run, once the entries are sorted. */
+  private PriorityQueue<RunHead> heads;
+  /** The entries of the single in memory run, once the entries are sorted. */
+  private Iterator<Entry> inMemoryRun;
+
+  /**
+   * Creates a new external entry sorter.
+   *
+   * @param bufferSize
+   *          the maximum number of entries to keep in memory, or {@code 0} to
+   *          sort all the entries in memory
+   * @param tmpDirectory
+   *          the directory where the sorted runs are written
+   */
+  ExternalEntrySorter(int bufferSize, File tmpDirectory)
+  {
+    this.bufferSize = bufferSize;
+    this.tmpDirectory = tmpDirectory;
+  }
+
+  /**
+   * Adds an entry to sort.
+   *
+   * @param entry
+   *          the entry to add
+   * @throws IOException
+   *           if the sorted run cannot be written to a temporary file
+   */
+  void add(Entry entry) throws IOException
+  {
+    buffer.put(entry.getName(), entry);
+    if (bufferSize > 0 && buffer.size() >= bufferSize)
+    {
+      writeRun();
+    }
+  }
+
+  private void writeRun() throws IOException
+  {
+    final File runFile = File.createTempFile("ldifsort", ".ldif", tmpDirectory);
+    runFiles.add(runFile);
+    final LDIFWriter writer =
+        new LDIFWriter(new LDIFExportConfig(runFile.getAbsolutePath(), ExistingFileBehavior.OVERWRITE));
+    try
+    {
+      for (Entry entry : buffer.values())
+      {
+        writer.writeEntry(entry);
+      }
+    }
+    catch (LDIFException e)
+    {
+      throw new IOException(e.getMessage(), e);
+    }
+    finally
+    {
+      StaticUtils.close(writer);
+    }
+    buffer = new TreeMap<>();
+  }
+
+  /**
+   * Ends adding entries, and prepares reading them in the order of their DNs.
+   *
+   * @throws IOException
+   *           if the sorted runs cannot be written or read
+   */
+  void sort() throws IOException
+  {
+    if (runFiles.isEmpty())
+    {
+      inMemoryRun = buffer.values().iterator();
+      return;
+    }
+    if (!buffer.isEmpty())
+    {
+      writeRun();
+    }
+    buffer = null;
+
+    heads = new PriorityQueue<>(runFiles.size());
+    for (int i = 0; i < runFiles.size(); i++)
+    {
+      final LDIFReader reader = new LDIFReader(new LDIFImportConfig(runFiles.get(i).getAbsolutePath()));
+      runReaders.add(reader);
+      final RunHead head = new RunHead(i, reader);
+      if (head.next())
+      {
+        heads.add(head);
+      }
+    }
+  }
+
+  /**
+   * Returns the next entry in the order of the DNs.
+   *
+   * @return the next entry, or {@code null} if all the entries have been read
+   * @throws IOException
+   *           if a sorted run cannot be read
+   */
+  Entry next() throws IOException
+  {
+    if (inMemoryRun != null)
+    {
+      return inMemoryRun.hasNext() ? inMemoryRun.next() : null;
+    }
+
+    RunHead head = heads.poll();
+    if (head == null)
+    {
+      return null;
+    }
+    // for duplicate DNs, the entry from the latest run wins
+    Entry entry = head.entry;
+    advance(head);
+    while (!heads.isEmpty() && heads.peek().entry.getName().equals(entry.getName()))
+    {
+      head = heads.poll();
+      entry = head.entry;
+      advance(head);
+    }
+    return entry;
+  }
+
+  private void advance(RunHead head) throws IOException
+  {
+    if (head.next())
+    {
+      heads.add(head);
+    }
+  }
+
+  /** Deletes the temporary files holding the sorted runs. */
+  @Override
+  public void close()
+  {
+    StaticUtils.close(runReaders);
+    for (File runFile : runFiles)
+    {
+      runFile.delete();
+    }
+  }
+
+  /** The current entry of a sorted run. */
+  private static final class RunHead implements Comparable<RunHead>
+  {
+    private final int runIndex;
+    private final LDIFReader reader;
+    private Entry entry;
+
+    private RunHead(int runIndex, LDIFReader reader)
+    {
+      this.runIndex = runIndex;
+      this.reader = reader;
+    }
+
+    private boolean next() throws IOException
+    {
+      try
+      {
+        entry = reader.readEntry(false);
+        return entry != null;
+      }
+      catch (LDIFException e)
+      {
+        throw new IOException(e.getMessage(), e);
+      }
+    }
+
+    @Override
+    public int compareTo(RunHead o)
+    {
+      final int cmp = entry.getName().compareTo(o.entry.getName());
+      return cmp != 0 ? cmp : Integer.compare(runIndex, o.runIndex);
+    }
+  }
+}
@@ -1027,7 +1027,23 @@ public class ImportLDIF extends TaskTool {
         return 1;
       }
 
-      importConfig = new LDIFImportConfig(tf);
+      if (threadCount.isPresent())
+      {
+        // Generate the entries with the import threads, the same way whatever their number
+        try
+        {
+          importConfig = new LDIFImportConfig(tf, random.nextInt(), threadCount.getIntValue());
+        }
+        catch (Exception e)
+        {
+          logger.error(ERR_LDIFIMPORT_CANNOT_PARSE_THREAD_COUNT, threadCount.getValue(), e.getMessage());
+          return 1;
+        }
+      }
+      else
+      {
+        importConfig = new LDIFImportConfig(tf);
+      }
     }
 
 
@@ -0,0 +1,1190 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools;
+
+import static com.forgerock.opendj.cli.ArgumentConstants.*;
+import static com.forgerock.opendj.cli.Utils.*;
+
+import static org.opends.messages.ToolMessages.*;
+import static org.opends.server.protocols.ldap.LDAPResultCode.*;
+import static org.opends.server.util.StaticUtils.*;
+import static org.opends.server.util.args.LDAPConnectionArgumentParser.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.DecodeException;
+import org.forgerock.opendj.ldap.DereferenceAliasesPolicy;
+import org.forgerock.opendj.ldap.ModificationType;
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.core.DirectoryServer.DirectoryServerVersionHandler;
+import org.opends.server.protocols.ldap.AddRequestProtocolOp;
+import org.opends.server.protocols.ldap.AddResponseProtocolOp;
+import org.opends.server.protocols.ldap.BindRequestProtocolOp;
+import org.opends.server.protocols.ldap.BindResponseProtocolOp;
+import org.opends.server.protocols.ldap.DeleteRequestProtocolOp;
+import org.opends.server.protocols.ldap.DeleteResponseProtocolOp;
+import org.opends.server.protocols.ldap.LDAPAttribute;
+import org.opends.server.protocols.ldap.LDAPFilter;
+import org.opends.server.protocols.ldap.LDAPMessage;
+import org.opends.server.protocols.ldap.LDAPModification;
+import org.opends.server.protocols.ldap.ModifyRequestProtocolOp;
+import org.opends.server.protocols.ldap.ModifyResponseProtocolOp;
+import org.opends.server.protocols.ldap.ProtocolOp;
+import org.opends.server.protocols.ldap.SearchRequestProtocolOp;
+import org.opends.server.protocols.ldap.SearchResultDoneProtocolOp;
+import org.opends.server.protocols.ldap.SearchResultEntryProtocolOp;
+import org.opends.server.protocols.ldap.SearchResultReferenceProtocolOp;
+import org.opends.server.tools.makeldif.Template;
+import org.opends.server.tools.makeldif.TemplateEntry;
+import org.opends.server.tools.makeldif.TemplateFile;
+import org.opends.server.tools.makeldif.TemplateLine;
+import org.opends.server.tools.makeldif.TemplateValue;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.DN;
+import org.opends.server.types.LDAPException;
+import org.opends.server.types.NullOutputStream;
+import org.opends.server.types.RawAttribute;
+import org.opends.server.types.RawModification;
+import org.opends.server.util.EmbeddedUtils;
+import org.opends.server.util.LatencyHistogram;
+
+import com.forgerock.opendj.cli.ArgumentException;
+import com.forgerock.opendj.cli.ArgumentParser;
+import com.forgerock.opendj.cli.BooleanArgument;
+import com.forgerock.opendj.cli.CliConstants;
+import com.forgerock.opendj.cli.CommonArguments;
+import com.forgerock.opendj.cli.FileBasedArgument;
+import com.forgerock.opendj.cli.IntegerArgument;
+import com.forgerock.opendj.cli.MultiChoiceArgument;
+import com.forgerock.opendj.cli.StringArgument;
+
+/**
+ * This class provides a tool that can be used to generate load against a
+ * Directory Server, in order to measure its throughput and latencies.
+ * <p>
+ * Several threads share a pool of connections and issue synchronous search,
+ * modify, add and delete, or bind operations, or a weighted mix of them, at
+ * the highest possible rate or at a target rate. The filters, DNs and values
+ * of the operations are generated from MakeLDIF template expressions, and the
+ * added entries from a MakeLDIF template file, so that the load can target the
+ * data generated by the make-ldif tool. The throughput and latency percentiles
+ * of each type of operation are reported at regular intervals and when the
+ * load generation completes.
+ */
+public class LDAPLoadGenerator
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The fully-qualified name of this class. */
+  private static final String CLASS_NAME = "org.opends.server.tools.LDAPLoadGenerator";
+
+  /** The attribute holding the values of the template expressions. */
+  private static final String EXPRESSION_ATTRIBUTE = "ldapload-value";
+
+  /** The types of operations generated by this tool. */
+  enum OperationType
+  {
+    /** Search operations. */
+    SEARCH,
+    /** Modify operations. */
+    MODIFY,
+    /** Add operations, each one followed by a delete operation. */
+    ADD,
+    /** Delete operations, removing the added entries. */
+    DELETE,
+    /** Simple bind operations. */
+    BIND;
+
+    /**
+     * Returns the name of this type of operation.
+     *
+     * @return the name of this type of operation
+     */
+    String getName()
+    {
+      return toLowerCase(name());
+    }
+  }
+
+  /** A connection to the Directory Server, with the message IDs it uses. */
+  private static final class PooledConnection
+  {
+    private final LDAPConnection connection;
+    private final AtomicInteger nextMessageID = new AtomicInteger(1);
+
+    private PooledConnection(LDAPConnection connection)
+    {
+      this.connection = connection;
+    }
+  }
+
+  /**
+   * A MakeLDIF template expression, such as
+   * {@code uid=user.<random:numeric:0:9999>,ou=People,dc=example,dc=com}.
+   * <p>
+   * The expression is the value of the single line of a template, so it can use
+   * all the tags available in template files. The values are generated under a
+   * lock, so that sequential tags generate unique values across all the
+   * threads.
+   */
+  private static final class TemplateExpression
+  {
+    private final TemplateFile templateFile;
+    private final Template template;
+    private final AttributeType attributeType;
+
+    private TemplateExpression(String resourcePath, Random random,
+        String expression) throws Exception
+    {
+      templateFile = new TemplateFile(resourcePath, random);
+      templateFile.parse(new String[] {
+        "template: expression",
+        "rdnAttr: " + EXPRESSION_ATTRIBUTE,
+        EXPRESSION_ATTRIBUTE + ": " + expression
+      }, new ArrayList<LocalizableMessage>());
+      template = templateFile.getTemplate("expression");
+      attributeType = template.getTemplateLines()[0].getAttributeType();
+    }
+
+    private String evaluate()
+    {
+      synchronized (templateFile)
+      {
+        templateFile.nextFirstAndLastNames();
+        TemplateEntry entry = new TemplateEntry(template, DN.rootDN());
+        template.getTemplateLines()[0].generateLine(entry);
+        TemplateValue value = entry.getValue(attributeType);
+        return value != null ? value.getValue().toString() : "";
+      }
+    }
+  }
+
+  /**
+   * Generates the entries to add from the first template of a MakeLDIF
+   * template file, below a given parent entry.
+   */
+  private static final class EntryGenerator
+  {
+    private final TemplateFile templateFile;
+    private final Template template;
+    private final DN parentDN;
+
+    private EntryGenerator(TemplateFile templateFile, Template template,
+        DN parentDN)
+    {
+      this.templateFile = templateFile;
+      this.template = template;
+      this.parentDN = parentDN;
+    }
+
+    private AddRequestProtocolOp generate()
+    {
+      synchronized (templateFile)
+      {
+        templateFile.nextFirstAndLastNames();
+        TemplateEntry entry = new TemplateEntry(template, parentDN);
+        Set<AttributeType> types = new LinkedHashSet<>();
+        for (TemplateLine line : template.getTemplateLines())
+        {
+          line.generateLine(entry);
+          types.add(line.getAttributeType());
+        }
+
+        List<RawAttribute> attributes = new ArrayList<>(types.size());
+        for (AttributeType type : types)
+        {
+          List<TemplateValue> templateValues = entry.getValues(type);
+          if (templateValues != null)
+          {
+            List<String> attrValues = new ArrayList<>(templateValues.size());
+            for (TemplateValue v : templateValues)
+            {
+              attrValues.add(v.getValue().toString());
+            }
+            attributes.add(new LDAPAttribute(type.getNameOrOID(), attrValues));
+          }
+        }
+
+        DN dn = entry.getDN();
+        return new AddRequestProtocolOp(
+            ByteString.valueOfUtf8(dn != null ? dn.toString() : ""), attributes);
+      }
+    }
+  }
+
+  /**
+   * A thread generating operations until the load generation completes. Each
+   * thread records the latencies of its operations in its own histograms,
+   * which the reporting thread reads while they are updated.
+   */
+  private final class LoadWorker implements Runnable
+  {
+    private final Random random;
+    private final Map<OperationType, LatencyHistogram> latencies =
+        new EnumMap<>(OperationType.class);
+    private final AtomicLongArray errors =
+        new AtomicLongArray(OperationType.values().length);
+
+    private LoadWorker(long seed)
+    {
+      random = new Random(seed);
+      for (OperationType type : OperationType.values())
+      {
+        latencies.put(type, new LatencyHistogram());
+      }
+    }
+
+    @Override
+    public void run()
+    {
+      try
+      {
+        long intendedStart;
+        while ((intendedStart = waitForNextOperation()) >= 0)
+        {
+          OperationType type = chooseOperation();
+          PooledConnection connection = connections.take();
+          try
+          {
+            perform(type, connection, intendedStart);
+          }
+          finally
+          {
+            connections.put(connection);
+          }
+        }
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+      catch (Exception e)
+      {
+        logger.traceException(e);
+        failure.compareAndSet(null, e);
+      }
+    }
+
+    private OperationType chooseOperation()
+    {
+      int choice = random.nextInt(totalWeight);
+      for (Map.Entry<OperationType, Integer> weight : weights.entrySet())
+      {
+        choice -= weight.getValue();
+        if (choice < 0)
+        {
+          return weight.getKey();
+        }
+      }
+      return weights.keySet().iterator().next();
+    }
+
+    private void perform(OperationType type, PooledConnection connection,
+        long intendedStart) throws IOException, DecodeException, LDAPException
+    {
+      switch (type)
+      {
+      case SEARCH:
+        LDAPFilter filter;
+        try
+        {
+          filter = LDAPFilter.decode(filterExpression.evaluate());
+        }
+        catch (LDAPException e)
+        {
+          logger.traceException(e);
+          errors.incrementAndGet(type.ordinal());
+          return;
+        }
+        execute(connection, type, intendedStart,
+            new SearchRequestProtocolOp(ByteString.valueOfUtf8(baseDN),
+                searchScope, DereferenceAliasesPolicy.NEVER, 0, 0, false,
+                filter, Collections.<String> emptySet()));
+        break;
+
+      case MODIFY:
+        List<RawModification> mods = new ArrayList<>(1);
+        mods.add(new LDAPModification(ModificationType.REPLACE,
+            new LDAPAttribute(modifyAttribute, modifyValueExpression.evaluate())));
+        execute(connection, type, intendedStart, new ModifyRequestProtocolOp(
+            ByteString.valueOfUtf8(targetDNExpression.evaluate()), mods));
+        break;
+
+      case ADD:
+        AddRequestProtocolOp addRequest = entryGenerator.generate();
+        if (execute(connection, type, intendedStart, addRequest) == SUCCESS)
+        {
+          execute(connection, OperationType.DELETE, System.nanoTime(),
+              new DeleteRequestProtocolOp(addRequest.getDN()));
+        }
+        break;
+
+      case BIND:
+        execute(connection, type, intendedStart, new BindRequestProtocolOp(
+            ByteString.valueOfUtf8(targetDNExpression.evaluate()), 3,
+            ByteString.valueOfUtf8(targetPassword)));
+        if (weights.size() > 1)
+        {
+          // Restore the identity used by the other operations
+          execute(connection, null, System.nanoTime(), new BindRequestProtocolOp(
+              ByteString.valueOfUtf8(bindDN), 3,
+              ByteString.valueOfUtf8(bindPassword)));
+        }
+        break;
+
+      default:
+        throw new IllegalArgumentException(type.getName());
+      }
+    }
+
+    /**
+     * Sends a request and waits for its result, then records its latency
+     * unless no operation type is provided.
+     */
+    private int execute(PooledConnection connection, OperationType type,
+        long start, ProtocolOp request)
+        throws IOException, DecodeException, LDAPException
+    {
+      int messageID = connection.nextMessageID.getAndIncrement();
+      connection.connection.getLDAPWriter().writeMessage(
+          new LDAPMessage(messageID, request));
+
+      int resultCode;
+      do
+      {
+        LDAPMessage response = connection.connection.getLDAPReader().readMessage();
+        if (response == null)
+        {
+          throw new IOException(ERR_LDAPLOAD_CONNECTION_CLOSED.get().toString());
+        }
+        resultCode = getResultCode(response);
+      }
+      while (resultCode < 0);
+
+      if (type != null)
+      {
+        latencies.get(type).recordSince(start);
+        if (resultCode != SUCCESS)
+        {
+          errors.incrementAndGet(type.ordinal());
+        }
+      }
+      return resultCode;
+    }
+  }
+
+
+
+  /** The weight of each type of operation to generate. */
+  private final Map<OperationType, Integer> weights;
+  /** The sum of all the weights. */
+  private final int totalWeight;
+  /** The connections shared by all the threads. */
+  private final BlockingQueue<PooledConnection> connections;
+
+  private final String baseDN;
+  private final SearchScope searchScope;
+  private final TemplateExpression filterExpression;
+  private final TemplateExpression targetDNExpression;
+  private final TemplateExpression modifyValueExpression;
+  private final String modifyAttribute;
+  private final String targetPassword;
+  private final EntryGenerator entryGenerator;
+  private final String bindDN;
+  private final String bindPassword;
+
+  /** The delay between two operations, in nanoseconds, or 0 for no delay. */
+  private final long operationIntervalNanos;
+  /** The time when the next operation should start, when a rate is targeted. */
+  private final AtomicLong nextOperationTime = new AtomicLong();
+  /** The time after which no operation is started, or 0 for no limit. */
+  private long deadline;
+  /** The maximum number of operations to generate, or 0 for no limit. */
+  private final long maxOperations;
+  /** The number of operations started so far. */
+  private final AtomicLong startedOperations = new AtomicLong();
+  /** The first error which stopped the load generation. */
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+  private final List<LoadWorker> workers = new ArrayList<>();
+
+  private LDAPLoadGenerator(Map<OperationType, Integer> weights,
+      List<PooledConnection> connections, String baseDN,
+      SearchScope searchScope, TemplateExpression filterExpression,
+      TemplateExpression targetDNExpression,
+      TemplateExpression modifyValueExpression, String modifyAttribute,
+      String targetPassword, EntryGenerator entryGenerator, String bindDN,
+      String bindPassword, int targetRate, long maxOperations)
+  {
+    this.weights = weights;
+    int total = 0;
+    for (int weight : weights.values())
+    {
+      total += weight;
+    }
+    this.totalWeight = total;
+    this.connections = new ArrayBlockingQueue<>(connections.size(), false, connections);
+    this.baseDN = baseDN;
+    this.searchScope = searchScope;
+    this.filterExpression = filterExpression;
+    this.targetDNExpression = targetDNExpression;
+    this.modifyValueExpression = modifyValueExpression;
+    this.modifyAttribute = modifyAttribute;
+    this.targetPassword = targetPassword;
+    this.entryGenerator = entryGenerator;
+    this.bindDN = bindDN != null ? bindDN : "";
+    this.bindPassword = bindPassword != null ? bindPassword : "";
+    this.operationIntervalNanos = targetRate > 0 ? 1000000000L / targetRate : 0;
+    this.maxOperations = maxOperations;
+  }
+
+  /**
+   * Waits until the next operation must start.
+   *
+   * @return the time when the operation should have started, used to measure
+   *         its latency, or -1 if no more operation must be generated
+   */
+  private long waitForNextOperation() throws InterruptedException
+  {
+    if (failure.get() != null
+        || (maxOperations > 0 && startedOperations.incrementAndGet() > maxOperations))
+    {
+      return -1;
+    }
+
+    long now = System.nanoTime();
+    long start = now;
+    if (operationIntervalNanos > 0)
+    {
+      start = nextOperationTime.getAndAdd(operationIntervalNanos);
+      if (start > now)
+      {
+        TimeUnit.NANOSECONDS.sleep(start - now);
+        now = System.nanoTime();
+      }
+    }
+    if (deadline != 0 && now - deadline >= 0)
+    {
+      return -1;
+    }
+    return Math.max(start, 0);
+  }
+
+  /**
+   * Generates the load with the provided number of threads, and reports the
+   * throughput and latencies at the provided interval.
+   */
+  private int run(int numThreads, int maxDurationSeconds,
+      int statsIntervalSeconds, PrintStream out, PrintStream err)
+      throws InterruptedException
+  {
+    final long startTime = System.nanoTime();
+    nextOperationTime.set(startTime);
+    if (maxDurationSeconds > 0)
+    {
+      deadline = startTime + TimeUnit.SECONDS.toNanos(maxDurationSeconds);
+    }
+
+    Random seeds = new Random();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+        new DirectoryThread.Factory("LDAP Load Generator"));
+    for (int i = 0; i < numThreads; i++)
+    {
+      LoadWorker worker = new LoadWorker(seeds.nextLong());
+      workers.add(worker);
+      executor.submit(worker);
+    }
+    executor.shutdown();
+
+    Map<OperationType, LatencyHistogram> previous = collectLatencies();
+    long[] previousErrors = collectErrors();
+    long previousTime = startTime;
+    boolean completed = false;
+    while (!completed)
+    {
+      completed = executor.awaitTermination(statsIntervalSeconds, TimeUnit.SECONDS);
+
+      Map<OperationType, LatencyHistogram> current = collectLatencies();
+      long[] currentErrors = collectErrors();
+      long now = System.nanoTime();
+      double seconds = Math.max((now - previousTime) / 1e9, 1e-3);
+      for (OperationType type : OperationType.values())
+      {
+        LatencyHistogram interval = current.get(type).since(previous.get(type));
+        long count = interval.getCount();
+        if (count > 0)
+        {
+          out.println(INFO_LDAPLOAD_INTERVAL_STATS.get(
+              TimeUnit.NANOSECONDS.toSeconds(now - startTime), type.getName(),
+              count / seconds, currentErrors[type.ordinal()] - previousErrors[type.ordinal()],
+              toMillis(interval.getMean(TimeUnit.MICROSECONDS)),
+              toMillis(interval.getPercentile(50, TimeUnit.MICROSECONDS)),
+              toMillis(interval.getPercentile(90, TimeUnit.MICROSECONDS)),
+              toMillis(interval.getPercentile(99, TimeUnit.MICROSECONDS)),
+              toMillis(interval.getPercentile(99.9, TimeUnit.MICROSECONDS)),
+              toMillis(interval.getMax(TimeUnit.MICROSECONDS))));
+        }
+      }
+      previous = current;
+      previousErrors = currentErrors;
+      previousTime = now;
+    }
+
+    long elapsedNanos = Math.max(System.nanoTime() - startTime, 1);
+    for (OperationType type : OperationType.values())
+    {
+      LatencyHistogram total = previous.get(type);
+      long count = total.getCount();
+      if (count > 0)
+      {
+        out.println(INFO_LDAPLOAD_TOTAL_STATS.get(
+            type.getName(), count, TimeUnit.NANOSECONDS.toSeconds(elapsedNanos),
+            count * 1e9 / elapsedNanos, previousErrors[type.ordinal()],
+            toMillis(total.getMean(TimeUnit.MICROSECONDS)),
+            toMillis(total.getPercentile(50, TimeUnit.MICROSECONDS)),
+            toMillis(total.getPercentile(90, TimeUnit.MICROSECONDS)),
+            toMillis(total.getPercentile(99, TimeUnit.MICROSECONDS)),
+            toMillis(total.getPercentile(99.9, TimeUnit.MICROSECONDS)),
+            toMillis(total.getMax(TimeUnit.MICROSECONDS))));
+      }
+    }
+
+    Exception e = failure.get();
+    if (e != null)
+    {
+      printWrappedText(err, ERR_LDAPLOAD_LOAD_FAILED.get(getExceptionMessage(e)));
+      return 1;
+    }
+    return 0;
+  }
+
+  private Map<OperationType, LatencyHistogram> collectLatencies()
+  {
+    Map<OperationType, LatencyHistogram> results = new EnumMap<>(OperationType.class);
+    for (OperationType type : OperationType.values())
+    {
+      LatencyHistogram histogram = new LatencyHistogram();
+      for (LoadWorker worker : workers)
+      {
+        histogram.merge(worker.latencies.get(type));
+      }
+      results.put(type, histogram);
+    }
+    return results;
+  }
+
+  private long[] collectErrors()
+  {
+    long[] results = new long[OperationType.values().length];
+    for (LoadWorker worker : workers)
+    {
+      for (int i = 0; i < results.length; i++)
+      {
+        results[i] += worker.errors.get(i);
+      }
+    }
+    return results;
+  }
+
+  private static double toMillis(long micros)
+  {
+    return micros / 1000.0;
+  }
+
+  /**
+   * Returns the result code of the provided response.
+   *
+   * @return the result code of the response, or -1 if the response is a
+   *         search result entry or reference preceding the result
+   */
+  private static int getResultCode(LDAPMessage response) throws LDAPException
+  {
+    ProtocolOp op = response.getProtocolOp();
+    if (op instanceof SearchResultEntryProtocolOp
+        || op instanceof SearchResultReferenceProtocolOp)
+    {
+      return -1;
+    }
+    else if (op instanceof SearchResultDoneProtocolOp)
+    {
+      return ((SearchResultDoneProtocolOp) op).getResultCode();
+    }
+    else if (op instanceof ModifyResponseProtocolOp)
+    {
+      return ((ModifyResponseProtocolOp) op).getResultCode();
+    }
+    else if (op instanceof AddResponseProtocolOp)
+    {
+      return ((AddResponseProtocolOp) op).getResultCode();
+    }
+    else if (op instanceof DeleteResponseProtocolOp)
+    {
+      return ((DeleteResponseProtocolOp) op).getResultCode();
+    }
+    else if (op instanceof BindResponseProtocolOp)
+    {
+      return ((BindResponseProtocolOp) op).getResultCode();
+    }
+    throw new LDAPException(PROTOCOL_ERROR,
+        ERR_LDAPLOAD_UNEXPECTED_RESPONSE.get(response));
+  }
+
+  /**
+   * Parses the values of the operation argument.
+   *
+   * @return the weight of each type of operation, or {@code null} if one of
+   *         the values is invalid
+   */
+  private static Map<OperationType, Integer> parseOperations(
+      List<String> values, PrintStream err)
+  {
+    Map<OperationType, Integer> weights = new EnumMap<>(OperationType.class);
+    for (String value : values)
+    {
+      int colonPos = value.indexOf(':');
+      String name = colonPos < 0 ? value : value.substring(0, colonPos);
+      try
+      {
+        OperationType type = OperationType.valueOf(toUpperCase(name.trim()));
+        int weight = colonPos < 0 ? 1 : Integer.parseInt(value.substring(colonPos + 1).trim());
+        if (type == OperationType.DELETE || weight <= 0)
+        {
+          throw new IllegalArgumentException(value);
+        }
+        weights.put(type, weight);
+      }
+      catch (IllegalArgumentException e)
+      {
+        // Also catches NumberFormatException
+        printWrappedText(err, ERR_LDAPLOAD_INVALID_OPERATION.get(value));
+        return null;
+      }
+    }
+    return weights;
+  }
+
+
+
+  /**
+   * The main method for the LDAP load generator tool.
+   *
+   * @param  args  The command-line arguments provided to this program.
+   */
+  public static void main(String[] args)
+  {
+    int retCode = mainLoad(args, true, System.out, System.err);
+
+    if(retCode != 0)
+    {
+      System.exit(filterExitCode(retCode));
+    }
+  }
+
+  /**
+   * Parses the provided command-line arguments and uses that information to
+   * generate load against the Directory Server.
+   *
+   * @param  args              The command-line arguments provided to this
+   *                           program.
+   * @param  initializeServer  Indicates whether to initialize the server.
+   * @param  outStream         The output stream to use for standard output, or
+   *                           <CODE>null</CODE> if standard output is not
+   *                           needed.
+   * @param  errStream         The output stream to use for standard error, or
+   *                           <CODE>null</CODE> if standard error is not
+   *                           needed.
+   *
+   * @return The error code.
+   */
+  public static int mainLoad(String[] args, boolean initializeServer,
+                             OutputStream outStream, OutputStream errStream)
+  {
+    PrintStream out = NullOutputStream.wrapOrNullStream(outStream);
+    PrintStream err = NullOutputStream.wrapOrNullStream(errStream);
+
+    BooleanArgument   showUsage;
+    BooleanArgument   startTLS;
+    BooleanArgument   trustAll;
+    BooleanArgument   useSSL;
+    FileBasedArgument bindPasswordFile;
+    IntegerArgument   connectTimeout;
+    IntegerArgument   maxDuration;
+    IntegerArgument   maxOperations;
+    IntegerArgument   numConnections;
+    IntegerArgument   numThreads;
+    IntegerArgument   port;
+    IntegerArgument   randomSeed;
+    IntegerArgument   statsInterval;
+    IntegerArgument   targetRate;
+    MultiChoiceArgument searchScope;
+    StringArgument    baseDN;
+    StringArgument    bindDN;
+    StringArgument    bindPassword;
+    StringArgument    filter;
+    StringArgument    hostName;
+    StringArgument    modifyAttribute;
+    StringArgument    modifyValue;
+    StringArgument    operation;
+    StringArgument    resourcePath;
+    StringArgument    targetDN;
+    StringArgument    targetPassword;
+    StringArgument    templateFile;
+
+    // Create the command-line argument parser for use with this program.
+    LocalizableMessage toolDescription = INFO_LDAPLOAD_TOOL_DESCRIPTION.get();
+    ArgumentParser argParser = new ArgumentParser(CLASS_NAME, toolDescription, false);
+    argParser.setShortToolDescription(REF_SHORT_DESC_LDAPLOAD.get());
+    argParser.setVersionHandler(new DirectoryServerVersionHandler());
+    try
+    {
+      hostName = new StringArgument("host", OPTION_SHORT_HOST,
+                                    OPTION_LONG_HOST, false, false, true,
+                                    INFO_HOST_PLACEHOLDER.get(), "localhost",
+                                    null,
+                                    INFO_DESCRIPTION_HOST.get());
+      argParser.addArgument(hostName);
+
+      port = new IntegerArgument("port", OPTION_SHORT_PORT,
+                                 OPTION_LONG_PORT, false, false, true,
+                                 INFO_PORT_PLACEHOLDER.get(), 389, null,
+                                 true, 1, true, 65535,
+                                 INFO_DESCRIPTION_PORT.get());
+      argParser.addArgument(port);
+
+      useSSL = new BooleanArgument("useSSL", OPTION_SHORT_USE_SSL,
+                                   OPTION_LONG_USE_SSL,
+                                   INFO_DESCRIPTION_USE_SSL.get());
+      argParser.addArgument(useSSL);
+
+      startTLS = new BooleanArgument("startTLS", OPTION_SHORT_START_TLS,
+                                     OPTION_LONG_START_TLS,
+                                     INFO_DESCRIPTION_START_TLS.get());
+      argParser.addArgument(startTLS);
+
+      trustAll = CommonArguments.getTrustAll();
+      argParser.addArgument(trustAll);
+
+      bindDN = new StringArgument("bindDN", OPTION_SHORT_BINDDN,
+                                  OPTION_LONG_BINDDN, false, false, true,
+                                  INFO_BINDDN_PLACEHOLDER.get(), null, null,
+                                  INFO_DESCRIPTION_BINDDN.get());
+      argParser.addArgument(bindDN);
+
+      bindPassword = new StringArgument("bindPassword", OPTION_SHORT_BINDPWD,
+                                        OPTION_LONG_BINDPWD,
+                                        false, false, true,
+                                        INFO_BINDPWD_PLACEHOLDER.get(),
+                                        null, null,
+                                        INFO_DESCRIPTION_BINDPASSWORD.get());
+      argParser.addArgument(bindPassword);
+
+      bindPasswordFile =
+           new FileBasedArgument("bindPasswordFile", OPTION_SHORT_BINDPWD_FILE,
+                                 OPTION_LONG_BINDPWD_FILE,
+                                 false, false,
+                                 INFO_BINDPWD_FILE_PLACEHOLDER.get(), null,
+                                 null, INFO_DESCRIPTION_BINDPASSWORDFILE.get());
+      argParser.addArgument(bindPasswordFile);
+
+      int defaultTimeout = CliConstants.DEFAULT_LDAP_CONNECT_TIMEOUT;
+      connectTimeout = new IntegerArgument(OPTION_LONG_CONNECT_TIMEOUT,
+          null, OPTION_LONG_CONNECT_TIMEOUT,
+          false, false, true, INFO_TIMEOUT_PLACEHOLDER.get(),
+          defaultTimeout, null,
+          true, 0, false, Integer.MAX_VALUE,
+          INFO_DESCRIPTION_CONNECTION_TIMEOUT.get());
+      argParser.addArgument(connectTimeout);
+
+      numConnections = new IntegerArgument("numConnections", null,
+                                           "numConnections", false, false, true,
+                                           INFO_LDIFIMPORT_THREAD_COUNT_PLACEHOLDER.get(),
+                                           1, null, true, 1, false, 0,
+                                           INFO_LDAPLOAD_DESCRIPTION_NUM_CONNECTIONS.get());
+      argParser.addArgument(numConnections);
+
+      numThreads = new IntegerArgument("numThreads", null, "numThreads",
+                                       false, false, true,
+                                       INFO_LDIFIMPORT_THREAD_COUNT_PLACEHOLDER.get(),
+                                       1, null, true, 1, false, 0,
+                                       INFO_LDAPLOAD_DESCRIPTION_NUM_THREADS.get());
+      argParser.addArgument(numThreads);
+
+      operation = new StringArgument("operation", null, "operation",
+                                     false, true, true,
+                                     INFO_LDAPLOAD_OPERATION_PLACEHOLDER.get(),
+                                     "search", null,
+                                     INFO_LDAPLOAD_DESCRIPTION_OPERATION.get());
+      argParser.addArgument(operation);
+
+      baseDN = new StringArgument("baseDN", OPTION_SHORT_BASEDN,
+                                  OPTION_LONG_BASEDN, false, false, true,
+                                  INFO_BASEDN_PLACEHOLDER.get(), null, null,
+                                  INFO_LDAPLOAD_DESCRIPTION_BASEDN.get());
+      argParser.addArgument(baseDN);
+
+      ArrayList<String> allowedScopes = new ArrayList<>();
+      allowedScopes.add("base");
+      allowedScopes.add("one");
+      allowedScopes.add("sub");
+      allowedScopes.add("subordinate");
+      searchScope = new MultiChoiceArgument(
+              "searchScope", 's', "searchScope", false,
+              true, INFO_SEARCH_SCOPE_PLACEHOLDER.get(), allowedScopes,
+              false,
+              INFO_SEARCH_DESCRIPTION_SEARCH_SCOPE.get());
+      searchScope.setDefaultValue("sub");
+      argParser.addArgument(searchScope);
+
+      filter = new StringArgument("filter", null, "filter", false, false, true,
+                                  INFO_FILTER_PLACEHOLDER.get(),
+                                  "(objectClass=*)", null,
+                                  INFO_LDAPLOAD_DESCRIPTION_FILTER.get());
+      argParser.addArgument(filter);
+
+      targetDN = new StringArgument("targetDN", null, "targetDN",
+                                    false, false, true,
+                                    INFO_TARGETDN_PLACEHOLDER.get(), null, null,
+                                    INFO_LDAPLOAD_DESCRIPTION_TARGET_DN.get());
+      argParser.addArgument(targetDN);
+
+      targetPassword = new StringArgument("targetPassword", null,
+                                          "targetPassword", false, false, true,
+                                          INFO_LDAPLOAD_PASSWORD_PLACEHOLDER.get(),
+                                          "password", null,
+                                          INFO_LDAPLOAD_DESCRIPTION_TARGET_PASSWORD.get());
+      argParser.addArgument(targetPassword);
+
+      modifyAttribute = new StringArgument("modifyAttribute", null,
+                                           "modifyAttribute", false, false, true,
+                                           INFO_ATTRIBUTE_PLACEHOLDER.get(),
+                                           "description", null,
+                                           INFO_LDAPLOAD_DESCRIPTION_MODIFY_ATTRIBUTE.get());
+      argParser.addArgument(modifyAttribute);
+
+      modifyValue = new StringArgument("modifyValue", null, "modifyValue",
+                                       false, false, true,
+                                       INFO_LDAPLOAD_VALUE_PLACEHOLDER.get(),
+                                       "<random:alpha:16>", null,
+                                       INFO_LDAPLOAD_DESCRIPTION_MODIFY_VALUE.get());
+      argParser.addArgument(modifyValue);
+
+      templateFile = new StringArgument("templateFile", 't', "templateFile",
+                                        false, false, true,
+                                        INFO_FILE_PLACEHOLDER.get(), null, null,
+                                        INFO_LDAPLOAD_DESCRIPTION_TEMPLATE_FILE.get());
+      argParser.addArgument(templateFile);
+
+      resourcePath = new StringArgument("resourcePath", 'r', "resourcePath",
+                                        true, false, true,
+                                        INFO_PATH_PLACEHOLDER.get(), null, null,
+                                        INFO_MAKELDIF_DESCRIPTION_RESOURCE_PATH.get());
+      resourcePath.setHidden(true);
+      argParser.addArgument(resourcePath);
+
+      randomSeed = new IntegerArgument("randomSeed", OPTION_SHORT_RANDOM_SEED,
+                                       OPTION_LONG_RANDOM_SEED, false,
+                                       false, true, INFO_SEED_PLACEHOLDER.get(),
+                                       0, null,
+                                       INFO_MAKELDIF_DESCRIPTION_SEED.get());
+      argParser.addArgument(randomSeed);
+
+      targetRate = new IntegerArgument("targetRate", null, "targetRate",
+                                       false, false, true,
+                                       INFO_LDAPLOAD_RATE_PLACEHOLDER.get(),
+                                       0, null, true, 0, false, 0,
+                                       INFO_LDAPLOAD_DESCRIPTION_TARGET_RATE.get());
+      argParser.addArgument(targetRate);
+
+      maxDuration = new IntegerArgument("maxDuration", null, "maxDuration",
+                                        false, false, true,
+                                        INFO_SECONDS_PLACEHOLDER.get(),
+                                        0, null, true, 0, false, 0,
+                                        INFO_LDAPLOAD_DESCRIPTION_MAX_DURATION.get());
+      argParser.addArgument(maxDuration);
+
+      maxOperations = new IntegerArgument("maxOperations", null,
+                                          "maxOperations", false, false, true,
+                                          INFO_NUM_ENTRIES_PLACEHOLDER.get(),
+                                          0, null, true, 0, false, 0,
+                                          INFO_LDAPLOAD_DESCRIPTION_MAX_OPERATIONS.get());
+      argParser.addArgument(maxOperations);
+
+      statsInterval = new IntegerArgument("statsInterval", null,
+                                          "statsInterval", false, false, true,
+                                          INFO_SECONDS_PLACEHOLDER.get(),
+                                          5, null, true, 1, false, 0,
+                                          INFO_LDAPLOAD_DESCRIPTION_STATS_INTERVAL.get());
+      argParser.addArgument(statsInterval);
+
+      showUsage = CommonArguments.getShowUsage();
+      argParser.addArgument(showUsage);
+      argParser.setUsageArgument(showUsage, out);
+    }
+    catch (ArgumentException ae)
+    {
+      printWrappedText(err, ERR_CANNOT_INITIALIZE_ARGS.get(ae.getMessage()));
+      return CLIENT_SIDE_PARAM_ERROR;
+    }
+
+    // Parse the command-line arguments provided to this program.
+    try
+    {
+      argParser.parseArguments(args);
+    }
+    catch (ArgumentException ae)
+    {
+      argParser.displayMessageAndUsageReference(err, ERR_ERROR_PARSING_ARGS.get(ae.getMessage()));
+      return CLIENT_SIDE_PARAM_ERROR;
+    }
+
+    // If we should just display usage or version information,
+    // then it has already been done so just exit.
+    if (argParser.usageOrVersionDisplayed())
+    {
+      return 0;
+    }
+
+    if (bindPassword.isPresent() && bindPasswordFile.isPresent())
+    {
+      printWrappedText(
+          err, ERR_TOOL_CONFLICTING_ARGS.get(bindPassword.getLongIdentifier(), bindPasswordFile.getLongIdentifier()));
+      return CLIENT_SIDE_PARAM_ERROR;
+    }
+
+    Map<OperationType, Integer> weights = parseOperations(operation.getValues(), err);
+    if (weights == null)
+    {
+      return CLIENT_SIDE_PARAM_ERROR;
+    }
+    if (!checkRequired(weights, OperationType.SEARCH, baseDN, err)
+        || !checkRequired(weights, OperationType.ADD, baseDN, err)
+        || !checkRequired(weights, OperationType.ADD, templateFile, err)
+        || !checkRequired(weights, OperationType.MODIFY, targetDN, err)
+        || !checkRequired(weights, OperationType.BIND, targetDN, err))
+    {
+      return CLIENT_SIDE_PARAM_ERROR;
+    }
+
+    LDAPSearchOptions searchOptions = new LDAPSearchOptions();
+    if (!searchOptions.setSearchScope(searchScope.getValue(), err))
+    {
+      return CLIENT_SIDE_PARAM_ERROR;
+    }
+
+    List<PooledConnection> connections = new ArrayList<>();
+    try
+    {
+      if (initializeServer)
+      {
+        // Bootstrap and initialize directory data structures.
+        EmbeddedUtils.initializeForClientUse();
+      }
+
+      Random random = randomSeed.isPresent() ? new Random(randomSeed.getIntValue()) : new Random();
+      String resourceDir = resourcePath.getValue();
+      if (!new File(resourceDir).isDirectory())
+      {
+        printWrappedText(err, ERR_MAKELDIF_NO_SUCH_RESOURCE_DIRECTORY.get(resourceDir));
+        return CLIENT_SIDE_PARAM_ERROR;
+      }
+
+      TemplateExpression filterExpression = null;
+      if (weights.containsKey(OperationType.SEARCH))
+      {
+        filterExpression = newExpression(resourceDir, random, filter, err);
+        if (filterExpression == null)
+        {
+          return CLIENT_SIDE_PARAM_ERROR;
+        }
+      }
+      TemplateExpression targetDNExpression = null;
+      if (weights.containsKey(OperationType.MODIFY) || weights.containsKey(OperationType.BIND))
+      {
+        targetDNExpression = newExpression(resourceDir, random, targetDN, err);
+        if (targetDNExpression == null)
+        {
+          return CLIENT_SIDE_PARAM_ERROR;
+        }
+      }
+      TemplateExpression modifyValueExpression = null;
+      if (weights.containsKey(OperationType.MODIFY))
+      {
+        modifyValueExpression = newExpression(resourceDir, random, modifyValue, err);
+        if (modifyValueExpression == null)
+        {
+          return CLIENT_SIDE_PARAM_ERROR;
+        }
+      }
+      EntryGenerator entryGenerator = null;
+      if (weights.containsKey(OperationType.ADD))
+      {
+        TemplateFile tf = new TemplateFile(resourceDir, random);
+        try
+        {
+          tf.parse(templateFile.getValue(), new ArrayList<LocalizableMessage>());
+        }
+        catch (Exception e)
+        {
+          logger.traceException(e);
+          printWrappedText(err, ERR_LDIFIMPORT_CANNOT_PARSE_TEMPLATE_FILE.get(
+              templateFile.getValue(), getExceptionMessage(e)));
+          return CLIENT_SIDE_PARAM_ERROR;
+        }
+        if (tf.getTemplates().isEmpty())
+        {
+          printWrappedText(err, ERR_LDAPLOAD_NO_TEMPLATE.get(templateFile.getValue()));
+          return CLIENT_SIDE_PARAM_ERROR;
+        }
+        entryGenerator = new EntryGenerator(tf,
+            tf.getTemplates().values().iterator().next(), DN.valueOf(baseDN.getValue()));
+      }
+
+      String bindDNValue = bindDN.getValue();
+      String bindPasswordValue = getPasswordValue(
+          bindPassword, bindPasswordFile, bindDNValue, out, err);
+
+      LDAPConnectionOptions connectionOptions = new LDAPConnectionOptions();
+      connectionOptions.setUseSSL(useSSL.isPresent());
+      connectionOptions.setStartTLS(startTLS.isPresent());
+      connectionOptions.setVersionNumber(3);
+      if (connectionOptions.useSSL() || connectionOptions.useStartTLS())
+      {
+        SSLConnectionFactory sslConnectionFactory = new SSLConnectionFactory();
+        sslConnectionFactory.init(trustAll.isPresent(), null, null, null, null, null);
+        connectionOptions.setSSLConnectionFactory(sslConnectionFactory);
+      }
+
+      for (int i = 0; i < numConnections.getIntValue(); i++)
+      {
+        LDAPConnection connection = new LDAPConnection(hostName.getValue(),
+            port.getIntValue(), connectionOptions, out, err);
+        PooledConnection pooled = new PooledConnection(connection);
+        connection.connectToHost(bindDNValue, bindPasswordValue,
+            pooled.nextMessageID, connectTimeout.getIntValue());
+        connections.add(pooled);
+      }
+
+      LDAPLoadGenerator generator = new LDAPLoadGenerator(weights, connections,
+          baseDN.getValue(), searchOptions.getSearchScope(), filterExpression,
+          targetDNExpression, modifyValueExpression, modifyAttribute.getValue(),
+          targetPassword.getValue(), entryGenerator, bindDNValue,
+          bindPasswordValue, targetRate.getIntValue(),
+          maxOperations.getIntValue());
+      return generator.run(numThreads.getIntValue(), maxDuration.getIntValue(),
+          statsInterval.getIntValue(), out, err);
+    }
+    catch (LDAPConnectionException lce)
+    {
+      logger.traceException(lce);
+      LDAPToolUtils.printErrorMessage(err, lce.getMessageObject(),
+                                      lce.getResultCode(),
+                                      lce.getErrorMessage(),
+                                      lce.getMatchedDN());
+      return lce.getResultCode();
+    }
+    catch (ArgumentException e)
+    {
+      argParser.displayMessageAndUsageReference(err, e.getMessageObject());
+      return CLIENT_SIDE_PARAM_ERROR;
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      printWrappedText(err, getExceptionMessage(e));
+      return 1;
+    }
+    finally
+    {
+      for (PooledConnection connection : connections)
+      {
+        connection.connection.close(connection.nextMessageID);
+      }
+    }
+  }
+
+  /**
+   * Checks that an argument required by a type of operation is provided.
+   *
+   * @return {@code true} if the argument is provided or the operation is not
+   *         generated
+   */
+  private static boolean checkRequired(Map<OperationType, Integer> weights,
+      OperationType type, StringArgument argument, PrintStream err)
+  {
+    if (weights.containsKey(type) && !argument.isPresent())
+    {
+      printWrappedText(err, ERR_LDAPLOAD_MISSING_ARGUMENT.get(
+          type.getName(), argument.getLongIdentifier()));
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Parses the value of an argument as a template expression.
+   *
+   * @return the template expression, or {@code null} if it cannot be parsed
+   */
+  private static TemplateExpression newExpression(String resourcePath,
+      Random random, StringArgument argument, PrintStream err)
+  {
+    try
+    {
+      return new TemplateExpression(resourcePath, random, argument.getValue());
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      printWrappedText(err, ERR_LDAPLOAD_CANNOT_PARSE_EXPRESSION.get(
+          argument.getValue(), argument.getLongIdentifier(), getExceptionMessage(e)));
+      return null;
+    }
+  }
+}
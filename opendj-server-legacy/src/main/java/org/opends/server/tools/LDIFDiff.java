@@ -27,6 +27,7 @@
 package org.opends.server.tools;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -38,7 +39,6 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.TreeMap;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.opends.server.core.DirectoryServer;
@@ -67,6 +67,7 @@ import com.forgerock.opendj.cli.ArgumentException;
 import com.forgerock.opendj.cli.ArgumentParser;
 import com.forgerock.opendj.cli.BooleanArgument;
 import com.forgerock.opendj.cli.CommonArguments;
+import com.forgerock.opendj.cli.IntegerArgument;
 import com.forgerock.opendj.cli.StringArgument;
 
 import static org.opends.messages.ToolMessages.*;
@@ -85,8 +86,11 @@ import static com.forgerock.opendj.cli.Utils.*;
  * are several things to note about the operation of this program:
  * <BR>
  * <UL>
- *   <LI>This program is only designed for cases in which both LDIF files to be
- *       compared will fit entirely in memory at the same time.</LI>
+ *   <LI>By default, this program is only designed for cases in which both LDIF
+ *       files to be compared will fit entirely in memory at the same time.
+ *       With the streaming option, the entries of each file are sorted on
+ *       disk and the sorted files are merged, so that the memory used does
+ *       not depend on the size of the files.</LI>
  *   <LI>This program will only compare live data in the LDIF files and will
  *       ignore comments and other elements that do not have any real impact on
  *       the way that the data is interpreted.</LI>
@@ -160,6 +164,8 @@ public class LDIFDiff
     BooleanArgument useCompareResultCode;
     BooleanArgument singleValueChanges;
     BooleanArgument doCheckSchema;
+    BooleanArgument streaming;
+    IntegerArgument sortBufferSizeArg;
     StringArgument  configClass;
     StringArgument  configFile;
     StringArgument  outputLDIF;
@@ -167,6 +173,7 @@ public class LDIFDiff
     StringArgument  targetLDIF;
     StringArgument  ignoreAttrsFile;
     StringArgument  ignoreEntriesFile;
+    StringArgument  tmpDirectoryArg;
 
 
     LocalizableMessage toolDescription = INFO_LDIFDIFF_TOOL_DESCRIPTION.get();
@@ -225,6 +232,25 @@ public class LDIFDiff
                 INFO_LDIFDIFF_DESCRIPTION_CHECK_SCHEMA.get());
       argParser.addArgument(doCheckSchema);
 
+      streaming =
+        new BooleanArgument(
+                "streaming", null, "streaming",
+                INFO_LDIFDIFF_DESCRIPTION_STREAMING.get());
+      argParser.addArgument(streaming);
+
+      sortBufferSizeArg = new IntegerArgument(
+              "sortbuffersize", null, "sortBufferSize", false, false, true,
+              INFO_NUM_ENTRIES_PLACEHOLDER.get(), 100000, null, true, 1, false,
+              0, INFO_LDIFDIFF_DESCRIPTION_SORT_BUFFER_SIZE.get());
+      argParser.addArgument(sortBufferSizeArg);
+
+      tmpDirectoryArg = new StringArgument(
+              "tmpdirectory", null, "tmpDirectory", false, false, true,
+              INFO_LDIFIMPORT_TEMP_DIR_PLACEHOLDER.get(),
+              System.getProperty("java.io.tmpdir"), null,
+              INFO_LDIFDIFF_DESCRIPTION_TEMP_DIRECTORY.get());
+      argParser.addArgument(tmpDirectoryArg);
+
       configFile = new StringArgument("configfile", 'c', "configFile", false,
                                       false, true,
                                       INFO_CONFIGFILE_PLACEHOLDER.get(), null,
@@ -398,7 +424,25 @@ public class LDIFDiff
       }
     }
 
-    // Open the source LDIF file and read it into a tree map.
+    int sortBufferSize = 0;
+    File tmpDirectory = null;
+    PrintStream progressStream = null;
+    if (streaming.isPresent())
+    {
+      try
+      {
+        sortBufferSize = sortBufferSizeArg.getIntValue();
+      }
+      catch (ArgumentException ae)
+      {
+        printWrappedText(err, ERR_ERROR_PARSING_ARGS.get(ae.getMessage()));
+        return CLIENT_SIDE_PARAM_ERROR;
+      }
+      tmpDirectory = new File(tmpDirectoryArg.getValue());
+      progressStream = err;
+    }
+
+    // Open the source LDIF file and sort its entries.
     LDIFReader reader;
     LDIFImportConfig importConfig = new LDIFImportConfig(sourceLDIF.getValue());
     try
@@ -411,74 +455,138 @@ public class LDIFDiff
       return OPERATIONS_ERROR;
     }
 
-    TreeMap<DN,Entry> sourceMap = new TreeMap<>();
+    ExternalEntrySorter sourceEntries = new ExternalEntrySorter(sortBufferSize, tmpDirectory);
+    ExternalEntrySorter targetEntries = new ExternalEntrySorter(sortBufferSize, tmpDirectory);
     try
     {
-      while (true)
+      try
       {
-        Entry entry = reader.readEntry(checkSchema);
-        if (entry == null)
-        {
-          break;
-        }
+        sortEntries(reader, checkSchema, ignoreEntries, sourceEntries,
+            progressStream, sourceLDIF.getValue());
+      }
+      catch (Exception e)
+      {
+        printWrappedText(err, ERR_LDIFDIFF_ERROR_READING_SOURCE_LDIF.get(sourceLDIF.getValue(), e));
+        return OPERATIONS_ERROR;
+      }
+      finally
+      {
+        StaticUtils.close(reader);
+      }
 
-        if (! ignoreEntries.contains(entry.getName()))
-        {
-          sourceMap.put(entry.getName(), entry);
-        }
+
+      // Open the target LDIF file and sort its entries.
+      importConfig = new LDIFImportConfig(targetLDIF.getValue());
+      try
+      {
+        reader = new LDIFReader(importConfig);
       }
-    }
-    catch (Exception e)
-    {
-      printWrappedText(err, ERR_LDIFDIFF_ERROR_READING_SOURCE_LDIF.get(sourceLDIF.getValue(), e));
-      return OPERATIONS_ERROR;
+      catch (Exception e)
+      {
+        printWrappedText(err, ERR_LDIFDIFF_CANNOT_OPEN_TARGET_LDIF.get(targetLDIF.getValue(), e));
+        return OPERATIONS_ERROR;
+      }
+
+      try
+      {
+        sortEntries(reader, checkSchema, ignoreEntries, targetEntries,
+            progressStream, targetLDIF.getValue());
+      }
+      catch (Exception e)
+      {
+        printWrappedText(err, ERR_LDIFDIFF_ERROR_READING_TARGET_LDIF.get(targetLDIF.getValue(), e));
+        return OPERATIONS_ERROR;
+      }
+      finally
+      {
+        StaticUtils.close(reader);
+      }
+
+      return writeDifferences(sourceEntries, targetEntries, out, err,
+          outputLDIF, overwriteExisting.isPresent(), ignoreAttrs,
+          singleValueChanges.isPresent(), useCompareResultCode.isPresent());
     }
     finally
     {
-      StaticUtils.close(reader);
+      StaticUtils.close(sourceEntries, targetEntries);
     }
+  }
 
 
-    // Open the target LDIF file and read it into a tree map.
-    importConfig = new LDIFImportConfig(targetLDIF.getValue());
-    try
-    {
-      reader = new LDIFReader(importConfig);
-    }
-    catch (Exception e)
-    {
-      printWrappedText(err, ERR_LDIFDIFF_CANNOT_OPEN_TARGET_LDIF.get(targetLDIF.getValue(), e));
-      return OPERATIONS_ERROR;
-    }
 
-    TreeMap<DN,Entry> targetMap = new TreeMap<>();
-    try
+  /**
+   * Reads all the entries of an LDIF file, except the ignored ones, and sorts
+   * them by DN.
+   *
+   * @param  reader          The reader of the LDIF file.
+   * @param  checkSchema     Indicates whether the entries should be checked
+   *                         against the schema.
+   * @param  ignoreEntries   The DNs of the entries to ignore.
+   * @param  sorter          The sorter to which the entries are added.
+   * @param  progressStream  The stream to which progress is reported, or
+   *                         {@code null} if progress should not be reported.
+   * @param  ldifFile        The path to the LDIF file.
+   *
+   * @throws  Exception  If a problem occurs while reading or sorting the
+   *                     entries.
+   */
+  private static void sortEntries(LDIFReader reader, boolean checkSchema,
+      Collection<DN> ignoreEntries, ExternalEntrySorter sorter,
+      PrintStream progressStream, String ldifFile) throws Exception
+  {
+    LDIFProgressReporter progress = progressStream != null
+        ? new LDIFProgressReporter(progressStream, ldifFile) : null;
+    while (true)
     {
-      while (true)
+      Entry entry = reader.readEntry(checkSchema);
+      if (entry == null)
       {
-        Entry entry = reader.readEntry(checkSchema);
-        if (entry == null)
-        {
-          break;
-        }
+        break;
+      }
 
-        if (! ignoreEntries.contains(entry.getName()))
-        {
-          targetMap.put(entry.getName(), entry);
-        }
+      if (! ignoreEntries.contains(entry.getName()))
+      {
+        sorter.add(entry);
+      }
+      if (progress != null)
+      {
+        progress.entryProcessed();
       }
     }
-    catch (Exception e)
-    {
-      printWrappedText(err, ERR_LDIFDIFF_ERROR_READING_TARGET_LDIF.get(targetLDIF.getValue(), e));
-      return OPERATIONS_ERROR;
-    }
-    finally
+    sorter.sort();
+    if (progress != null)
     {
-      StaticUtils.close(reader);
+      progress.done();
     }
+  }
+
 
 
+  /**
+   * Compares the sorted source and target entries, and writes the differences.
+   *
+   * @param  sourceEntries         The sorted source entries.
+   * @param  targetEntries         The sorted target entries.
+   * @param  out                   The standard output, where the differences
+   *                               are written if no output file is provided.
+   * @param  err                   The standard error.
+   * @param  outputLDIF            The argument providing the output file.
+   * @param  overwriteExisting     Indicates whether an existing output file
+   *                               should be overwritten rather than appended.
+   * @param  ignoreAttrs           The names of the attributes to ignore.
+   * @param  singleValueChanges    Indicates whether each attribute value change
+   *                               should be written as a separate modification.
+   * @param  useCompareResultCode  Indicates whether the compare result codes
+   *                               should be returned.
+   *
+   * @return  The return code for the LDIF diff operation.
+   */
+  private static int writeDifferences(ExternalEntrySorter sourceEntries,
+      ExternalEntrySorter targetEntries, PrintStream out, PrintStream err,
+      StringArgument outputLDIF, boolean overwriteExisting,
+      Collection<String> ignoreAttrs, boolean singleValueChanges,
+      boolean useCompareResultCode)
+  {
     // Open the output writer that we'll use to write the differences.
     LDIFWriter writer;
     try
@@ -486,7 +594,7 @@ public class LDIFDiff
       LDIFExportConfig exportConfig;
       if (outputLDIF.isPresent())
       {
-        if (overwriteExisting.isPresent())
+        if (overwriteExisting)
         {
           exportConfig = new LDIFExportConfig(outputLDIF.getValue(),
                                               ExistingFileBehavior.OVERWRITE);
@@ -513,160 +621,55 @@ public class LDIFDiff
 
     try
     {
-      boolean differenceFound;
-
-      // Check to see if either or both of the source and target maps are empty.
-      if (sourceMap.isEmpty())
+      // Both sides are sorted by DN, so merge them and identify the
+      // differences.
+      boolean differenceFound = false;
+      Entry sourceEntry = sourceEntries.next();
+      Entry targetEntry = targetEntries.next();
+      while (sourceEntry != null || targetEntry != null)
       {
-        if (targetMap.isEmpty())
+        // Compare the DNs to determine the relative order of the entries.
+        int comparatorValue;
+        if (sourceEntry == null)
         {
-          // They're both empty, so there are no differences.
-          differenceFound = false;
+          comparatorValue = 1;
+        }
+        else if (targetEntry == null)
+        {
+          comparatorValue = -1;
         }
         else
         {
-          // The target isn't empty, so they're all adds.
-          Iterator<DN> targetIterator = targetMap.keySet().iterator();
-          while (targetIterator.hasNext())
-          {
-            writeAdd(writer, targetMap.get(targetIterator.next()));
-          }
+          comparatorValue = sourceEntry.getName().compareTo(targetEntry.getName());
+        }
+
+        if (comparatorValue < 0)
+        {
+          // The source entry should be before the target entry, which means
+          // that the source entry has been deleted.
+          writeDelete(writer, sourceEntry);
           differenceFound = true;
+          sourceEntry = sourceEntries.next();
         }
-      }
-      else if (targetMap.isEmpty())
-      {
-        // The source isn't empty, so they're all deletes.
-        Iterator<DN> sourceIterator = sourceMap.keySet().iterator();
-        while (sourceIterator.hasNext())
+        else if (comparatorValue > 0)
         {
-          writeDelete(writer, sourceMap.get(sourceIterator.next()));
+          // The target entry should be before the source entry, which means
+          // that the target entry has been added.
+          writeAdd(writer, targetEntry);
+          differenceFound = true;
+          targetEntry = targetEntries.next();
         }
-        differenceFound = true;
-      }
-      else
-      {
-        differenceFound = false;
-        // Iterate through all the entries in the source and target maps and
-        // identify the differences.
-        Iterator<DN> sourceIterator  = sourceMap.keySet().iterator();
-        Iterator<DN> targetIterator  = targetMap.keySet().iterator();
-        DN           sourceDN        = sourceIterator.next();
-        DN           targetDN        = targetIterator.next();
-        Entry        sourceEntry     = sourceMap.get(sourceDN);
-        Entry        targetEntry     = targetMap.get(targetDN);
-
-        while (true)
+        else
         {
-          // Compare the DNs to determine the relative order of the
-          // entries.
-          int comparatorValue = sourceDN.compareTo(targetDN);
-          if (comparatorValue < 0)
+          // The DNs are the same, so check to see if the entries are the
+          // same or have been modified.
+          if (writeModify(writer, sourceEntry, targetEntry, ignoreAttrs,
+                          singleValueChanges))
           {
-            // The source entry should be before the target entry, which means
-            // that the source entry has been deleted.
-            writeDelete(writer, sourceEntry);
             differenceFound = true;
-            if (sourceIterator.hasNext())
-            {
-              sourceDN    = sourceIterator.next();
-              sourceEntry = sourceMap.get(sourceDN);
-            }
-            else
-            {
-              // There are no more source entries, so if there are more target
-              // entries then they're all adds.
-              writeAdd(writer, targetEntry);
-
-              while (targetIterator.hasNext())
-              {
-                targetDN    = targetIterator.next();
-                targetEntry = targetMap.get(targetDN);
-                writeAdd(writer, targetEntry);
-                differenceFound = true;
-              }
-
-              break;
-            }
-          }
-          else if (comparatorValue > 0)
-          {
-            // The target entry should be before the source entry, which means
-            // that the target entry has been added.
-            writeAdd(writer, targetEntry);
-            differenceFound = true;
-            if (targetIterator.hasNext())
-            {
-              targetDN    = targetIterator.next();
-              targetEntry = targetMap.get(targetDN);
-            }
-            else
-            {
-              // There are no more target entries so all of the remaining source
-              // entries are deletes.
-              writeDelete(writer, sourceEntry);
-              differenceFound = true;
-              while (sourceIterator.hasNext())
-              {
-                sourceDN = sourceIterator.next();
-                sourceEntry = sourceMap.get(sourceDN);
-                writeDelete(writer, sourceEntry);
-              }
-
-              break;
-            }
-          }
-          else
-          {
-            // The DNs are the same, so check to see if the entries are the
-            // same or have been modified.
-            if (writeModify(writer, sourceEntry, targetEntry, ignoreAttrs,
-                            singleValueChanges.isPresent()))
-            {
-              differenceFound = true;
-            }
-
-            if (sourceIterator.hasNext())
-            {
-              sourceDN    = sourceIterator.next();
-              sourceEntry = sourceMap.get(sourceDN);
-            }
-            else
-            {
-              // There are no more source entries, so if there are more target
-              // entries then they're all adds.
-              while (targetIterator.hasNext())
-              {
-                targetDN    = targetIterator.next();
-                targetEntry = targetMap.get(targetDN);
-                writeAdd(writer, targetEntry);
-                differenceFound = true;
-              }
-
-              break;
-            }
-
-            if (targetIterator.hasNext())
-            {
-              targetDN    = targetIterator.next();
-              targetEntry = targetMap.get(targetDN);
-            }
-            else
-            {
-              // There are no more target entries so all of the remaining source
-              // entries are deletes.
-              writeDelete(writer, sourceEntry);
-              differenceFound = true;
-              while (sourceIterator.hasNext())
-              {
-                sourceDN = sourceIterator.next();
-                sourceEntry = sourceMap.get(sourceDN);
-                writeDelete(writer, sourceEntry);
-              }
-
-              break;
-            }
           }
+          sourceEntry = sourceEntries.next();
+          targetEntry = targetEntries.next();
         }
       }
 
@@ -675,7 +678,7 @@ public class LDIFDiff
         LocalizableMessage message = INFO_LDIFDIFF_NO_DIFFERENCES.get();
         writer.writeComment(message, 0);
       }
-      if (useCompareResultCode.isPresent())
+      if (useCompareResultCode)
       {
         return !differenceFound ? COMPARE_TRUE : COMPARE_FALSE;
       }
@@ -38,10 +38,13 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.forgerock.i18n.LocalizableMessage;
@@ -72,11 +75,13 @@ import org.opends.server.util.LDIFException;
 import org.opends.server.util.LDIFReader;
 import org.opends.server.util.LDIFWriter;
 import org.opends.server.util.ModifyChangeRecordEntry;
+import org.opends.server.util.ParallelLDIFReader;
 
 import com.forgerock.opendj.cli.ArgumentException;
 import com.forgerock.opendj.cli.ArgumentParser;
 import com.forgerock.opendj.cli.BooleanArgument;
 import com.forgerock.opendj.cli.CommonArguments;
+import com.forgerock.opendj.cli.IntegerArgument;
 import com.forgerock.opendj.cli.StringArgument;
 
 /**
@@ -92,6 +97,10 @@ import com.forgerock.opendj.cli.StringArgument;
  *   <LI>Deleting an entry that has been added</LI>
  *   <LI>Modifying an entry that has been added</LI>
  * </UL>
+ * By default, the modified entries are sorted in memory before being written.
+ * In streaming mode, the source LDIF file must already be sorted by DN: the
+ * entries are written as soon as the changes have been applied by several
+ * threads, merged with the added entries, so that the output is the same.
  */
 public class LDIFModify
 {
@@ -137,7 +146,411 @@ public class LDIFModify
     TreeMap<DN,Entry> ldifEntries = new TreeMap<>();
     HashMap<DN,DeleteChangeRecordEntry> deletes = new HashMap<>();
     HashMap<DN,LinkedList<Modification>> modifications = new HashMap<>();
+    readChanges(changeReader, adds, deletes, modifications, errorList);
 
+
+    // Read the source an entry at a time and apply any appropriate changes
+    // before writing to the target LDIF.
+    while (true)
+    {
+      Entry entry;
+      try
+      {
+        entry = sourceReader.readEntry();
+      }
+      catch (LDIFException le)
+      {
+        if (le.canContinueReading())
+        {
+          errorList.add(le.getMessageObject());
+          continue;
+        }
+        else
+        {
+          throw le;
+        }
+      }
+
+      if (entry == null)
+      {
+        break;
+      }
+
+
+      // If the entry is to be deleted, then just skip over it without writing
+      // it to the output.
+      DN entryDN = entry.getName();
+      if (deletes.remove(entryDN) != null)
+      {
+        continue;
+      }
+
+
+      // If the entry is to be added, then that's an error, since it already
+      // exists.
+      if (adds.remove(entryDN) != null)
+      {
+        errorList.add(ERR_LDIFMODIFY_ADD_ALREADY_EXISTS.get(entryDN));
+        continue;
+      }
+
+
+      // If the entry is to be modified, then process the changes.
+      LinkedList<Modification> mods = modifications.remove(entryDN);
+      if (mods != null && !mods.isEmpty())
+      {
+        try
+        {
+          entry.applyModifications(mods);
+        }
+        catch (DirectoryException de)
+        {
+          errorList.add(de.getMessageObject());
+          continue;
+        }
+      }
+
+
+      // If we've gotten here, then the (possibly updated) entry should be
+      // written to the LDIF entry Map.
+      ldifEntries.put(entry.getName(),entry);
+    }
+
+
+    // Perform any adds that may be necessary.
+    for (AddChangeRecordEntry add : adds.values())
+    {
+      Entry e = toEntry(add);
+      //Put the entry to be added into the LDIF entry map.
+      ldifEntries.put(e.getName(),e);
+    }
+
+
+    // If there are any entries left in the delete or modify lists, then that's
+    // a problem because they didn't exist.
+    if (! deletes.isEmpty())
+    {
+      for (DN dn : deletes.keySet())
+      {
+        errorList.add(ERR_LDIFMODIFY_DELETE_NO_SUCH_ENTRY.get(dn));
+      }
+    }
+
+    if (! modifications.isEmpty())
+    {
+      for (DN dn : modifications.keySet())
+      {
+        errorList.add(ERR_LDIFMODIFY_MODIFY_NO_SUCH_ENTRY.get(dn));
+      }
+    }
+    return targetWriter.writeEntries(ldifEntries.values()) &&
+            errorList.isEmpty();
+  }
+
+
+
+  /**
+   * Applies the specified changes to the source LDIF, writing the modified
+   * entries to the specified target in the same order as {@link #modifyLDIF}.
+   * Unlike {@link #modifyLDIF}, only the changes are kept in memory, and the
+   * changes are applied to the source entries by several threads.  The source
+   * entries must therefore be sorted by DN, and the added entries are merged
+   * with them.  Neither the readers nor the writer will be closed.
+   *
+   * @param  sourceReader  The LDIF reader that will be used to read the LDIF
+   *                       content to be modified.
+   * @param  changeReader  The LDIF reader that will be used to read the changes
+   *                       to be applied.
+   * @param  targetWriter  The LDIF writer that will be used to write the
+   *                       modified LDIF.
+   * @param  errorList     A list into which any error messages generated while
+   *                       processing changes may be added.
+   * @param  numThreads    The number of threads applying the changes.
+   * @param  progress      The reporter of the progress made reading the source
+   *                       LDIF, or {@code null} if progress should not be
+   *                       reported.
+   *
+   * @return  <CODE>true</CODE> if all updates were successfully applied, or
+   *          <CODE>false</CODE> if any errors were encountered.
+   *
+   * @throws  IOException  If a problem occurs while attempting to read the
+   *                       source or changes, or write the target.
+   *
+   * @throws  LDIFException  If a problem occurs while attempting to decode the
+   *                         source or changes, or trying to determine whether
+   *                         to include the entry in the output, or if the
+   *                         source entries are not sorted by DN.
+   */
+  static boolean modifyLDIFStreaming(LDIFReader sourceReader,
+                                     LDIFReader changeReader,
+                                     LDIFWriter targetWriter,
+                                     List<LocalizableMessage> errorList,
+                                     int numThreads,
+                                     LDIFProgressReporter progress)
+         throws IOException, LDIFException
+  {
+    // Read the changes into memory.  The maps are only read from now on, so
+    // they can be shared by the threads applying the changes.
+    final TreeMap<DN,AddChangeRecordEntry> adds = new TreeMap<>();
+    final HashMap<DN,DeleteChangeRecordEntry> deletes = new HashMap<>();
+    final HashMap<DN,LinkedList<Modification>> modifications = new HashMap<>();
+    readChanges(changeReader, adds, deletes, modifications, errorList);
+
+    // The DNs of the source entries targeted by a change.
+    Set<DN> changedDNs = new HashSet<>();
+    // The added entries are merged with the source entries, in DN order.
+    Iterator<AddChangeRecordEntry> addIterator = adds.values().iterator();
+    AddChangeRecordEntry nextAdd = addIterator.hasNext() ? addIterator.next() : null;
+    DN previousDN = null;
+    boolean allWritten = true;
+    OrderedEntryProcessor<ModifiedEntry> processor = new OrderedEntryProcessor<>(
+        "LDIF Modify Worker", numThreads,
+        new OrderedEntryProcessor.Task<ModifiedEntry>()
+        {
+          @Override
+          public ModifiedEntry process(Entry entry)
+          {
+            return applyChanges(entry, adds, deletes, modifications);
+          }
+        });
+    try
+    {
+      // Read the source an entry at a time and write the (possibly updated)
+      // entries in the order they have been read.
+      while (true)
+      {
+        Entry entry;
+        try
+        {
+          entry = sourceReader.readEntry();
+        }
+        catch (LDIFException le)
+        {
+          if (le.canContinueReading())
+          {
+            errorList.add(le.getMessageObject());
+            continue;
+          }
+          else
+          {
+            throw le;
+          }
+        }
+
+        List<ModifiedEntry> modifiedEntries;
+        if (entry == null)
+        {
+          modifiedEntries = processor.flush();
+        }
+        else
+        {
+          if (previousDN != null && entry.getName().compareTo(previousDN) <= 0)
+          {
+            throw new LDIFException(
+                ERR_LDIFMODIFY_SOURCE_NOT_SORTED.get(entry.getName(), previousDN),
+                sourceReader.getLastEntryLineNumber(), false);
+          }
+          previousDN = entry.getName();
+          modifiedEntries = processor.submit(entry);
+          if (progress != null)
+          {
+            progress.entryProcessed();
+          }
+        }
+
+        for (ModifiedEntry modifiedEntry : modifiedEntries)
+        {
+          // Write the entries added before this one.  An entry added with the
+          // same DN is only written if this one was deleted, otherwise adding
+          // it is an error reported when applying the changes.
+          while (nextAdd != null)
+          {
+            int cmp = nextAdd.getDN().compareTo(modifiedEntry.dn);
+            if (cmp > 0)
+            {
+              break;
+            }
+            if (cmp < 0 || (modifiedEntry.entry == null && modifiedEntry.error == null))
+            {
+              allWritten &= targetWriter.writeEntry(toEntry(nextAdd));
+            }
+            nextAdd = addIterator.hasNext() ? addIterator.next() : null;
+          }
+
+          if (modifiedEntry.changed)
+          {
+            changedDNs.add(modifiedEntry.dn);
+          }
+          if (modifiedEntry.error != null)
+          {
+            errorList.add(modifiedEntry.error);
+          }
+          else if (modifiedEntry.entry != null)
+          {
+            allWritten &= targetWriter.writeEntry(modifiedEntry.entry);
+          }
+        }
+
+        if (entry == null)
+        {
+          break;
+        }
+      }
+    }
+    catch (IOException | LDIFException | RuntimeException e)
+    {
+      throw e;
+    }
+    catch (Exception e)
+    {
+      throw new IOException(e.getMessage(), e);
+    }
+    finally
+    {
+      processor.close();
+    }
+    if (progress != null)
+    {
+      progress.done();
+    }
+
+
+    // Perform the adds coming after the last source entry.
+    while (nextAdd != null)
+    {
+      allWritten &= targetWriter.writeEntry(toEntry(nextAdd));
+      nextAdd = addIterator.hasNext() ? addIterator.next() : null;
+    }
+
+
+    // If there are any entries in the delete or modify lists that were not
+    // found in the source, then that's a problem because they didn't exist.
+    for (DN dn : deletes.keySet())
+    {
+      if (!changedDNs.contains(dn))
+      {
+        errorList.add(ERR_LDIFMODIFY_DELETE_NO_SUCH_ENTRY.get(dn));
+      }
+    }
+
+    for (DN dn : modifications.keySet())
+    {
+      if (!changedDNs.contains(dn))
+      {
+        errorList.add(ERR_LDIFMODIFY_MODIFY_NO_SUCH_ENTRY.get(dn));
+      }
+    }
+    return allWritten && errorList.isEmpty();
+  }
+
+
+
+  /**
+   * Applies the changes targeting a source entry.  This method may be called
+   * concurrently for several entries.
+   *
+   * @param  entry          The source entry.
+   * @param  adds           The add change records, by DN.
+   * @param  deletes        The delete change records, by DN.
+   * @param  modifications  The modifications of each entry, by DN.
+   *
+   * @return  The result of applying the changes to the entry.
+   */
+  private static ModifiedEntry applyChanges(Entry entry,
+      Map<DN,AddChangeRecordEntry> adds,
+      Map<DN,DeleteChangeRecordEntry> deletes,
+      Map<DN,LinkedList<Modification>> modifications)
+  {
+    // If the entry is to be deleted, then just skip over it without writing
+    // it to the output.
+    DN entryDN = entry.getName();
+    if (deletes.containsKey(entryDN))
+    {
+      return new ModifiedEntry(entryDN, true, null, null);
+    }
+
+
+    // If the entry is to be added, then that's an error, since it already
+    // exists.
+    if (adds.containsKey(entryDN))
+    {
+      return new ModifiedEntry(entryDN, true, null,
+          ERR_LDIFMODIFY_ADD_ALREADY_EXISTS.get(entryDN));
+    }
+
+
+    // If the entry is to be modified, then process the changes.
+    LinkedList<Modification> mods = modifications.get(entryDN);
+    if (mods == null)
+    {
+      return new ModifiedEntry(entryDN, false, entry, null);
+    }
+    if (!mods.isEmpty())
+    {
+      try
+      {
+        entry.applyModifications(mods);
+      }
+      catch (DirectoryException de)
+      {
+        return new ModifiedEntry(entryDN, true, null, de.getMessageObject());
+      }
+    }
+    return new ModifiedEntry(entryDN, true, entry, null);
+  }
+
+
+
+  /** The result of applying the changes to a source entry. */
+  private static final class ModifiedEntry
+  {
+    /** The DN of the source entry. */
+    private final DN dn;
+    /** Whether a change targeted the source entry. */
+    private final boolean changed;
+    /** The entry to write, or null if the entry was deleted or in error. */
+    private final Entry entry;
+    /** The error which occurred applying the changes, if any. */
+    private final LocalizableMessage error;
+
+    private ModifiedEntry(DN dn, boolean changed, Entry entry,
+        LocalizableMessage error)
+    {
+      this.dn = dn;
+      this.changed = changed;
+      this.entry = entry;
+      this.error = error;
+    }
+  }
+
+
+  /**
+   * Reads all the changes into memory.
+   *
+   * @param  changeReader   The LDIF reader that will be used to read the
+   *                        changes to be applied.
+   * @param  adds           The map into which the add change records are
+   *                        put.
+   * @param  deletes        The map into which the delete change records are
+   *                        put.
+   * @param  modifications  The map into which the modifications of each entry
+   *                        are put.
+   * @param  errorList      A list into which any error messages generated
+   *                        while reading the changes may be added.
+   *
+   * @throws  IOException  If a problem occurs while attempting to read the
+   *                       changes.
+   *
+   * @throws  LDIFException  If a problem occurs while attempting to decode the
+   *                         changes.
+   */
+  private static void readChanges(LDIFReader changeReader,
+                                  Map<DN,AddChangeRecordEntry> adds,
+                                  Map<DN,DeleteChangeRecordEntry> deletes,
+                                  Map<DN,LinkedList<Modification>> modifications,
+                                  List<LocalizableMessage> errorList)
+         throws IOException, LDIFException
+  {
     while (true)
     {
       ChangeRecordEntry changeRecord;
@@ -237,144 +650,60 @@ public class LDIFModify
           continue;
       }
     }
+  }
 
 
-    // Read the source an entry at a time and apply any appropriate changes
-    // before writing to the target LDIF.
-    while (true)
+
+  /**
+   * Creates the entry added by an add change record.
+   *
+   * @param  add  The add change record.
+   *
+   * @return  The entry added by the change record.
+   */
+  private static Entry toEntry(AddChangeRecordEntry add)
+  {
+    Map<ObjectClass,String> objectClasses = new LinkedHashMap<>();
+    Map<AttributeType,List<Attribute>> userAttributes = new LinkedHashMap<>();
+    Map<AttributeType,List<Attribute>> operationalAttributes = new LinkedHashMap<>();
+
+    for (Attribute a : add.getAttributes())
     {
-      Entry entry;
-      try
+      AttributeType t = a.getAttributeType();
+      if (t.isObjectClass())
       {
-        entry = sourceReader.readEntry();
-      }
-      catch (LDIFException le)
-      {
-        if (le.canContinueReading())
-        {
-          errorList.add(le.getMessageObject());
-          continue;
-        }
-        else
+        for (ByteString v : a)
         {
-          throw le;
+          String stringValue = v.toString();
+          String lowerValue  = toLowerCase(stringValue);
+          ObjectClass oc = DirectoryServer.getObjectClass(lowerValue, true);
+          objectClasses.put(oc, stringValue);
         }
       }
-
-      if (entry == null)
-      {
-        break;
-      }
-
-
-      // If the entry is to be deleted, then just skip over it without writing
-      // it to the output.
-      DN entryDN = entry.getName();
-      if (deletes.remove(entryDN) != null)
-      {
-        continue;
-      }
-
-
-      // If the entry is to be added, then that's an error, since it already
-      // exists.
-      if (adds.remove(entryDN) != null)
+      else if (t.isOperational())
       {
-        errorList.add(ERR_LDIFMODIFY_ADD_ALREADY_EXISTS.get(entryDN));
-        continue;
-      }
-
-
-      // If the entry is to be modified, then process the changes.
-      LinkedList<Modification> mods = modifications.remove(entryDN);
-      if (mods != null && !mods.isEmpty())
-      {
-        try
+        List<Attribute> attrList = operationalAttributes.get(t);
+        if (attrList == null)
         {
-          entry.applyModifications(mods);
-        }
-        catch (DirectoryException de)
-        {
-          errorList.add(de.getMessageObject());
-          continue;
+          attrList = new LinkedList<>();
+          operationalAttributes.put(t, attrList);
         }
+        attrList.add(a);
       }
-
-
-      // If we've gotten here, then the (possibly updated) entry should be
-      // written to the LDIF entry Map.
-      ldifEntries.put(entry.getName(),entry);
-    }
-
-
-    // Perform any adds that may be necessary.
-    for (AddChangeRecordEntry add : adds.values())
-    {
-      Map<ObjectClass,String> objectClasses = new LinkedHashMap<>();
-      Map<AttributeType,List<Attribute>> userAttributes = new LinkedHashMap<>();
-      Map<AttributeType,List<Attribute>> operationalAttributes = new LinkedHashMap<>();
-
-      for (Attribute a : add.getAttributes())
+      else
       {
-        AttributeType t = a.getAttributeType();
-        if (t.isObjectClass())
+        List<Attribute> attrList = userAttributes.get(t);
+        if (attrList == null)
         {
-          for (ByteString v : a)
-          {
-            String stringValue = v.toString();
-            String lowerValue  = toLowerCase(stringValue);
-            ObjectClass oc = DirectoryServer.getObjectClass(lowerValue, true);
-            objectClasses.put(oc, stringValue);
-          }
-        }
-        else if (t.isOperational())
-        {
-          List<Attribute> attrList = operationalAttributes.get(t);
-          if (attrList == null)
-          {
-            attrList = new LinkedList<>();
-            operationalAttributes.put(t, attrList);
-          }
-          attrList.add(a);
-        }
-        else
-        {
-          List<Attribute> attrList = userAttributes.get(t);
-          if (attrList == null)
-          {
-            attrList = new LinkedList<>();
-            userAttributes.put(t, attrList);
-          }
-          attrList.add(a);
+          attrList = new LinkedList<>();
+          userAttributes.put(t, attrList);
         }
+        attrList.add(a);
       }
-
-      Entry e = new Entry(add.getDN(), objectClasses, userAttributes,
-                          operationalAttributes);
-      //Put the entry to be added into the LDIF entry map.
-      ldifEntries.put(e.getName(),e);
     }
 
-
-    // If there are any entries left in the delete or modify lists, then that's
-    // a problem because they didn't exist.
-    if (! deletes.isEmpty())
-    {
-      for (DN dn : deletes.keySet())
-      {
-        errorList.add(ERR_LDIFMODIFY_DELETE_NO_SUCH_ENTRY.get(dn));
-      }
-    }
-
-    if (! modifications.isEmpty())
-    {
-      for (DN dn : modifications.keySet())
-      {
-        errorList.add(ERR_LDIFMODIFY_MODIFY_NO_SUCH_ENTRY.get(dn));
-      }
-    }
-    return targetWriter.writeEntries(ldifEntries.values()) &&
-            errorList.isEmpty();
+    return new Entry(add.getDN(), objectClasses, userAttributes,
+                     operationalAttributes);
   }
 
 
@@ -421,6 +750,8 @@ public class LDIFModify
 
     // Prepare the argument parser.
     BooleanArgument showUsage;
+    BooleanArgument streaming;
+    IntegerArgument numThreads;
     StringArgument  changesFile;
     StringArgument  configClass;
     StringArgument  configFile;
@@ -477,6 +808,20 @@ public class LDIFModify
       argParser.addArgument(targetFile);
 
 
+      streaming = new BooleanArgument("streaming", null, "streaming",
+                                      INFO_LDIFMODIFY_DESCRIPTION_STREAMING.get());
+      argParser.addArgument(streaming);
+
+
+      numThreads = new IntegerArgument("numthreads", null, "numThreads", false,
+                                       false, true,
+                                       INFO_LDIFIMPORT_THREAD_COUNT_PLACEHOLDER.get(),
+                                       Runtime.getRuntime().availableProcessors(),
+                                       null, true, 1, false, 0,
+                                       INFO_LDIFMODIFY_DESCRIPTION_NUM_THREADS.get());
+      argParser.addArgument(numThreads);
+
+
       showUsage = CommonArguments.getShowUsage();
       argParser.addArgument(showUsage);
       argParser.setUsageArgument(showUsage);
@@ -572,11 +917,27 @@ public class LDIFModify
       return CLIENT_SIDE_PARAM_ERROR;
     }
 
+    int numThreadsValue = 1;
+    if (streaming.isPresent())
+    {
+      try
+      {
+        numThreadsValue = numThreads.getIntValue();
+      }
+      catch (ArgumentException ae)
+      {
+        printWrappedText(err, ERR_ERROR_PARSING_ARGS.get(ae.getMessage()));
+        return CLIENT_SIDE_PARAM_ERROR;
+      }
+    }
+
     LDIFImportConfig importConfig = new LDIFImportConfig(sourceFile.getValue());
     LDIFReader sourceReader;
     try
     {
-      sourceReader = new LDIFReader(importConfig);
+      sourceReader = numThreadsValue > 1
+          ? new ParallelLDIFReader(importConfig, numThreadsValue, true)
+          : new LDIFReader(importConfig);
     }
     catch (IOException ioe)
     {
@@ -625,7 +986,15 @@ public class LDIFModify
     boolean successful;
     try
     {
-      successful = modifyLDIF(sourceReader, changeReader, targetWriter, errorList);
+      if (streaming.isPresent())
+      {
+        successful = modifyLDIFStreaming(sourceReader, changeReader, targetWriter, errorList,
+            numThreadsValue, new LDIFProgressReporter(err, sourceFile.getValue()));
+      }
+      else
+      {
+        successful = modifyLDIF(sourceReader, changeReader, targetWriter, errorList);
+      }
     }
     catch (Exception e)
     {
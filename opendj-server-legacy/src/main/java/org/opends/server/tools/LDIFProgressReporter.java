@@ -0,0 +1,90 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools;
+
+import static org.opends.messages.ToolMessages.*;
+
+import java.io.PrintStream;
+
+/**
+ * Periodically reports on standard error the number of entries processed by
+ * an offline LDIF tool, and the throughput.
+ */
+final class LDIFProgressReporter
+{
+  /** The interval between two progress reports, in milliseconds. */
+  private static final long INTERVAL_MILLIS = 10 * 1000;
+  /** The clock is only checked once every this many entries. */
+  private static final int CHECK_INTERVAL = 1000;
+
+  private final PrintStream err;
+  private final String name;
+  private final long startTime = System.currentTimeMillis();
+  private long nextReportTime = startTime + INTERVAL_MILLIS;
+  private long count;
+
+  /**
+   * Creates a new progress reporter.
+   *
+   * @param err
+   *          the stream to which progress is reported
+   * @param name
+   *          the name of the processed LDIF file, prefixing each report
+   */
+  LDIFProgressReporter(PrintStream err, String name)
+  {
+    this.err = err;
+    this.name = name;
+  }
+
+  /** Counts a processed entry, and reports progress if it is time to. */
+  void entryProcessed()
+  {
+    count++;
+    if (count % CHECK_INTERVAL == 0)
+    {
+      final long now = System.currentTimeMillis();
+      if (now >= nextReportTime)
+      {
+        err.println(INFO_LDIF_TOOL_PROGRESS.get(name, count, getRate(now)));
+        nextReportTime = now + INTERVAL_MILLIS;
+      }
+    }
+  }
+
+  /** Reports the total number of processed entries and the average throughput. */
+  void done()
+  {
+    final long now = System.currentTimeMillis();
+    err.println(INFO_LDIF_TOOL_PROGRESS_DONE.get(name, count, (now - startTime) / 1000, getRate(now)));
+  }
+
+  private double getRate(long now)
+  {
+    final long elapsed = Math.max(1, now - startTime);
+    return count * 1000.0 / elapsed;
+  }
+}
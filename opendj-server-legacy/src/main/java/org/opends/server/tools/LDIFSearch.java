@@ -42,6 +42,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.forgerock.opendj.ldap.SearchScope;
@@ -55,6 +57,7 @@ import org.opends.server.util.BuildVersion;
 import org.opends.server.util.LDIFException;
 import org.opends.server.util.LDIFReader;
 import org.opends.server.util.LDIFWriter;
+import org.opends.server.util.ParallelLDIFReader;
 
 import com.forgerock.opendj.cli.*;
 
@@ -133,6 +136,7 @@ public class LDIFSearch
     StringArgument      filterFile;
     IntegerArgument     sizeLimit;
     IntegerArgument     timeLimit;
+    IntegerArgument     numThreads;
     MultiChoiceArgument<String> scopeString;
     StringArgument      baseDNString;
     StringArgument      configClass;
@@ -221,6 +225,13 @@ public class LDIFSearch
               INFO_LDIFSEARCH_DESCRIPTION_TIME_LIMIT.get());
       argParser.addArgument(timeLimit);
 
+      numThreads = new IntegerArgument(
+              "numthreads", null, "numThreads", false,
+              false, true, INFO_LDIFIMPORT_THREAD_COUNT_PLACEHOLDER.get(), 1,
+              null, true, 1, false, 0,
+              INFO_LDIFSEARCH_DESCRIPTION_NUM_THREADS.get());
+      argParser.addArgument(numThreads);
+
 
       showUsage = CommonArguments.getShowUsage();
       argParser.addArgument(showUsage);
@@ -586,6 +597,18 @@ public class LDIFSearch
     }
 
 
+    int numThreadsValue;
+    try
+    {
+      numThreadsValue = numThreads.getIntValue();
+    }
+    catch (Exception e)
+    {
+      printWrappedText(err, ERR_ERROR_PARSING_ARGS.get(e.getMessage()));
+      return 1;
+    }
+
+
     // Create the LDIF import configuration that will be used to read the source
     // data.
     LDIFImportConfig importConfig;
@@ -636,7 +659,9 @@ public class LDIFSearch
     LDIFWriter writer;
     try
     {
-      reader = new LDIFReader(importConfig);
+      reader = numThreadsValue > 1
+          ? new ParallelLDIFReader(importConfig, numThreadsValue, true)
+          : new LDIFReader(importConfig);
     }
     catch (Exception e)
     {
@@ -656,12 +681,23 @@ public class LDIFSearch
     }
 
 
-    // Start reading data from the LDIF reader.
+    // Start reading data from the LDIF reader.  The entries are matched
+    // against the search criteria by the processor, possibly in parallel, and
+    // the matching entries are written in the order they have been read.
+    EntryMatcher matcher = new EntryMatcher(baseDNs, searchScope, searchFilters,
+        allUserAttrs ? null : userAttributeTypes,
+        allOperationalAttrs ? null : operationalAttributeTypes);
+    OrderedEntryProcessor<Entry> processor =
+        new OrderedEntryProcessor<>("LDIF Search Worker", numThreadsValue, matcher);
+    LDIFProgressReporter progress = numThreads.isPresent()
+        ? new LDIFProgressReporter(err, ldifFile.isPresent() ? ldifFile.getValue() : "-")
+        : null;
     long startTime  = System.currentTimeMillis();
     long stopTime   = startTime + timeLimitMillis;
     long matchCount = 0;
     int  resultCode = LDAPResultCode.SUCCESS;
-    while (true)
+    boolean limitExceeded = false;
+    while (! limitExceeded)
     {
       // If the time limit has been reached, then stop now.
       if (timeLimitMillis > 0 && System.currentTimeMillis() > stopTime)
@@ -677,86 +713,42 @@ public class LDIFSearch
       try
       {
         Entry entry = reader.readEntry(checkSchema);
-        if (entry == null)
+        List<Entry> matchingEntries;
+        if (entry != null)
         {
-          break;
-        }
-
-
-        // Check to see if the entry has an acceptable base and scope.
-        boolean matchesBaseAndScope = false;
-        for (DN baseDN : baseDNs)
-        {
-          if (entry.matchesBaseAndScope(baseDN, searchScope))
+          matchingEntries = processor.submit(entry);
+          if (progress != null)
           {
-            matchesBaseAndScope = true;
-            break;
+            progress.entryProcessed();
           }
         }
-
-        if (! matchesBaseAndScope)
+        else
         {
-          continue;
+          matchingEntries = processor.flush();
         }
 
 
-        // Check to see if the entry matches any of the filters.
-        boolean matchesFilter = false;
-        for (SearchFilter filter : searchFilters)
-        {
-          if (filter.matchesEntry(entry))
-          {
-            matchesFilter = true;
-            break;
-          }
-        }
-
-        if (! matchesFilter)
+        // Write the entries to the client and increase the count.
+        // FIXME -- Should we include a comment about which base+filter matched?
+        for (Entry matchingEntry : matchingEntries)
         {
-          continue;
-        }
+          writer.writeEntry(matchingEntry);
+          writer.flush();
 
-
-        // Prepare the entry to return to the client.
-        if (! allUserAttrs)
-        {
-          Iterator<AttributeType> iterator =
-               entry.getUserAttributes().keySet().iterator();
-          while (iterator.hasNext())
+          matchCount++;
+          if (sizeLimitValue > 0 && matchCount >= sizeLimitValue)
           {
-            if (! userAttributeTypes.contains(iterator.next()))
-            {
-              iterator.remove();
-            }
-          }
-        }
+            resultCode = LDAPResultCode.SIZE_LIMIT_EXCEEDED;
 
-        if (! allOperationalAttrs)
-        {
-          Iterator<AttributeType> iterator =
-               entry.getOperationalAttributes().keySet().iterator();
-          while (iterator.hasNext())
-          {
-            if (! operationalAttributeTypes.contains(iterator.next()))
-            {
-              iterator.remove();
-            }
+            LocalizableMessage message = WARN_LDIFSEARCH_SIZE_LIMIT_EXCEEDED.get();
+            err.println(message);
+            limitExceeded = true;
+            break;
           }
         }
 
-
-        // Write the entry to the client and increase the count.
-        // FIXME -- Should we include a comment about which base+filter matched?
-        writer.writeEntry(entry);
-        writer.flush();
-
-        matchCount++;
-        if (sizeLimitValue > 0 && matchCount >= sizeLimitValue)
+        if (entry == null)
         {
-          resultCode = LDAPResultCode.SIZE_LIMIT_EXCEEDED;
-
-          LocalizableMessage message = WARN_LDIFSEARCH_SIZE_LIMIT_EXCEEDED.get();
-          err.println(message);
           break;
         }
       }
@@ -785,9 +777,109 @@ public class LDIFSearch
       }
     }
 
+    processor.close();
+    if (progress != null)
+    {
+      progress.done();
+    }
     close(reader, writer);
 
     return resultCode;
   }
-}
 
+
+
+  /**
+   * Matches the entries against the search criteria, and removes the
+   * attributes which should not be returned from the matching entries.
+   */
+  private static final class EntryMatcher
+      implements OrderedEntryProcessor.Task<Entry>
+  {
+    private final List<DN> baseDNs;
+    private final SearchScope searchScope;
+    private final List<SearchFilter> searchFilters;
+    /** The user attributes to return, or null to return all of them. */
+    private final Set<AttributeType> userAttributeTypes;
+    /** The operational attributes to return, or null to return all of them. */
+    private final Set<AttributeType> operationalAttributeTypes;
+
+    private EntryMatcher(List<DN> baseDNs, SearchScope searchScope,
+        List<SearchFilter> searchFilters,
+        Set<AttributeType> userAttributeTypes,
+        Set<AttributeType> operationalAttributeTypes)
+    {
+      this.baseDNs = baseDNs;
+      this.searchScope = searchScope;
+      this.searchFilters = searchFilters;
+      this.userAttributeTypes = userAttributeTypes;
+      this.operationalAttributeTypes = operationalAttributeTypes;
+    }
+
+    @Override
+    public Entry process(Entry entry) throws DirectoryException
+    {
+      // Check to see if the entry has an acceptable base and scope.
+      boolean matchesBaseAndScope = false;
+      for (DN baseDN : baseDNs)
+      {
+        if (entry.matchesBaseAndScope(baseDN, searchScope))
+        {
+          matchesBaseAndScope = true;
+          break;
+        }
+      }
+
+      if (! matchesBaseAndScope)
+      {
+        return null;
+      }
+
+
+      // Check to see if the entry matches any of the filters.
+      boolean matchesFilter = false;
+      for (SearchFilter filter : searchFilters)
+      {
+        if (filter.matchesEntry(entry))
+        {
+          matchesFilter = true;
+          break;
+        }
+      }
+
+      if (! matchesFilter)
+      {
+        return null;
+      }
+
+
+      // Prepare the entry to return to the client.
+      if (userAttributeTypes != null)
+      {
+        Iterator<AttributeType> iterator =
+             entry.getUserAttributes().keySet().iterator();
+        while (iterator.hasNext())
+        {
+          if (! userAttributeTypes.contains(iterator.next()))
+          {
+            iterator.remove();
+          }
+        }
+      }
+
+      if (operationalAttributeTypes != null)
+      {
+        Iterator<AttributeType> iterator =
+             entry.getOperationalAttributes().keySet().iterator();
+        while (iterator.hasNext())
+        {
+          if (! operationalAttributeTypes.contains(iterator.next()))
+          {
+            iterator.remove();
+          }
+        }
+      }
+      return entry;
+    }
+  }
+}
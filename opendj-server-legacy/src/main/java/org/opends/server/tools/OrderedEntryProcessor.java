@@ -0,0 +1,211 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.types.Entry;
+
+/**
+ * Processes the entries read by an offline LDIF tool with a pool of threads,
+ * and hands over the results to the thread reading the entries in the order of
+ * the entries.
+ * <p>
+ * Entries are processed by batches of {@link #BATCH_SIZE}, and at most two
+ * batches per thread are in progress at any time, so that the memory used does
+ * not depend on the size of the LDIF file. With a single thread, the entries
+ * are processed by the calling thread.
+ *
+ * @param <R>
+ *          the type of the results of processing the entries
+ */
+final class OrderedEntryProcessor<R> implements Closeable
+{
+  /** Processes an entry. */
+  interface Task<R>
+  {
+    /**
+     * Processes an entry.
+     *
+     * @param entry
+     *          the entry to process
+     * @return the result of processing the entry, or {@code null} if there is
+     *         no result
+     * @throws Exception
+     *           if the entry cannot be processed, which stops the processing
+     */
+    R process(Entry entry) throws Exception;
+  }
+
+  /** The number of entries processed by a task of the pool. */
+  static final int BATCH_SIZE = 256;
+
+  private final Task<R> task;
+  /** The pool of threads, null when entries are processed by the calling thread. */
+  private final ExecutorService executor;
+  private final int maxPendingBatches;
+  private final Deque<Future<List<R>>> pendingBatches = new ArrayDeque<>();
+  private List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+
+  /**
+   * Creates a new ordered entry processor.
+   *
+   * @param threadName
+   *          the name prefix of the threads of the pool
+   * @param nbThreads
+   *          the number of threads processing the entries
+   * @param task
+   *          processes an entry
+   */
+  OrderedEntryProcessor(String threadName, int nbThreads, Task<R> task)
+  {
+    this.task = task;
+    this.executor = nbThreads > 1
+        ? Executors.newFixedThreadPool(nbThreads, new DirectoryThread.Factory(threadName))
+        : null;
+    this.maxPendingBatches = 2 * nbThreads;
+  }
+
+  /**
+   * Submits an entry for processing.
+   *
+   * @param entry
+   *          the entry to process
+   * @return the results of the previously submitted entries which are
+   *         available, in the order of the entries
+   * @throws Exception
+   *           if processing an entry failed
+   */
+  List<R> submit(Entry entry) throws Exception
+  {
+    if (executor == null)
+    {
+      final R result = task.process(entry);
+      return result != null ? Collections.singletonList(result) : Collections.<R> emptyList();
+    }
+
+    batch.add(entry);
+    if (batch.size() < BATCH_SIZE)
+    {
+      return Collections.emptyList();
+    }
+    pendingBatches.add(executor.submit(newBatchTask(batch)));
+    batch = new ArrayList<>(BATCH_SIZE);
+
+    final List<R> results = new ArrayList<>();
+    while (!pendingBatches.isEmpty()
+        && (pendingBatches.size() > maxPendingBatches || pendingBatches.peek().isDone()))
+    {
+      results.addAll(get(pendingBatches.poll()));
+    }
+    return results;
+  }
+
+  /**
+   * Waits for the processing of all the submitted entries.
+   *
+   * @return the results of the submitted entries not returned yet, in the
+   *         order of the entries
+   * @throws Exception
+   *           if processing an entry failed
+   */
+  List<R> flush() throws Exception
+  {
+    final List<R> results = new ArrayList<>();
+    if (executor != null)
+    {
+      if (!batch.isEmpty())
+      {
+        pendingBatches.add(executor.submit(newBatchTask(batch)));
+        batch = new ArrayList<>(BATCH_SIZE);
+      }
+      while (!pendingBatches.isEmpty())
+      {
+        results.addAll(get(pendingBatches.poll()));
+      }
+    }
+    return results;
+  }
+
+  private Callable<List<R>> newBatchTask(final List<Entry> entries)
+  {
+    return new Callable<List<R>>()
+    {
+      @Override
+      public List<R> call() throws Exception
+      {
+        final List<R> results = new ArrayList<>(entries.size());
+        for (Entry entry : entries)
+        {
+          final R result = task.process(entry);
+          if (result != null)
+          {
+            results.add(result);
+          }
+        }
+        return results;
+      }
+    };
+  }
+
+  private static <R> List<R> get(Future<List<R>> future) throws Exception
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof Exception)
+      {
+        throw (Exception) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+
+  /** Stops the threads, abandoning the entries not processed yet. */
+  @Override
+  public void close()
+  {
+    if (executor != null)
+    {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -383,6 +383,55 @@ public class Branch
    */
   public TagResult writeEntries(EntryWriter entryWriter)
          throws IOException, MakeLDIFException
+  {
+    TagResult result = writeBranchEntry(entryWriter);
+    if (!result.keepProcessingEntry()
+        || !result.keepProcessingParent()
+        || !result.keepProcessingTemplateFile())
+    {
+      return result;
+    }
+
+
+    for (int i=0; i < subordinateTemplates.length; i++)
+    {
+      TagResult r =
+           subordinateTemplates[i].writeEntries(entryWriter, branchDN,
+                                                numEntriesPerTemplate[i]);
+      if (!r.keepProcessingParent()
+          || !r.keepProcessingTemplateFile())
+      {
+        if (r.keepProcessingTemplateFile())
+        {
+          // We don't want to propagate a "stop processing parent" all the way
+          // up the chain.
+          return TagResult.SUCCESS_RESULT;
+        }
+
+        return r;
+      }
+    }
+
+    return TagResult.SUCCESS_RESULT;
+  }
+
+
+
+  /**
+   * Writes the entry for this branch, without its subordinate entries.
+   *
+   * @param  entryWriter  The entry writer to which the entry should be
+   *                      written.
+   *
+   * @return  The result that indicates whether processing should continue.
+   *
+   * @throws  IOException  If a problem occurs while attempting to write to the
+   *                       LDIF writer.
+   *
+   * @throws  MakeLDIFException  If some other problem occurs.
+   */
+  TagResult writeBranchEntry(EntryWriter entryWriter)
+         throws IOException, MakeLDIFException
   {
     // Create a new template entry and populate it based on the RDN attributes
     // and extra lines.
@@ -415,26 +464,6 @@ public class Branch
       return TagResult.STOP_PROCESSING;
     }
 
-
-    for (int i=0; i < subordinateTemplates.length; i++)
-    {
-      TagResult r =
-           subordinateTemplates[i].writeEntries(entryWriter, branchDN,
-                                                numEntriesPerTemplate[i]);
-      if (!r.keepProcessingParent()
-          || !r.keepProcessingTemplateFile())
-      {
-        if (r.keepProcessingTemplateFile())
-        {
-          // We don't want to propagate a "stop processing parent" all the way
-          // up the chain.
-          return TagResult.SUCCESS_RESULT;
-        }
-
-        return r;
-      }
-    }
-
     return TagResult.SUCCESS_RESULT;
   }
 }
@@ -159,6 +159,7 @@ public class MakeLDIF
 
     BooleanArgument showUsage;
     IntegerArgument randomSeed;
+    IntegerArgument numThreads;
     StringArgument  configClass;
     StringArgument  configFile;
     StringArgument  templatePath;
@@ -216,6 +217,14 @@ public class MakeLDIF
       argParser.addArgument(randomSeed);
 
 
+      numThreads = new IntegerArgument("numthreads", null, "numThreads",
+                                       false, false, true,
+                                       INFO_LDIFIMPORT_THREAD_COUNT_PLACEHOLDER.get(),
+                                       1, null, true, 1, false, 0,
+                                       INFO_MAKELDIF_DESCRIPTION_NUM_THREADS.get());
+      argParser.addArgument(numThreads);
+
+
       showUsage = CommonArguments.getShowUsage();
       argParser.addArgument(showUsage);
       argParser.setUsageArgument(showUsage);
@@ -320,6 +329,22 @@ public class MakeLDIF
     }
 
 
+    // Get the number of threads generating the entries, if provided.
+    int numThreadsValue = 0;
+    if (numThreads.isPresent())
+    {
+      try
+      {
+        numThreadsValue = numThreads.getIntValue();
+      }
+      catch (ArgumentException ae)
+      {
+        printWrappedText(err, ERR_ERROR_PARSING_ARGS.get(ae.getMessage()));
+        return 1;
+      }
+    }
+
+
     // If a resource path was provided, then make sure it's acceptable.
     File resourceDir = new File(resourcePath.getValue());
     if (! resourceDir.exists())
@@ -376,7 +401,14 @@ public class MakeLDIF
     // Generate the LDIF content.
     try
     {
-      templateFile.generateLDIF(this);
+      if (numThreadsValue > 0)
+      {
+        templateFile.generateLDIF(this, random.nextInt(), numThreadsValue);
+      }
+      else
+      {
+        templateFile.generateLDIF(this);
+      }
     }
     catch (Exception e)
     {
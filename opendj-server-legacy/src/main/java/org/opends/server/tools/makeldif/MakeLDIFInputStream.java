@@ -93,6 +93,28 @@ public class MakeLDIFInputStream
    * @param  templateFile  The template file to use to generate the entries.
    */
   public MakeLDIFInputStream(TemplateFile templateFile)
+  {
+    this(templateFile, 0, 0);
+  }
+
+
+
+  /**
+   * Creates a new MakeLDIF input stream that will generate entries based on the
+   * provided template file with several threads.  The same entries are
+   * generated in the same order for a given seed whatever the number of
+   * threads, as described in
+   * {@link TemplateFile#generateLDIF(EntryWriter, long, int)}.
+   *
+   * @param  templateFile  The template file to use to generate the entries.
+   * @param  seed          The seed used to initialize the random number
+   *                       generators.
+   * @param  numThreads    The number of threads generating the entries, or
+   *                       zero to generate them as
+   *                       {@link TemplateFile#generateLDIF(EntryWriter)} does.
+   */
+  public MakeLDIFInputStream(TemplateFile templateFile, long seed,
+                             int numThreads)
   {
     this.templateFile = templateFile;
 
@@ -115,7 +137,8 @@ public class MakeLDIFInputStream
       ioException = ioe;
     }
 
-    generatorThread = new MakeLDIFInputStreamThread(this, templateFile);
+    generatorThread =
+         new MakeLDIFInputStreamThread(this, templateFile, seed, numThreads);
     generatorThread.start();
   }
 
@@ -47,6 +47,15 @@ class MakeLDIFInputStreamThread
   /** The template file to use to generate the entries. */
   private TemplateFile templateFile;
 
+  /** The seed used to initialize the random number generators. */
+  private long seed;
+
+  /**
+   * The number of threads generating the entries, or zero to generate them
+   * with this thread only.
+   */
+  private int numThreads;
+
 
 
   /**
@@ -55,14 +64,21 @@ class MakeLDIFInputStreamThread
    *
    * @param  inputStream   The MakeLDIF input stream that this thread will feed.
    * @param  templateFile  The template file to use to generate the entries.
+   * @param  seed          The seed used to initialize the random number
+   *                       generators when generating with several threads.
+   * @param  numThreads    The number of threads generating the entries, or
+   *                       zero to generate them with this thread only.
    */
   public MakeLDIFInputStreamThread(MakeLDIFInputStream inputStream,
-                                   TemplateFile templateFile)
+                                   TemplateFile templateFile, long seed,
+                                   int numThreads)
   {
     super("MakeLDIF Input Stream Thread");
 
     this.inputStream  = inputStream;
     this.templateFile = templateFile;
+    this.seed         = seed;
+    this.numThreads   = numThreads;
   }
 
 
@@ -75,7 +91,14 @@ class MakeLDIFInputStreamThread
   {
     try
     {
-      templateFile.generateLDIF(inputStream);
+      if (numThreads > 0)
+      {
+        templateFile.generateLDIF(inputStream, seed, numThreads);
+      }
+      else
+      {
+        templateFile.generateLDIF(inputStream);
+      }
     }
     catch (MakeLDIFException mle)
     {
@@ -0,0 +1,513 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools.makeldif;
+
+import static org.opends.server.util.StaticUtils.*;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.types.DN;
+import org.opends.server.types.InitializationException;
+
+/**
+ * Generates the entries of a template file with several threads.
+ * <p>
+ * The entries are split into units: the entry of each branch, and ranges of
+ * the entries generated below a branch with each of its subordinate templates,
+ * including their own subordinate entries. The units are the same whatever the
+ * number of threads. Each thread generates units with its own copy of the
+ * template file. Before generating a unit, the thread initializes the random
+ * number generator from the seed and the position of the unit, and positions
+ * the sequential tags and the first and last names as if all the previous
+ * units had been generated by the same thread. The entries of the units are
+ * written in the order of the units, so the same entries are written in the
+ * same order for a given seed whatever the number of threads.
+ * <p>
+ * The entries of a unit are streamed to the writer through a bounded queue, so
+ * that a unit generating a large subtree does not have to be held in memory: a
+ * thread generating a unit which is not the next one to be written waits once
+ * its queue is full.
+ * <p>
+ * The positions are computed from the number of entries of each template, as if
+ * every line of the templates generated a value for every entry.
+ */
+final class ParallelLDIFGenerator
+{
+  /** The approximate number of entries generated by a unit. */
+  private static final int UNIT_SIZE = 1000;
+  /** The template index of the unit generating the entry of a branch. */
+  private static final int BRANCH_ENTRY = -1;
+  /** Marks the end of the entries of a unit in its queue. */
+  private static final TemplateEntry END_OF_UNIT = new TemplateEntry((Template) null, null);
+
+  private final TemplateFile templateFile;
+  private final long seed;
+  private final int numThreads;
+  /**
+   * The number of entries of each template in the subtree of an entry generated
+   * with a template, mapped from the lowercase template names.
+   */
+  private final Map<String, Map<String, Long>> subtreeCounts = new HashMap<>();
+
+  /** The copies of the template file which are not generating a unit. */
+  private final BlockingQueue<TemplateFile> generators = new LinkedBlockingQueue<>();
+  /** The pool of threads generating the units. */
+  private ExecutorService executor;
+  private final Deque<PendingUnit> pendingUnits = new ArrayDeque<>();
+
+  /** The branch whose remaining units must not be written, if any. */
+  private DN skippedBranchDN;
+  /**
+   * The index of the subordinate template whose remaining units must not be
+   * written, or {@link #BRANCH_ENTRY} if none of the remaining units of the
+   * skipped branch must be written.
+   */
+  private int skippedTemplateIndex;
+
+  /**
+   * Creates a new parallel LDIF generator.
+   *
+   * @param  templateFile  The parsed template file defining the entries.
+   * @param  seed          The seed used to initialize the random number
+   *                       generators.
+   * @param  numThreads    The number of threads generating the entries.
+   */
+  ParallelLDIFGenerator(TemplateFile templateFile, long seed, int numThreads)
+  {
+    this.templateFile = templateFile;
+    this.seed         = seed;
+    this.numThreads   = Math.max(1, numThreads);
+  }
+
+
+
+  /**
+   * Generates the entries and writes them to the provided entry writer.
+   *
+   * @param  entryWriter  The entry writer that should be used to write the
+   *                      entries.
+   *
+   * @return  The result that indicates whether processing should continue.
+   *
+   * @throws  IOException  If an error occurs while writing the entries.
+   *
+   * @throws  MakeLDIFException  If some other problem occurs.
+   */
+  TagResult generateLDIF(EntryWriter entryWriter)
+         throws IOException, MakeLDIFException
+  {
+    try
+    {
+      for (int i = 0; i < numThreads; i++)
+      {
+        generators.add(templateFile.duplicate(new Random()));
+      }
+    }
+    catch (InitializationException e)
+    {
+      throw new MakeLDIFException(e.getMessageObject(), e);
+    }
+
+    executor = Executors.newFixedThreadPool(numThreads,
+        new DirectoryThread.Factory("MakeLDIF Generator"));
+    try
+    {
+      long unitIndex = 0;
+      Map<String, Long> entryCounts = new HashMap<>();
+      long nameCount = 0;
+      for (Branch branch : templateFile.getBranches().values())
+      {
+        TagResult result = submit(new Unit(unitIndex++, branch.getBranchDN(),
+            BRANCH_ENTRY, 1, entryCounts, nameCount), entryWriter);
+        if (result != null)
+        {
+          return result;
+        }
+
+        Template[] templates = branch.getSubordinateTemplates();
+        int[] numEntries = branch.getNumEntriesPerTemplate();
+        for (int i = 0; i < templates.length; i++)
+        {
+          Map<String, Long> countsPerEntry = getSubtreeCounts(templates[i]);
+          long subtreeSize = 0;
+          for (long count : countsPerEntry.values())
+          {
+            subtreeSize += count;
+          }
+          int rangeSize = (int) Math.max(1, UNIT_SIZE / subtreeSize);
+
+          for (int start = 0; start < numEntries[i]; start += rangeSize)
+          {
+            int count = Math.min(rangeSize, numEntries[i] - start);
+            result = submit(new Unit(unitIndex++, branch.getBranchDN(), i,
+                count, entryCounts, nameCount), entryWriter);
+            if (result != null)
+            {
+              return result;
+            }
+
+            for (Map.Entry<String, Long> e : countsPerEntry.entrySet())
+            {
+              add(entryCounts, e.getKey(), count * e.getValue());
+            }
+            nameCount += count * subtreeSize;
+          }
+        }
+      }
+
+      while (!pendingUnits.isEmpty())
+      {
+        TagResult result = write(pendingUnits.poll(), entryWriter);
+        if (result != null)
+        {
+          return result;
+        }
+      }
+    }
+    finally
+    {
+      executor.shutdownNow();
+    }
+
+    entryWriter.closeEntryWriter();
+    return TagResult.SUCCESS_RESULT;
+  }
+
+
+
+  /**
+   * Submits a unit for generation, and writes the entries of the previous
+   * units which have been generated.  At most two units per thread are
+   * generated or waiting to be written at any time.
+   * <p>
+   * The units are started by the pool in the order of submission, so the next
+   * unit to be written is always being generated or has been generated, and
+   * its queue keeps being drained while the following units wait.
+   *
+   * @return  The result if processing should stop, or {@code null} to go on.
+   */
+  private TagResult submit(final Unit unit, EntryWriter entryWriter)
+          throws IOException, MakeLDIFException
+  {
+    final PendingUnit pending = new PendingUnit(unit);
+    pending.future = executor.submit(new Callable<TagResult>()
+    {
+      @Override
+      public TagResult call() throws Exception
+      {
+        try
+        {
+          TemplateFile generator = generators.take();
+          try
+          {
+            return generate(generator, unit, pending);
+          }
+          finally
+          {
+            generators.add(generator);
+          }
+        }
+        finally
+        {
+          pending.entries.put(END_OF_UNIT);
+        }
+      }
+    });
+    pendingUnits.add(pending);
+
+    while (!pendingUnits.isEmpty()
+        && (pendingUnits.size() > 2 * numThreads
+            || pendingUnits.peek().future.isDone()))
+    {
+      TagResult result = write(pendingUnits.poll(), entryWriter);
+      if (result != null)
+      {
+        return result;
+      }
+    }
+    return null;
+  }
+
+
+
+  /**
+   * Generates the entries of a unit with a copy of the template file, and adds
+   * them to the queue of the unit.  The units generated with a given copy have
+   * increasing indexes, because a copy is only available once the previous unit
+   * taken from the queue has been generated.
+   */
+  private TagResult generate(TemplateFile generator, Unit unit,
+                             EntryWriter unitWriter)
+          throws IOException, MakeLDIFException
+  {
+    generator.getRandom().setSeed(seed + unit.index * 0x9E3779B97F4A7C15L);
+    generator.initializeNamesForEntryCount(unit.nameCount);
+    for (Map.Entry<String, Template> e : generator.getTemplates().entrySet())
+    {
+      Long entryCount = unit.entryCounts.get(e.getKey());
+      initializeTags(e.getValue().getTemplateLines(),
+                     entryCount != null ? entryCount : 0);
+    }
+
+    Branch branch = generator.getBranch(unit.branchDN);
+    if (unit.templateIndex == BRANCH_ENTRY)
+    {
+      initializeTags(branch.getExtraLines(), 0);
+      return branch.writeBranchEntry(unitWriter);
+    }
+    Template template = branch.getSubordinateTemplates()[unit.templateIndex];
+    return template.writeEntries(unitWriter, unit.branchDN, unit.count);
+  }
+
+
+
+  private static void initializeTags(TemplateLine[] lines, long entryCount)
+  {
+    for (TemplateLine line : lines)
+    {
+      for (Tag tag : line.getTags())
+      {
+        tag.initializeForEntryCount(entryCount);
+      }
+    }
+  }
+
+
+
+  /**
+   * Writes the entries of a unit as they are generated, following the same
+   * rules as {@link Branch#writeEntries(EntryWriter)} to skip the remaining
+   * entries of a branch or a template.
+   *
+   * @return  The result if processing should stop, or {@code null} to go on.
+   */
+  private TagResult write(PendingUnit pending, EntryWriter entryWriter)
+          throws IOException, MakeLDIFException
+  {
+    Unit unit = pending.unit;
+    boolean skipped = unit.branchDN.equals(skippedBranchDN)
+        && (skippedTemplateIndex == BRANCH_ENTRY
+            || skippedTemplateIndex == unit.templateIndex);
+
+    // The entries of a skipped unit are still taken, so that its generation
+    // can complete
+    TemplateEntry entry;
+    while ((entry = take(pending)) != END_OF_UNIT)
+    {
+      if (!skipped && !entryWriter.writeEntry(entry))
+      {
+        return TagResult.STOP_PROCESSING;
+      }
+    }
+
+    TagResult result = get(pending.future);
+    if (skipped)
+    {
+      return null;
+    }
+    else if (!result.keepProcessingTemplateFile())
+    {
+      return result;
+    }
+    else if (!result.keepProcessingParent()
+        || (unit.templateIndex == BRANCH_ENTRY && !result.keepProcessingEntry()))
+    {
+      skippedBranchDN      = unit.branchDN;
+      skippedTemplateIndex = BRANCH_ENTRY;
+    }
+    else if (!result.keepProcessingEntry())
+    {
+      skippedBranchDN      = unit.branchDN;
+      skippedTemplateIndex = unit.templateIndex;
+    }
+    return null;
+  }
+
+
+
+  private static TemplateEntry take(PendingUnit pending) throws IOException
+  {
+    try
+    {
+      return pending.entries.take();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+  }
+
+
+
+  private static TagResult get(Future<TagResult> future)
+          throws IOException, MakeLDIFException
+  {
+    try
+    {
+      return future.get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    }
+    catch (ExecutionException e)
+    {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+      {
+        throw (IOException) cause;
+      }
+      else if (cause instanceof MakeLDIFException)
+      {
+        throw (MakeLDIFException) cause;
+      }
+      else if (cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+      throw (RuntimeException) cause;
+    }
+  }
+
+
+
+  /**
+   * Returns the number of entries of each template in the subtree of an entry
+   * generated with the provided template, including this entry.
+   */
+  private Map<String, Long> getSubtreeCounts(Template template)
+  {
+    String lowerName = toLowerCase(template.getName());
+    Map<String, Long> counts = subtreeCounts.get(lowerName);
+    if (counts == null)
+    {
+      counts = new HashMap<>();
+      counts.put(lowerName, 1L);
+      Template[] subordinates = template.getSubordinateTemplates();
+      int[] numEntries = template.getNumEntriesPerTemplate();
+      for (int i = 0; i < subordinates.length; i++)
+      {
+        for (Map.Entry<String, Long> e : getSubtreeCounts(subordinates[i]).entrySet())
+        {
+          add(counts, e.getKey(), numEntries[i] * e.getValue());
+        }
+      }
+      subtreeCounts.put(lowerName, counts);
+    }
+    return counts;
+  }
+
+
+
+  private static void add(Map<String, Long> counts, String lowerName, long count)
+  {
+    Long previousCount = counts.get(lowerName);
+    counts.put(lowerName, previousCount != null ? previousCount + count : count);
+  }
+
+
+
+  /** A unit of entries generated by a thread. */
+  private static final class Unit
+  {
+    private final long index;
+    private final DN branchDN;
+    /** The index of the subordinate template of the branch, or {@link ParallelLDIFGenerator#BRANCH_ENTRY}. */
+    private final int templateIndex;
+    /** The number of entries generated with the subordinate template of the branch. */
+    private final int count;
+    /** The number of entries generated with each template before this unit. */
+    private final Map<String, Long> entryCounts;
+    /** The number of template entries generated before this unit. */
+    private final long nameCount;
+
+    private Unit(long index, DN branchDN, int templateIndex, int count,
+        Map<String, Long> entryCounts, long nameCount)
+    {
+      this.index         = index;
+      this.branchDN      = branchDN;
+      this.templateIndex = templateIndex;
+      this.count         = count;
+      this.entryCounts   = new HashMap<>(entryCounts);
+      this.nameCount     = nameCount;
+    }
+  }
+
+
+
+  /**
+   * A unit submitted for generation, and the queue of the entries generated
+   * for it which have not been written yet.
+   */
+  private static final class PendingUnit implements EntryWriter
+  {
+    private final Unit unit;
+    private final BlockingQueue<TemplateEntry> entries =
+        new LinkedBlockingQueue<>(UNIT_SIZE);
+    private Future<TagResult> future;
+
+    private PendingUnit(Unit unit)
+    {
+      this.unit = unit;
+    }
+
+    @Override
+    public boolean writeEntry(TemplateEntry entry) throws IOException
+    {
+      try
+      {
+        entries.put(entry);
+        return true;
+      }
+      catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        throw new IOException(e);
+      }
+    }
+
+    @Override
+    public void closeEntryWriter()
+    {
+      // Nothing to do.
+    }
+  }
+}
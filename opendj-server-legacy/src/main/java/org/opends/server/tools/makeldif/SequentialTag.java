@@ -233,6 +233,21 @@ public class SequentialTag
 
 
 
+  /**
+   * Performs any initialization for this tag that may be needed when starting
+   * to generate entries after a given number of entries have already been
+   * generated with the template or branch in which this tag is used.
+   *
+   * @param  entryCount  The number of entries already generated with the
+   *                     template or branch in which this tag is used.
+   */
+  public void initializeForEntryCount(long entryCount)
+  {
+    nextValue = (int) (initialValue + entryCount);
+  }
+
+
+
   /**
    * Generates the content for this tag by appending it to the provided tag.
    *
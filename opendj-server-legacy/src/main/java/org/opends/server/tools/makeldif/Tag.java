@@ -22,7 +22,7 @@
  *
  *
  *      Copyright 2006-2008 Sun Microsystems, Inc.
- *      Portions Copyright 2014 ForgeRock AS
+ *      Portions Copyright 2014-2015 ForgeRock AS
  */
 package org.opends.server.tools.makeldif;
 import org.forgerock.i18n.LocalizableMessage;
@@ -123,6 +123,23 @@ public abstract class Tag
 
 
 
+  /**
+   * Performs any initialization for this tag that may be needed when starting
+   * to generate entries after a given number of entries have already been
+   * generated with the template or branch in which this tag is used.  This
+   * allows several threads to generate different ranges of entries with the
+   * same values as if they had been generated by a single thread.
+   *
+   * @param  entryCount  The number of entries already generated with the
+   *                     template or branch in which this tag is used.
+   */
+  public void initializeForEntryCount(long entryCount)
+  {
+    // No implementation required by default.
+  }
+
+
+
   /**
    * Generates the content for this tag by appending it to the provided tag.
    *
@@ -83,6 +83,8 @@ public class TemplateFile
    * and last name combinations.
    */
   private int nameUniquenessCounter;
+  /** The number of times that new first and last names have been chosen. */
+  private long nameCount;
 
   /** The set of branch definitions for this template file. */
   private final LinkedHashMap<DN, Branch> branches = new LinkedHashMap<>();
@@ -109,6 +111,11 @@ public class TemplateFile
   /** The path to the directory containing the template file, if available. */
   private String templatePath;
 
+  /** The lines of the template file definition, once it has been parsed. */
+  private String[] definitionLines;
+  /** The tags registered before the template file definition was parsed. */
+  private Map<String, Tag> definitionTags;
+
   /** The set of first names to use when generating the LDIF. */
   private String[] firstNames;
   /** The set of last names to use when generating the LDIF. */
@@ -470,8 +477,8 @@ public class TemplateFile
    */
   public void nextFirstAndLastNames()
   {
-    firstName = firstNames[firstNameIndex++];
-    lastName  = lastNames[lastNameIndex++];
+    firstName = firstNames[firstNameIndex];
+    lastName  = lastNames[lastNameIndex];
 
 
     // If we've already exhausted every possible combination, then append an
@@ -481,6 +488,46 @@ public class TemplateFile
       lastName += nameUniquenessCounter;
     }
 
+    advanceNameIndexes();
+  }
+
+
+
+  /**
+   * Updates the first and last name indexes as if new values had been chosen
+   * for the provided number of template entries since the beginning of the
+   * generation process.
+   *
+   * @param  entryCount  The number of template entries already generated.
+   */
+  void initializeNamesForEntryCount(long entryCount)
+  {
+    if (entryCount < nameCount)
+    {
+      firstNameIndex        = 0;
+      lastNameIndex         = 0;
+      nameLoopCounter       = 0;
+      nameUniquenessCounter = 1;
+      nameCount             = 0;
+    }
+
+    while (nameCount < entryCount)
+    {
+      advanceNameIndexes();
+    }
+  }
+
+
+
+  /**
+   * Moves the first and last name indexes to the next combination.
+   */
+  private void advanceNameIndexes()
+  {
+    firstNameIndex++;
+    lastNameIndex++;
+    nameCount++;
+
     if (firstNameIndex >= firstNames.length)
     {
       // We're at the end of the first name list, so start over.  If the first
@@ -636,6 +683,9 @@ public class TemplateFile
   public void parse(String[] lines, List<LocalizableMessage> warnings)
          throws InitializationException, MakeLDIFException
   {
+    definitionLines = lines;
+    definitionTags  = new LinkedHashMap<>(registeredTags);
+
     // Create temporary variables that will be used to hold the data read.
     LinkedHashMap<String,Tag> templateFileIncludeTags = new LinkedHashMap<>();
     LinkedHashMap<String,String> templateFileConstants = new LinkedHashMap<>();
@@ -1682,5 +1732,63 @@ public class TemplateFile
     entryWriter.closeEntryWriter();
     return TagResult.SUCCESS_RESULT;
   }
+
+
+
+  /**
+   * Generates the LDIF content with several threads and writes it to the
+   * provided LDIF writer.  The entries are split into ranges of the entries
+   * below each branch, and each range is generated with a random number
+   * generator initialized from the provided seed and the position of the
+   * range, so that the same entries are written in the same order for a given
+   * seed whatever the number of threads.  They are not the same as the entries
+   * written by {@link #generateLDIF(EntryWriter)} for the same seed.  This
+   * template file must have been parsed from a template file definition.
+   *
+   * @param  entryWriter  The entry writer that should be used to write the
+   *                      entries.
+   * @param  seed         The seed used to initialize the random number
+   *                      generators.
+   * @param  numThreads   The number of threads generating the entries.
+   *
+   * @return  The result that indicates whether processing should continue.
+   *
+   * @throws  IOException  If an error occurs while writing to the LDIF file.
+   *
+   * @throws  MakeLDIFException  If some other problem occurs.
+   */
+  public TagResult generateLDIF(EntryWriter entryWriter, long seed,
+                                int numThreads)
+         throws IOException, MakeLDIFException
+  {
+    return new ParallelLDIFGenerator(this, seed, numThreads)
+        .generateLDIF(entryWriter);
+  }
+
+
+
+  /**
+   * Creates a new template file with the same definition as this template
+   * file, so that it can generate entries independently from this one.
+   *
+   * @param  random  The random number generator for the new template file.
+   *
+   * @return  The new template file.
+   *
+   * @throws  InitializationException  If a problem occurs while initializing
+   *                                   any of the MakeLDIF components.
+   *
+   * @throws  MakeLDIFException  If any other problem occurs while parsing the
+   *                             template file.
+   */
+  TemplateFile duplicate(Random random)
+         throws InitializationException, MakeLDIFException
+  {
+    TemplateFile templateFile = new TemplateFile(resourcePath, random);
+    templateFile.templatePath = templatePath;
+    templateFile.registeredTags.putAll(definitionTags);
+    templateFile.parse(definitionLines, new ArrayList<LocalizableMessage>());
+    return templateFile;
+  }
 }
 
@@ -76,6 +76,18 @@ public class TemplateLine
 
 
 
+  /**
+   * Retrieves the set of tags for this template line.
+   *
+   * @return  The set of tags for this template line.
+   */
+  public Tag[] getTags()
+  {
+    return tags;
+  }
+
+
+
   /**
    * Returns whether the value of this template line corresponds to an URL
    * or not.
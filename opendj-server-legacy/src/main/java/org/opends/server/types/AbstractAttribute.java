@@ -29,7 +29,9 @@ package org.opends.server.types;
 import java.util.Collection;
 import java.util.Set;
 
+import org.forgerock.opendj.ldap.Assertion;
 import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ConditionResult;
 import org.forgerock.opendj.ldap.DecodeException;
 import org.forgerock.opendj.ldap.schema.MatchingRule;
 
@@ -67,6 +69,18 @@ public abstract class AbstractAttribute implements Attribute
     return true;
   }
 
+  /**
+   * {@inheritDoc}
+   * <p>
+   * This implementation ignores the provided assertion and calls
+   * {@link #matchesEqualityAssertion(ByteString)}.
+   */
+  @Override
+  public ConditionResult matchesEqualityAssertion(Assertion assertion, ByteString assertionValue)
+  {
+    return matchesEqualityAssertion(assertionValue);
+  }
+
   @Override
   public final boolean equals(Object o)
   {
@@ -31,6 +31,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import org.forgerock.opendj.ldap.Assertion;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ConditionResult;
 
@@ -100,6 +101,22 @@ public interface Attribute extends Iterable<ByteString>
    */
   ConditionResult matchesEqualityAssertion(ByteString assertionValue);
 
+  /**
+   * Indicates whether this attribute matches the specified assertion, which
+   * was created from the provided assertion value by the equality matching
+   * rule of the attribute type of this attribute. It allows callers checking
+   * many attributes against the same assertion value to decode it only once.
+   *
+   * @param assertion
+   *          The assertion created from the assertion value by the equality
+   *          matching rule of the attribute type of this attribute.
+   * @param assertionValue
+   *          The assertion value from which the assertion was created.
+   * @return {@code true} if this attribute matches the specified assertion
+   *         value, or {@code false} if not.
+   */
+  ConditionResult matchesEqualityAssertion(Assertion assertion, ByteString assertionValue);
+
   /**
    * Indicates whether the provided object is an attribute that is
    * equal to this attribute. It will be considered equal if the
@@ -204,15 +204,7 @@ public final class AttributeBuilder implements Iterable<ByteString>
       try
       {
         MatchingRule eqRule = getAttributeType().getEqualityMatchingRule();
-        final Assertion assertion = eqRule.getAssertion(assertionValue);
-        for (AttributeValue value : values)
-        {
-          if (assertion.matches(value.getNormalizedValue()).toBoolean())
-          {
-            return ConditionResult.TRUE;
-          }
-        }
-        return ConditionResult.FALSE;
+        return matches(eqRule.getAssertion(assertionValue));
       }
       catch (DecodeException e)
       {
@@ -220,6 +212,24 @@ public final class AttributeBuilder implements Iterable<ByteString>
       }
     }
 
+    @Override
+    public ConditionResult matchesEqualityAssertion(Assertion assertion, ByteString assertionValue)
+    {
+      return matches(assertion);
+    }
+
+    private ConditionResult matches(Assertion assertion)
+    {
+      for (AttributeValue value : values)
+      {
+        if (assertion.matches(value.getNormalizedValue()).toBoolean())
+        {
+          return ConditionResult.TRUE;
+        }
+      }
+      return ConditionResult.FALSE;
+    }
+
     @Override
     public final AttributeType getAttributeType()
     {
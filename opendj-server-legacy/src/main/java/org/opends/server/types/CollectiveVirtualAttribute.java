@@ -31,6 +31,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
+import org.forgerock.opendj.ldap.Assertion;
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ConditionResult;
 
@@ -73,6 +74,13 @@ public class CollectiveVirtualAttribute extends AbstractAttribute
     return attribute.matchesEqualityAssertion(assertionValue);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public ConditionResult matchesEqualityAssertion(Assertion assertion, ByteString assertionValue)
+  {
+    return attribute.matchesEqualityAssertion(assertion, assertionValue);
+  }
+
   /** {@inheritDoc} */
   @Override
   public AttributeType getAttributeType() {
@@ -0,0 +1,520 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.types;
+
+import static org.opends.server.util.ServerConstants.*;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.forgerock.opendj.ldap.Assertion;
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ConditionResult;
+import org.forgerock.opendj.ldap.schema.MatchingRule;
+import org.opends.server.core.DirectoryServer;
+
+/**
+ * A search filter prepared for being evaluated against many entries, such as
+ * the entries considered by a search operation.
+ * <p>
+ * The filter is compiled once into a tree of nodes:
+ * <ul>
+ * <li>the assertions of the equality components are created once by the
+ * equality matching rule of their attribute type, instead of once per
+ * attribute and per entry,</li>
+ * <li>the components of the AND and OR filters are evaluated from the cheapest
+ * to the most expensive one, so that the evaluation stops as early as
+ * possible,</li>
+ * <li>AND and OR filters with a single component are replaced by their
+ * component.</li>
+ * </ul>
+ * A compiled filter matches exactly the same entries as the
+ * {@link SearchFilter#matchesEntry(Entry) interpreted filter}. The components
+ * of an OR filter can always be reordered, since its result does not depend
+ * on their order. The result of an AND filter is the result of its first
+ * component which is not {@code TRUE}, so its components are only reordered
+ * where {@code FALSE} and {@code UNDEFINED} are not distinguished, i.e. outside
+ * of NOT filters.
+ * <p>
+ * Filters which the interpreter would reject, and all filters when the
+ * evaluation of the filters is traced, are not compiled but interpreted.
+ */
+@org.opends.server.types.PublicAPI(
+     stability=org.opends.server.types.StabilityLevel.UNCOMMITTED,
+     mayInstantiate=false,
+     mayExtend=false,
+     mayInvoke=true)
+public final class CompiledSearchFilter
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The relative cost of a filter on an attribute which may be virtual. */
+  private static final int VIRTUAL_ATTRIBUTE_COST = 50;
+
+  /** Orders the nodes from the cheapest to the most expensive one. */
+  private static final Comparator<Node> COST_COMPARATOR = new Comparator<Node>()
+  {
+    @Override
+    public int compare(Node n1, Node n2)
+    {
+      return Integer.compare(n1.cost, n2.cost);
+    }
+  };
+
+  /** A node of a compiled filter. */
+  private abstract static class Node
+  {
+    /** The relative cost of evaluating this node. */
+    private final int cost;
+
+    private Node(int cost)
+    {
+      this.cost = cost;
+    }
+
+    abstract ConditionResult evaluate(Entry entry) throws DirectoryException;
+  }
+
+  /** An AND filter, returning the result of its first component which is not TRUE. */
+  private static final class AndNode extends Node
+  {
+    private final Node[] components;
+
+    private AndNode(Node[] components)
+    {
+      super(sumCosts(components));
+      this.components = components;
+    }
+
+    @Override
+    ConditionResult evaluate(Entry entry) throws DirectoryException
+    {
+      for (Node component : components)
+      {
+        final ConditionResult result = component.evaluate(entry);
+        if (result != ConditionResult.TRUE)
+        {
+          return result;
+        }
+      }
+      return ConditionResult.TRUE;
+    }
+  }
+
+  /** An OR filter. */
+  private static final class OrNode extends Node
+  {
+    private final Node[] components;
+
+    private OrNode(Node[] components)
+    {
+      super(sumCosts(components));
+      this.components = components;
+    }
+
+    @Override
+    ConditionResult evaluate(Entry entry) throws DirectoryException
+    {
+      ConditionResult result = ConditionResult.FALSE;
+      for (Node component : components)
+      {
+        switch (component.evaluate(entry))
+        {
+        case TRUE:
+          return ConditionResult.TRUE;
+        case UNDEFINED:
+          result = ConditionResult.UNDEFINED;
+          break;
+        default:
+          break;
+        }
+      }
+      return result;
+    }
+  }
+
+  /** A NOT filter. */
+  private static final class NotNode extends Node
+  {
+    private final Node component;
+
+    private NotNode(Node component)
+    {
+      super(component.cost + 1);
+      this.component = component;
+    }
+
+    @Override
+    ConditionResult evaluate(Entry entry) throws DirectoryException
+    {
+      return ConditionResult.not(component.evaluate(entry));
+    }
+  }
+
+  /** An equality filter, whose assertion is created once. */
+  private static final class EqualityNode extends Node
+  {
+    private final AttributeType attributeType;
+    private final Set<String> attributeOptions;
+    private final ByteString assertionValue;
+    /** The equality matching rule of the attribute type, may be null. */
+    private final MatchingRule matchingRule;
+    /** The assertion created by the matching rule, null if it could not be created. */
+    private final Assertion assertion;
+
+    private EqualityNode(SearchFilter filter)
+    {
+      super(getCost(filter));
+      this.attributeType = filter.getAttributeType();
+      this.attributeOptions = filter.getAttributeOptions();
+      this.assertionValue = filter.getAssertionValue();
+      this.matchingRule = attributeType.getEqualityMatchingRule();
+      this.assertion = getAssertion(matchingRule, assertionValue);
+    }
+
+    private static Assertion getAssertion(MatchingRule matchingRule, ByteString assertionValue)
+    {
+      if (matchingRule != null)
+      {
+        try
+        {
+          return matchingRule.getAssertion(assertionValue);
+        }
+        catch (Exception e)
+        {
+          // each attribute will report the problem
+          logger.traceException(e);
+        }
+      }
+      return null;
+    }
+
+    @Override
+    ConditionResult evaluate(Entry entry)
+    {
+      final List<Attribute> attrs = entry.getAttribute(attributeType, attributeOptions);
+      if (attrs == null || attrs.isEmpty())
+      {
+        return ConditionResult.FALSE;
+      }
+      if (matchingRule == null)
+      {
+        return ConditionResult.UNDEFINED;
+      }
+
+      ConditionResult result = ConditionResult.FALSE;
+      for (Attribute a : attrs)
+      {
+        // subtypes may have a different equality matching rule
+        final ConditionResult cr =
+            assertion != null && a.getAttributeType().getEqualityMatchingRule() == matchingRule
+                ? a.matchesEqualityAssertion(assertion, assertionValue)
+                : a.matchesEqualityAssertion(assertionValue);
+        if (cr == ConditionResult.TRUE)
+        {
+          return ConditionResult.TRUE;
+        }
+        else if (cr == ConditionResult.UNDEFINED)
+        {
+          result = ConditionResult.UNDEFINED;
+        }
+      }
+      return result;
+    }
+  }
+
+  /** Any other filter, evaluated by the interpreter. */
+  private static final class InterpretedNode extends Node
+  {
+    private final SearchFilter completeFilter;
+    private final SearchFilter filter;
+
+    private InterpretedNode(SearchFilter completeFilter, SearchFilter filter)
+    {
+      super(getCost(filter));
+      this.completeFilter = completeFilter;
+      this.filter = filter;
+    }
+
+    @Override
+    ConditionResult evaluate(Entry entry) throws DirectoryException
+    {
+      return filter.evaluate(completeFilter, entry);
+    }
+  }
+
+  /** The compiled filter. */
+  private final SearchFilter filter;
+  /** The root of the compiled filter, or null if the filter is interpreted. */
+  private final Node root;
+
+  private CompiledSearchFilter(SearchFilter filter, Node root)
+  {
+    this.filter = filter;
+    this.root = root;
+  }
+
+  /**
+   * Compiles the provided search filter.
+   *
+   * @param filter
+   *          the search filter to compile
+   * @return the compiled search filter
+   */
+  public static CompiledSearchFilter compile(SearchFilter filter)
+  {
+    if (SearchFilter.isTraceEnabled() || !isValid(filter, 0))
+    {
+      return new CompiledSearchFilter(filter, null);
+    }
+    return new CompiledSearchFilter(filter, compile(filter, filter, true));
+  }
+
+  /**
+   * Compiles the provided filter.
+   *
+   * @param completeFilter
+   *          the complete filter, of which the provided filter may be a subset
+   * @param f
+   *          the filter to compile
+   * @param undefinedIsFalse
+   *          whether an UNDEFINED result of the filter is handled as FALSE
+   * @return the compiled filter
+   */
+  private static Node compile(SearchFilter completeFilter, SearchFilter f, boolean undefinedIsFalse)
+  {
+    switch (f.getFilterType())
+    {
+    case AND:
+      final Node[] andComponents = compile(completeFilter, f.getFilterComponents(), undefinedIsFalse);
+      if (andComponents.length == 1)
+      {
+        return andComponents[0];
+      }
+      if (undefinedIsFalse)
+      {
+        Arrays.sort(andComponents, COST_COMPARATOR);
+      }
+      return new AndNode(andComponents);
+
+    case OR:
+      final Node[] orComponents = compile(completeFilter, f.getFilterComponents(), undefinedIsFalse);
+      if (orComponents.length == 1)
+      {
+        return orComponents[0];
+      }
+      Arrays.sort(orComponents, COST_COMPARATOR);
+      return new OrNode(orComponents);
+
+    case NOT:
+      return new NotNode(compile(completeFilter, f.getNotComponent(), false));
+
+    case EQUALITY:
+      return new EqualityNode(f);
+
+    default:
+      return new InterpretedNode(completeFilter, f);
+    }
+  }
+
+  private static Node[] compile(SearchFilter completeFilter, Set<SearchFilter> filters, boolean undefinedIsFalse)
+  {
+    final Node[] nodes = new Node[filters.size()];
+    int i = 0;
+    for (SearchFilter f : filters)
+    {
+      nodes[i++] = compile(completeFilter, f, undefinedIsFalse);
+    }
+    return nodes;
+  }
+
+  /**
+   * Indicates whether the interpreter never rejects the provided filter,
+   * whatever the entry it is evaluated against.
+   */
+  private static boolean isValid(SearchFilter f, int depth)
+  {
+    if (f.getFilterType() == null)
+    {
+      return false;
+    }
+    switch (f.getFilterType())
+    {
+    case AND:
+    case OR:
+      final Set<SearchFilter> components = f.getFilterComponents();
+      if (components == null || (!components.isEmpty() && depth >= MAX_NESTED_FILTER_DEPTH))
+      {
+        return false;
+      }
+      for (SearchFilter component : components)
+      {
+        if (!isValid(component, depth + 1))
+        {
+          return false;
+        }
+      }
+      return true;
+
+    case NOT:
+      return f.getNotComponent() != null
+          && depth < MAX_NESTED_FILTER_DEPTH
+          && isValid(f.getNotComponent(), depth + 1);
+
+    case EQUALITY:
+    case GREATER_OR_EQUAL:
+    case LESS_OR_EQUAL:
+    case APPROXIMATE_MATCH:
+      return f.getAttributeType() != null && f.getAssertionValue() != null;
+
+    case SUBSTRING:
+      final List<ByteString> subAny = f.getSubAnyElements();
+      return f.getAttributeType() != null
+          && (f.getSubInitialElement() != null
+              || f.getSubFinalElement() != null
+              || (subAny != null && !subAny.isEmpty()));
+
+    case PRESENT:
+      return f.getAttributeType() != null;
+
+    case EXTENSIBLE_MATCH:
+      return f.getAssertionValue() != null
+          && (f.getMatchingRuleID() != null || f.getAttributeType() != null);
+
+    default:
+      return false;
+    }
+  }
+
+  /** Returns the relative cost of evaluating the provided filter, which is not an AND, OR or NOT filter. */
+  private static int getCost(SearchFilter f)
+  {
+    int cost;
+    switch (f.getFilterType())
+    {
+    case PRESENT:
+      cost = 1;
+      break;
+    case EQUALITY:
+      cost = 2;
+      break;
+    case GREATER_OR_EQUAL:
+    case LESS_OR_EQUAL:
+    case APPROXIMATE_MATCH:
+      cost = 4;
+      break;
+    case SUBSTRING:
+      cost = 6;
+      break;
+    default:
+      // extensible match filters without attribute type check all the attributes
+      cost = f.getAttributeType() != null ? 10 : 20;
+      break;
+    }
+    if (f.getAttributeType() != null && mayBeVirtual(f.getAttributeType()))
+    {
+      cost += VIRTUAL_ATTRIBUTE_COST;
+    }
+    return cost;
+  }
+
+  /** Indicates whether the attributes of the provided type or of one of its subtypes may be virtual. */
+  private static boolean mayBeVirtual(AttributeType attributeType)
+  {
+    for (VirtualAttributeRule rule : DirectoryServer.getVirtualAttributes())
+    {
+      for (AttributeType t = rule.getAttributeType(); t != null; t = t.getSuperiorType())
+      {
+        if (t.equals(attributeType))
+        {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static int sumCosts(Node[] nodes)
+  {
+    int cost = 0;
+    for (Node node : nodes)
+    {
+      cost += node.cost;
+    }
+    return cost;
+  }
+
+  /**
+   * Indicates whether this search filter matches the provided entry.
+   *
+   * @param entry
+   *          The entry for which to make the determination.
+   * @return {@code true} if this search filter matches the provided entry, or
+   *         {@code false} if it does not.
+   * @throws DirectoryException
+   *           If a problem is encountered during processing.
+   * @see SearchFilter#matchesEntry(Entry)
+   */
+  public boolean matchesEntry(Entry entry) throws DirectoryException
+  {
+    if (root == null)
+    {
+      return filter.matchesEntry(entry);
+    }
+    return root.evaluate(entry) == ConditionResult.TRUE;
+  }
+
+  /**
+   * Returns the search filter which was compiled.
+   *
+   * @return the search filter which was compiled
+   */
+  public SearchFilter getFilter()
+  {
+    return filter;
+  }
+
+  /**
+   * Indicates whether the search filter was compiled, or is interpreted.
+   *
+   * @return {@code true} if the search filter was compiled, {@code false} if it
+   *         is interpreted
+   */
+  boolean isCompiled()
+  {
+    return root != null;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String toString()
+  {
+    return filter.toString();
+  }
+}
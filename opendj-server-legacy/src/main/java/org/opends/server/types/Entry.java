@@ -3473,6 +3473,37 @@ public class Entry
   public static Entry decode(ByteSequenceReader entryBuffer,
                              CompressedSchema compressedSchema)
          throws DirectoryException
+  {
+    return decode(entryBuffer, compressedSchema, null);
+  }
+
+
+
+  /**
+   * Decodes the provided byte array as a partial entry holding only
+   * the requested attributes, using the V3 encoding. The DN and the
+   * object classes of the entry are always decoded, and the values of
+   * the other attributes are skipped.
+   *
+   * @param  entryBuffer       The byte buffer containing the data to
+   *                           be decoded.
+   * @param  compressedSchema  The compressed schema manager to use
+   *                           when decoding tokenized schema
+   *                           elements.
+   * @param  attributeTypes    The types of the attributes to decode,
+   *                           including their subtypes if needed, or
+   *                           {@code null} to decode all the
+   *                           attributes.
+   *
+   * @return  The decoded entry.
+   *
+   * @throws  DirectoryException  If the provided byte array cannot be
+   *                              decoded as an entry.
+   */
+  public static Entry decode(ByteSequenceReader entryBuffer,
+                             CompressedSchema compressedSchema,
+                             Set<AttributeType> attributeTypes)
+         throws DirectoryException
   {
     try
     {
@@ -3533,9 +3564,9 @@ public class Entry
       // Now, we should iterate through the user and operational attributes and
       // decode each one.
       Map<AttributeType, List<Attribute>> userAttributes =
-          decodeAttributes(version, entryBuffer, config);
+          decodeAttributes(version, entryBuffer, config, attributeTypes);
       Map<AttributeType, List<Attribute>> operationalAttributes =
-          decodeAttributes(version, entryBuffer, config);
+          decodeAttributes(version, entryBuffer, config, attributeTypes);
 
 
       // We've got everything that we need, so create and return the entry.
@@ -3659,6 +3690,8 @@ public class Entry
    *                     entry.
    * @param  config  The configuration that may be used to control how
    *                 the entry is encoded.
+   * @param  attributeTypes  The types of the attributes to decode, or
+   *                         {@code null} to decode all the attributes.
    *
    * @return  A map of the decoded object classes.
    * @throws  DirectoryException  If a problem occurs while attempting
@@ -3666,7 +3699,8 @@ public class Entry
    */
   private static Map<AttributeType, List<Attribute>>
   decodeAttributes(Byte ver, ByteSequenceReader entryBuffer,
-                   EntryEncodeConfig config) throws DirectoryException
+                   EntryEncodeConfig config, Set<AttributeType> attributeTypes)
+                   throws DirectoryException
   {
     // Next is the total number of attributes.  It may be a
     // single byte or multiple bytes.
@@ -3685,7 +3719,11 @@ public class Entry
           entryBuffer.readBERLength();
         }
         // Decode the attribute.
-        Attribute a = config.getCompressedSchema().decodeAttribute(entryBuffer);
+        Attribute a = config.getCompressedSchema().decodeAttribute(entryBuffer, attributeTypes);
+        if (a == null)
+        {
+          continue;
+        }
         List<Attribute> attrList = attributes.get(a.getAttributeType());
         if (attrList == null)
         {
@@ -3748,6 +3786,17 @@ public class Entry
         // Next, we have the number of values.
         int numValues = entryBuffer.readBERLength();
 
+        if (attributeTypes != null && !attributeTypes.contains(attributeType))
+        {
+          // Skip the values of the attributes which are not requested.
+          for (int j=0; j < numValues; j++)
+          {
+            entryBuffer.skip(entryBuffer.readBERLength());
+          }
+          builder = new AttributeBuilder();
+          continue;
+        }
+
         // Next, we have the sequence of length-value pairs.
         for (int j=0; j < numValues; j++)
         {
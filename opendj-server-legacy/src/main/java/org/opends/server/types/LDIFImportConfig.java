@@ -204,6 +204,24 @@ public final class LDIFImportConfig extends OperationConfig
     this(new MakeLDIFInputStream(templateFile));
   }
 
+  /**
+   * Creates a new LDIF import configuration that will generate
+   * entries using the given MakeLDIF template file with several
+   * threads. The same entries are generated for a given seed whatever
+   * the number of threads.
+   *
+   * @param  templateFile  The template file to use to generate the
+   *                       entries.
+   * @param  seed          The seed used to initialize the random
+   *                       number generators.
+   * @param  numThreads    The number of threads generating the
+   *                       entries.
+   */
+  public LDIFImportConfig(TemplateFile templateFile, long seed, int numThreads)
+  {
+    this(new MakeLDIFInputStream(templateFile, seed, numThreads));
+  }
+
 
 
   /**
@@ -230,7 +248,7 @@ public final class LDIFImportConfig extends OperationConfig
       else
       {
         inputStream = ldifInputStream =
-             new FileInputStream(ldifFileIterator.next());
+             openLDIFFile(ldifFileIterator.next());
       }
 
       if (isEncrypted)
@@ -239,9 +257,9 @@ public final class LDIFImportConfig extends OperationConfig
         //          stream.
       }
 
-      if (isCompressed)
+      if (isCompressed || isGZIPFile(inputStream))
       {
-        inputStream = new GZIPInputStream(inputStream);
+        inputStream = new GZIPInputStream(inputStream, bufferSize);
       }
 
       reader = new BufferedReader(new InputStreamReader(inputStream),
@@ -273,16 +291,16 @@ public final class LDIFImportConfig extends OperationConfig
     reader.close();
 
     InputStream inputStream = ldifInputStream =
-         new FileInputStream(ldifFileIterator.next());
+         openLDIFFile(ldifFileIterator.next());
 
     if (isEncrypted)
     {
       // FIXME -- Add support for encryption with a cipher input stream.
     }
 
-    if (isCompressed)
+    if (isCompressed || isGZIPFile(inputStream))
     {
-      inputStream = new GZIPInputStream(inputStream);
+      inputStream = new GZIPInputStream(inputStream, bufferSize);
     }
 
     reader = new BufferedReader(new InputStreamReader(inputStream), bufferSize);
@@ -291,6 +309,46 @@ public final class LDIFImportConfig extends OperationConfig
 
 
 
+  private InputStream openLDIFFile(String ldifFile) throws IOException
+  {
+    return new BufferedInputStream(new FileInputStream(ldifFile), bufferSize);
+  }
+
+
+
+  /**
+   * Indicates whether the provided LDIF file starts with the GZIP magic
+   * number, so that compressed LDIF files can be read without being flagged as
+   * such.
+   *
+   * @param  inputStream  The stream reading the LDIF file, which must support
+   *                      marks.
+   *
+   * @return  {@code true} if the LDIF file is compressed with GZIP.
+   *
+   * @throws  IOException  If a problem occurs while reading the file.
+   */
+  private static boolean isGZIPFile(InputStream inputStream)
+          throws IOException
+  {
+    if (!inputStream.markSupported())
+    {
+      return false;
+    }
+    inputStream.mark(2);
+    try
+    {
+      return inputStream.read() == (GZIPInputStream.GZIP_MAGIC & 0xff)
+          && inputStream.read() == (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+    finally
+    {
+      inputStream.reset();
+    }
+  }
+
+
+
   /**
    * Retrieves the writer that should be used to write entries that
    * are rejected rather than imported for some reason.
@@ -565,7 +623,8 @@ public final class LDIFImportConfig extends OperationConfig
   /**
    * Specifies whether the input LDIF source is expected to be
    * compressed.  If compression is used, then this must be set prior
-   * to the initial call to <CODE>getReader</CODE>.
+   * to the initial call to <CODE>getReader</CODE>.  LDIF files
+   * compressed with GZIP are also detected without this flag.
    *
    * @param  isCompressed  Indicates whether the input LDIF source is
    *                       expected to be compressed.
@@ -2222,6 +2222,56 @@ public final class SearchFilter
 
 
 
+  /**
+   * Evaluates this filter against the provided entry. It is used by
+   * {@link CompiledSearchFilter} for the filters it does not compile.
+   *
+   * @param  completeFilter  The complete filter being checked, of
+   *                         which this filter may be a subset.
+   * @param  entry           The entry for which to make the
+   *                         determination.
+   *
+   * @return  <CODE>TRUE</CODE> if this filter matches the provided
+   *          entry, <CODE>FALSE</CODE> if it does not, or
+   *          <CODE>UNDEFINED</CODE> if the result is undefined.
+   *
+   * @throws  DirectoryException  If a problem is encountered during
+   *                              processing.
+   */
+  ConditionResult evaluate(SearchFilter completeFilter, Entry entry)
+          throws DirectoryException
+  {
+    return matchesEntryInternal(completeFilter, entry, 0);
+  }
+
+
+
+  /**
+   * Retrieves the set of attribute options for this filter.
+   *
+   * @return  The set of attribute options for this filter, which
+   *          may be empty.
+   */
+  Set<String> getAttributeOptions()
+  {
+    return attributeOptions;
+  }
+
+
+
+  /**
+   * Indicates whether the evaluation of the filters is traced.
+   *
+   * @return  <CODE>true</CODE> if the evaluation of the filters is
+   *          traced, or <CODE>false</CODE> if not.
+   */
+  static boolean isTraceEnabled()
+  {
+    return logger.isTraceEnabled();
+  }
+
+
+
   /**
    * Indicates whether the this filter matches the provided entry.
    *
@@ -61,6 +61,8 @@ public final class VirtualAttribute
   private final VirtualAttributeProvider<?> provider;
   /** The virtual attribute rule for this virtual attribute. */
   private final VirtualAttributeRule rule;
+  /** The values computed in advance by the provider, or null if they must be computed on demand. */
+  private final Attribute values;
 
 
 
@@ -77,11 +79,35 @@ public final class VirtualAttribute
    */
   public VirtualAttribute(AttributeType attributeType, Entry entry,
       VirtualAttributeRule rule)
+  {
+    this(attributeType, entry, rule, null);
+  }
+
+
+
+  /**
+   * Creates a new virtual attribute whose values have already been
+   * generated by its provider, for example in a batch of entries.
+   *
+   * @param attributeType
+   *          The attribute type for this virtual attribute.
+   * @param entry
+   *          The entry in which this virtual attribute exists.
+   * @param rule
+   *          The virtual attribute rule that governs the behavior of
+   *          this virtual attribute.
+   * @param values
+   *          The values generated by the provider of the rule for the
+   *          entry, or {@code null} to generate them on demand.
+   */
+  public VirtualAttribute(AttributeType attributeType, Entry entry,
+      VirtualAttributeRule rule, Attribute values)
   {
     this.attributeType = attributeType;
     this.entry = entry;
     this.rule = rule;
     this.provider = rule.getProvider();
+    this.values = values;
   }
 
   @Override
@@ -93,12 +119,20 @@ public final class VirtualAttribute
   @Override
   public boolean contains(ByteString value)
   {
+    if (values != null)
+    {
+      return values.contains(value);
+    }
     return provider.hasValue(entry, rule, value);
   }
 
   @Override
   public boolean containsAll(Collection<ByteString> values)
   {
+    if (this.values != null)
+    {
+      return this.values.containsAll(values);
+    }
     return provider.hasAllValues(entry, rule, values);
   }
 
@@ -167,6 +201,10 @@ public final class VirtualAttribute
   @Override
   public boolean isEmpty()
   {
+    if (values != null)
+    {
+      return values.isEmpty();
+    }
     return !provider.hasValue(entry, rule);
   }
 
@@ -179,6 +217,10 @@ public final class VirtualAttribute
   @Override
   public Iterator<ByteString> iterator()
   {
+    if (values != null)
+    {
+      return values.iterator();
+    }
     return provider.getValues(entry, rule).iterator();
   }
 
@@ -204,6 +246,10 @@ public final class VirtualAttribute
   @Override
   public int size()
   {
+    if (values != null)
+    {
+      return values.size();
+    }
     if (provider.isMultiValued())
     {
       return provider.getValues(entry, rule).size();
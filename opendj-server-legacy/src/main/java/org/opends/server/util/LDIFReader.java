@@ -102,17 +102,17 @@ public class LDIFReader implements Closeable
    * The number of entries that have been ignored by this LDIF reader because
    * they didn't match the criteria.
    */
-  private final AtomicLong entriesIgnored = new AtomicLong();
+  private final AtomicLong entriesIgnored;
 
   /**
    * The number of entries that have been read by this LDIF reader, including
    * those that were ignored because they didn't match the criteria, and
    * including those that were rejected because they were invalid in some way.
    */
-  protected final AtomicLong entriesRead = new AtomicLong();
+  protected final AtomicLong entriesRead;
 
   /** The number of entries that have been rejected by this LDIF reader. */
-  private final AtomicLong entriesRejected = new AtomicLong();
+  private final AtomicLong entriesRejected;
 
   /** The line number on which the last entry started. */
   protected long lastEntryLineNumber = -1;
@@ -148,6 +148,9 @@ public class LDIFReader implements Closeable
     lastEntryBodyLines   = new LinkedList<>();
     lastEntryHeaderLines = new LinkedList<>();
     pluginConfigManager  = DirectoryServer.getPluginConfigManager();
+    entriesIgnored       = new AtomicLong();
+    entriesRead          = new AtomicLong();
+    entriesRejected      = new AtomicLong();
     // If we should invoke import plugins, then do so.
     if (importConfig.invokeImportPlugins())
     {
@@ -157,6 +160,27 @@ public class LDIFReader implements Closeable
   }
 
 
+
+  /**
+   * Creates a new LDIF reader that will parse the entries whose lines have
+   * been read by the provided LDIF reader, with the same import configuration
+   * and counting the entries with the same counters.  It does not read from
+   * the LDIF source itself.
+   *
+   * @param  linesReader  The LDIF reader reading the lines of the entries.
+   */
+  LDIFReader(LDIFReader linesReader)
+  {
+    importConfig         = linesReader.importConfig;
+    lastEntryBodyLines   = new LinkedList<>();
+    lastEntryHeaderLines = new LinkedList<>();
+    pluginConfigManager  = linesReader.pluginConfigManager;
+    entriesIgnored       = linesReader.entriesIgnored;
+    entriesRead          = linesReader.entriesRead;
+    entriesRejected      = linesReader.entriesRejected;
+  }
+
+
   /**
    * Reads the next entry from the LDIF source.
    *
@@ -205,45 +229,72 @@ public class LDIFReader implements Closeable
       {
         return null;
       }
-      lastEntryBodyLines   = lines;
-      lastEntryHeaderLines = new LinkedList<>();
 
-
-      // Read the DN of the entry and see if it is one that should be included
-      // in the import.
-      DN entryDN = readDN(lines);
-      if (entryDN == null)
+      final Entry entry = parseEntry(lines, checkSchema);
+      if (entry != null)
       {
-        // This should only happen if the LDIF starts with the "version:" line
-        // and has a blank line immediately after that.  In that case, simply
-        // read and return the next entry.
-        continue;
-      }
-      else if (!importConfig.includeEntry(entryDN))
-      {
-        logger.trace("Skipping entry %s because the DN is not one that "
-            + "should be included based on the include and exclude branches.", entryDN);
-        entriesRead.incrementAndGet();
-        logToSkipWriter(lines, ERR_LDIF_SKIP.get(entryDN));
-        continue;
-      }
-      else
-      {
-        entriesRead.incrementAndGet();
+        return entry;
       }
+    }
+  }
 
-      // Create the entry and see if it is one that should be included in the import.
-      final Entry entry = createEntry(entryDN, lines, checkSchema);
-      if (!isIncludedInImport(entry,lines)
-          || !invokeImportPlugins(entry, lines))
-      {
-        continue;
-      }
-      validateAgainstSchemaIfNeeded(checkSchema, entry, lines);
 
-      // The entry should be included in the import, so return it.
-      return entry;
+
+  /**
+   * Parses the lines of an entry read from the LDIF source, which started on
+   * line {@link #lastEntryLineNumber}.
+   *
+   * @param  lines        The lines of the entry, as returned by
+   *                      {@link #readEntryLines()}.
+   * @param  checkSchema  Indicates whether this reader should perform schema
+   *                      checking on the entry.
+   *
+   * @return  The entry, or {@code null} if the entry should not be included in
+   *          the import.
+   *
+   * @throws  LDIFException  If the lines cannot be parsed as an LDIF entry.
+   */
+  Entry parseEntry(LinkedList<StringBuilder> lines, boolean checkSchema)
+         throws LDIFException
+  {
+    lastEntryBodyLines   = lines;
+    lastEntryHeaderLines = new LinkedList<>();
+
+
+    // Read the DN of the entry and see if it is one that should be included
+    // in the import.
+    DN entryDN = readDN(lines);
+    if (entryDN == null)
+    {
+      // This should only happen if the LDIF starts with the "version:" line
+      // and has a blank line immediately after that.  In that case, simply
+      // read and return the next entry.
+      return null;
+    }
+    else if (!importConfig.includeEntry(entryDN))
+    {
+      logger.trace("Skipping entry %s because the DN is not one that "
+          + "should be included based on the include and exclude branches.", entryDN);
+      entriesRead.incrementAndGet();
+      logToSkipWriter(lines, ERR_LDIF_SKIP.get(entryDN));
+      return null;
+    }
+    else
+    {
+      entriesRead.incrementAndGet();
+    }
+
+    // Create the entry and see if it is one that should be included in the import.
+    final Entry entry = createEntry(entryDN, lines, checkSchema);
+    if (!isIncludedInImport(entry,lines)
+        || !invokeImportPlugins(entry, lines))
+    {
+      return null;
     }
+    validateAgainstSchemaIfNeeded(checkSchema, entry, lines);
+
+    // The entry should be included in the import, so return it.
+    return entry;
   }
 
   private Entry createEntry(DN entryDN, List<StringBuilder> lines, boolean checkSchema) throws LDIFException
@@ -1649,22 +1700,26 @@ public class LDIFReader implements Closeable
   {
     if (writer != null)
     {
-      try
+      // entries may be parsed by several threads sharing the writer
+      synchronized (writer)
       {
-        writer.write("# ");
-        writer.write(String.valueOf(message));
-        writer.newLine();
-        for (StringBuilder sb : lines)
+        try
         {
-          writer.write(sb.toString());
+          writer.write("# ");
+          writer.write(String.valueOf(message));
           writer.newLine();
-        }
+          for (StringBuilder sb : lines)
+          {
+            writer.write(sb.toString());
+            writer.newLine();
+          }
 
-        writer.newLine();
-      }
-      catch (Exception e)
-      {
-        logger.traceException(e);
+          writer.newLine();
+        }
+        catch (Exception e)
+        {
+          logger.traceException(e);
+        }
       }
     }
   }
@@ -0,0 +1,287 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.util;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.opends.server.types.Attribute;
+import org.opends.server.types.Attributes;
+
+/**
+ * A lock-free histogram of durations, used for monitoring latency
+ * percentiles.
+ * <p>
+ * Recorded values are spread in buckets whose width grows with the value:
+ * each power of two is split into {@value #SUB_BUCKETS} buckets, which bounds
+ * the relative error of the reported percentiles to about 6% while keeping a
+ * fixed memory footprint whatever the range of recorded values.
+ * <p>
+ * Durations are recorded in nanoseconds, and reported in microseconds.
+ */
+@org.opends.server.types.PublicAPI(
+     stability=org.opends.server.types.StabilityLevel.UNCOMMITTED,
+     mayInstantiate=true,
+     mayExtend=false,
+     mayInvoke=true)
+public final class LatencyHistogram
+{
+  /** log2 of the number of buckets per power of two. */
+  private static final int SUB_BUCKET_BITS = 4;
+  /** Number of buckets per power of two. */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /** Enough buckets for any positive long value. */
+  private static final int NB_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(NB_BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records the duration elapsed since the provided start time.
+   *
+   * @param startTimeNanos
+   *          the start time, as returned by {@link System#nanoTime()}
+   */
+  public void recordSince(long startTimeNanos)
+  {
+    record(System.nanoTime() - startTimeNanos);
+  }
+
+  /**
+   * Records a duration.
+   *
+   * @param durationNanos
+   *          the duration in nanoseconds. Negative values are recorded as 0.
+   */
+  public void record(long durationNanos)
+  {
+    final long value = Math.max(durationNanos, 0);
+    buckets.incrementAndGet(bucketIndex(value));
+    count.incrementAndGet();
+    total.addAndGet(value);
+    long currentMax;
+    do
+    {
+      currentMax = max.get();
+    }
+    while (value > currentMax && !max.compareAndSet(currentMax, value));
+  }
+
+  /**
+   * Returns the number of recorded durations.
+   *
+   * @return the number of recorded durations
+   */
+  public long getCount()
+  {
+    return count.get();
+  }
+
+  /**
+   * Returns the highest recorded duration.
+   *
+   * @param unit
+   *          the unit of the returned duration
+   * @return the highest recorded duration
+   */
+  public long getMax(TimeUnit unit)
+  {
+    return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the mean of the recorded durations.
+   *
+   * @param unit
+   *          the unit of the returned duration
+   * @return the mean of the recorded durations, 0 if none was recorded
+   */
+  public long getMean(TimeUnit unit)
+  {
+    final long nb = count.get();
+    return nb > 0 ? unit.convert(total.get() / nb, TimeUnit.NANOSECONDS) : 0;
+  }
+
+  /**
+   * Returns an upper bound of the provided percentile of the recorded
+   * durations.
+   *
+   * @param percentile
+   *          the percentile, between 0 and 100
+   * @param unit
+   *          the unit of the returned duration
+   * @return an upper bound of the provided percentile of the recorded
+   *         durations, 0 if none was recorded
+   */
+  public long getPercentile(double percentile, TimeUnit unit)
+  {
+    final long nb = count.get();
+    if (nb == 0)
+    {
+      return 0;
+    }
+    final long rank = Math.max(1, (long) Math.ceil(nb * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      seen += buckets.get(i);
+      if (seen >= rank)
+      {
+        return unit.convert(Math.min(bucketUpperBound(i), max.get()), TimeUnit.NANOSECONDS);
+      }
+    }
+    return getMax(unit);
+  }
+
+  /**
+   * Adds all the durations recorded in the provided histogram to this one.
+   *
+   * @param other
+   *          the histogram whose durations must be added to this one
+   */
+  public void merge(LatencyHistogram other)
+  {
+    long merged = 0;
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      final long nb = other.buckets.get(i);
+      if (nb != 0)
+      {
+        buckets.addAndGet(i, nb);
+        merged += nb;
+      }
+    }
+    count.addAndGet(merged);
+    total.addAndGet(other.total.get());
+    long currentMax;
+    do
+    {
+      currentMax = max.get();
+    }
+    while (other.max.get() > currentMax && !max.compareAndSet(currentMax, other.max.get()));
+  }
+
+  /**
+   * Returns a new histogram holding the durations recorded in this histogram
+   * but not in the provided one, which must be an earlier copy of this
+   * histogram, for instance to report the durations of the last interval. The
+   * maximum of the returned histogram is the upper bound of its highest
+   * bucket.
+   *
+   * @param previous
+   *          an earlier copy of this histogram, made with
+   *          {@link #merge(LatencyHistogram)}
+   * @return a new histogram holding the durations recorded since
+   *         {@code previous} was copied
+   */
+  public LatencyHistogram since(LatencyHistogram previous)
+  {
+    final LatencyHistogram delta = new LatencyHistogram();
+    long nbSince = 0;
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      final long nb = buckets.get(i) - previous.buckets.get(i);
+      if (nb > 0)
+      {
+        delta.buckets.set(i, nb);
+        delta.max.set(Math.min(bucketUpperBound(i), max.get()));
+        nbSince += nb;
+      }
+    }
+    delta.count.set(nbSince);
+    delta.total.set(Math.max(total.get() - previous.total.get(), 0));
+    return delta;
+  }
+
+  /** Forgets all the recorded durations. */
+  public void reset()
+  {
+    for (int i = 0; i < NB_BUCKETS; i++)
+    {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    total.set(0);
+    max.set(0);
+  }
+
+  /**
+   * Adds to the provided monitor attributes the count, mean, 50th, 99th
+   * percentiles and maximum of the recorded durations, in microseconds.
+   *
+   * @param attributes
+   *          the monitor attributes to complete
+   * @param prefix
+   *          the prefix of the names of the created attributes
+   */
+  public void addMonitorData(List<Attribute> attributes, String prefix)
+  {
+    final TimeUnit unit = TimeUnit.MICROSECONDS;
+    attributes.add(Attributes.create(prefix + "-count", String.valueOf(getCount())));
+    attributes.add(Attributes.create(prefix + "-avg-us", String.valueOf(getMean(unit))));
+    attributes.add(Attributes.create(prefix + "-p50-us", String.valueOf(getPercentile(50, unit))));
+    attributes.add(Attributes.create(prefix + "-p99-us", String.valueOf(getPercentile(99, unit))));
+    attributes.add(Attributes.create(prefix + "-max-us", String.valueOf(getMax(unit))));
+  }
+
+  static int bucketIndex(long value)
+  {
+    if (value < SUB_BUCKETS)
+    {
+      return (int) value;
+    }
+    final int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    final int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long bucketUpperBound(int index)
+  {
+    if (index < SUB_BUCKETS)
+    {
+      return index;
+    }
+    final int shift = index / SUB_BUCKETS - 1;
+    final long subBucket = index % SUB_BUCKETS;
+    return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+
+  @Override
+  public String toString()
+  {
+    final TimeUnit unit = TimeUnit.MICROSECONDS;
+    return getClass().getSimpleName()
+        + "(count=" + getCount()
+        + ", avg=" + getMean(unit)
+        + "us, p50=" + getPercentile(50, unit)
+        + "us, p99=" + getPercentile(99, unit)
+        + "us, max=" + getMax(unit) + "us)";
+  }
+}
@@ -0,0 +1,408 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.forgerock.i18n.slf4j.LocalizedLogger;
+import org.opends.server.api.DirectoryThread;
+import org.opends.server.types.Entry;
+import org.opends.server.types.LDIFImportConfig;
+
+/**
+ * An LDIF reader parsing the entries with several threads.
+ * <p>
+ * A dedicated thread splits the LDIF source into chunks of entries on the
+ * blank lines separating them, and a pool of threads parses the chunks and
+ * checks the entries against the schema. The parsed entries are returned by
+ * {@link #readEntry()} either in the order of the LDIF source, or in the order
+ * the chunks have been parsed. Errors found while parsing an entry are thrown
+ * when the entry would have been returned, so that callers can handle them as
+ * with {@link LDIFReader}.
+ * <p>
+ * Whether the entries are checked against the schema is decided by the first
+ * call to {@link #readEntry(boolean)}. Change records are read sequentially,
+ * and cannot be read anymore once the entries are read in parallel.
+ */
+public final class ParallelLDIFReader extends LDIFReader
+{
+  private static final LocalizedLogger logger = LocalizedLogger.getLoggerForThisClass();
+
+  /** The number of entries in a chunk parsed by a thread of the pool. */
+  private static final int CHUNK_SIZE = 64;
+
+  private final int nbThreads;
+  private final boolean ordered;
+  /** The chunks being parsed or parsed and not read yet, bounded by the permits. */
+  private final Semaphore permits;
+  /** The parsed chunks, in the order in which they must be returned. */
+  private final BlockingQueue<Future<Chunk>> parsedChunks = new LinkedBlockingQueue<>();
+
+  /** The parser used by each thread of the pool. */
+  private final ThreadLocal<LDIFReader> threadParser = new ThreadLocal<LDIFReader>()
+  {
+    @Override
+    protected LDIFReader initialValue()
+    {
+      return new LDIFReader(ParallelLDIFReader.this);
+    }
+  };
+
+  private ExecutorService parsers;
+  private CompletionService<Chunk> completionService;
+  private Thread chunkReader;
+  private volatile boolean checkSchema;
+
+  /** The entries of the chunk being read. */
+  private Iterator<ParsedEntry> currentChunk;
+  private long nbChunksRead;
+  /** The marker of the end of the LDIF source, once it has been read. */
+  private Chunk endOfInput;
+  /** The line number on which the last entry returned started. */
+  private volatile long lastReturnedEntryLineNumber = -1;
+
+  /**
+   * Creates a new LDIF reader parsing the entries with several threads.
+   *
+   * @param importConfig
+   *          The import configuration for this LDIF reader. It must not be
+   *          {@code null}.
+   * @param nbThreads
+   *          The number of threads parsing the entries.
+   * @param ordered
+   *          Indicates whether the entries must be returned in the order of the
+   *          LDIF source.
+   * @throws IOException
+   *           If a problem occurs while opening the LDIF file for reading.
+   */
+  public ParallelLDIFReader(LDIFImportConfig importConfig, int nbThreads, boolean ordered) throws IOException
+  {
+    super(importConfig);
+    this.nbThreads = Math.max(1, nbThreads);
+    this.ordered = ordered;
+    this.permits = new Semaphore(2 * this.nbThreads);
+  }
+
+  @Override
+  public Entry readEntry(boolean checkSchema) throws IOException, LDIFException
+  {
+    if (chunkReader == null)
+    {
+      start(checkSchema);
+    }
+
+    while (true)
+    {
+      if (currentChunk != null && currentChunk.hasNext())
+      {
+        final ParsedEntry parsedEntry = currentChunk.next();
+        lastEntryBodyLines = parsedEntry.bodyLines;
+        lastEntryHeaderLines = parsedEntry.headerLines;
+        lastReturnedEntryLineNumber = parsedEntry.lineNumber;
+        if (parsedEntry.error != null)
+        {
+          throw parsedEntry.error;
+        }
+        return parsedEntry.entry;
+      }
+      currentChunk = null;
+
+      if (endOfInput != null && nbChunksRead == endOfInput.nbChunks)
+      {
+        final Exception error = endOfInput.error;
+        endOfInput.error = null;
+        rethrow(error);
+        return null;
+      }
+
+      final Chunk chunk = takeParsedChunk();
+      if (chunk.entries == null)
+      {
+        endOfInput = chunk;
+      }
+      else
+      {
+        nbChunksRead++;
+        permits.release();
+        currentChunk = chunk.entries.iterator();
+      }
+    }
+  }
+
+  private void start(boolean checkSchema)
+  {
+    this.checkSchema = checkSchema;
+    parsers = Executors.newFixedThreadPool(nbThreads, new DirectoryThread.Factory("LDIF Parser"));
+    completionService = new ExecutorCompletionService<>(parsers, parsedChunks);
+    chunkReader = new DirectoryThread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        readChunks();
+      }
+    }, "LDIF Chunk Reader");
+    chunkReader.start();
+  }
+
+  /** Splits the LDIF source into chunks of entries, and submits them for parsing. */
+  private void readChunks()
+  {
+    long nbChunks = 0;
+    Exception error = null;
+    try
+    {
+      List<RawEntry> rawEntries = new ArrayList<>(CHUNK_SIZE);
+      LinkedList<StringBuilder> lines;
+      while ((lines = readEntryLines()) != null)
+      {
+        rawEntries.add(new RawEntry(lines, lastEntryLineNumber));
+        if (rawEntries.size() == CHUNK_SIZE)
+        {
+          submit(rawEntries);
+          nbChunks++;
+          rawEntries = new ArrayList<>(CHUNK_SIZE);
+        }
+      }
+      if (!rawEntries.isEmpty())
+      {
+        submit(rawEntries);
+        nbChunks++;
+      }
+    }
+    catch (InterruptedException e)
+    {
+      // the reader is being closed
+      return;
+    }
+    catch (Exception e)
+    {
+      logger.traceException(e);
+      error = e;
+    }
+
+    final FutureTask<Chunk> endOfInput = new FutureTask<>(new Chunk(nbChunks, error));
+    endOfInput.run();
+    parsedChunks.add(endOfInput);
+  }
+
+  private void submit(final List<RawEntry> rawEntries) throws InterruptedException
+  {
+    permits.acquire();
+    final Callable<Chunk> parseTask = new Callable<Chunk>()
+    {
+      @Override
+      public Chunk call()
+      {
+        return parse(rawEntries);
+      }
+    };
+    if (ordered)
+    {
+      parsedChunks.add(parsers.submit(parseTask));
+    }
+    else
+    {
+      completionService.submit(parseTask);
+    }
+  }
+
+  private Chunk parse(List<RawEntry> rawEntries)
+  {
+    final LDIFReader parser = threadParser.get();
+    final List<ParsedEntry> entries = new ArrayList<>(rawEntries.size());
+    for (RawEntry rawEntry : rawEntries)
+    {
+      parser.lastEntryLineNumber = rawEntry.lineNumber;
+      Entry entry = null;
+      LDIFException error = null;
+      try
+      {
+        entry = parser.parseEntry(rawEntry.lines, checkSchema);
+      }
+      catch (LDIFException e)
+      {
+        logger.traceException(e);
+        error = e;
+      }
+      if (entry != null || error != null)
+      {
+        entries.add(new ParsedEntry(entry, error, rawEntry, parser.lastEntryHeaderLines));
+      }
+    }
+    return new Chunk(entries);
+  }
+
+  private Chunk takeParsedChunk() throws IOException
+  {
+    try
+    {
+      return parsedChunks.take().get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+    }
+    catch (ExecutionException e)
+    {
+      final Throwable cause = e.getCause();
+      if (cause instanceof Error)
+      {
+        throw (Error) cause;
+      }
+      throw (RuntimeException) cause;
+    }
+  }
+
+  private static void rethrow(Exception error) throws IOException, LDIFException
+  {
+    if (error instanceof IOException)
+    {
+      throw (IOException) error;
+    }
+    else if (error instanceof LDIFException)
+    {
+      throw (LDIFException) error;
+    }
+    else if (error != null)
+    {
+      throw (RuntimeException) error;
+    }
+  }
+
+  /**
+   * Change records are not read in parallel: they are read by the current
+   * thread, as by {@link LDIFReader}.
+   *
+   * @throws IllegalStateException
+   *           if the entries have started being read in parallel
+   */
+  @Override
+  public ChangeRecordEntry readChangeRecord(boolean defaultAdd) throws IOException, LDIFException
+  {
+    if (chunkReader != null)
+    {
+      throw new IllegalStateException("Change records cannot be read after parallel entry reading has started");
+    }
+    return super.readChangeRecord(defaultAdd);
+  }
+
+  @Override
+  public long getLastEntryLineNumber()
+  {
+    return chunkReader != null ? lastReturnedEntryLineNumber : super.getLastEntryLineNumber();
+  }
+
+  @Override
+  public void close()
+  {
+    if (chunkReader != null)
+    {
+      chunkReader.interrupt();
+      parsers.shutdownNow();
+    }
+    super.close();
+  }
+
+  /** The lines of an entry read from the LDIF source. */
+  private static final class RawEntry
+  {
+    private final LinkedList<StringBuilder> lines;
+    private final long lineNumber;
+
+    private RawEntry(LinkedList<StringBuilder> lines, long lineNumber)
+    {
+      this.lines = lines;
+      this.lineNumber = lineNumber;
+    }
+  }
+
+  /** An entry parsed by a thread of the pool, or the error found parsing it. */
+  private static final class ParsedEntry
+  {
+    private final Entry entry;
+    private final LDIFException error;
+    private final List<StringBuilder> bodyLines;
+    private final List<StringBuilder> headerLines;
+    private final long lineNumber;
+
+    private ParsedEntry(Entry entry, LDIFException error, RawEntry rawEntry, List<StringBuilder> headerLines)
+    {
+      this.entry = entry;
+      this.error = error;
+      this.bodyLines = rawEntry.lines;
+      this.headerLines = headerLines;
+      this.lineNumber = rawEntry.lineNumber;
+    }
+  }
+
+  /**
+   * A chunk of parsed entries, or the marker of the end of the LDIF source
+   * holding the number of chunks and the error which stopped reading, if any.
+   */
+  private static final class Chunk implements Callable<Chunk>
+  {
+    private final List<ParsedEntry> entries;
+    private final long nbChunks;
+    private Exception error;
+
+    private Chunk(List<ParsedEntry> entries)
+    {
+      this.entries = entries;
+      this.nbChunks = 0;
+    }
+
+    private Chunk(long nbChunks, Exception error)
+    {
+      this.entries = null;
+      this.nbChunks = nbChunks;
+      this.error = error;
+    }
+
+    @Override
+    public Chunk call()
+    {
+      return this;
+    }
+  }
+}
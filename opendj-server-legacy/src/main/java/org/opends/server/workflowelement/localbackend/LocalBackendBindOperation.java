@@ -439,7 +439,7 @@ public class LocalBackendBindOperation
 
       // Determine whether the provided password matches any of the stored
       // passwords for the user.
-      if (pwPolicyState.passwordMatches(simplePassword))
+      if (pwPolicyState.bindPasswordMatches(simplePassword))
       {
         setResultCode(ResultCode.SUCCESS);
 
@@ -565,4 +565,63 @@ public class DITCacheMapTestCase extends APITestCase
     assertTrue(ditMap.containsKey(dn8));
     assertTrue(ditMap.containsKey(dn9));
   }
+
+  @Test
+  public void testDITCacheMapCopy()
+         throws Exception
+  {
+    clearTestMap();
+
+    putAllAndVerify();
+
+    DITCacheMap<String> copy = ditMap.copy();
+    assertEquals(copy, ditMap);
+    assertEquals(copy.getSubtree(DN.valueOf("ou=Objects,dc=example,dc=com")).size(), 7);
+
+    // Both maps must be independent.
+    assertTrue(copy.removeSubtree(DN.valueOf("ou=More,ou=Objects,dc=example,dc=com"), null));
+    assertEquals(copy.size(), 6);
+    assertEquals(ditMap.size(), 10);
+    assertEquals(ditMap.getSubtree(DN.valueOf("ou=Objects,dc=example,dc=com")).size(), 7);
+    copy.put(dn9, dn9String);
+    assertEquals(copy.getSubtree(DN.valueOf("ou=Objects,dc=example,dc=com")).size(), 4);
+
+    clearTestMap();
+  }
+
+  @Test
+  public void testConcurrentDITCacheMapSnapshots()
+         throws Exception
+  {
+    ConcurrentDITCacheMap<String> concurrentMap = new ConcurrentDITCacheMap<>();
+    concurrentMap.put(dn1, dn1String);
+    concurrentMap.put(dn6, dn6String);
+    concurrentMap.put(dn9, dn9String);
+    assertEquals(concurrentMap.size(), 3);
+    assertEquals(concurrentMap.get(dn6), dn6String);
+
+    // Views are not affected by later updates.
+    Collection<String> subtree = concurrentMap.getSubtree(DN.valueOf("ou=Objects,dc=example,dc=com"));
+    assertEquals(subtree.size(), 3);
+    Set<String> removeSet = new HashSet<>();
+    assertTrue(concurrentMap.removeSubtree(DN.valueOf("ou=More,ou=Objects,dc=example,dc=com"), removeSet));
+    assertEquals(removeSet.size(), 2);
+    assertEquals(subtree.size(), 3);
+    assertEquals(concurrentMap.getSubtree(DN.valueOf("ou=Objects,dc=example,dc=com")).size(), 1);
+
+    assertNull(concurrentMap.remove(dn9));
+    assertEquals(concurrentMap.remove(dn1), dn1String);
+    assertTrue(concurrentMap.isEmpty());
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void testConcurrentDITCacheMapViewsAreUnmodifiable()
+         throws Exception
+  {
+    ConcurrentDITCacheMap<String> concurrentMap = new ConcurrentDITCacheMap<>();
+    concurrentMap.put(dn1, dn1String);
+    Iterator<Entry<DN, String>> iterator = concurrentMap.entrySet().iterator();
+    iterator.next();
+    iterator.remove();
+  }
 }
@@ -70,4 +70,32 @@ public class AciBodyTest extends DirectoryServerTestCase
     assertThat(aciBody.toString()).isEqualTo(aci);
     assertThat(aciBody.getPermBindRulePairs()).hasSize(1);
   }
+
+  @DataProvider(name = "cacheableAcis")
+  public Object[][] getCacheableAcis()
+  {
+    return new Object[][] {
+      { "(version 3.0; acl \"Anonymous\"; allow(read) userdn=\"ldap:///anyone\";)", true, false },
+      { "(version 3.0; acl \"Authenticated\"; allow(read) userdn=\"ldap:///all\";)", true, false },
+      { "(version 3.0; acl \"DN\"; allow(all) userdn=\"ldap:///uid=user.1,o=test\";)", true, false },
+      { "(version 3.0; acl \"Pattern\"; allow(all) userdn=\"ldap:///uid=*,o=test\";)", true, false },
+      { "(version 3.0; acl \"Group\"; allow(all) groupdn=\"ldap:///cn=group,o=test\";)", true, true },
+      { "(version 3.0; acl \"DN or group\"; allow(all) userdn=\"ldap:///uid=user.1,o=test\" "
+          + "or groupdn=\"ldap:///cn=group,o=test\";)", true, true },
+      { "(version 3.0; acl \"Self\"; allow(write) userdn=\"ldap:///self\";)", false, false },
+      { "(version 3.0; acl \"Parent\"; allow(write) userdn=\"ldap:///parent\";)", false, false },
+      { "(version 3.0; acl \"Group and IP\"; allow(all) groupdn=\"ldap:///cn=group,o=test\" "
+          + "and ip=\"127.0.0.1\";)", false, true },
+      { "(version 3.0; acl \"Two pairs\"; allow(read) userdn=\"ldap:///all\"; "
+          + "deny(write) userdn=\"ldap:///self\";)", false, false }, };
+  }
+
+  @Test(dataProvider = "cacheableAcis")
+  public void clientIdentityOnlyBindRules(String aci, boolean clientIdentityOnly, boolean usesGroups)
+      throws Exception
+  {
+    AciBody aciBody = AciBody.decode(aci);
+    assertThat(aciBody.isClientIdentityOnly()).isEqualTo(clientIdentityOnly);
+    assertThat(aciBody.usesGroups()).isEqualTo(usesGroups);
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.replication.protocol.UpdateMsg;
+import org.opends.server.replication.server.changelog.api.DBCursor;
+import org.testng.annotations.Test;
+
+@SuppressWarnings({ "javadoc", "unchecked" })
+public class ChangelogCursorCacheTest extends DirectoryServerTestCase
+{
+  @Test
+  public void takeReturnsCursorOnlyOnce() throws Exception
+  {
+    final ChangelogCursorCache<DBCursor<UpdateMsg>> cache = new ChangelogCursorCache<>(2, 60000);
+    final DBCursor<UpdateMsg> cursor = mock(DBCursor.class);
+
+    assertThat(cache.take("cookie1")).isNull();
+    cache.put("cookie1", cursor);
+    assertThat(cache.size()).isEqualTo(1);
+
+    assertThat(cache.take("cookie1")).isSameAs(cursor);
+    assertThat(cache.take("cookie1")).isNull();
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.getMisses()).isEqualTo(2);
+    verify(cursor, never()).close();
+  }
+
+  @Test
+  public void leastRecentlyUsedCursorIsClosedWhenFull() throws Exception
+  {
+    final ChangelogCursorCache<DBCursor<UpdateMsg>> cache = new ChangelogCursorCache<>(2, 60000);
+    final DBCursor<UpdateMsg> cursor1 = mock(DBCursor.class);
+    final DBCursor<UpdateMsg> cursor2 = mock(DBCursor.class);
+    final DBCursor<UpdateMsg> cursor3 = mock(DBCursor.class);
+
+    cache.put("cookie1", cursor1);
+    cache.put("cookie2", cursor2);
+    cache.put("cookie3", cursor3);
+
+    assertThat(cache.size()).isEqualTo(2);
+    verify(cursor1).close();
+    assertThat(cache.take("cookie1")).isNull();
+    assertThat(cache.take("cookie2")).isSameAs(cursor2);
+    assertThat(cache.take("cookie3")).isSameAs(cursor3);
+  }
+
+  @Test
+  public void replacedCursorIsClosed() throws Exception
+  {
+    final ChangelogCursorCache<DBCursor<UpdateMsg>> cache = new ChangelogCursorCache<>(2, 60000);
+    final DBCursor<UpdateMsg> cursor1 = mock(DBCursor.class);
+    final DBCursor<UpdateMsg> cursor2 = mock(DBCursor.class);
+
+    cache.put("cookie1", cursor1);
+    cache.put("cookie1", cursor2);
+
+    verify(cursor1).close();
+    assertThat(cache.take("cookie1")).isSameAs(cursor2);
+  }
+
+  @Test
+  public void idleCursorsAreClosed() throws Exception
+  {
+    final ChangelogCursorCache<DBCursor<UpdateMsg>> cache = new ChangelogCursorCache<>(2, -1);
+    final DBCursor<UpdateMsg> cursor = mock(DBCursor.class);
+
+    cache.put("cookie1", cursor);
+
+    assertThat(cache.take("cookie1")).isNull();
+    verify(cursor).close();
+  }
+
+  @Test
+  public void idleCursorsAreClosedWithoutFurtherSearches() throws Exception
+  {
+    final ChangelogCursorCache<DBCursor<UpdateMsg>> cache = new ChangelogCursorCache<>(2, 50);
+    final DBCursor<UpdateMsg> cursor1 = mock(DBCursor.class);
+    final DBCursor<UpdateMsg> cursor2 = mock(DBCursor.class);
+    cache.put("cookie1", cursor1);
+    cache.put("cookie2", cursor2);
+
+    cache.closeIdleCursors();
+    assertThat(cache.size()).isEqualTo(2);
+
+    Thread.sleep(100);
+    cache.closeIdleCursors();
+
+    assertThat(cache.size()).isEqualTo(0);
+    verify(cursor1).close();
+    verify(cursor2).close();
+  }
+
+  @Test
+  public void clearClosesAllCursors() throws Exception
+  {
+    final ChangelogCursorCache<DBCursor<UpdateMsg>> cache = new ChangelogCursorCache<>(2, 60000);
+    final DBCursor<UpdateMsg> cursor1 = mock(DBCursor.class);
+    final DBCursor<UpdateMsg> cursor2 = mock(DBCursor.class);
+    cache.put("cookie1", cursor1);
+    cache.put("cookie2", cursor2);
+
+    cache.clear();
+
+    assertThat(cache.size()).isEqualTo(0);
+    verify(cursor1).close();
+    verify(cursor2).close();
+  }
+}
@@ -557,6 +557,37 @@ public class ControlsTestCase extends DirectoryServerTestCase
     vlvByOffset(sortOrder, beforeCount, afterCount, offset, expectedOrder);
   }
 
+  @Test
+  public void serverSideSortShouldUseCollectiveAttributes() throws Exception
+  {
+    // only the last user gets a locality, from the collective attribute
+    final Entry subentry = makeEntry(
+        "dn: cn=locality," + BACKEND_BASE_DN,
+        "objectClass: top",
+        "objectClass: subentry",
+        "objectClass: collectiveAttributeSubentry",
+        "objectClass: extensibleObject",
+        "subtreeSpecification: {base \"\", specificationFilter \"(employeeNumber=8)\"}",
+        "c-l: Savoie",
+        "cn: locality");
+    assertThat(getRootConnection().processAdd(subentry).getResultCode()).isEqualTo(ResultCode.SUCCESS);
+    try
+    {
+      final SearchRequest request = newSearchRequest(BACKEND_BASE_DN, SearchScope.WHOLE_SUBTREE, VLV_FILTER)
+          .addControl(new ServerSideSortRequestControl("l"));
+      final InternalSearchOperation internalSearch = getRootConnection().processSearch(request);
+
+      assertThat(internalSearch.getResultCode()).isEqualTo(ResultCode.SUCCESS);
+      assertThat(getDNs(internalSearch.getSearchEntries()))
+          .isEqualTo(getDNs(Arrays.asList(8, 0, 1, 2, 3, 4, 5, 6, 7)));
+    }
+    finally
+    {
+      assertThat(getRootConnection().processDelete(subentry.getName()).getResultCode())
+          .isEqualTo(ResultCode.SUCCESS);
+    }
+  }
+
   @AfterClass
   public void afterClass() throws Exception
   {
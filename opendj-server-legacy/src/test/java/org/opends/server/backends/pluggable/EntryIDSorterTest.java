@@ -0,0 +1,186 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ByteStringBuilder;
+import org.mockito.ArgumentCaptor;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.controls.VLVRequestControl;
+import org.opends.server.controls.VLVResponseControl;
+import org.opends.server.core.SearchOperation;
+import org.opends.server.protocols.ldap.LDAPResultCode;
+import org.opends.server.types.Control;
+import org.opends.server.types.DirectoryException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential=true)
+public class EntryIDSorterTest extends DirectoryServerTestCase
+{
+  /** The entry IDs sorted by key: key i holds entry ID 1000 - i. */
+  private static final int NB_KEYS = 1000;
+
+  private File tmpDirectory;
+
+  @BeforeClass
+  public void createTmpDirectory() throws Exception
+  {
+    tmpDirectory = new File(TestCaseUtils.createTemporaryDirectory("entryidsorter"), "sort");
+  }
+
+  @AfterClass
+  public void deleteTmpDirectory() throws Exception
+  {
+    TestCaseUtils.deleteDirectory(tmpDirectory.getParentFile());
+  }
+
+  @Test
+  public void testSortInMemory() throws Exception
+  {
+    try (EntryIDSorter sorter = EntryIDSorter.newSorter(null, null, EntryIDSorter.MAX_BUFFER_SIZE, tmpDirectory))
+    {
+      addShuffledKeys(sorter);
+      assertThat(sorter.sort(mock(SearchOperation.class))).containsExactly(expectedIDs(0, NB_KEYS));
+    }
+  }
+
+  @Test
+  public void testSortSpillsToTemporaryFiles() throws Exception
+  {
+    // A few keys per temporary file
+    try (EntryIDSorter sorter = EntryIDSorter.newSorter(null, null, 500, tmpDirectory))
+    {
+      addShuffledKeys(sorter);
+      assertThat(sorter.size()).isEqualTo(NB_KEYS);
+      assertThat(sorter.sort(mock(SearchOperation.class))).containsExactly(expectedIDs(0, NB_KEYS));
+      assertThat(tmpDirectory.list()).isNotEmpty();
+    }
+    assertThat(tmpDirectory.list()).isEmpty();
+  }
+
+  @Test
+  public void testVLVByOffsetOnlyKeepsTheWindow() throws Exception
+  {
+    final SearchOperation searchOperation = mock(SearchOperation.class);
+    try (EntryIDSorter sorter = EntryIDSorter.newSorter(null, new VLVRequestControl(5, 10, 101, 0), 500, tmpDirectory))
+    {
+      addShuffledKeys(sorter);
+      assertThat(sorter.sort(searchOperation)).containsExactly(expectedIDs(95, 111));
+    }
+    assertVLVResponse(searchOperation, 101, NB_KEYS);
+  }
+
+  @Test
+  public void testVLVByOffsetAtTheStartOfTheList() throws Exception
+  {
+    final SearchOperation searchOperation = mock(SearchOperation.class);
+    try (EntryIDSorter sorter = EntryIDSorter.newSorter(null, new VLVRequestControl(5, 2, 0, 0), 500, tmpDirectory))
+    {
+      addShuffledKeys(sorter);
+      assertThat(sorter.sort(searchOperation)).containsExactly(expectedIDs(0, 3));
+    }
+    assertVLVResponse(searchOperation, 1, NB_KEYS);
+  }
+
+  @Test
+  public void testVLVByOffsetBeyondTheEndOfTheList() throws Exception
+  {
+    final SearchOperation searchOperation = mock(SearchOperation.class);
+    try (EntryIDSorter sorter = EntryIDSorter.newSorter(null, new VLVRequestControl(3, 10, 5000, 0), 500, tmpDirectory))
+    {
+      addShuffledKeys(sorter);
+      assertThat(sorter.sort(searchOperation)).containsExactly(expectedIDs(NB_KEYS - 3, NB_KEYS));
+    }
+    assertVLVResponse(searchOperation, NB_KEYS + 1, NB_KEYS);
+  }
+
+  @Test(expectedExceptions = DirectoryException.class)
+  public void testVLVByNegativeOffset() throws Exception
+  {
+    try (EntryIDSorter sorter = EntryIDSorter.newSorter(null, new VLVRequestControl(0, 10, -1, 0), 500, tmpDirectory))
+    {
+      addShuffledKeys(sorter);
+      sorter.sort(mock(SearchOperation.class));
+    }
+  }
+
+  private static void addShuffledKeys(EntryIDSorter sorter) throws DirectoryException
+  {
+    final List<Integer> positions = new ArrayList<>();
+    for (int i = 0; i < NB_KEYS; i++)
+    {
+      positions.add(i);
+    }
+    Collections.shuffle(positions, new Random(0));
+    for (int i : positions)
+    {
+      sorter.add(key(i));
+    }
+  }
+
+  private static ByteString key(int position)
+  {
+    return new ByteStringBuilder().appendInt(position).appendLong(entryID(position)).toByteString();
+  }
+
+  private static long entryID(int position)
+  {
+    return NB_KEYS - position;
+  }
+
+  private static long[] expectedIDs(int fromPosition, int toPosition)
+  {
+    final long[] ids = new long[toPosition - fromPosition];
+    for (int i = 0; i < ids.length; i++)
+    {
+      ids[i] = entryID(fromPosition + i);
+    }
+    return ids;
+  }
+
+  private static void assertVLVResponse(SearchOperation searchOperation, int targetPosition, int contentCount)
+  {
+    final ArgumentCaptor<Control> captor = ArgumentCaptor.forClass(Control.class);
+    verify(searchOperation).addResponseControl(captor.capture());
+    final VLVResponseControl response = (VLVResponseControl) captor.getValue();
+    assertThat(response.getTargetPosition()).isEqualTo(targetPosition);
+    assertThat(response.getContentCount()).isEqualTo(contentCount);
+    assertThat(response.getVLVResultCode()).isEqualTo(LDAPResultCode.SUCCESS);
+  }
+}
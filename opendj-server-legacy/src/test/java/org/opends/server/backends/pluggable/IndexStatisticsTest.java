@@ -0,0 +1,149 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.forgerock.opendj.ldap.ByteString.valueOfUtf8;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+import static org.opends.server.backends.pluggable.EntryIDSet.*;
+import static org.opends.server.backends.pluggable.State.IndexFlag.*;
+
+import java.util.EnumSet;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.backends.pluggable.DefaultIndexTest.DummyWriteableTransaction;
+import org.opends.server.backends.pluggable.spi.ReadableTransaction;
+import org.opends.server.backends.pluggable.spi.TreeName;
+import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend" }, sequential = true)
+public class IndexStatisticsTest extends DirectoryServerTestCase
+{
+  private DefaultIndex index;
+  private WriteableTransaction txn;
+
+  @BeforeMethod
+  public void setUp()
+  {
+    txn = new DummyWriteableTransaction();
+    final State state = mock(State.class);
+    when(state.getIndexFlags(any(ReadableTransaction.class), any(TreeName.class)))
+        .thenReturn(EnumSet.of(TRUSTED, COMPACTED));
+    index = new DefaultIndex(new TreeName("dc=example,dc=com", "test"), state, 5000, mock(EntryContainer.class));
+    index.open(txn, true);
+  }
+
+  @Test
+  public void testEstimatesAreUnknownBeforeRefresh()
+  {
+    final IndexStatistics statistics = index.getStatistics();
+    assertThat(statistics.needsRefresh()).isTrue();
+    assertThat(statistics.getKeyCount()).isEqualTo(IndexStatistics.UNKNOWN);
+    assertThat(statistics.estimateKeySize(5000)).isEqualTo(IndexStatistics.UNKNOWN);
+    assertThat(statistics.estimateRangeSize(ByteString.empty(), ByteString.empty(), 5000))
+        .isEqualTo(IndexStatistics.UNKNOWN);
+  }
+
+  @Test
+  public void testRefreshComputesAverageKeySize()
+  {
+    addKeys(100, 4);
+    final IndexStatistics statistics = index.getStatistics();
+    statistics.refresh(txn, index);
+
+    assertThat(statistics.needsRefresh()).isFalse();
+    assertThat(statistics.getKeyCount()).isEqualTo(100);
+    assertThat(statistics.estimateKeySize(5000)).isEqualTo(4);
+  }
+
+  @Test
+  public void testUpdatesAreTrackedUntilNextRefresh()
+  {
+    addKeys(100, 1);
+    final IndexStatistics statistics = index.getStatistics();
+    statistics.refresh(txn, index);
+
+    for (int i = 0; i < 20; i++)
+    {
+      index.update(txn, valueOfUtf8("new" + i), null, newDefinedSet(1000 + i));
+    }
+    assertThat(statistics.getKeyCount()).isEqualTo(120);
+    assertThat(statistics.needsRefresh()).isTrue();
+
+    statistics.refresh(txn, index);
+    assertThat(statistics.getKeyCount()).isEqualTo(120);
+    assertThat(statistics.needsRefresh()).isFalse();
+  }
+
+  @Test
+  public void testRangeEstimate()
+  {
+    addKeys(10000, 1);
+    final IndexStatistics statistics = index.getStatistics();
+    statistics.refresh(txn, index);
+
+    final long estimate = statistics.estimateRangeSize(key(1000), key(1999), 5000);
+    assertThat(estimate).isBetween(900L, 1200L);
+    assertThat(statistics.estimateRangeSize(ByteString.empty(), ByteString.empty(), 5000)).isBetween(10000L, 10001L);
+    assertThat(statistics.estimateRangeSize(key(5000), ByteString.empty(), 5000)).isBetween(4900L, 5200L);
+  }
+
+  @Test
+  public void testResetForgetsStatistics()
+  {
+    addKeys(10, 1);
+    final IndexStatistics statistics = index.getStatistics();
+    statistics.refresh(txn, index);
+    index.setTrusted(txn, false);
+
+    assertThat(statistics.needsRefresh()).isTrue();
+    assertThat(statistics.estimateKeySize(5000)).isEqualTo(IndexStatistics.UNKNOWN);
+  }
+
+  private void addKeys(int nbKeys, int nbIDsPerKey)
+  {
+    long id = 1;
+    for (int i = 0; i < nbKeys; i++)
+    {
+      final long[] ids = new long[nbIDsPerKey];
+      for (int j = 0; j < nbIDsPerKey; j++)
+      {
+        ids[j] = id++;
+      }
+      index.update(txn, key(i), null, newDefinedSet(ids));
+    }
+  }
+
+  private static ByteString key(int i)
+  {
+    return valueOfUtf8(String.format("key%05d", i));
+  }
+}
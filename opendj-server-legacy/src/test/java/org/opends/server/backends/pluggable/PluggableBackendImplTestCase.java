@@ -38,6 +38,7 @@ import static org.testng.Assert.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -45,6 +46,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ConditionResult;
@@ -71,6 +76,7 @@ import org.opends.server.backends.pluggable.spi.Storage;
 import org.opends.server.backends.pluggable.spi.TreeName;
 import org.opends.server.backends.pluggable.spi.WriteOperation;
 import org.opends.server.backends.pluggable.spi.WriteableTransaction;
+import org.opends.server.controls.PagedResultsControl;
 import org.opends.server.core.DirectoryServer;
 import org.opends.server.protocols.internal.InternalClientConnection;
 import org.opends.server.protocols.internal.InternalSearchOperation;
@@ -155,6 +161,7 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     when(backendCfg.getBaseDN()).thenReturn(newTreeSet(testBaseDN));
     when(backendCfg.listBackendIndexes()).thenReturn(backendIndexes.keySet().toArray(new String[0]));
     when(backendCfg.listBackendVLVIndexes()).thenReturn(backendVlvIndexes);
+    when(backendCfg.getSearchPrefetchThreads()).thenReturn(2);
 
     for (Map.Entry<String, IndexType[]> index : backendIndexes.entrySet())
     {
@@ -627,6 +634,21 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     return topEntries.size() + entries.size() + workEntries.size();
   }
 
+  @Test
+  public void testGetEntryDNsByEqualityIndex() throws Exception
+  {
+    final AttributeType uid = DirectoryServer.getAttributeTypeOrNull("uid");
+    final ByteString value = ByteString.valueOfUtf8("user.0");
+    final Map<ByteString, List<DN>> entryDNs =
+        backend.getEntryDNsByEqualityIndex(testBaseDN, uid, Collections.singleton(value), 2);
+    assertThat(entryDNs).containsOnlyKeys(value);
+    assertThat(entryDNs.get(value)).containsExactly(entries.get(0).getName());
+
+    // no entry container: the caller must process a search
+    assertNull(backend.getEntryDNsByEqualityIndex(DN.valueOf("dc=other,dc=com"), uid,
+        Collections.singleton(value), 2));
+  }
+
   @Test
   public void testHasSubordinates() throws Exception
   {
@@ -808,6 +830,109 @@ public abstract class PluggableBackendImplTestCase<C extends PluggableBackendCfg
     assertThat(searchOperation.getEntriesSent()).isEqualTo(0);
   }
 
+  @Test(timeOut = 60000)
+  public void testIndexedSearchesReadingCandidatesAhead() throws Exception
+  {
+    // enough candidates for the search prefetcher to read them ahead
+    final int nbEntries = SearchPrefetcher.READ_AHEAD_SIZE * 3;
+    final List<DN> prefetchedDNs = new ArrayList<>();
+    for (int i = 0; i < nbEntries; i++)
+    {
+      final Entry entry = TestCaseUtils.makeEntry(
+          "dn: uid=prefetch." + i + ",ou=People," + testBaseDN,
+          "objectClass: top",
+          "objectClass: person",
+          "objectClass: organizationalPerson",
+          "objectClass: inetOrgPerson",
+          "uid: prefetch." + i,
+          "cn: Prefetch " + i,
+          "sn: Prefetch");
+      backend.addEntry(entry, null);
+      prefetchedDNs.add(entry.getName());
+    }
+    try
+    {
+      // the entries are returned in the order of their IDs
+      assertThat(getNames(runSearch(newPrefetchedSearchRequest(), false))).containsExactlyElementsOf(prefetchedDNs);
+
+      // size limit
+      final InternalSearchOperation limited =
+          runBackendSearch(newPrefetchedSearchRequest().setSizeLimit(nbEntries / 2));
+      assertThat(limited.getResultCode()).isEqualTo(ResultCode.SIZE_LIMIT_EXCEEDED);
+      assertThat(limited.getSearchEntries()).hasSize(nbEntries / 2);
+
+      // paged results, with pages ending in the middle of the entries read ahead
+      final int pageSize = SearchPrefetcher.READ_AHEAD_SIZE / 2 + 1;
+      final List<DN> pagedDNs = new ArrayList<>();
+      ByteString cookie = ByteString.empty();
+      do
+      {
+        final InternalSearchOperation page = runBackendSearch(
+            newPrefetchedSearchRequest().addControl(new PagedResultsControl(true, pageSize, cookie)));
+        assertThat(page.getSearchEntries().size()).isLessThanOrEqualTo(pageSize);
+        pagedDNs.addAll(getNames(page.getSearchEntries()));
+        cookie = ((PagedResultsControl) page.getResponseControls().get(0)).getCookie();
+      }
+      while (cookie.length() != 0);
+      assertThat(pagedDNs).containsExactlyElementsOf(prefetchedDNs);
+
+      // more concurrent searches than prefetcher threads
+      final ExecutorService searchers = Executors.newFixedThreadPool(8);
+      try
+      {
+        final List<Future<List<SearchResultEntry>>> results = new ArrayList<>();
+        for (int i = 0; i < 32; i++)
+        {
+          results.add(searchers.submit(new Callable<List<SearchResultEntry>>()
+          {
+            @Override
+            public List<SearchResultEntry> call() throws Exception
+            {
+              return runSearch(newPrefetchedSearchRequest(), false);
+            }
+          }));
+        }
+        for (Future<List<SearchResultEntry>> result : results)
+        {
+          assertThat(getNames(result.get())).containsExactlyElementsOf(prefetchedDNs);
+        }
+      }
+      finally
+      {
+        searchers.shutdownNow();
+      }
+    }
+    finally
+    {
+      for (DN dn : prefetchedDNs)
+      {
+        backend.deleteEntry(dn, null);
+      }
+    }
+  }
+
+  private SearchRequest newPrefetchedSearchRequest()
+  {
+    return newSearchRequest(testBaseDN, SearchScope.WHOLE_SUBTREE, "(sn=Prefetch)");
+  }
+
+  private InternalSearchOperation runBackendSearch(SearchRequest request) throws Exception
+  {
+    InternalSearchOperation search = new InternalSearchOperation(getRootConnection(), -1, -1, request);
+    backend.search(new LocalBackendSearchOperation(search));
+    return search;
+  }
+
+  private List<DN> getNames(List<SearchResultEntry> entries)
+  {
+    final List<DN> names = new ArrayList<>();
+    for (SearchResultEntry entry : entries)
+    {
+      names.add(entry.getName());
+    }
+    return names;
+  }
+
   private void subTreeSearch(boolean useInternalConnection) throws Exception
   {
     SearchRequest request = newSearchRequest(testBaseDN, SearchScope.WHOLE_SUBTREE, "objectclass=*");
@@ -0,0 +1,158 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.types.DirectoryException;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend", "unit" }, sequential=true)
+public class SearchPrefetcherTest extends DirectoryServerTestCase
+{
+  @Test
+  public void testResultsAreReturnedInSubmissionOrder() throws Exception
+  {
+    final SearchPrefetcher prefetcher = new SearchPrefetcher("test", 4);
+    try
+    {
+      final List<FutureTask<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < 1000; i++)
+      {
+        futures.add(prefetcher.submit(newTask(i)));
+      }
+      for (int i = 0; i < futures.size(); i++)
+      {
+        assertThat(SearchPrefetcher.get(futures.get(i))).isEqualTo(i);
+      }
+    }
+    finally
+    {
+      prefetcher.shutdown();
+    }
+  }
+
+  @Test
+  public void testIsEnabled() throws Exception
+  {
+    final SearchPrefetcher prefetcher = new SearchPrefetcher("test", 1);
+    assertThat(prefetcher.isEnabled(SearchPrefetcher.READ_AHEAD_SIZE)).isFalse();
+    assertThat(prefetcher.isEnabled(SearchPrefetcher.READ_AHEAD_SIZE + 1)).isTrue();
+
+    prefetcher.setThreadCount(0);
+    assertThat(prefetcher.isEnabled(SearchPrefetcher.READ_AHEAD_SIZE + 1)).isFalse();
+
+    prefetcher.setThreadCount(2);
+    assertThat(prefetcher.isEnabled(SearchPrefetcher.READ_AHEAD_SIZE + 1)).isTrue();
+    prefetcher.shutdown();
+  }
+
+  @Test
+  public void testTasksRunInlineWhenDisabled() throws Exception
+  {
+    final SearchPrefetcher prefetcher = new SearchPrefetcher("test", 0);
+    final FutureTask<Integer> future = prefetcher.submit(newTask(42));
+    assertThat(future.isDone()).isTrue();
+    assertThat(SearchPrefetcher.get(future)).isEqualTo(42);
+  }
+
+  @Test(timeOut = 10000)
+  public void testGetRunsTheTasksNotStartedByThePool() throws Exception
+  {
+    final SearchPrefetcher prefetcher = new SearchPrefetcher("test", 1);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    try
+    {
+      final FutureTask<Integer> busy = prefetcher.submit(new Callable<Integer>()
+      {
+        @Override
+        public Integer call() throws Exception
+        {
+          started.countDown();
+          release.await();
+          return 0;
+        }
+      });
+      started.await();
+
+      // the only thread of the pool is busy: the task is run by the caller
+      assertThat(SearchPrefetcher.get(prefetcher.submit(newTask(42)))).isEqualTo(42);
+      assertThat(busy.isDone()).isFalse();
+
+      release.countDown();
+      assertThat(SearchPrefetcher.get(busy)).isEqualTo(0);
+    }
+    finally
+    {
+      release.countDown();
+      prefetcher.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = DirectoryException.class)
+  public void testGetRethrowsDirectoryException() throws Exception
+  {
+    final SearchPrefetcher prefetcher = new SearchPrefetcher("test", 1);
+    try
+    {
+      SearchPrefetcher.get(prefetcher.submit(new Callable<Integer>()
+      {
+        @Override
+        public Integer call() throws Exception
+        {
+          throw new DirectoryException(ResultCode.OTHER, LocalizableMessage.raw("test"));
+        }
+      }));
+    }
+    finally
+    {
+      prefetcher.shutdown();
+    }
+  }
+
+  private Callable<Integer> newTask(final int value)
+  {
+    return new Callable<Integer>()
+    {
+      @Override
+      public Integer call() throws Exception
+      {
+        return value;
+      }
+    };
+  }
+}
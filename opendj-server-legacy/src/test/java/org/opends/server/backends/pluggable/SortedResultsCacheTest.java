@@ -0,0 +1,179 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.backends.pluggable;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.forgerock.opendj.ldap.SearchScope;
+import org.opends.server.DirectoryServerTestCase;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.SearchOperation;
+import org.opends.server.types.DN;
+import org.opends.server.types.SearchFilter;
+import org.opends.server.types.SortKey;
+import org.opends.server.types.SortOrder;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@SuppressWarnings("javadoc")
+@Test(groups = { "precommit", "pluggablebackend" }, sequential = true)
+public class SortedResultsCacheTest extends DirectoryServerTestCase
+{
+  private static final long[] IDS = { 3, 1, 2 };
+
+  private SortOrder sortOrder;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startServer();
+    sortOrder = new SortOrder(new SortKey(DirectoryServer.getAttributeTypeOrDefault("cn"), true));
+  }
+
+  @Test
+  public void testCachedResultsAreReturned() throws Exception
+  {
+    final SortedResultsCache cache = new SortedResultsCache();
+    final SortedResultsCache.Key key = newKey("ou=people,dc=example,dc=com", "(objectClass=person)");
+    assertThat(cache.get(key)).isNull();
+
+    cache.put(key, IDS, cache.getGeneration());
+    assertThat(cache.get(newKey("ou=people,dc=example,dc=com", "(objectClass=person)"))).isSameAs(IDS);
+    assertThat(cache.get(newKey("ou=people,dc=example,dc=com", "(objectClass=*)"))).isNull();
+  }
+
+  @Test
+  public void testResultsComputedDuringAnInvalidationAreNotCached() throws Exception
+  {
+    final SortedResultsCache cache = new SortedResultsCache();
+    final SortedResultsCache.Key key = newKey("ou=people,dc=example,dc=com", "(objectClass=person)");
+    final long generation = cache.getGeneration();
+    cache.invalidate(DN.valueOf("uid=user.0,ou=people,dc=example,dc=com"));
+
+    cache.put(key, IDS, generation);
+    assertThat(cache.get(key)).isNull();
+  }
+
+  @Test
+  public void testResultsComputedDuringUnrelatedWritesAreCached() throws Exception
+  {
+    final SortedResultsCache cache = new SortedResultsCache();
+    final SortedResultsCache.Key key = newKey("ou=people,dc=example,dc=com", "(objectClass=person)");
+    final long generation = cache.getGeneration();
+    cache.invalidate(DN.valueOf("cn=group.0,ou=groups,dc=example,dc=com"));
+    cache.invalidate(DN.valueOf("ou=groups,dc=example,dc=com"));
+
+    cache.put(key, IDS, generation);
+    assertThat(cache.get(key)).isSameAs(IDS);
+  }
+
+  @Test
+  public void testResultsComputedDuringAnInvalidationAboveTheBaseAreNotCached() throws Exception
+  {
+    final SortedResultsCache cache = new SortedResultsCache();
+    final SortedResultsCache.Key key = newKey("ou=people,dc=example,dc=com", "(objectClass=person)");
+    final long generation = cache.getGeneration();
+    cache.invalidate(DN.valueOf("dc=example,dc=com"));
+    cache.invalidate(DN.valueOf("ou=groups,dc=example,dc=com"));
+
+    cache.put(key, IDS, generation);
+    assertThat(cache.get(key)).isNull();
+  }
+
+  @Test
+  public void testResultsComputedDuringAClearOrTooManyInvalidationsAreNotCached() throws Exception
+  {
+    final SortedResultsCache cache = new SortedResultsCache();
+    final SortedResultsCache.Key key = newKey("ou=people,dc=example,dc=com", "(objectClass=person)");
+    long generation = cache.getGeneration();
+    cache.clear();
+    cache.put(key, IDS, generation);
+    assertThat(cache.get(key)).isNull();
+
+    generation = cache.getGeneration();
+    for (int i = 0; i <= SortedResultsCache.MAX_RECENT_INVALIDATIONS; i++)
+    {
+      cache.invalidate(DN.valueOf("cn=group." + i + ",ou=groups,dc=example,dc=com"));
+    }
+    cache.put(key, IDS, generation);
+    assertThat(cache.get(key)).isNull();
+  }
+
+  @Test
+  public void testWritesAboveOrUnderTheBaseInvalidateTheResults() throws Exception
+  {
+    final SortedResultsCache cache = new SortedResultsCache();
+    final SortedResultsCache.Key key = newKey("ou=people,dc=example,dc=com", "(objectClass=person)");
+
+    cache.put(key, IDS, cache.getGeneration());
+    cache.invalidate(DN.valueOf("ou=groups,dc=example,dc=com"));
+    assertThat(cache.get(key)).isSameAs(IDS);
+
+    cache.invalidate(DN.valueOf("uid=user.0,ou=people,dc=example,dc=com"));
+    assertThat(cache.get(key)).isNull();
+
+    cache.put(key, IDS, cache.getGeneration());
+    cache.invalidate(DN.valueOf("dc=example,dc=com"));
+    assertThat(cache.get(key)).isNull();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testLargeResultsAreNotCached() throws Exception
+  {
+    final SortedResultsCache cache = new SortedResultsCache();
+    final SortedResultsCache.Key key = newKey("dc=example,dc=com", "(objectClass=person)");
+
+    cache.put(key, new long[SortedResultsCache.MAX_CACHED_IDS + 1], cache.getGeneration());
+    assertThat(cache.get(key)).isNull();
+  }
+
+  @Test
+  public void testLeastRecentlyUsedResultsAreEvicted() throws Exception
+  {
+    final SortedResultsCache cache = new SortedResultsCache();
+    final SortedResultsCache.Key key1 = newKey("dc=example,dc=com", "(cn=1)");
+    final SortedResultsCache.Key key2 = newKey("dc=example,dc=com", "(cn=2)");
+    final long[] halfIDs = new long[SortedResultsCache.MAX_CACHED_IDS / 2 + 1];
+
+    cache.put(key1, halfIDs, cache.getGeneration());
+    cache.put(key2, halfIDs, cache.getGeneration());
+    assertThat(cache.get(key1)).isNull();
+    assertThat(cache.get(key2)).isSameAs(halfIDs);
+  }
+
+  private SortedResultsCache.Key newKey(String baseDN, String filter) throws Exception
+  {
+    final SearchOperation searchOperation = mock(SearchOperation.class);
+    when(searchOperation.getAuthorizationDN()).thenReturn(DN.valueOf("cn=Directory Manager"));
+    when(searchOperation.getBaseDN()).thenReturn(DN.valueOf(baseDN));
+    when(searchOperation.getScope()).thenReturn(SearchScope.WHOLE_SUBTREE);
+    when(searchOperation.getFilter()).thenReturn(SearchFilter.createFilterFromString(filter));
+    return new SortedResultsCache.Key(searchOperation, sortOrder);
+  }
+}
@@ -26,6 +26,8 @@
  */
 package org.opends.server.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -36,6 +38,7 @@ import org.forgerock.opendj.ldap.ResultCode;
 import org.forgerock.opendj.ldap.SearchScope;
 import org.opends.server.TestCaseUtils;
 import org.opends.server.admin.std.server.GroupImplementationCfg;
+import org.opends.server.api.Backend;
 import org.opends.server.api.Group;
 import org.opends.server.extensions.DynamicGroup;
 import org.opends.server.extensions.StaticGroup;
@@ -116,6 +119,56 @@ public class GroupManagerTestCase
                "Unexpected group class(es) registered:  " + groupClasses);
   }
 
+  /**
+   * Tests that the groups found in a backend being initialized are all
+   * registered with a single copy of the registered groups.
+   *
+   * @throws Exception If an unexpected problem occurs.
+   */
+  @Test
+  public void testBackendInitializationRegistersGroupsAtOnce() throws Exception
+  {
+    TestCaseUtils.initializeTestBackend(true);
+
+    GroupManager groupManager = DirectoryServer.getGroupManager();
+    groupManager.deregisterAllGroups();
+
+    final int nbGroups = 200;
+    List<String> ldif = new ArrayList<>();
+    ldif.addAll(Arrays.asList(
+      "dn: ou=Groups,o=test",
+      "objectClass: top",
+      "objectClass: organizationalUnit",
+      "ou: Groups",
+      ""));
+    for (int i = 0; i < nbGroups; i++)
+    {
+      ldif.addAll(Arrays.asList(
+        "dn: cn=group " + i + ",ou=Groups,o=test",
+        "objectClass: top",
+        "objectClass: groupOfNames",
+        "cn: group " + i,
+        ""));
+    }
+    TestCaseUtils.addEntries(ldif.toArray(new String[ldif.size()]));
+
+    // simulate a backend being initialized with groups already in it
+    groupManager.deregisterAllGroups();
+    assertNull(groupManager.getGroupInstance(DN.valueOf("cn=group 0,ou=Groups,o=test")));
+
+    Backend<?> backend = DirectoryServer.getBackend(TestCaseUtils.TEST_BACKEND_ID);
+    long copyCount = groupManager.getGroupInstancesCopyCount();
+    groupManager.performBackendPreInitializationProcessing(backend);
+
+    assertEquals(groupManager.getGroupInstancesCopyCount(), copyCount + 1);
+    for (int i = 0; i < nbGroups; i++)
+    {
+      assertNotNull(groupManager.getGroupInstance(DN.valueOf("cn=group " + i + ",ou=Groups,o=test")));
+    }
+
+    groupManager.deregisterAllGroups();
+  }
+
   /**
    * Test static group nesting with some of the groups pointing to each
    * other in a circular fashion. Once this situation is detected the
@@ -211,6 +264,69 @@ public class GroupManagerTestCase
     assertTrue(group1Instance.isMember(user5DN));
   }
 
+  /**
+   * Tests the retrieval of the groups of a member through the reverse
+   * membership index, with static groups nested in each other and a nested
+   * dynamic group.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test
+  public void testGetGroupDNsOfMember() throws Exception {
+    TestCaseUtils.initializeTestBackend(true);
+    GroupManager groupManager = DirectoryServer.getGroupManager();
+    groupManager.deregisterAllGroups();
+    addNestedGroupTestEntries();
+    DN group1DN = DN.valueOf("cn=group 1,ou=Groups,o=test");
+    DN group2DN = DN.valueOf("cn=group 2,ou=Groups,o=test");
+    DN group3DN = DN.valueOf("cn=group 3,ou=Groups,o=test");
+    DN group4DN = DN.valueOf("cn=group 4,ou=Groups,o=test");
+    Entry user1Entry = DirectoryServer.getEntry(DN.valueOf("uid=user.1,ou=People,o=test"));
+    Entry user3Entry = DirectoryServer.getEntry(DN.valueOf("uid=user.3,ou=People,o=test"));
+    //User 5 matches the URL of the dynamic group "group 4".
+    Entry user5Entry = DirectoryServer.getEntry(DN.valueOf("uid=user.5,ou=People,o=test"));
+    Group group1Instance = groupManager.getGroupInstance(group1DN);
+    Group group2Instance = groupManager.getGroupInstance(group2DN);
+    Group group3Instance = groupManager.getGroupInstance(group3DN);
+    group1Instance.addNestedGroup(group2DN);
+    group2Instance.addNestedGroup(group3DN);
+    group3Instance.addNestedGroup(group4DN);
+    group1Instance.addMember(user1Entry);
+    group3Instance.addMember(user3Entry);
+
+    assertEquals(groupManager.getGroupDNsOfMember(user1Entry), newSet(group1DN));
+    assertEquals(groupManager.getGroupDNsOfMember(user3Entry), newSet(group3DN, group2DN, group1DN));
+    assertEquals(groupManager.getGroupDNsOfMember(user5Entry), newSet(group4DN, group3DN, group2DN, group1DN));
+    for (Entry userEntry : new Entry[] { user1Entry, user3Entry, user5Entry })
+    {
+      for (DN groupDN : groupManager.getGroupDNsOfMember(userEntry))
+      {
+        assertTrue(groupManager.getGroupInstance(groupDN).isMember(userEntry));
+      }
+    }
+
+    group2Instance.removeNestedGroup(group3DN);
+    group3Instance.removeMember(user3Entry.getName());
+    assertEquals(groupManager.getGroupDNsOfMember(user3Entry), newSet());
+    assertEquals(groupManager.getGroupDNsOfMember(user5Entry), newSet(group4DN, group3DN));
+
+    //Modify group 1 via ldap modify: the group instance is replaced.
+    LinkedList<Modification> mods = new LinkedList<>();
+    mods.add(new Modification(ModificationType.DELETE,
+        Attributes.create("member", "uid=user.1,ou=People,o=test")));
+    mods.add(new Modification(ModificationType.ADD,
+        Attributes.create("member", "uid=user.3,ou=People,o=test")));
+    ModifyOperation modifyOperation = getRootConnection().processModify(group1DN, mods);
+    assertEquals(modifyOperation.getResultCode(), ResultCode.SUCCESS);
+    assertEquals(groupManager.getGroupDNsOfMember(user1Entry), newSet());
+    assertEquals(groupManager.getGroupDNsOfMember(user3Entry), newSet(group1DN));
+  }
+
+  private Set<DN> newSet(DN... groupDNs)
+  {
+    return new LinkedHashSet<>(Arrays.asList(groupDNs));
+  }
+
   /**
    * Invokes membership and nested group APIs using a group instance that has
    * been changed by the group manager via ldap modify.
@@ -0,0 +1,276 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.opends.server.config.ConfigConstants.*;
+import static org.opends.server.protocols.internal.InternalClientConnection.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.api.AuthenticationPolicy;
+import org.opends.server.api.AuthenticationPolicyState;
+import org.opends.server.controls.SubtreeDeleteControl;
+import org.opends.server.protocols.internal.InternalClientConnection;
+import org.opends.server.types.Attributes;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.AuthenticationInfo;
+import org.opends.server.types.Control;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/** A set of test cases for the cache of the password policy states. */
+@SuppressWarnings("javadoc")
+public class PasswordPolicyStateCacheTestCase extends CoreTestCase
+{
+  private static final String SUFFIX = "dc=example,dc=com";
+  private static final String USER_DN = "uid=cached.user,ou=People," + SUFFIX;
+
+  private PasswordPolicyStateCache cache;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startServer();
+    cache = DirectoryServer.getPasswordPolicyStateCache();
+    assertThat(cache).isNotNull();
+  }
+
+  @AfterClass
+  public void cleanUp() throws Exception
+  {
+    TestCaseUtils.clearBackend("userRoot");
+  }
+
+  @BeforeMethod
+  public void addUser() throws Exception
+  {
+    TestCaseUtils.clearBackend("userRoot", SUFFIX);
+    TestCaseUtils.addEntries(
+        "dn: ou=People," + SUFFIX,
+        "objectClass: top",
+        "objectClass: organizationalUnit",
+        "ou: People",
+        "",
+        "dn: " + USER_DN,
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: cached.user",
+        "givenName: Cached",
+        "sn: User",
+        "cn: Cached User",
+        "userPassword: password");
+    cache.clear();
+  }
+
+  private Entry getUser() throws Exception
+  {
+    return DirectoryServer.getEntry(DN.valueOf(USER_DN));
+  }
+
+  @Test
+  public void testPolicyIsCachedUntilEntryIsModified() throws Exception
+  {
+    assertThat(cache.getPolicy(getUser())).isNull();
+
+    AuthenticationPolicyState.forUser(getUser(), false);
+    assertThat(cache.getPolicy(getUser())).isSameAs(DirectoryServer.getDefaultPasswordPolicy());
+
+    TestCaseUtils.applyModifications(false,
+        "dn: " + USER_DN,
+        "changetype: modify",
+        "replace: description",
+        "description: modified");
+    assertThat(cache.getPolicy(getUser())).isNull();
+  }
+
+  @Test
+  public void testPolicyIsNotCachedWhenUsingDefaultOnError() throws Exception
+  {
+    AuthenticationPolicyState.forUser(getUser(), true);
+    assertThat(cache.getPolicy(getUser())).isNull();
+  }
+
+  @Test
+  public void testSubentryChangesClearTheCache() throws Exception
+  {
+    AuthenticationPolicyState.forUser(getUser(), false);
+    assertThat(cache.getPolicy(getUser())).isNotNull();
+
+    final Entry policyEntry = TestCaseUtils.addEntry(
+        "dn: cn=Cached Policy," + SUFFIX,
+        "objectClass: top",
+        "objectClass: pwdPolicy",
+        "objectClass: subentry",
+        "cn: Cached Policy",
+        "subtreeSpecification: { base \"ou=people\" }",
+        "pwdAttribute: userPassword");
+    try
+    {
+      assertThat(cache.getPolicy(getUser())).isNull();
+
+      final AuthenticationPolicy policy = AuthenticationPolicyState.forUser(getUser(), false)
+          .getAuthenticationPolicy();
+      assertThat(policy.getDN()).isEqualTo(policyEntry.getName());
+      assertThat(cache.getPolicy(getUser())).isSameAs(policy);
+    }
+    finally
+    {
+      TestCaseUtils.deleteEntry(policyEntry);
+    }
+    assertThat(cache.getPolicy(getUser())).isNull();
+  }
+
+  /**
+   * Binds keep resolving the password policy while the subentry is added: none
+   * of them must leave the default policy in the cache once the add completes.
+   */
+  @Test
+  public void testBindRightAfterAddingPolicySubentry() throws Exception
+  {
+    bind();
+    assertThat(cache.getPolicy(getUser())).isSameAs(DirectoryServer.getDefaultPasswordPolicy());
+
+    final AtomicBoolean stop = new AtomicBoolean();
+    final Thread binder = new Thread("PasswordPolicyStateCacheTestCase binder")
+    {
+      @Override
+      public void run()
+      {
+        while (!stop.get())
+        {
+          bind();
+        }
+      }
+    };
+    binder.start();
+
+    final Entry policyEntry;
+    try
+    {
+      policyEntry = TestCaseUtils.addEntry(
+          "dn: cn=Cached Policy," + SUFFIX,
+          "objectClass: top",
+          "objectClass: pwdPolicy",
+          "objectClass: subentry",
+          "cn: Cached Policy",
+          "subtreeSpecification: { base \"ou=people\" }",
+          "pwdAttribute: userPassword");
+    }
+    finally
+    {
+      stop.set(true);
+      binder.join();
+    }
+
+    try
+    {
+      final AuthenticationPolicy cached = cache.getPolicy(getUser());
+      if (cached != null)
+      {
+        assertThat(cached.getDN()).isEqualTo(policyEntry.getName());
+      }
+
+      bind();
+      assertThat(cache.getPolicy(getUser()).getDN()).isEqualTo(policyEntry.getName());
+    }
+    finally
+    {
+      TestCaseUtils.deleteEntry(policyEntry);
+    }
+  }
+
+  private void bind()
+  {
+    final InternalClientConnection conn = new InternalClientConnection(new AuthenticationInfo());
+    final BindOperation bind = conn.processSimpleBind(USER_DN, "password");
+    assertThat(bind.getResultCode()).isEqualTo(ResultCode.SUCCESS);
+  }
+
+  @Test
+  public void testRenamedEntriesAreForgotten() throws Exception
+  {
+    final Entry user = getUser();
+    AuthenticationPolicyState.forUser(user, false);
+    assertThat(cache.getPolicy(user)).isNotNull();
+
+    // a leaf entry
+    ModifyDNOperation modifyDN = getRootConnection().processModifyDN(USER_DN, "uid=renamed.user", true);
+    assertThat(modifyDN.getResultCode()).isEqualTo(ResultCode.SUCCESS);
+    assertThat(cache.getPolicy(user)).isNull();
+
+    // an entry with subordinates
+    final Entry renamedUser = DirectoryServer.getEntry(DN.valueOf("uid=renamed.user,ou=People," + SUFFIX));
+    AuthenticationPolicyState.forUser(renamedUser, false);
+    assertThat(cache.getPolicy(renamedUser)).isNotNull();
+    modifyDN = getRootConnection().processModifyDN("ou=People," + SUFFIX, "ou=Staff", true);
+    assertThat(modifyDN.getResultCode()).isEqualTo(ResultCode.SUCCESS);
+    assertThat(cache.getPolicy(renamedUser)).isNull();
+  }
+
+  @Test
+  public void testDeletedEntriesAreForgotten() throws Exception
+  {
+    final Entry user = getUser();
+    AuthenticationPolicyState.forUser(user, false);
+    assertThat(cache.getPolicy(user)).isNotNull();
+
+    final List<Control> controls = Collections.<Control> singletonList(new SubtreeDeleteControl(true));
+    final DeleteOperation delete = getRootConnection().processDelete("ou=People," + SUFFIX, controls);
+    assertThat(delete.getResultCode()).isEqualTo(ResultCode.SUCCESS);
+    assertThat(cache.getPolicy(user)).isNull();
+  }
+
+  @Test
+  public void testParsedTimesFollowTheEntryValues() throws Exception
+  {
+    final AttributeType type = DirectoryServer.getAttributeTypeOrDefault(OP_ATTR_PWPOLICY_FAILURE_TIME_LC);
+    final Entry user = getUser().duplicate(false);
+    assertThat(cache.getGeneralizedTimes(user, type)).isNull();
+
+    AuthenticationPolicyState.forUser(user, false);
+    assertThat(cache.getGeneralizedTimes(user, type)).isEmpty();
+
+    user.addAttribute(Attributes.create(type, "20150101000000.000Z"), null);
+    assertThat(cache.getGeneralizedTimes(user, type)).containsExactly(1420070400000L);
+
+    user.replaceAttribute(Attributes.create(type, "20150101000001.000Z"));
+    assertThat(cache.getGeneralizedTimes(user, type)).containsExactly(1420070401000L);
+
+    user.replaceAttribute(Attributes.create(type, "not a time"));
+    assertThat(cache.getGeneralizedTimes(user, type)).isNull();
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.core;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.testng.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.forgerock.opendj.ldap.ByteString;
+import org.forgerock.opendj.ldap.ResultCode;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.types.DN;
+import org.opends.server.types.DirectoryException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/** A set of test cases for the pool verifying the passwords provided in simple binds. */
+@SuppressWarnings("javadoc")
+public class PasswordVerificationPoolTestCase extends CoreTestCase
+{
+  private static final ByteString STORED_PASSWORD = ByteString.valueOfUtf8("{SSHA}stored");
+
+  private DN userDN;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startServer();
+    userDN = DN.valueOf("uid=user.0,ou=People,dc=example,dc=com");
+  }
+
+  @Test
+  public void testSuccessfulVerificationsAreCached() throws Exception
+  {
+    final PasswordVerificationPool pool = new PasswordVerificationPool();
+    pool.configure(1, 1, 60 * 1000);
+    try
+    {
+      final CountingVerification verification = new CountingVerification(true);
+      assertTrue(pool.passwordMatches(userDN, password("secret"), STORED_PASSWORD, "SSHA", verification));
+      assertTrue(pool.passwordMatches(userDN, password("secret"), STORED_PASSWORD, "SSHA", verification));
+      assertThat(verification.count.get()).isEqualTo(1);
+      assertThat(pool.getCachedVerificationCount()).isEqualTo(1);
+
+      // another stored password is verified again
+      assertTrue(pool.passwordMatches(userDN, password("secret"), ByteString.valueOfUtf8("{SSHA}changed"), "SSHA",
+          verification));
+      assertThat(verification.count.get()).isEqualTo(2);
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testFailedVerificationsAreNotCached() throws Exception
+  {
+    final PasswordVerificationPool pool = new PasswordVerificationPool();
+    pool.configure(0, 1, 60 * 1000);
+    try
+    {
+      final CountingVerification verification = new CountingVerification(false);
+      assertFalse(pool.passwordMatches(userDN, password("wrong"), STORED_PASSWORD, "SSHA", verification));
+      assertFalse(pool.passwordMatches(userDN, password("wrong"), STORED_PASSWORD, "SSHA", verification));
+      assertThat(verification.count.get()).isEqualTo(2);
+      assertThat(pool.getCachedVerificationCount()).isEqualTo(0);
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testVerificationsAreRejectedWhenTooManyAreInProgress() throws Exception
+  {
+    final PasswordVerificationPool pool = new PasswordVerificationPool();
+    pool.configure(1, 2, 0);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final Callable<Boolean> blockingVerification = new Callable<Boolean>()
+    {
+      @Override
+      public Boolean call() throws Exception
+      {
+        started.countDown();
+        return release.await(10, TimeUnit.SECONDS);
+      }
+    };
+    final Thread running = newBindThread(pool, blockingVerification);
+    final Thread queued = newBindThread(pool, blockingVerification);
+    try
+    {
+      running.start();
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      queued.start();
+      while (pool.getQueuedVerificationCount() == 0)
+      {
+        Thread.sleep(10);
+      }
+      // one running and one queued verification
+      assertThat(pool.getVerificationsInProgressCount()).isEqualTo(2);
+
+      try
+      {
+        pool.passwordMatches(userDN, password("secret"), STORED_PASSWORD, "SSHA", new CountingVerification(true));
+        fail("Expected the verification to be rejected");
+      }
+      catch (DirectoryException e)
+      {
+        assertEquals(e.getResultCode(), ResultCode.BUSY);
+      }
+    }
+    finally
+    {
+      release.countDown();
+      running.join();
+      queued.join();
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testMaxInProgressIsDerivedFromTheWorkerThreads() throws Exception
+  {
+    final PasswordVerificationPool pool = new PasswordVerificationPool();
+    try
+    {
+      pool.configure(1, null, 0);
+      final int workerThreads = DirectoryServer.getWorkQueue().getNumWorkerThreads();
+      assertThat(pool.getMaxInProgress()).isEqualTo(Math.max(1, workerThreads / 2));
+
+      pool.configure(1, 3, 0);
+      assertThat(pool.getMaxInProgress()).isEqualTo(3);
+    }
+    finally
+    {
+      pool.shutdown();
+    }
+  }
+
+  private Thread newBindThread(final PasswordVerificationPool pool, final Callable<Boolean> verification)
+  {
+    return new Thread(new Runnable()
+    {
+      @Override
+      public void run()
+      {
+        try
+        {
+          pool.passwordMatches(userDN, password("secret"), STORED_PASSWORD, "SSHA", verification);
+        }
+        catch (DirectoryException e)
+        {
+          throw new RuntimeException(e);
+        }
+      }
+    });
+  }
+
+  private static ByteString password(String password)
+  {
+    return ByteString.valueOfUtf8(password);
+  }
+
+  private static final class CountingVerification implements Callable<Boolean>
+  {
+    private final AtomicInteger count = new AtomicInteger();
+    private final boolean matches;
+
+    private CountingVerification(boolean matches)
+    {
+      this.matches = matches;
+    }
+
+    @Override
+    public Boolean call()
+    {
+      count.incrementAndGet();
+      return matches;
+    }
+  }
+}
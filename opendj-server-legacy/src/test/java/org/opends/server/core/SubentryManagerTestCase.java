@@ -548,6 +548,50 @@ public class SubentryManagerTestCase extends CoreTestCase
     TestCaseUtils.deleteEntry(relativeSubentry.getName());
   }
 
+  @Test
+  public void testApplicabilityWithExclusionsAndDepth() throws Exception
+  {
+    SubentryManager manager = DirectoryServer.getSubentryManager();
+    // Compile the applicability of the children of the base before adding the subentries
+    assertThat(getDns(manager.getSubentries(testEntry))).doesNotContain(DN.valueOf("cn=Chop Subentry," + SUFFIX));
+
+    Entry chopSubentry = addEntry(
+         "dn: cn=Chop Subentry," + SUFFIX,
+         "objectClass: top",
+         "objectclass: subentry",
+         "subtreeSpecification: {base \"ou=Test SubEntry Manager\", "
+             + "specificExclusions { chopBefore:\"uid=rogasawara\" }}",
+         "cn: Chop Subentry");
+    Entry depthSubentry = addEntry(
+         "dn: cn=Depth Subentry," + SUFFIX,
+         "objectClass: top",
+         "objectclass: subentry",
+         "subtreeSpecification: {base \"ou=Test SubEntry Manager\", minimum 1, maximum 1}",
+         "cn: Depth Subentry");
+    try
+    {
+      DN salesDN = DN.valueOf("cn=Sales," + BASE);
+      assertThat(getDns(manager.getSubentries(salesDN)))
+          .contains(chopSubentry.getName(), depthSubentry.getName());
+      assertThat(getDns(manager.getSubentries(testEntry)))
+          .contains(depthSubentry.getName())
+          .doesNotContain(chopSubentry.getName());
+      assertThat(getDns(manager.getSubentries(DN.valueOf(BASE))))
+          .contains(chopSubentry.getName())
+          .doesNotContain(depthSubentry.getName());
+      assertThat(getDns(manager.getSubentries(DN.valueOf("cn=child,cn=Sales," + BASE))))
+          .contains(chopSubentry.getName())
+          .doesNotContain(depthSubentry.getName());
+    }
+    finally
+    {
+      TestCaseUtils.deleteEntry(chopSubentry.getName());
+      TestCaseUtils.deleteEntry(depthSubentry.getName());
+    }
+    assertThat(getDns(manager.getSubentries(testEntry)))
+        .doesNotContain(chopSubentry.getName(), depthSubentry.getName());
+  }
+
   private void addTestEntries() throws Exception
   {
     // Add suffix entry.
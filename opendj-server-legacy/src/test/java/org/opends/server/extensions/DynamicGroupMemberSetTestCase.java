@@ -0,0 +1,325 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.extensions;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import static org.mockito.Mockito.*;
+import static org.opends.server.protocols.internal.InternalClientConnection.*;
+import static org.testng.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import org.forgerock.opendj.ldap.ResultCode;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.admin.std.server.DynamicGroupImplementationCfg;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.core.ModifyDNOperation;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.LDAPURL;
+import org.opends.server.util.TestTimer;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the in-memory members of the dynamic groups.
+ */
+@SuppressWarnings("javadoc")
+public class DynamicGroupMemberSetTestCase extends ExtensionsTestCase
+{
+  private static final String MEMBER_URL = "ldap:///ou=People,o=test??sub?(sn=member)";
+
+  /** An executor running the rebuilds only when asked to. */
+  private static final class ManualExecutor implements Executor
+  {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public synchronized void execute(Runnable task)
+    {
+      tasks.add(task);
+    }
+
+    synchronized int size()
+    {
+      return tasks.size();
+    }
+
+    void runAll()
+    {
+      Runnable task;
+      while ((task = poll()) != null)
+      {
+        task.run();
+      }
+    }
+
+    private synchronized Runnable poll()
+    {
+      return tasks.poll();
+    }
+  }
+
+  private DN user1;
+  private DN user2;
+  private DN user3;
+  private DynamicGroup group;
+  private ManualExecutor executor;
+
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+    user1 = DN.valueOf("uid=user.1,ou=People,o=test");
+    user2 = DN.valueOf("uid=user.2,ou=People,o=test");
+    user3 = DN.valueOf("uid=user.3,ou=People,o=test");
+  }
+
+  @BeforeMethod
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.initializeTestBackend(true);
+    TestCaseUtils.addEntries(
+        "dn: ou=People,o=test",
+        "objectClass: top",
+        "objectClass: organizationalUnit",
+        "ou: People",
+        "",
+        "dn: uid=user.1,ou=People,o=test",
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: user.1",
+        "cn: User 1",
+        "sn: member",
+        "",
+        "dn: uid=user.2,ou=People,o=test",
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: user.2",
+        "cn: User 2",
+        "sn: member",
+        "",
+        "dn: uid=user.3,ou=People,o=test",
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: user.3",
+        "cn: User 3",
+        "sn: other");
+
+    group = mock(DynamicGroup.class);
+    when(group.getGroupDN()).thenReturn(DN.valueOf("cn=dynamic,o=test"));
+    when(group.getMemberURLs()).thenReturn(memberURLs());
+    executor = new ManualExecutor();
+  }
+
+  private static Set<LDAPURL> memberURLs() throws Exception
+  {
+    return Collections.singleton(LDAPURL.decode(MEMBER_URL, true));
+  }
+
+  @Test
+  public void testRebuild() throws Exception
+  {
+    DynamicGroupMemberSet members = new DynamicGroupMemberSet(group, executor);
+    assertEquals(members.size(), -1);
+    assertNull(members.isMember(user1));
+    assertNull(members.getMemberDNs());
+    // a single rebuild is scheduled, whatever the number of lookups
+    assertEquals(executor.size(), 1);
+
+    executor.runAll();
+
+    assertEquals(members.size(), 2);
+    assertEquals(members.isMember(user1), Boolean.TRUE);
+    assertEquals(members.isMember(user2), Boolean.TRUE);
+    assertEquals(members.isMember(user3), Boolean.FALSE);
+    assertEquals(members.getNbRebuilds(), 1);
+    assertEquals(members.getNbFailedRebuilds(), 0);
+    assertEquals(executor.size(), 0);
+  }
+
+  @Test
+  public void testChangesDuringRebuildAreReplayed() throws Exception
+  {
+    final DynamicGroupMemberSet members = new DynamicGroupMemberSet(group, executor);
+    // the changes are made after the searches started, but are not seen by them
+    when(group.getMemberURLs()).thenAnswer(new Answer<Set<LDAPURL>>()
+    {
+      @Override
+      public Set<LDAPURL> answer(InvocationOnMock invocation) throws Throwable
+      {
+        members.update(user3, true);
+        members.update(user1, false);
+        return memberURLs();
+      }
+    });
+
+    members.scheduleRebuild();
+    executor.runAll();
+
+    assertEquals(members.size(), 2);
+    assertEquals(members.isMember(user1), Boolean.FALSE);
+    assertEquals(members.isMember(user2), Boolean.TRUE);
+    assertEquals(members.isMember(user3), Boolean.TRUE);
+    assertEquals(members.getNbIncrementalUpdates(), 2);
+  }
+
+  @Test
+  public void testInvalidate() throws Exception
+  {
+    DynamicGroupMemberSet members = new DynamicGroupMemberSet(group, executor);
+    members.scheduleRebuild();
+    executor.runAll();
+    assertEquals(members.size(), 2);
+
+    members.invalidate();
+
+    assertEquals(members.size(), -1);
+    assertNull(members.isMember(user1));
+    assertEquals(executor.size(), 1);
+
+    executor.runAll();
+
+    assertEquals(members.size(), 2);
+    assertEquals(members.isMember(user1), Boolean.TRUE);
+    assertEquals(members.getNbRebuilds(), 2);
+  }
+
+  @Test
+  public void testInvalidateDuringRebuild() throws Exception
+  {
+    final DynamicGroupMemberSet members = new DynamicGroupMemberSet(group, executor);
+    when(group.getMemberURLs()).thenAnswer(new Answer<Set<LDAPURL>>()
+    {
+      private boolean invalidated;
+
+      @Override
+      public Set<LDAPURL> answer(InvocationOnMock invocation) throws Throwable
+      {
+        if (!invalidated)
+        {
+          invalidated = true;
+          members.invalidate();
+        }
+        return memberURLs();
+      }
+    });
+
+    members.scheduleRebuild();
+    executor.runAll();
+
+    // the invalidated rebuild is discarded, then retried by the same task
+    verify(group, times(2)).getMemberURLs();
+    assertEquals(members.getNbRebuilds(), 1);
+    assertEquals(members.size(), 2);
+    assertEquals(members.isMember(user1), Boolean.TRUE);
+    assertEquals(executor.size(), 0);
+  }
+
+  @Test
+  public void testEntryRenamed() throws Exception
+  {
+    DynamicGroupImplementationCfg configuration = mock(DynamicGroupImplementationCfg.class);
+    when(configuration.isMaterializedMembership()).thenReturn(true);
+    when(configuration.getMaterializedMembershipRebuildInterval()).thenReturn(0L);
+
+    DynamicGroup implementation = new DynamicGroup();
+    implementation.initializeGroupImplementation(configuration);
+    try
+    {
+      DynamicGroup dynamicGroup = implementation.newInstance(null, TestCaseUtils.makeEntry(
+          "dn: cn=dynamic,o=test",
+          "objectClass: top",
+          "objectClass: groupOfURLs",
+          "cn: dynamic",
+          "memberURL: " + MEMBER_URL));
+      final DynamicGroupMemberSet members = dynamicGroup.getMaterializedMembers();
+      assertNotNull(members);
+      members.scheduleRebuild();
+      waitForRebuilds(members, 1);
+      assertEquals(members.size(), 2);
+
+      // renaming a leaf entry is applied incrementally
+      Entry oldEntry = DirectoryServer.getEntry(user2);
+      ModifyDNOperation modifyDN =
+          getRootConnection().processModifyDN("uid=user.2,ou=People,o=test", "uid=user.4", true);
+      assertEquals(modifyDN.getResultCode(), ResultCode.SUCCESS);
+      DN user4 = DN.valueOf("uid=user.4,ou=People,o=test");
+      dynamicGroup.entryRenamed(oldEntry, DirectoryServer.getEntry(user4));
+
+      assertEquals(members.isMember(user2), Boolean.FALSE);
+      assertEquals(members.isMember(user4), Boolean.TRUE);
+      assertEquals(members.size(), 2);
+      assertEquals(members.getNbRebuilds(), 1);
+
+      // the memory backend cannot rename subtrees: notify the group as if
+      // ou=People had been renamed, its subordinates being renamed with it
+      Entry people = DirectoryServer.getEntry(DN.valueOf("ou=People,o=test"));
+      dynamicGroup.entryRenamed(people, people);
+
+      waitForRebuilds(members, 2);
+      assertEquals(members.size(), 2);
+      assertEquals(members.isMember(user1), Boolean.TRUE);
+      assertEquals(members.isMember(user4), Boolean.TRUE);
+    }
+    finally
+    {
+      implementation.finalizeGroupImplementation();
+    }
+  }
+
+  private void waitForRebuilds(final DynamicGroupMemberSet members, final long nbRebuilds) throws Exception
+  {
+    TestTimer timer = new TestTimer.Builder()
+      .maxSleep(10, SECONDS)
+      .sleepTimes(10, MILLISECONDS)
+      .toTimer();
+    timer.repeatUntilSuccess(new Callable<Void>()
+    {
+      @Override
+      public Void call() throws Exception
+      {
+        assertEquals(members.getNbRebuilds(), nbRebuilds);
+        return null;
+      }
+    });
+  }
+}
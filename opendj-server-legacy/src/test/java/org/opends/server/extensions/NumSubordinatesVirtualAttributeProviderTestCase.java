@@ -26,6 +26,7 @@
  */
 package org.opends.server.extensions;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.forgerock.opendj.ldap.ByteString;
@@ -40,6 +41,7 @@ import org.opends.server.types.Attribute;
 import org.opends.server.types.AttributeType;
 import org.opends.server.types.DN;
 import org.opends.server.types.Entry;
+import org.opends.server.types.VirtualAttributeRule;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -467,6 +469,41 @@ public class NumSubordinatesVirtualAttributeProviderTestCase extends DirectorySe
     assertEquals(e.hasAttribute(numSubordinatesType), expected);
   }
 
+  /**
+   * Tests that the values generated for a batch of entries held by several
+   * backends are the same as the values generated for each entry.
+   */
+  @Test
+  public void testGetValuesInBatch() throws Exception
+  {
+    VirtualAttributeRule rule = null;
+    for (VirtualAttributeRule r : DirectoryServer.getVirtualAttributes())
+    {
+      if (r.getAttributeType().equals(numSubordinatesType))
+      {
+        rule = r;
+      }
+    }
+    assertNotNull(rule);
+    assertTrue(rule.getProvider().supportsBatchValues());
+
+    List<Entry> batch = new ArrayList<>();
+    List<Integer> expectedCounts = new ArrayList<>();
+    for (Object[] testEntry : getTestEntryDNs())
+    {
+      batch.add(DirectoryServer.getEntry((DN) testEntry[0]));
+      expectedCounts.add((Integer) testEntry[1]);
+    }
+
+    List<Attribute> values = rule.getProvider().getValues(batch, rule);
+    assertEquals(values.size(), batch.size());
+    for (int i = 0; i < batch.size(); i++)
+    {
+      assertEquals(values.get(i).size(), 1);
+      assertTrue(values.get(i).contains(ByteString.valueOfUtf8(String.valueOf(expectedCounts.get(i)))));
+    }
+  }
+
   /** Tests the {@code isMultiValued} method. */
   @Test
   public void testIsMultiValued()
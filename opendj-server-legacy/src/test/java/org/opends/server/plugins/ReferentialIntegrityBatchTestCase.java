@@ -0,0 +1,174 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.plugins;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.List;
+
+import org.forgerock.opendj.ldap.ModificationType;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.AttributeType;
+import org.opends.server.types.DN;
+import org.opends.server.types.Entry;
+import org.opends.server.types.Modification;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/** Tests the coalescing of the changes processed by the referential integrity plugin. */
+@SuppressWarnings("javadoc")
+public class ReferentialIntegrityBatchTestCase extends PluginTestCase
+{
+  @BeforeClass
+  public void startServer() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @Test
+  public void testSuccessiveRenamesAreCoalesced() throws Exception
+  {
+    final ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+    assertThat(batch.add(dn("uid=a"), dn("uid=b"))).isTrue();
+    assertThat(batch.add(dn("uid=b"), dn("uid=c"))).isTrue();
+
+    assertThat(batch.getChanges()).hasSize(2);
+    assertThat(batch.getChanges().get(dn("uid=a"))).isEqualTo(dn("uid=c"));
+    assertThat(batch.getChanges().get(dn("uid=b"))).isEqualTo(dn("uid=c"));
+  }
+
+  @Test
+  public void testRenameThenDeleteIsCoalescedIntoDeletes() throws Exception
+  {
+    final ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+    assertThat(batch.add(dn("uid=a"), dn("uid=b"))).isTrue();
+    assertThat(batch.add(dn("uid=b"), null)).isTrue();
+
+    assertThat(batch.getChanges()).containsKeys(dn("uid=a"), dn("uid=b"));
+    assertThat(batch.getChanges().get(dn("uid=a"))).isNull();
+    assertThat(batch.getChanges().get(dn("uid=b"))).isNull();
+  }
+
+  @Test
+  public void testRenameBackIsDropped() throws Exception
+  {
+    final ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+    assertThat(batch.add(dn("uid=a"), dn("uid=b"))).isTrue();
+    assertThat(batch.add(dn("uid=b"), dn("uid=a"))).isTrue();
+
+    assertThat(batch.getChanges()).hasSize(1);
+    assertThat(batch.getChanges().get(dn("uid=b"))).isEqualTo(dn("uid=a"));
+  }
+
+  @Test
+  public void testReusedDNIsNotCoalesced() throws Exception
+  {
+    final ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+    assertThat(batch.add(dn("uid=a"), null)).isTrue();
+    assertThat(batch.add(dn("uid=a"), dn("uid=b"))).isFalse();
+    assertThat(batch.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRenameIntoDeletedDNIsNotCoalesced() throws Exception
+  {
+    final ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+    assertThat(batch.add(dn("uid=b"), null)).isTrue();
+    assertThat(batch.add(dn("uid=a"), dn("uid=b"))).isFalse();
+    assertThat(batch.getChanges()).hasSize(1);
+    assertThat(batch.getChanges().get(dn("uid=b"))).isNull();
+
+    // the next batch renames the references once the freed DN is dereferenced
+    final ReferentialIntegrityBatch next = new ReferentialIntegrityBatch();
+    assertThat(next.add(dn("uid=a"), dn("uid=b"))).isTrue();
+  }
+
+  @Test
+  public void testRenameIntoRenamedDNIsNotCoalesced() throws Exception
+  {
+    final ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+    assertThat(batch.add(dn("uid=a"), dn("uid=b"))).isTrue();
+    assertThat(batch.add(dn("uid=c"), dn("uid=a"))).isFalse();
+    assertThat(batch.getChanges()).hasSize(1);
+    assertThat(batch.getChanges().get(dn("uid=a"))).isEqualTo(dn("uid=b"));
+  }
+
+  @Test
+  public void testModificationsOfReferencingEntry() throws Exception
+  {
+    final ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+    batch.add(dn("uid=deleted,dc=example,dc=com"), null);
+    batch.add(dn("uid=renamed,dc=example,dc=com"), dn("uid=new,dc=example,dc=com"));
+
+    final Entry group = TestCaseUtils.makeEntry(
+        "dn: cn=group,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: groupOfNames",
+        "cn: group",
+        "member: uid=Deleted, dc=example,dc=com",
+        "member: uid=renamed,dc=example,dc=com",
+        "member: uid=kept,dc=example,dc=com");
+    final AttributeType member = DirectoryServer.getAttributeTypeOrDefault("member");
+
+    final List<Modification> mods = batch.getModifications(group, member);
+    assertThat(mods).hasSize(3);
+    assertModification(mods.get(0), ModificationType.DELETE, "uid=Deleted, dc=example,dc=com");
+    assertModification(mods.get(1), ModificationType.DELETE, "uid=renamed,dc=example,dc=com");
+    assertModification(mods.get(2), ModificationType.ADD, "uid=new,dc=example,dc=com");
+  }
+
+  @Test
+  public void testModificationsKeepTheOptionalUID() throws Exception
+  {
+    final ReferentialIntegrityBatch batch = new ReferentialIntegrityBatch();
+    batch.add(dn("uid=renamed,dc=example,dc=com"), dn("uid=new,dc=example,dc=com"));
+
+    final Entry group = TestCaseUtils.makeEntry(
+        "dn: cn=group,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: groupOfUniqueNames",
+        "cn: group",
+        "uniqueMember: uid=renamed,dc=example,dc=com#'0101'B");
+    final AttributeType uniqueMember = DirectoryServer.getAttributeTypeOrDefault("uniquemember");
+
+    final List<Modification> mods = batch.getModifications(group, uniqueMember);
+    assertThat(mods).hasSize(2);
+    assertModification(mods.get(0), ModificationType.DELETE, "uid=renamed,dc=example,dc=com#'0101'B");
+    assertModification(mods.get(1), ModificationType.ADD, "uid=new,dc=example,dc=com#'0101'B");
+  }
+
+  private static void assertModification(Modification mod, ModificationType type, String value)
+  {
+    assertThat(mod.getModificationType()).isEqualTo(type);
+    assertThat(mod.getAttribute().iterator().next().toString()).isEqualTo(value);
+  }
+
+  private static DN dn(String dn) throws Exception
+  {
+    return DN.valueOf(dn);
+  }
+}
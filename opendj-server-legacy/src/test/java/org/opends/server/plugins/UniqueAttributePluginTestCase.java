@@ -417,6 +417,46 @@ public class UniqueAttributePluginTestCase extends PluginTestCase {
   }
 
 
+  /**
+   * Test that the values of multi-valued modifications are checked against
+   * the equality index of a pluggable backend, and that the checks are
+   * reported in the monitor of the plugin.
+   *
+   * @throws Exception If an unexpected result occurs.
+   */
+  @Test
+  public void testModOperationIndexedChecks() throws Exception {
+    replaceAttrInEntry(uidConfigDN,dsConfigAttrType,"mail");
+    replaceAttrInEntry(uidConfigDN,dsConfigBaseDN,"dc=example,dc=com");
+    long indexedChecks = getIndexedChecks();
+    LinkedList<Modification> mods = new LinkedList<>();
+    addMods(mods,"mail",ModificationType.REPLACE,"userxy@test","user2x@test");
+    //Fail because user2x@test already exists under "dc=example,dc=com".
+    doMods(mods, DN.valueOf("uid=1user.1,ou=People,dc=example,dc=com"),
+           ResultCode.CONSTRAINT_VIOLATION);
+    assertEquals(getIndexedChecks(), indexedChecks + 1);
+    mods.clear();
+    addMods(mods,"mail",ModificationType.REPLACE,"userxy@test","user1x@test");
+    //Ok because user1x@test is only held by the modified entry.
+    doMods(mods, DN.valueOf("uid=1user.1,ou=People,dc=example,dc=com"),
+           ResultCode.SUCCESS);
+    assertEquals(getIndexedChecks(), indexedChecks + 2);
+  }
+
+
+  private long getIndexedChecks() {
+    UniqueAttributePlugin plugin = (UniqueAttributePlugin)
+        DirectoryServer.getPluginConfigManager().getRegisteredPlugin(uidConfigDN);
+    List<Attribute> monitorData = plugin.getMonitorProvider().getMonitorData();
+    for (Attribute a : monitorData) {
+      if (a.getName().equals("indexed-checks")) {
+        return Long.parseLong(a.iterator().next().toString());
+      }
+    }
+    throw new AssertionError("indexed-checks monitor attribute not found");
+  }
+
+
   /**
    * Test setting the plugins up to get DSEE behavior. Basically two or more
    * base DNs can have the same value, but not within the trees. This uses two
@@ -26,12 +26,15 @@
  */
 package org.opends.server.replication.plugin;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 
 import org.assertj.core.api.Assertions;
+import org.forgerock.opendj.ldap.ByteString;
 import org.forgerock.opendj.ldap.ModificationType;
 import org.opends.server.TestCaseUtils;
 import org.opends.server.core.DirectoryServer;
@@ -40,18 +43,26 @@ import org.opends.server.replication.ReplicationTestCase;
 import org.opends.server.replication.common.CSN;
 import org.opends.server.replication.protocol.AddMsg;
 import org.opends.server.replication.protocol.LDAPUpdateMsg;
+import org.opends.server.replication.protocol.ModifyContext;
 import org.opends.server.replication.protocol.ModifyMsg;
+import org.opends.server.replication.protocol.OperationContext;
 import org.opends.server.replication.service.ReplicationBroker;
 import org.opends.server.tools.LDAPModify;
 import org.opends.server.types.*;
+import org.opends.server.types.operation.PreOperationModifyOperation;
 import org.opends.server.util.TestTimer;
+import org.opends.server.util.TimeThread;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import static java.util.concurrent.TimeUnit.*;
 
+import static org.forgerock.opendj.ldap.ModificationType.*;
 import static org.forgerock.opendj.ldap.ResultCode.*;
 import static org.forgerock.opendj.ldap.SearchScope.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
 import static org.opends.server.TestCaseUtils.*;
 import static org.opends.server.util.CollectionUtils.*;
 import static org.testng.Assert.*;
@@ -613,6 +624,167 @@ public class HistoricalTest extends ReplicationTestCase
     }
   }
 
+  /** Base time of the historical CSNs used by the lazy decoding tests. */
+  private static final long HIST_BASE_TIME = TimeThread.getTime();
+
+  private static CSN histCSN(int t)
+  {
+    return new CSN(HIST_BASE_TIME + t * 1000, 0, 1);
+  }
+
+  /**
+   * Returns an entry with the history of several attributes. The displayName
+   * history is stored with an unusual case, which is normalized when encoding
+   * a decoded attribute historical: this shows whether the value was decoded.
+   */
+  private Entry newEntryWithHistory() throws Exception
+  {
+    return TestCaseUtils.makeEntry(
+        "dn: uid=lazy.user," + TEST_ROOT_DN_STRING,
+        "objectClass: top",
+        "objectClass: person",
+        "objectClass: organizationalPerson",
+        "objectClass: inetOrgPerson",
+        "uid: lazy.user",
+        "cn: Lazy User",
+        "sn: User",
+        "description: A",
+        "displayName: X",
+        "ds-sync-hist: dn:" + histCSN(0) + ":add",
+        "ds-sync-hist: description:" + histCSN(2) + ":add:A",
+        "ds-sync-hist: description:" + histCSN(4) + ":del:B",
+        "ds-sync-hist: DisplayName:" + histCSN(3) + ":repl:X",
+        "ds-sync-hist: cn;lang-en:" + histCSN(3) + ":add:Lazy User");
+  }
+
+  /**
+   * Historical values of attributes that are not modified must be written back
+   * exactly as they were read from the entry.
+   */
+  @Test
+  public void lazyDecodingWritesBackUntouchedValuesVerbatim() throws Exception
+  {
+    final Entry entry = newEntryWithHistory();
+    final List<ByteString> before = getValues(EntryHistorical.getHistoricalAttr(entry).get(0));
+
+    final EntryHistorical hist = EntryHistorical.newInstanceFromEntry(entry);
+    assertEquals(getValues(hist.encodeAndPurge()), before);
+
+    final Modification mod = new Modification(REPLACE, Attributes.create("sn", "Lazy"));
+    assertFalse(hist.replayOperation(newModifyOperation(histCSN(5), mod), entry));
+
+    final List<ByteString> after = getValues(hist.encodeAndPurge());
+    Assertions.assertThat(after).containsAll(before);
+    Assertions.assertThat(after).hasSize(before.size() + 1);
+    after.removeAll(before);
+    Assertions.assertThat(after.get(0).toString()).startsWith("sn:" + histCSN(5) + ":");
+  }
+
+  @DataProvider
+  public Object[][] modificationsToReplay()
+  {
+    return new Object[][] {
+      // older than the deletion of B: conflict
+      { ADD, "description", "B", 3 },
+      { ADD, "description", "B", 5 },
+      // older than the addition of A: conflict
+      { DELETE, "description", "A", 1 },
+      { DELETE, "description", "A", 3 },
+      { DELETE, "description", null, 3 },
+      { REPLACE, "description", "C", 3 },
+      { REPLACE, "description", "C", 5 },
+      // older than the replace of X: conflict
+      { REPLACE, "displayName", "Y", 2 },
+      { REPLACE, "displayName", "Y", 5 },
+      { DELETE, "displayName", null, 2 },
+      { ADD, "cn;lang-en", "Other User", 1 },
+    };
+  }
+
+  /**
+   * Replaying a modification with the lazily decoded historical must resolve
+   * conflicts as when every historical value of the modified attribute is
+   * decoded upfront.
+   */
+  @Test(dataProvider = "modificationsToReplay")
+  public void lazyDecodingResolvesConflictsLikeEagerDecoding(ModificationType modType, String attrName,
+      String value, int time) throws Exception
+  {
+    final Entry entry = newEntryWithHistory();
+    final CSN csn = histCSN(time);
+
+    // eager decoding of the history of the modified attribute, as done before values were decoded lazily
+    final Modification eagerMod = newModification(modType, attrName, value);
+    final AttrHistorical eagerHist = decode(EntryHistorical.getHistoricalAttr(entry).get(0), eagerMod);
+    final List<Modification> eagerMods = newArrayList(eagerMod);
+    final Iterator<Modification> it = eagerMods.iterator();
+    final boolean eagerConflict = eagerHist.replayOperation(it, csn, entry.duplicate(false), it.next());
+
+    final Modification lazyMod = newModification(modType, attrName, value);
+    final PreOperationModifyOperation op = newModifyOperation(csn, lazyMod);
+    final EntryHistorical lazyHist = EntryHistorical.newInstanceFromEntry(entry);
+    final boolean lazyConflict = lazyHist.replayOperation(op, entry.duplicate(false));
+
+    assertEquals(lazyConflict, eagerConflict);
+    assertEquals(op.getModifications(), eagerMods);
+    assertEquals(toStrings(decode(lazyHist.encodeAndPurge(), lazyMod)), toStrings(eagerHist));
+  }
+
+  private static Modification newModification(ModificationType modType, String attrName, String value)
+  {
+    final Attribute attr = value != null ? Attributes.create(attrName, value) : Attributes.empty(attrName);
+    return new Modification(modType, attr);
+  }
+
+  private static PreOperationModifyOperation newModifyOperation(CSN csn, Modification mod)
+  {
+    final PreOperationModifyOperation op = mock(PreOperationModifyOperation.class);
+    when(op.getModifications()).thenReturn(newArrayList(mod));
+    when(op.getAttachment(eq(OperationContext.SYNCHROCONTEXT))).thenReturn(new ModifyContext(csn, null));
+    return op;
+  }
+
+  /** Eagerly decodes the historical values of the attribute targeted by the provided modification. */
+  private static AttrHistorical decode(Attribute histAttr, Modification mod)
+  {
+    final Attribute modAttr = mod.getAttribute();
+    final AttributeDescription attrDesc = AttributeDescription.create(modAttr);
+    final AttrHistorical attrHist = AttrHistorical.createAttributeHistorical(modAttr.getAttributeType());
+    for (ByteString histValue : histAttr)
+    {
+      final HistoricalAttributeValue histVal = new HistoricalAttributeValue(histValue.toString());
+      if (attrDesc.equals(histVal.getAttributeDescription()))
+      {
+        attrHist.assign(histVal.getHistKey(), histVal.getAttributeValue(), histVal.getCSN());
+      }
+    }
+    return attrHist;
+  }
+
+  private static List<String> toStrings(AttrHistorical attrHist)
+  {
+    final List<String> results = new ArrayList<>();
+    results.add("attrDel " + attrHist.getDeleteTime());
+    for (AttrValueHistorical valueHist : attrHist.getValuesHistorical())
+    {
+      results.add(valueHist.getAttributeValue() + " " + valueHist.getValueUpdateTime()
+          + " " + valueHist.getValueDeleteTime());
+    }
+    Collections.sort(results);
+    return results;
+  }
+
+  private static List<ByteString> getValues(Attribute attr)
+  {
+    final List<ByteString> values = new ArrayList<>();
+    for (ByteString value : attr)
+    {
+      values.add(value);
+    }
+    Collections.sort(values);
+    return values;
+  }
+
   private void ldapmodify(String[] args)
   {
     assertEquals(LDAPModify.mainModify(args, false, null, System.err), 0);
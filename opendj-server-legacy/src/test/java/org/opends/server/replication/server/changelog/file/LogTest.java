@@ -442,6 +442,14 @@ public class LogTest extends DirectoryServerTestCase
     try (Log<String, String> log = openLog(LogFileTest.RECORD_PARSER))
     {
       log.purgeUpTo(purgeKey);
+      if (purgeKey.equals("key000"))
+      {
+        assertThat(log.getPurgedBytes()).isEqualTo(0);
+      }
+      else
+      {
+        assertThat(log.getPurgedBytes()).isGreaterThan(0);
+      }
 
       try (DBCursor<Record<String, String>> cursor = log.getCursor())
       {
@@ -0,0 +1,191 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.replication.service;
+
+import static org.testng.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opends.server.replication.ReplicationTestCase;
+import org.opends.server.replication.plugin.DummyReplicationDomain;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the read-ahead of the entry bytes received during a total update.
+ */
+@SuppressWarnings("javadoc")
+public class ReplInputStreamTest extends ReplicationTestCase
+{
+  private static final byte[] ENTRY = "dn: cn=test\ncn: test\n\n".getBytes();
+
+  /**
+   * A domain sending a few entries, then blocking until the reception of
+   * entry bytes is stopped, like a broker waiting for the next message.
+   */
+  private static class BlockingDomain extends DummyReplicationDomain
+  {
+    private final int entryCount;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicBoolean receiving = new AtomicBoolean();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    BlockingDomain(int entryCount)
+    {
+      super(1);
+      this.entryCount = entryCount;
+    }
+
+    @Override
+    protected byte[] receiveEntryBytes()
+    {
+      receiving.set(true);
+      try
+      {
+        if (calls.incrementAndGet() <= entryCount)
+        {
+          return ENTRY;
+        }
+        // The interrupt does not unblock a broker: only the stop flag does
+        while (true)
+        {
+          try
+          {
+            if (stopped.await(10, TimeUnit.SECONDS))
+            {
+              return null;
+            }
+          }
+          catch (InterruptedException e)
+          {
+            // Ignored, as by a socket read
+          }
+        }
+      }
+      finally
+      {
+        receiving.set(false);
+      }
+    }
+
+    @Override
+    void stopReceivingEntryBytes()
+    {
+      super.stopReceivingEntryBytes();
+      stopped.countDown();
+    }
+  }
+
+  @Test(timeOut = 30000)
+  public void testReadAllEntries() throws Exception
+  {
+    ReplicationDomain domain = new DummyReplicationDomain(1)
+    {
+      private int count;
+
+      @Override
+      protected byte[] receiveEntryBytes()
+      {
+        return ++count <= 100 ? ENTRY : null;
+      }
+    };
+
+    try (ReplInputStream input = new ReplInputStream(domain))
+    {
+      byte[] buffer = new byte[ENTRY.length];
+      int total = 0;
+      int read;
+      while ((read = input.read(buffer, 0, buffer.length)) != -1)
+      {
+        total += read;
+      }
+      assertEquals(total, 100 * ENTRY.length);
+    }
+  }
+
+  @Test(timeOut = 30000)
+  public void testCloseMidImport() throws Exception
+  {
+    BlockingDomain domain = new BlockingDomain(10);
+    ReplInputStream input = new ReplInputStream(domain);
+    byte[] buffer = new byte[ENTRY.length];
+    assertEquals(input.read(buffer, 0, buffer.length), ENTRY.length);
+
+    // Wait for the read-ahead thread to block on the next message
+    while (domain.calls.get() <= 10 || !domain.receiving.get())
+    {
+      Thread.sleep(10);
+    }
+
+    input.close();
+
+    // close() must have waited for the read-ahead thread to stop receiving,
+    // so that it cannot consume the messages of a restarted broker
+    assertFalse(domain.receiving.get());
+    int calls = domain.calls.get();
+    Thread.sleep(200);
+    assertEquals(domain.calls.get(), calls);
+    assertEquals(input.read(buffer, 0, buffer.length), -1);
+  }
+
+  @Test(timeOut = 30000)
+  public void testReadAheadFailure() throws Exception
+  {
+    final RuntimeException failure = new RuntimeException("test failure");
+    ReplicationDomain domain = new DummyReplicationDomain(1)
+    {
+      private int count;
+
+      @Override
+      protected byte[] receiveEntryBytes()
+      {
+        if (++count <= 1)
+        {
+          return ENTRY;
+        }
+        throw failure;
+      }
+    };
+
+    try (ReplInputStream input = new ReplInputStream(domain))
+    {
+      byte[] buffer = new byte[ENTRY.length];
+      assertEquals(input.read(buffer, 0, buffer.length), ENTRY.length);
+      try
+      {
+        input.read(buffer, 0, buffer.length);
+        fail("The failure of the read-ahead thread should have been reported");
+      }
+      catch (IOException e)
+      {
+        assertSame(e.getCause(), failure);
+      }
+    }
+  }
+}
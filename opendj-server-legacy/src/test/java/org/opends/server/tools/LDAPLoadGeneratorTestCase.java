@@ -0,0 +1,225 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools;
+
+import static org.opends.server.protocols.ldap.LDAPResultCode.*;
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.opends.server.TestCaseUtils;
+import org.opends.server.core.DirectoryServer;
+import org.opends.server.types.DN;
+import org.opends.server.util.LatencyHistogram;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * A set of test cases for the LDAP load generator tool.
+ */
+public class LDAPLoadGeneratorTestCase
+       extends ToolsTestCase
+{
+  private String resourcePath;
+
+  /**
+   * Ensures that the Directory Server is running and holds a few users.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @BeforeClass
+  public void startServerAndAddUsers()
+         throws Exception
+  {
+    TestCaseUtils.startServer();
+    TestCaseUtils.initializeTestBackend(true);
+    for (int i = 0; i < 10; i++)
+    {
+      TestCaseUtils.addEntries(
+          "dn: uid=user." + i + ",o=test",
+          "objectClass: top",
+          "objectClass: person",
+          "objectClass: organizationalPerson",
+          "objectClass: inetOrgPerson",
+          "uid: user." + i,
+          "givenName: User",
+          "sn: " + i,
+          "cn: User " + i,
+          "userPassword: password");
+    }
+
+    resourcePath = DirectoryServer.getInstanceRoot() + File.separator +
+         "config" + File.separator + "MakeLDIF";
+  }
+
+  private String[] args(String... args)
+  {
+    String[] common = {
+      "-h", "127.0.0.1",
+      "-p", String.valueOf(TestCaseUtils.getServerLdapPort()),
+      "-D", "cn=Directory Manager",
+      "-w", "password",
+      "--resourcePath", resourcePath,
+      "--statsInterval", "1",
+    };
+    String[] all = new String[common.length + args.length];
+    System.arraycopy(common, 0, all, 0, common.length);
+    System.arraycopy(args, 0, all, common.length, args.length);
+    return all;
+  }
+
+  /**
+   * Tests that an unknown operation is rejected.
+   */
+  @Test
+  public void testInvalidOperation()
+  {
+    assertEquals(LDAPLoadGenerator.mainLoad(
+        args("--operation", "compare", "--maxOperations", "1"), false, null, null),
+        CLIENT_SIDE_PARAM_ERROR);
+    assertEquals(LDAPLoadGenerator.mainLoad(
+        args("--operation", "search:0", "-b", "o=test", "--maxOperations", "1"), false, null, null),
+        CLIENT_SIDE_PARAM_ERROR);
+  }
+
+  /**
+   * Tests that the arguments needed by the requested operations are required.
+   */
+  @Test
+  public void testMissingArguments()
+  {
+    assertEquals(LDAPLoadGenerator.mainLoad(
+        args("--operation", "modify", "--maxOperations", "1"), false, null, null),
+        CLIENT_SIDE_PARAM_ERROR);
+    assertEquals(LDAPLoadGenerator.mainLoad(
+        args("--operation", "add", "-b", "o=test", "--maxOperations", "1"), false, null, null),
+        CLIENT_SIDE_PARAM_ERROR);
+  }
+
+  /**
+   * Tests a mixed workload of searches, modifications and binds generated by
+   * several threads sharing a smaller number of connections.
+   */
+  @Test
+  public void testMixedWorkload()
+  {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int rc = LDAPLoadGenerator.mainLoad(args(
+        "--numConnections", "2",
+        "--numThreads", "4",
+        "--operation", "search:3",
+        "--operation", "modify",
+        "--operation", "bind",
+        "-b", "o=test",
+        "--filter", "(uid=user.<random:numeric:0:9>)",
+        "--targetDN", "uid=user.<random:numeric:0:9>,o=test",
+        "--maxOperations", "300"), false, out, System.err);
+    assertEquals(rc, 0);
+
+    String output = out.toString();
+    assertTrue(output.contains("Total search: "), output);
+    assertTrue(output.contains("Total modify: "), output);
+    assertTrue(output.contains("Total bind: "), output);
+    assertFalse(output.matches("(?s).* [1-9][0-9]* errors.*"), output);
+  }
+
+  /**
+   * Tests that the added entries are generated from the template file, then
+   * deleted.
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test
+  public void testAddDelete() throws Exception
+  {
+    File templateFile = File.createTempFile("ldapload-", ".template");
+    templateFile.deleteOnExit();
+    try (FileWriter writer = new FileWriter(templateFile))
+    {
+      writer.write("template: added\n"
+          + "rdnAttr: uid\n"
+          + "objectClass: top\n"
+          + "objectClass: person\n"
+          + "objectClass: organizationalPerson\n"
+          + "objectClass: inetOrgPerson\n"
+          + "givenName: <first>\n"
+          + "sn: <last>\n"
+          + "cn: {givenName} {sn}\n"
+          + "uid: added.<sequential:0>\n");
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int rc = LDAPLoadGenerator.mainLoad(args(
+        "--numThreads", "2",
+        "--numConnections", "2",
+        "--operation", "add",
+        "-b", "o=test",
+        "--templateFile", templateFile.getPath(),
+        "--maxOperations", "50"), false, out, System.err);
+    assertEquals(rc, 0);
+
+    String output = out.toString();
+    assertTrue(output.contains("Total add: 50 operations"), output);
+    assertTrue(output.contains("Total delete: 50 operations"), output);
+    assertFalse(DirectoryServer.entryExists(DN.valueOf("uid=added.0,o=test")));
+    assertFalse(DirectoryServer.entryExists(DN.valueOf("uid=added.49,o=test")));
+  }
+
+  /**
+   * Tests the interval latencies computed as done by the load generator: the
+   * histograms of the workers are merged, then compared with the previous
+   * merge.
+   */
+  @Test
+  public void testIntervalLatencies()
+  {
+    LatencyHistogram worker1 = new LatencyHistogram();
+    LatencyHistogram worker2 = new LatencyHistogram();
+    for (int i = 1; i <= 500; i++)
+    {
+      worker1.record(TimeUnit.MICROSECONDS.toNanos(i));
+      worker2.record(TimeUnit.MICROSECONDS.toNanos(500 + i));
+    }
+    LatencyHistogram previous = new LatencyHistogram();
+    previous.merge(worker1);
+    previous.merge(worker2);
+    assertEquals(previous.getCount(), 1000);
+    assertEquals(previous.getMax(TimeUnit.MICROSECONDS), 1000);
+    assertEquals(previous.getPercentile(50, TimeUnit.MICROSECONDS), 500, 500 / 16);
+
+    worker2.record(TimeUnit.MILLISECONDS.toNanos(100));
+    LatencyHistogram current = new LatencyHistogram();
+    current.merge(worker1);
+    current.merge(worker2);
+    LatencyHistogram interval = current.since(previous);
+    assertEquals(interval.getCount(), 1);
+    assertEquals(interval.getMean(TimeUnit.MICROSECONDS), 100000);
+    assertEquals(interval.getPercentile(50, TimeUnit.MICROSECONDS), 100000, 100000 / 16);
+  }
+}
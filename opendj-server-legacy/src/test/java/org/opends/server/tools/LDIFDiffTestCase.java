@@ -334,6 +334,60 @@ public class LDIFDiffTestCase
 
 
 
+  /**
+   * Tests the LDIFDiff tool in streaming mode, with a sort buffer small enough
+   * for the entries to be merged from several sorted files, to ensure that it
+   * produces the same output as the normal mode of operation.
+   *
+   * @param  sourceFile           The path to the file containing the source
+   *                              data set.
+   * @param  targetFile           The path to the file containing the target
+   *                              data set.
+   * @param  normalDiffFile       The path to the file containing the expected
+   *                              diff in "normal" form (at most one record per
+   *                              entry), or {@code null} if the diff is
+   *                              supposed to fail.
+   * @param  singleValueDiffFile  The path to the file containing the expected
+   *                              diff in "single-value" form, where each
+   *                              attribute-level change results in a separate
+   *                              entry per attribute value.
+   * @param  resultCode           The result code that should be returned with
+   *                              --useCompareResultCode flag
+   *
+   * @throws  Exception  If an unexpected problem occurs.
+   */
+  @Test(dataProvider = "testdata")
+  public void testVerifyStreaming(String sourceFile, String targetFile,
+      String normalDiffFile, String singleValueDiffFile, int resultCode)
+      throws Exception
+  {
+    File outputFile = File.createTempFile("difftest", "ldif");
+    outputFile.deleteOnExit();
+
+    String[] args =
+    {
+      "-s", sourceFile,
+      "-t", targetFile,
+      "-o", outputFile.getAbsolutePath(),
+      "-O",
+      "--streaming",
+      "--sortBufferSize", "2"
+    };
+
+    if (normalDiffFile == null)
+    {
+      // We expect this to fail, so just make sure that it does.
+      assertFalse(LDIFDiff.mainDiff(args, true, System.out, System.err) == 0);
+      outputFile.delete();
+      return;
+    }
+
+    assertEquals(LDIFDiff.mainDiff(args, true, System.out, System.err), 0);
+    assertEquals(calcChecksum(outputFile), calcChecksum(normalDiffFile));
+    outputFile.delete();
+  }
+
+
 
   /**
    * Tests the LDIFDiff tool with the provided information to ensure that the
@@ -0,0 +1,288 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.tools;
+
+import static org.testng.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.forgerock.i18n.LocalizableMessage;
+import org.opends.server.TestCaseUtils;
+import org.opends.server.types.LDIFExportConfig;
+import org.opends.server.types.LDIFImportConfig;
+import org.opends.server.util.LDIFException;
+import org.opends.server.util.LDIFReader;
+import org.opends.server.util.LDIFWriter;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * LDIFModify test cases.
+ */
+@SuppressWarnings("javadoc")
+public class LDIFModifyTestCase extends ToolsTestCase
+{
+  /** The source entries, sorted by DN. */
+  private static final String SOURCE = TestCaseUtils.makeLdif(
+      "dn: dc=example,dc=com",
+      "objectClass: top",
+      "objectClass: domain",
+      "dc: example",
+      "",
+      "dn: ou=People,dc=example,dc=com",
+      "objectClass: top",
+      "objectClass: organizationalUnit",
+      "ou: People",
+      "",
+      "dn: uid=user.1,ou=People,dc=example,dc=com",
+      "objectClass: top",
+      "objectClass: person",
+      "uid: user.1",
+      "sn: 1",
+      "cn: user 1",
+      "",
+      "dn: uid=user.2,ou=People,dc=example,dc=com",
+      "objectClass: top",
+      "objectClass: person",
+      "uid: user.2",
+      "sn: 2",
+      "cn: user 2",
+      "",
+      "dn: uid=user.3,ou=People,dc=example,dc=com",
+      "objectClass: top",
+      "objectClass: person",
+      "uid: user.3",
+      "sn: 3",
+      "cn: user 3",
+      "",
+      "dn: uid=user.4,ou=People,dc=example,dc=com",
+      "objectClass: top",
+      "objectClass: person",
+      "uid: user.4",
+      "sn: 4",
+      "cn: user 4",
+      "",
+      "dn: uid=user.5,ou=People,dc=example,dc=com",
+      "objectClass: top",
+      "objectClass: person",
+      "uid: user.5",
+      "sn: 5",
+      "cn: user 5");
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @DataProvider
+  public Object[][] changes()
+  {
+    return new Object[][] {
+      // Changes applied successfully, with several changes of the same DN and
+      // entries added before, between and after the source entries
+      { true, TestCaseUtils.makeLdif(
+          "dn: ou=Groups,dc=example,dc=com",
+          "changetype: add",
+          "objectClass: top",
+          "objectClass: organizationalUnit",
+          "ou: Groups",
+          "",
+          "dn: uid=user.1,ou=People,dc=example,dc=com",
+          "changetype: modify",
+          "replace: description",
+          "description: modified then deleted",
+          "",
+          "dn: uid=user.1,ou=People,dc=example,dc=com",
+          "changetype: delete",
+          "",
+          "dn: uid=user.2,ou=People,dc=example,dc=com",
+          "changetype: delete",
+          "",
+          "dn: uid=user.2,ou=People,dc=example,dc=com",
+          "changetype: add",
+          "objectClass: top",
+          "objectClass: person",
+          "uid: user.2",
+          "sn: 2",
+          "cn: deleted then added",
+          "",
+          "dn: uid=user.25,ou=People,dc=example,dc=com",
+          "changetype: add",
+          "objectClass: top",
+          "objectClass: person",
+          "uid: user.25",
+          "sn: 25",
+          "cn: user 25",
+          "",
+          "dn: uid=user.3,ou=People,dc=example,dc=com",
+          "changetype: modify",
+          "add: description",
+          "description: first",
+          "",
+          "dn: uid=user.3,ou=People,dc=example,dc=com",
+          "changetype: modify",
+          "replace: description",
+          "description: second",
+          "",
+          "dn: uid=user.9,ou=People,dc=example,dc=com",
+          "changetype: add",
+          "objectClass: top",
+          "objectClass: person",
+          "uid: user.9",
+          "sn: 9",
+          "cn: user 9") },
+      // Changes in error: moddn, changes of entries missing from the source,
+      // and conflicting changes of the same DN
+      { false, TestCaseUtils.makeLdif(
+          "dn: uid=user.4,ou=People,dc=example,dc=com",
+          "changetype: moddn",
+          "newrdn: uid=user.6",
+          "deleteoldrdn: 1",
+          "",
+          "dn: uid=user.5,ou=People,dc=example,dc=com",
+          "changetype: add",
+          "objectClass: top",
+          "objectClass: person",
+          "uid: user.5",
+          "sn: 5",
+          "cn: already exists",
+          "",
+          "dn: uid=user.3,ou=People,dc=example,dc=com",
+          "changetype: delete",
+          "",
+          "dn: uid=user.3,ou=People,dc=example,dc=com",
+          "changetype: modify",
+          "replace: description",
+          "description: modified after delete",
+          "",
+          "dn: uid=user.2,ou=People,dc=example,dc=com",
+          "changetype: modify",
+          "add: sn",
+          "sn: 2",
+          "",
+          "dn: uid=user.7,ou=People,dc=example,dc=com",
+          "changetype: delete",
+          "",
+          "dn: uid=user.8,ou=People,dc=example,dc=com",
+          "changetype: modify",
+          "replace: description",
+          "description: missing",
+          "",
+          "dn: uid=user.1,ou=People,dc=example,dc=com",
+          "changetype: modify",
+          "replace: description",
+          "description: modified") },
+    };
+  }
+
+  /**
+   * Test that applying the changes in streaming mode writes the same entries
+   * and reports the same errors as sorting the entries in memory.
+   */
+  @Test(dataProvider = "changes")
+  public void testStreamingModifyMatchesModify(boolean successful, String changes) throws Exception
+  {
+    List<LocalizableMessage> errors = new ArrayList<>();
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+    try (LDIFReader sourceReader = newReader(SOURCE);
+        LDIFReader changeReader = newReader(changes);
+        LDIFWriter targetWriter = new LDIFWriter(new LDIFExportConfig(target)))
+    {
+      assertEquals(LDIFModify.modifyLDIF(sourceReader, changeReader, targetWriter, errors), successful);
+    }
+
+    List<LocalizableMessage> streamingErrors = new ArrayList<>();
+    ByteArrayOutputStream streamingTarget = new ByteArrayOutputStream();
+    try (LDIFReader sourceReader = newReader(SOURCE);
+        LDIFReader changeReader = newReader(changes);
+        LDIFWriter targetWriter = new LDIFWriter(new LDIFExportConfig(streamingTarget)))
+    {
+      assertEquals(LDIFModify.modifyLDIFStreaming(sourceReader, changeReader, targetWriter, streamingErrors, 4, null),
+          successful);
+    }
+
+    assertEquals(streamingTarget.toString("UTF-8"), target.toString("UTF-8"));
+    assertEquals(toStrings(streamingErrors), toStrings(errors));
+    assertEquals(errors.isEmpty(), successful);
+  }
+
+  /**
+   * Test that the streaming mode rejects a source which is not sorted by DN,
+   * since its entries could not be merged with the added entries.
+   */
+  @Test(expectedExceptions = LDIFException.class)
+  public void testStreamingModifyRejectsUnsortedSource() throws Exception
+  {
+    String unsorted = TestCaseUtils.makeLdif(
+        "dn: uid=user.2,ou=People,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: person",
+        "uid: user.2",
+        "sn: 2",
+        "cn: user 2",
+        "",
+        "dn: uid=user.1,ou=People,dc=example,dc=com",
+        "objectClass: top",
+        "objectClass: person",
+        "uid: user.1",
+        "sn: 1",
+        "cn: user 1");
+    String changes = TestCaseUtils.makeLdif(
+        "dn: uid=user.1,ou=People,dc=example,dc=com",
+        "changetype: delete");
+
+    try (LDIFReader sourceReader = newReader(unsorted);
+        LDIFReader changeReader = newReader(changes);
+        LDIFWriter targetWriter = new LDIFWriter(new LDIFExportConfig(new ByteArrayOutputStream())))
+    {
+      LDIFModify.modifyLDIFStreaming(sourceReader, changeReader, targetWriter,
+          new ArrayList<LocalizableMessage>(), 4, null);
+    }
+  }
+
+  private static LDIFReader newReader(String ldif) throws Exception
+  {
+    return new LDIFReader(new LDIFImportConfig(new ByteArrayInputStream(ldif.getBytes(StandardCharsets.UTF_8))));
+  }
+
+  private static Set<String> toStrings(List<LocalizableMessage> messages)
+  {
+    Set<String> strings = new HashSet<>();
+    for (LocalizableMessage message : messages)
+    {
+      strings.add(message.toString());
+    }
+    return strings;
+  }
+}
@@ -210,4 +210,61 @@ public class LDIFSearchTestCase extends ToolsTestCase {
     assertNotNull(e.getAttribute("mail"));
     assertNotNull(e.getAttribute("uid"));
   }
+
+
+  /**
+   * Test that the entries matched by several threads are returned in the
+   * order of the LDIF file.
+   *
+   * @throws Exception  An entry is missing or returned out of order.
+   */
+  @Test
+  public void testLDIFSearchNumThreads() throws Exception {
+    String manyEntriesPath = tempDir.getAbsolutePath() + File.separator + "many.ldif";
+    PrintStream writer = new PrintStream(new FileOutputStream(manyEntriesPath));
+    writer.println("dn: dc=example,dc=com");
+    writer.println("objectclass: domain");
+    writer.println("objectclass: top");
+    writer.println("dc: example");
+    writer.println();
+    for (int i = 0; i < 1000; i++)
+    {
+      writer.println("dn: uid=user." + i + ",dc=example,dc=com");
+      writer.println("objectClass: person");
+      writer.println("objectClass: top");
+      writer.println("uid: user." + i);
+      writer.println("sn: " + (i % 2 == 0 ? "even" : "odd"));
+      writer.println("cn: user " + i);
+      writer.println();
+    }
+    writer.close();
+
+    String[] args =
+    {
+      "-b", "dc=example,dc=com",
+      "-l", manyEntriesPath,
+      "-o", outLdifFilePath,
+      "-O",
+      "--numThreads", "4",
+      "(sn=even)"
+    };
+    assertEquals(LDIFSearch.mainSearch(args, false, System.out, System.err), 0);
+    LDIFImportConfig ldifConfig = new LDIFImportConfig(outLdifFilePath);
+    ldifConfig.setValidateSchema(false);
+    LDIFReader reader = new LDIFReader(ldifConfig);
+    try
+    {
+      for (int i = 0; i < 1000; i += 2)
+      {
+        Entry e = reader.readEntry();
+        assertNotNull(e);
+        assertEquals(e.getName().toString(), "uid=user." + i + ",dc=example,dc=com");
+      }
+      assertNull(reader.readEntry());
+    }
+    finally
+    {
+      reader.close();
+    }
+  }
 }
@@ -27,9 +27,15 @@
 package org.opends.server.tools.makeldif;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.forgerock.i18n.LocalizableMessage;
 import org.opends.server.TestCaseUtils;
@@ -385,5 +391,121 @@ public class MakeLDIFTestCase
     assertTrue(a.iterator().next().toString().matches("Foo <[A-Z]>\\{1\\}Bar"),
         "cn value doesn't match the expected value");
   }
-}
 
+  private static final String[] PARALLEL_TEMPLATE =
+  {
+    "branch: dc=test",
+    "subordinateTemplate: organizationalUnit:3",
+    "",
+    "template: organizationalUnit",
+    "rdnAttr: ou",
+    "subordinateTemplate: person:700",
+    "objectclass: organizationalUnit",
+    "ou: ou.<sequential:0>",
+    "",
+    "template: person",
+    "rdnAttr: uid",
+    "objectclass: inetOrgPerson",
+    "uid: user.<sequential:0>",
+    "givenName: <first>",
+    "sn: <last>",
+    "cn: {givenName} {sn}",
+    "description: <random:alpha:10>",
+    "",
+  };
+
+  /**
+   * Test that generating entries with several threads generates the same
+   * entries whatever the number of threads, and the same sequential values
+   * and names as generating them with a single thread.
+   */
+  @Test
+  public void testParallelGenerationIsDeterministic() throws Exception
+  {
+    String oneThread = generate(1);
+    assertEquals(generate(4), oneThread);
+    assertTrue(oneThread.contains("dn: uid=user.2099,ou=ou.2,dc=test"));
+    assertFalse(oneThread.contains("user.2100"));
+
+    TemplateFile templateFile = new TemplateFile(resourcePath, new Random(1));
+    templateFile.parse(PARALLEL_TEMPLATE, new ArrayList<LocalizableMessage>());
+    String serial = read(new MakeLDIFInputStream(templateFile));
+    assertEquals(withoutRandomValues(oneThread), withoutRandomValues(serial));
+  }
+
+  /**
+   * Test that a subtree larger than the entries held for a unit is generated
+   * the same way whatever the number of threads, while the following units
+   * wait for it to be written.
+   */
+  @Test
+  public void testParallelGenerationOfLargeSubtrees() throws Exception
+  {
+    String[] template = PARALLEL_TEMPLATE.clone();
+    template[6] = "subordinateTemplate: person:2500";
+    String oneThread = generate(template, 1);
+    assertEquals(generate(template, 3), oneThread);
+    assertTrue(oneThread.contains("dn: uid=user.7499,ou=ou.2,dc=test"));
+    assertFalse(oneThread.contains("user.7500"));
+  }
+
+  /**
+   * Test that make-ldif keeps generating the entries serially when the number
+   * of threads is not provided, so that a given seed still generates the same
+   * LDIF as before.
+   */
+  @Test
+  public void testMakeLDIFWithoutNumThreadsGeneratesSerially() throws Exception
+  {
+    File templatePath = File.createTempFile("serialTemplate", ".template");
+    templatePath.deleteOnExit();
+    Files.write(templatePath.toPath(), Arrays.asList(PARALLEL_TEMPLATE), StandardCharsets.UTF_8);
+    File ldifPath = File.createTempFile("serialTemplate", "out.ldif");
+    ldifPath.deleteOnExit();
+
+    String[] args = {
+      "-r", resourcePath,
+      "-t", templatePath.getPath(),
+      "-o", ldifPath.getPath(),
+      "--randomSeed", "1",
+    };
+    assertEquals(MakeLDIF.main(args, null, System.err), 0);
+
+    TemplateFile templateFile = new TemplateFile(resourcePath, new Random(1));
+    templateFile.parse(PARALLEL_TEMPLATE, new ArrayList<LocalizableMessage>());
+    String serial = read(new MakeLDIFInputStream(templateFile));
+    assertEquals(new String(Files.readAllBytes(ldifPath.toPath()), StandardCharsets.UTF_8), serial);
+  }
+
+  private String generate(int numThreads) throws Exception
+  {
+    return generate(PARALLEL_TEMPLATE, numThreads);
+  }
+
+  private String generate(String[] template, int numThreads) throws Exception
+  {
+    TemplateFile templateFile = new TemplateFile(resourcePath, new Random());
+    templateFile.parse(template, new ArrayList<LocalizableMessage>());
+    return read(new MakeLDIFInputStream(templateFile, 42, numThreads));
+  }
+
+  private static String read(InputStream inputStream) throws Exception
+  {
+    try (InputStream in = inputStream)
+    {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int bytesRead;
+      while ((bytesRead = in.read(buffer, 0, buffer.length)) > 0)
+      {
+        out.write(buffer, 0, bytesRead);
+      }
+      return out.toString("UTF-8");
+    }
+  }
+
+  private static String withoutRandomValues(String ldif)
+  {
+    return ldif.replaceAll("description: .*\\n", "");
+  }
+}
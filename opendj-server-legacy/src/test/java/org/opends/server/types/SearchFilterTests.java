@@ -441,6 +441,63 @@ public class SearchFilterTests extends DirectoryServerTestCase {
     final SearchFilter filter = SearchFilter.createFilterFromString(filterStr);
     boolean matches = filter.matchesEntry(entry);
     Assert.assertEquals(matches, expectMatch, "Filter=" + filter + "\nEntry=" + entry);
+    boolean compiledMatches = CompiledSearchFilter.compile(filter).matchesEntry(entry);
+    Assert.assertEquals(compiledMatches, expectMatch, "Compiled filter=" + filter + "\nEntry=" + entry);
+  }
+
+  /** Leaf filters evaluating to TRUE, FALSE or UNDEFINED against {@link #JOHN_SMITH_LDIF}. */
+  private static final String[] DIFFERENTIAL_LEAF_FILTERS = {
+    "(cn=John Smith)",
+    "(name=Jonathan Smith)",
+    "(cn;lang-en=Jonathan Smith)",
+    "(objectclass=*)",
+    "(cn>=J)",
+    "(cn=*o*n*)",
+    "(title~=tattoos)",
+    "(cn=Jane Smith)",
+    "(mail=*)",
+    "(cn<=J)",
+    "(sn:caseExactMatch:=smith)",
+    // undefined: unknown matching rule
+    "(sn:1.2.3.4:=Smith)",
+    // undefined: the assertion value cannot be decoded by the matching rule
+    "(cn:integerMatch:=abc)",
+  };
+
+  @DataProvider(name = "differentialFilters")
+  public Object[][] differentialFilters()
+  {
+    final List<Object[]> filters = new ArrayList<>();
+    for (String f1 : DIFFERENTIAL_LEAF_FILTERS)
+    {
+      filters.add(new Object[] { f1 });
+      filters.add(new Object[] { "(!" + f1 + ")" });
+      for (String f2 : DIFFERENTIAL_LEAF_FILTERS)
+      {
+        filters.add(new Object[] { "(&" + f1 + f2 + ")" });
+        filters.add(new Object[] { "(|" + f1 + f2 + ")" });
+        filters.add(new Object[] { "(!(&" + f1 + f2 + "))" });
+        filters.add(new Object[] { "(!(|" + f1 + f2 + "))" });
+        filters.add(new Object[] { "(&" + f1 + "(!" + f2 + "))" });
+        filters.add(new Object[] { "(|(!" + f1 + ")" + f2 + ")" });
+        filters.add(new Object[] { "(!(&(objectclass=*)" + f1 + "(|" + f2 + "(cn=Jane Smith))))" });
+      }
+    }
+    return filters.toArray(new Object[filters.size()][]);
+  }
+
+  /** Checks the compiled filters match the same entries as the interpreted filters. */
+  @Test(dataProvider = "differentialFilters")
+  public void testCompiledFilterMatchesInterpretedFilter(String filterStr) throws Exception
+  {
+    final SearchFilter filter = SearchFilter.createFilterFromString(filterStr);
+    final CompiledSearchFilter compiledFilter = CompiledSearchFilter.compile(filter);
+    for (String ldif : new String[] { JOHN_SMITH_LDIF, JANE_SMITH_LDIF })
+    {
+      final Entry entry = TestCaseUtils.entryFromLdifString(ldif);
+      assertEquals(compiledFilter.matchesEntry(entry), filter.matchesEntry(entry),
+          "Filter=" + filter + "\nEntry=" + entry);
+    }
   }
 
   ////////////////////////////////////////////////////////////////////////////
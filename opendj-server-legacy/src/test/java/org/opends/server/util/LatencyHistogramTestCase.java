@@ -0,0 +1,115 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.util;
+
+import static java.util.concurrent.TimeUnit.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the latency histogram.
+ */
+@SuppressWarnings("javadoc")
+public class LatencyHistogramTestCase extends UtilTestCase
+{
+  @Test
+  public void emptyHistogram()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertThat(histogram.getCount()).isEqualTo(0);
+    assertThat(histogram.getMean(NANOSECONDS)).isEqualTo(0);
+    assertThat(histogram.getPercentile(99, NANOSECONDS)).isEqualTo(0);
+    assertThat(histogram.getMax(NANOSECONDS)).isEqualTo(0);
+  }
+
+  @Test
+  public void bucketsCoverAllValues()
+  {
+    long previousUpperBound = -1;
+    for (int i = 0; i < 960; i++)
+    {
+      final long upperBound = LatencyHistogram.bucketUpperBound(i);
+      assertThat(upperBound).isGreaterThan(previousUpperBound);
+      assertThat(LatencyHistogram.bucketIndex(previousUpperBound + 1)).isEqualTo(i);
+      assertThat(LatencyHistogram.bucketIndex(upperBound)).isEqualTo(i);
+      previousUpperBound = upperBound;
+    }
+    assertThat(previousUpperBound).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void percentilesAreWithinRelativeError()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 1000; i++)
+    {
+      histogram.record(MICROSECONDS.toNanos(i));
+    }
+
+    assertThat(histogram.getCount()).isEqualTo(1000);
+    assertThat(histogram.getMax(MICROSECONDS)).isEqualTo(1000);
+    assertThat(histogram.getMean(NANOSECONDS)).isEqualTo(MICROSECONDS.toNanos(1001) / 2);
+    assertThat(histogram.getPercentile(50, MICROSECONDS)).isBetween(500L, 532L);
+    assertThat(histogram.getPercentile(99, MICROSECONDS)).isBetween(990L, 1000L);
+    assertThat(histogram.getPercentile(100, MICROSECONDS)).isEqualTo(1000);
+  }
+
+  @Test
+  public void mergeAndSince()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(MICROSECONDS.toNanos(10));
+    histogram.record(MICROSECONDS.toNanos(20));
+    final LatencyHistogram copy = new LatencyHistogram();
+    copy.merge(histogram);
+    assertThat(copy.getCount()).isEqualTo(2);
+    assertThat(copy.getMean(MICROSECONDS)).isEqualTo(15);
+    assertThat(copy.getMax(MICROSECONDS)).isEqualTo(20);
+
+    histogram.record(MICROSECONDS.toNanos(5));
+    final LatencyHistogram delta = histogram.since(copy);
+    assertThat(delta.getCount()).isEqualTo(1);
+    assertThat(delta.getMean(MICROSECONDS)).isEqualTo(5);
+    assertThat(delta.getPercentile(100, MICROSECONDS)).isBetween(5L, 6L);
+    assertThat(histogram.since(histogram).getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void reset()
+  {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(42);
+    histogram.record(-1);
+    assertThat(histogram.getCount()).isEqualTo(2);
+
+    histogram.reset();
+
+    assertThat(histogram.getCount()).isEqualTo(0);
+    assertThat(histogram.getPercentile(50, NANOSECONDS)).isEqualTo(0);
+  }
+}
@@ -0,0 +1,242 @@
+/*
+ * CDDL HEADER START
+ *
+ * The contents of this file are subject to the terms of the
+ * Common Development and Distribution License, Version 1.0 only
+ * (the "License").  You may not use this file except in compliance
+ * with the License.
+ *
+ * You can obtain a copy of the license at legal-notices/CDDLv1_0.txt
+ * or http://forgerock.org/license/CDDLv1.0.html.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ *
+ * When distributing Covered Code, include this CDDL HEADER in each
+ * file and include the License file at legal-notices/CDDLv1_0.txt.
+ * If applicable, add the following below this CDDL HEADER, with the
+ * fields enclosed by brackets "[]" replaced with your own identifying
+ * information:
+ *      Portions Copyright [yyyy] [name of copyright owner]
+ *
+ * CDDL HEADER END
+ *
+ *
+ *      Copyright 2015 ForgeRock AS
+ */
+package org.opends.server.util;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import org.opends.server.TestCaseUtils;
+import org.opends.server.types.Entry;
+import org.opends.server.types.LDIFImportConfig;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Test cases for the LDIF reader parsing the entries with several threads.
+ */
+@SuppressWarnings("javadoc")
+public class ParallelLDIFReaderTestCase extends UtilTestCase
+{
+  private static final int NB_ENTRIES = 1000;
+  /** The entry with an invalid DN. */
+  private static final int INVALID_ENTRY = 500;
+
+  @BeforeClass
+  public void setUp() throws Exception
+  {
+    TestCaseUtils.startServer();
+  }
+
+  @Test
+  public void entriesAreReturnedInOrder() throws Exception
+  {
+    final List<String> dns = new ArrayList<>();
+    try (ParallelLDIFReader reader = new ParallelLDIFReader(newImportConfig(), 4, true))
+    {
+      while (true)
+      {
+        try
+        {
+          final Entry entry = reader.readEntry(true);
+          if (entry == null)
+          {
+            break;
+          }
+          dns.add(entry.getName().toString());
+        }
+        catch (LDIFException e)
+        {
+          assertThat(e.canContinueReading()).isTrue();
+          assertThat(reader.getLastEntryLineNumber()).isEqualTo(lineNumber(INVALID_ENTRY));
+          dns.add("invalid");
+        }
+      }
+      assertThat(reader.getEntriesRead()).isEqualTo(NB_ENTRIES - 1);
+    }
+
+    assertThat(dns).hasSize(NB_ENTRIES);
+    for (int i = 0; i < NB_ENTRIES; i++)
+    {
+      assertThat(dns.get(i)).isEqualTo(i == INVALID_ENTRY ? "invalid" : dn(i));
+    }
+  }
+
+  @Test
+  public void allEntriesAreReturnedUnordered() throws Exception
+  {
+    final Set<String> dns = new HashSet<>();
+    int nbErrors = 0;
+    try (ParallelLDIFReader reader = new ParallelLDIFReader(newImportConfig(), 4, false))
+    {
+      while (true)
+      {
+        try
+        {
+          final Entry entry = reader.readEntry(true);
+          if (entry == null)
+          {
+            break;
+          }
+          assertThat(dns.add(entry.getName().toString())).isTrue();
+        }
+        catch (LDIFException e)
+        {
+          nbErrors++;
+        }
+      }
+    }
+
+    assertThat(nbErrors).isEqualTo(1);
+    assertThat(dns).hasSize(NB_ENTRIES - 1);
+  }
+
+  @Test
+  public void gzipFilesAreDetected() throws Exception
+  {
+    final File ldifFile = File.createTempFile("parallelldifreader", ".ldif.gz");
+    ldifFile.deleteOnExit();
+    try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(ldifFile)), "UTF-8"))
+    {
+      writer.write(newLDIF(10, -1));
+    }
+
+    final LDIFImportConfig importConfig = new LDIFImportConfig(ldifFile.getAbsolutePath());
+    int nbEntries = 0;
+    try (ParallelLDIFReader reader = new ParallelLDIFReader(importConfig, 2, true))
+    {
+      Entry entry;
+      while ((entry = reader.readEntry(false)) != null)
+      {
+        assertThat(entry.getName().toString()).isEqualTo(dn(nbEntries));
+        nbEntries++;
+      }
+    }
+    assertThat(nbEntries).isEqualTo(10);
+  }
+
+  @Test
+  public void closingBeforeTheEndStopsReading() throws Exception
+  {
+    final ParallelLDIFReader reader = new ParallelLDIFReader(newImportConfig(), 2, true);
+    assertThat(reader.readEntry(false).getName().toString()).isEqualTo(dn(0));
+    reader.close();
+  }
+
+  @Test
+  public void changeRecordsAreReadSequentially() throws Exception
+  {
+    final String ldif = "dn: " + dn(0) + "\n"
+        + "changetype: modify\n"
+        + "replace: sn\n"
+        + "sn: modified\n"
+        + "\n"
+        + "dn: " + dn(1) + "\n"
+        + "changetype: delete\n"
+        + "\n";
+    final LDIFImportConfig importConfig = new LDIFImportConfig(new ByteArrayInputStream(ldif.getBytes("UTF-8")));
+    try (ParallelLDIFReader reader = new ParallelLDIFReader(importConfig, 2, true))
+    {
+      ChangeRecordEntry changeRecord = reader.readChangeRecord(false);
+      assertThat(changeRecord).isInstanceOf(ModifyChangeRecordEntry.class);
+      assertThat(changeRecord.getDN().toString()).isEqualTo(dn(0));
+      assertThat(reader.getLastEntryLineNumber()).isEqualTo(1);
+
+      changeRecord = reader.readChangeRecord(false);
+      assertThat(changeRecord).isInstanceOf(DeleteChangeRecordEntry.class);
+      assertThat(changeRecord.getDN().toString()).isEqualTo(dn(1));
+      assertThat(reader.readChangeRecord(false)).isNull();
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class,
+      expectedExceptionsMessageRegExp = "Change records cannot be read after parallel entry reading has started")
+  public void changeRecordsCannotBeReadOnceEntriesAreReadInParallel() throws Exception
+  {
+    try (ParallelLDIFReader reader = new ParallelLDIFReader(newImportConfig(), 2, true))
+    {
+      reader.readEntry(false);
+      reader.readChangeRecord(false);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class,
+      expectedExceptionsMessageRegExp = "Change records cannot be read after parallel entry reading has started")
+  public void changeRecordsCannotBeReadOnceAllEntriesAreRead() throws Exception
+  {
+    final String ldif = newLDIF(3, -1);
+    final LDIFImportConfig importConfig = new LDIFImportConfig(new ByteArrayInputStream(ldif.getBytes("UTF-8")));
+    try (ParallelLDIFReader reader = new ParallelLDIFReader(importConfig, 2, true))
+    {
+      while (reader.readEntry(false) != null)
+      {
+        // read all the entries
+      }
+      reader.readChangeRecord(false);
+    }
+  }
+
+  private static LDIFImportConfig newImportConfig() throws Exception
+  {
+    final String ldif = newLDIF(NB_ENTRIES, INVALID_ENTRY);
+    return new LDIFImportConfig(new ByteArrayInputStream(ldif.getBytes("UTF-8")));
+  }
+
+  private static String newLDIF(int nbEntries, int invalidEntry)
+  {
+    final StringBuilder ldif = new StringBuilder();
+    for (int i = 0; i < nbEntries; i++)
+    {
+      ldif.append("dn: ").append(i == invalidEntry ? "invalid" : dn(i)).append('\n')
+          .append("objectClass: top\n")
+          .append("objectClass: person\n")
+          .append("cn: user ").append(i).append('\n')
+          .append("sn: ").append(i).append('\n')
+          .append('\n');
+    }
+    return ldif.toString();
+  }
+
+  /** Each entry is 6 lines long, including the blank line. */
+  private static long lineNumber(int entryIndex)
+  {
+    return 6L * entryIndex + 1;
+  }
+
+  private static String dn(int i)
+  {
+    return "cn=user " + i + ",o=test";
+  }
+}